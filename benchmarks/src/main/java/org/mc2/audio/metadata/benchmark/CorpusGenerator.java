@@ -0,0 +1,542 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.images.Artwork;
+import org.jaudiotagger.tag.images.ArtworkFactory;
+import org.jaudiotagger.tag.reference.PictureTypes;
+
+/**
+ * Build a synthetic music library for the benchmarks.
+ *
+ * Audio files hold silence, with just enough structure for jaudiotagger to
+ * read their headers, and are tagged through jaudiotagger with album and
+ * track metadata and an embedded front cover. Every album directory also
+ * holds a cover.jpg image.
+ *
+ * The content depends only on the seed, so the same corpus is generated on
+ * every run.
+ *
+ * @author marco
+ */
+public class CorpusGenerator {
+
+    public enum Kind {
+        /** one FLAC file per track */
+        FLAC,
+        /** one MP3 file per track */
+        MP3,
+        /** one WAV file per track */
+        WAV,
+        /** one M4A (AAC) file per track */
+        M4A,
+        /** a single FLAC file with a cue sheet */
+        CUE
+    }
+
+    public static final long SEED = 20170901L;
+
+    private static final String[] WORDS = {"Blue", "Night", "River", "Song", "Light",
+        "Heart", "Moon", "Road", "Fire", "Rain", "Dream", "Time", "Love", "Sky",
+        "Winter", "Dance", "Shadow", "Home", "Train", "Silver", "Morning", "Sea"};
+
+    private static final int SAMPLE_RATE = 44100;
+
+    private final File root;
+    private final Random random;
+    private int seconds = 3;
+    private int artworkSize = 600;
+
+    public CorpusGenerator(File root) {
+        this(root, SEED);
+    }
+
+    public CorpusGenerator(File root, long seed) {
+        this.root = root;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generate a corpus: usage CorpusGenerator directory [albums] [tracks].
+     * @param args the arguments.
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1) {
+            System.out.println("usage: CorpusGenerator directory [albums per kind] [tracks per album]");
+            return;
+        }
+        int albums = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int tracks = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+
+        new CorpusGenerator(new File(args[0])).generate(albums, tracks);
+    }
+
+    /**
+     * @param seconds the length of each track.
+     * @return this generator.
+     */
+    public CorpusGenerator setSeconds(int seconds) {
+        this.seconds = seconds;
+        return this;
+    }
+
+    /**
+     * @param artworkSize the width and height of the cover images.
+     * @return this generator.
+     */
+    public CorpusGenerator setArtworkSize(int artworkSize) {
+        this.artworkSize = artworkSize;
+        return this;
+    }
+
+    /**
+     * Generate albums of every kind.
+     * @param albums the number of albums of each kind.
+     * @param tracks the number of tracks of each album.
+     * @return the corpus root directory.
+     * @throws IOException
+     */
+    public File generate(int albums, int tracks) throws IOException {
+
+        for (Kind kind : Kind.values()) {
+            for (int i = 1; i <= albums; i++) {
+                album(kind, String.format("%s-%03d", kind.name().toLowerCase(), i), tracks);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Generate an album directory.
+     * @param kind the kind of album.
+     * @param name the directory name.
+     * @param tracks the number of tracks.
+     * @return the album directory.
+     * @throws IOException
+     */
+    public File album(Kind kind, String name, int tracks) throws IOException {
+
+        File directory = new File(root, name);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+
+        String album = words(3);
+        String artist = words(2);
+        String year = String.valueOf(1960 + random.nextInt(60));
+        byte[] cover = png(artworkSize, artworkSize);
+
+        write(new File(directory, "cover.jpg"), jpg(artworkSize, artworkSize));
+
+        if (kind == Kind.CUE) {
+
+            File file = new File(directory, "album.flac");
+            write(file, flac(seconds * tracks));
+            tag(file, album, artist, year, null, 0, tracks, cover);
+            write(new File(directory, "album.cue"), cueSheet(album, artist, year, file.getName(), tracks));
+            return directory;
+        }
+
+        for (int track = 1; track <= tracks; track++) {
+
+            String extension = kind.name().toLowerCase();
+            File file = new File(directory, String.format("%02d - %s.%s", track, words(2), extension));
+
+            switch (kind) {
+                case FLAC:
+                    write(file, flac(seconds));
+                    break;
+                case MP3:
+                    write(file, mp3(seconds));
+                    break;
+                case M4A:
+                    write(file, m4a(seconds));
+                    break;
+                default:
+                    write(file, wav(seconds));
+            }
+            tag(file, album, artist, year, words(3), track, tracks, cover);
+        }
+        return directory;
+    }
+
+    /**
+     * Build a cue sheet for a single file album.
+     * @param album the album title.
+     * @param artist the album artist.
+     * @param year the album year.
+     * @param file the data file name.
+     * @param tracks the number of tracks.
+     * @return the cue sheet content.
+     */
+    public byte[] cueSheet(String album, String artist, String year, String file, int tracks) {
+
+        StringBuilder out = new StringBuilder();
+        out.append("REM GENRE Rock\r\n");
+        out.append("REM DATE ").append(year).append("\r\n");
+        out.append("REM DISCID ").append(String.format("%08X", random.nextInt())).append("\r\n");
+        out.append("REM COMMENT \"CorpusGenerator\"\r\n");
+        out.append("PERFORMER \"").append(artist).append("\"\r\n");
+        out.append("TITLE \"").append(album).append("\"\r\n");
+        out.append("FILE \"").append(file).append("\" WAVE\r\n");
+
+        for (int track = 1; track <= tracks; track++) {
+
+            int frames = (track - 1) * seconds * 75;
+            out.append(String.format("  TRACK %02d AUDIO\r\n", track));
+            out.append("    TITLE \"").append(words(3)).append("\"\r\n");
+            out.append("    PERFORMER \"").append(artist).append("\"\r\n");
+            out.append(String.format("    ISRC XX%s%07d\r\n", "ABC", track));
+            if (track > 1) {
+                out.append(String.format("    INDEX 00 %s\r\n", msf(Math.max(0, frames - 75))));
+            }
+            out.append(String.format("    INDEX 01 %s\r\n", msf(frames)));
+        }
+        return out.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param seconds the length.
+     * @return a FLAC stream holding STREAMINFO and a frame of silence.
+     */
+    public static byte[] flac(int seconds) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long samples = (long) seconds * SAMPLE_RATE;
+
+        out.write('f');
+        out.write('L');
+        out.write('a');
+        out.write('C');
+
+        // last metadata block, STREAMINFO, 34 bytes
+        out.write(0x80);
+        out.write(0);
+        out.write(0);
+        out.write(34);
+
+        writeInt(out, 4096, 2);                           // min block size
+        writeInt(out, 4096, 2);                           // max block size
+        writeInt(out, 0, 3);                              // min frame size
+        writeInt(out, 0, 3);                              // max frame size
+        // sample rate (20), channels - 1 (3), bits per sample - 1 (5), samples (36)
+        long packed = ((long) SAMPLE_RATE << 44) | (1L << 41) | (15L << 36) | samples;
+        writeLong(out, packed, 8);
+        out.write(new byte[16], 0, 16);                   // md5
+
+        // a frame header sync followed by silence, never decoded.
+        out.write(0xFF);
+        out.write(0xF8);
+        out.write(new byte[4094], 0, 4094);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param seconds the length.
+     * @return MPEG 1 layer III frames at 128 kbps, 44.1 kHz.
+     */
+    public static byte[] mp3(int seconds) {
+
+        int frameLength = 144 * 128000 / SAMPLE_RATE;
+        int frames = seconds * SAMPLE_RATE / 1152;
+
+        byte[] frame = new byte[frameLength];
+        frame[0] = (byte) 0xFF;
+        frame[1] = (byte) 0xFB;
+        frame[2] = (byte) 0x90;
+        frame[3] = (byte) 0x44;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(frames * frameLength);
+        for (int i = 0; i < frames; i++) {
+            out.write(frame, 0, frame.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param seconds the length.
+     * @return a 16 bit stereo PCM wave file of silence.
+     */
+    public static byte[] wav(int seconds) {
+
+        int dataLength = seconds * SAMPLE_RATE * 4;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(44 + dataLength);
+
+        writeAscii(out, "RIFF");
+        writeIntLE(out, 36 + dataLength);
+        writeAscii(out, "WAVE");
+        writeAscii(out, "fmt ");
+        writeIntLE(out, 16);
+        writeShortLE(out, 1);                             // PCM
+        writeShortLE(out, 2);                             // channels
+        writeIntLE(out, SAMPLE_RATE);
+        writeIntLE(out, SAMPLE_RATE * 4);                 // byte rate
+        writeShortLE(out, 4);                             // block align
+        writeShortLE(out, 16);                            // bits per sample
+        writeAscii(out, "data");
+        writeIntLE(out, dataLength);
+        out.write(new byte[dataLength], 0, dataLength);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param seconds the length.
+     * @return an MP4 file with one AAC track (stereo, 44.1 kHz, 128 kbps) of
+     * never decoded data and an empty ilst, moov before mdat.
+     */
+    public static byte[] m4a(int seconds) {
+
+        byte[] ftyp = atom("ftyp", ascii("M4A "), new byte[4], ascii("M4A mp42isom"));
+        byte[] mdat = atom("mdat", new byte[seconds * 16000]);
+
+        // stco points to the mdat data, the length of moov doesn't depend on it.
+        int offset = ftyp.length + moov(seconds, 0).length + 8;
+        return concat(ftyp, moov(seconds, offset), mdat);
+    }
+
+    private static byte[] moov(int seconds, int offset) {
+
+        ByteArrayOutputStream mvhd = new ByteArrayOutputStream();
+        writeInt(mvhd, 0, 12);                            // version, flags, dates
+        writeInt(mvhd, 1000, 4);                          // time scale
+        writeInt(mvhd, seconds * 1000, 4);                // duration
+        writeInt(mvhd, 0x00010000, 4);                    // rate
+        writeInt(mvhd, 0x0100, 2);                        // volume
+        writeInt(mvhd, 0, 74);
+
+        ByteArrayOutputStream mdhd = new ByteArrayOutputStream();
+        writeInt(mdhd, 0, 12);                            // version, flags, dates
+        writeInt(mdhd, SAMPLE_RATE, 4);                   // time scale
+        writeInt(mdhd, seconds * SAMPLE_RATE, 4);         // duration
+        writeInt(mdhd, 0, 4);                             // language, quality
+
+        // sample entry: reserved, data reference, version, channels, bits, rate (16.16).
+        ByteArrayOutputStream mp4a = new ByteArrayOutputStream();
+        writeInt(mp4a, 0, 6);
+        writeInt(mp4a, 1, 2);
+        writeInt(mp4a, 0, 8);
+        writeInt(mp4a, 2, 2);
+        writeInt(mp4a, 16, 2);
+        writeInt(mp4a, 0, 4);
+        writeLong(mp4a, (long) SAMPLE_RATE << 16, 4);
+        // ES, decoder config (AAC, 128 kbps) with AAC LC 44.1 kHz stereo, SL config descriptors.
+        byte[] esds = atom("esds", new byte[4],
+                new byte[]{3, 25, 0, 1, 0},
+                new byte[]{4, 17, 0x40, 0x15, 0, 0, 0, 0, 1, (byte) 0xF4, 0, 0, 1, (byte) 0xF4, 0},
+                new byte[]{5, 2, 0x12, 0x10},
+                new byte[]{6, 1, 2});
+        byte[] stsd = atom("stsd", new byte[]{0, 0, 0, 0, 0, 0, 0, 1}, atom("mp4a", mp4a.toByteArray(), esds));
+
+        ByteArrayOutputStream stco = new ByteArrayOutputStream();
+        writeInt(stco, 0, 4);                             // version, flags
+        writeInt(stco, 1, 4);                             // entries
+        writeInt(stco, offset, 4);
+
+        byte[] minf = atom("minf", atom("smhd", new byte[8]), atom("stbl", stsd, atom("stco", stco.toByteArray())));
+        byte[] trak = atom("trak", atom("mdia", atom("mdhd", mdhd.toByteArray()), minf));
+        byte[] udta = atom("udta", atom("meta", new byte[4], atom("ilst")));
+        return atom("moov", atom("mvhd", mvhd.toByteArray()), trak, udta);
+    }
+
+    /**
+     * @param width the image width.
+     * @param height the image height.
+     * @return a PNG image.
+     * @throws IOException
+     */
+    public byte[] png(int width, int height) throws IOException {
+        return encode(image(width, height), "png");
+    }
+
+    /**
+     * @param width the image width.
+     * @param height the image height.
+     * @return a JPEG image.
+     * @throws IOException
+     */
+    public byte[] jpg(int width, int height) throws IOException {
+        return encode(image(width, height), "jpg");
+    }
+
+    /**
+     * @param width the image width.
+     * @param height the image height.
+     * @return random coloured blocks with some noise, so images don't
+     * compress to nothing.
+     */
+    public BufferedImage image(int width, int height) {
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        int block = Math.max(1, width / 8);
+
+        for (int x = 0; x < width; x += block) {
+            for (int y = 0; y < height; y += block) {
+                graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+                graphics.fillRect(x, y, block, block);
+            }
+        }
+        graphics.dispose();
+
+        for (int i = 0; i < width * height / 16; i++) {
+            image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt(0xFFFFFF));
+        }
+        return image;
+    }
+
+    private void tag(File file, String album, String artist, String year, String title,
+                     int track, int tracks, byte[] cover) throws IOException {
+
+        try {
+            AudioFile audioFile = AudioFileIO.read(file);
+            Tag tag = audioFile.getTagOrCreateAndSetDefault();
+
+            tag.setField(FieldKey.ALBUM, album);
+            tag.setField(FieldKey.ALBUM_ARTIST, artist);
+            tag.setField(FieldKey.ARTIST, artist);
+            tag.setField(FieldKey.YEAR, year);
+            tag.setField(FieldKey.GENRE, "Rock");
+            tag.setField(FieldKey.COMMENT, "CorpusGenerator");
+            tag.setField(FieldKey.TRACK_TOTAL, String.valueOf(tracks));
+            tag.setField(FieldKey.DISC_NO, "1");
+            tag.setField(FieldKey.DISC_TOTAL, "1");
+            if (title != null) {
+                tag.setField(FieldKey.TITLE, title);
+                tag.setField(FieldKey.TRACK, String.valueOf(track));
+            }
+
+            Artwork artwork = ArtworkFactory.getNew();
+            artwork.setBinaryData(cover);
+            artwork.setMimeType("image/png");
+            artwork.setPictureType(PictureTypes.DEFAULT_ID);
+            artwork.setDescription("");
+            artwork.setWidth(artworkSize);
+            artwork.setHeight(artworkSize);
+            tag.setField(artwork);
+
+            audioFile.commit();
+
+        } catch (Exception ex) {
+            throw new IOException("Can't tag " + file, ex);
+        }
+    }
+
+    private String words(int count) {
+
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                out.append(' ');
+            }
+            out.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return out.toString();
+    }
+
+    private static String msf(int frames) {
+        return String.format("%02d:%02d:%02d", frames / 75 / 60, frames / 75 % 60, frames % 75);
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+    }
+
+    /* MP4 atoms: big endian 32 bits sizes, header included. */
+    private static byte[] atom(String type, byte[]... content) {
+
+        byte[] body = concat(content);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + body.length);
+        writeInt(out, 8 + body.length, 4);
+        writeAscii(out, type);
+        out.write(body, 0, body.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value, int bytes) {
+        writeLong(out, value, bytes);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value, int bytes) {
+        for (int i = bytes - 1; i >= 0; i--) {
+            out.write((int) (value >>> (8 * i)) & 0xFF);
+        }
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        for (int i = 0; i < 4; i++) {
+            out.write((value >>> (8 * i)) & 0xFF);
+        }
+    }
+
+    private static void writeShortLE(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private static void writeAscii(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        out.write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.apache.commons.io.FileUtils;
+import org.jaudiotagger.tag.images.Artwork;
+import org.jaudiotagger.tag.images.ArtworkFactory;
+import org.jaudiotagger.tag.reference.PictureTypes;
+import org.mc2.audio.metadata.API.CoverArt;
+import org.mc2.audio.metadata.source.coverart.CoverArtAbstract;
+import org.mc2.audio.metadata.source.coverart.EmbeddedArtwork;
+import org.mc2.audio.metadata.source.coverart.FileCoverArt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cover art decoding, from an image file and from an embedded picture, and
+ * the thumbnails of {@link CoverArtAbstract}, resized from an image already
+ * decoded.
+ *
+ * @author marco
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoverArtBenchmark {
+
+    @Param({"600", "1500", "3000"})
+    public int size;
+
+    private File root;
+    private File imageFile;
+    private Artwork artwork;
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        root = Files.createTempDirectory("metadata-benchmark").toFile();
+        CorpusGenerator generator = new CorpusGenerator(root);
+
+        imageFile = new File(root, "cover.jpg");
+        Files.write(imageFile.toPath(), generator.jpg(size, size));
+        image = ImageIO.read(imageFile);
+
+        artwork = ArtworkFactory.getNew();
+        artwork.setBinaryData(generator.png(size, size));
+        artwork.setMimeType("image/png");
+        artwork.setPictureType(PictureTypes.DEFAULT_ID);
+        artwork.setWidth(size);
+        artwork.setHeight(size);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public CoverArt decodeFile() {
+        return new FileCoverArt(imageFile);
+    }
+
+    @Benchmark
+    public CoverArt decodeEmbedded() {
+        return new EmbeddedArtwork(imageFile, artwork, 0);
+    }
+
+    @Benchmark
+    public BufferedImage thumbnail150() {
+        return new DecodedCoverArt(image).getThumbnail150();
+    }
+
+    @Benchmark
+    public BufferedImage thumbnail250() {
+        return new DecodedCoverArt(image).getThumbnail250();
+    }
+
+    @Benchmark
+    public BufferedImage thumbnail500() {
+        return new DecodedCoverArt(image).getThumbnail500();
+    }
+
+    @Benchmark
+    public byte[] thumbnail500Data() {
+        return new DecodedCoverArt(image).getThumbnail500Data();
+    }
+
+    /**
+     * A cover art whose original image is given, so the thumbnails are
+     * computed without decoding it again.
+     */
+    private static class DecodedCoverArt extends CoverArtAbstract {
+
+        DecodedCoverArt(BufferedImage image) {
+            super();
+            setOriginalSizeImage(image);
+        }
+
+        @Override
+        public String getSource() {
+            return CoverArt.SOURCE_IMAGE_FILE;
+        }
+
+        @Override
+        public String getUrl() {
+            return "";
+        }
+
+        @Override
+        public File getFile() {
+            return null;
+        }
+
+        @Override
+        public Integer getIndex() {
+            return -1;
+        }
+
+        @Override
+        public String getType() {
+            return "";
+        }
+
+        @Override
+        public String getComment() {
+            return "";
+        }
+    }
+}
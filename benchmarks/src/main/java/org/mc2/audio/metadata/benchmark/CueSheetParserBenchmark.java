@@ -0,0 +1,92 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.mc2.audio.metadata.source.cue.CueSheet;
+import org.mc2.audio.metadata.source.cue.CueSheetCommandParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse cue sheets: from memory, where the data file can't be found and only
+ * the sheet is parsed, and from file, reading the data file header as well.
+ *
+ * @author marco
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CueSheetParserBenchmark {
+
+    @Param({"12", "99"})
+    public int tracks;
+
+    private File root;
+    private File cueFile;
+    private byte[] cueSheet;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        root = Files.createTempDirectory("metadata-benchmark").toFile();
+        File directory = new CorpusGenerator(root).album(CorpusGenerator.Kind.CUE, "album", tracks);
+        cueFile = new File(directory, "album.cue");
+        cueSheet = Files.readAllBytes(cueFile.toPath());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public CueSheet parseSheet() throws IOException {
+        return CueSheetCommandParser.parse(new ByteArrayInputStream(cueSheet), "benchmark");
+    }
+
+    @Benchmark
+    public CueSheet parseFile() throws IOException {
+        return CueSheetCommandParser.parse(cueFile);
+    }
+}
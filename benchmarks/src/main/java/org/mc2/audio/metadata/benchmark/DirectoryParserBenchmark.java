@@ -0,0 +1,87 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileFormatException;
+import org.mc2.audio.metadata.impl.AlbumDefaultImpl;
+import org.mc2.audio.metadata.parser.DirectoryParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse a whole album directory, for each kind of album in the corpus.
+ *
+ * @author marco
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DirectoryParserBenchmark {
+
+    @Param({"FLAC", "MP3", "WAV", "CUE"})
+    public CorpusGenerator.Kind kind;
+
+    @Param({"12"})
+    public int tracks;
+
+    private File root;
+    private File directory;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        root = Files.createTempDirectory("metadata-benchmark").toFile();
+        directory = new CorpusGenerator(root).album(kind, "album", tracks);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public AlbumDefaultImpl parse() throws IOException, InvalidAudioFileException, InvalidAudioFileFormatException {
+        return DirectoryParser.parse(directory);
+    }
+}
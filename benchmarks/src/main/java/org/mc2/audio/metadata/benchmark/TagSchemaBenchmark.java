@@ -0,0 +1,118 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.mc2.audio.metadata.API.Metadata;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileFormatException;
+import org.mc2.audio.metadata.source.tags.file.AudioFile;
+import org.mc2.audio.metadata.source.tags.file.Flac;
+import org.mc2.audio.metadata.source.tags.file.M4a;
+import org.mc2.audio.metadata.source.tags.file.Mp3;
+import org.mc2.audio.metadata.source.tags.file.Wav;
+import org.mc2.audio.metadata.source.tags.schema.GenericTagSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Convert the tags of an audio file, already read, to metadata: through the
+ * schema of the format (vorbis comments for FLAC, ID3v2 for MP3 and WAV, MP4
+ * for M4A) and through the generic schema.
+ *
+ * The schema of the format is the one the file was read with, as returned by
+ * getTagSchema(): for MP3 and WAV it reads the scanned ID3 frames, for M4A the
+ * items read from the atoms. Metadata are built anew on each invocation.
+ * A new generic schema is built on each invocation.
+ *
+ * @author marco
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TagSchemaBenchmark {
+
+    @Param({"FLAC", "MP3", "WAV", "M4A"})
+    public CorpusGenerator.Kind kind;
+
+    private File root;
+    private AudioFile audioFile;
+
+    @Setup
+    public void setUp() throws IOException, InvalidAudioFileException, InvalidAudioFileFormatException {
+
+        root = Files.createTempDirectory("metadata-benchmark").toFile();
+        File directory = new CorpusGenerator(root).album(kind, "album", 1);
+
+        for (File file : directory.listFiles()) {
+            if (file.getName().endsWith("." + kind.name().toLowerCase())) {
+                audioFile = AudioFile.get(file);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public ArrayList<Metadata> schema() {
+
+        switch (kind) {
+            case FLAC:
+                return ((Flac) audioFile).getVorbisCommentTagSchema().getMetadata();
+            case MP3:
+                return ((Mp3) audioFile).getiD3v2Tag().getMetadata();
+            case M4A:
+                return ((M4a) audioFile).getMp4TagSchema().getMetadata();
+            default:
+                return ((Wav) audioFile).getiD3v2Tag().getMetadata();
+        }
+    }
+
+    @Benchmark
+    public ArrayList<Metadata> generic() {
+        return new GenericTagSchema(audioFile.getTag(), audioFile).getMetadata();
+    }
+}
@@ -26,6 +26,7 @@ package org.mc2.audio.metadata.API;
 
 import java.io.File;
 import java.util.ArrayList;
+import org.mc2.audio.metadata.source.ScanStatistics;
 import org.mc2.audio.metadata.source.cue.file.CueFile;
 import org.mc2.audio.metadata.source.tags.file.AudioFile;
 
@@ -65,6 +66,13 @@ public interface Album {
      */
     ArrayList<Metadata> getMetadataList();
 
+    /**
+     * @param key the metadata key or one of its album level aliases, case
+     * insensitive.
+     * @return the metadata, null if missing.
+     */
+    Metadata getMetadata(String key);
+
     /**
      * @return the discId offsets
      */
@@ -94,5 +102,13 @@ public interface Album {
      * @return the coverArtList
      */
     ArrayList<CoverArt> getcoverArtList();
+
+    /**
+     * @return the statistics of the scan that built the album, null if not
+     * available.
+     */
+    default ScanStatistics getStatistics() {
+        return null;
+    }
     
 }
@@ -30,6 +30,9 @@ import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileFormatException;
 import org.mc2.audio.metadata.API.exceptions.InvalidCueSheetException;
 import org.mc2.audio.metadata.parser.DirectoryParser;
+import org.mc2.audio.metadata.parser.LibraryParser;
+import org.mc2.audio.metadata.parser.LibraryParserListener;
+import org.mc2.audio.metadata.parser.index.ScanIndex;
 
 /**
  *
@@ -62,5 +65,49 @@ public interface AlbumBuilder {
     public static Album parse(File directory) throws IOException, InvalidCueSheetException, InvalidAudioFileException, InvalidAudioFileFormatException{
         return DirectoryParser.parse(directory);
     };
+    
+    /**
+     * Parse directory and build a detached album, not retaining the audio 
+     * files, tags and cue sheets it was read from.
+     * @param directory
+     * @return the album
+     * @throws java.io.IOException
+     * @throws org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException
+     * @throws org.mc2.audio.metadata.API.exceptions.InvalidAudioFileFormatException
+     */ 
+    public static Album parseDetached(File directory) throws IOException, InvalidAudioFileException, InvalidAudioFileFormatException{
+        return DirectoryParser.parseDetached(directory);
+    };
+    
+    /**
+     * Parse all the album directories under root, in parallel.
+     * Albums are passed to the listener as soon as they are built.
+     * @param root the library root directory
+     * @param parallelism the number of directories parsed at the same time
+     * @param listener receives the albums
+     * @throws java.io.IOException
+     */ 
+    public static void parseLibrary(File root, int parallelism, LibraryParserListener listener) throws IOException{
+        LibraryParser.parse(root, parallelism, listener);
+    };
+    
+    /**
+     * Parse all the album directories under root, in parallel, parsing again
+     * only the directories changed since the last scan recorded in the index
+     * file. The index file is created or updated at the end of the scan.
+     * Albums are detached, as the ones rebuilt from the index.
+     * @param root the library root directory
+     * @param parallelism the number of directories parsed at the same time
+     * @param listener receives the albums
+     * @param indexFile the scan index file
+     * @throws java.io.IOException
+     */ 
+    public static void parseLibrary(File root, int parallelism, LibraryParserListener listener, File indexFile) throws IOException{
+        ScanIndex index = ScanIndex.load(indexFile);
+        LibraryParser parser = new LibraryParser(parallelism);
+        parser.setDetached(true);
+        parser.parse(root, listener, index);
+        index.save(indexFile);
+    };
 
 }
@@ -25,6 +25,7 @@
 package org.mc2.audio.metadata.API;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -70,9 +71,9 @@ public interface Metadata {
     String getKey();
 
     /**
-     * @return the origins
+     * @return the origins, unmodifiable when the metadata can't change.
      */
-    ArrayList<MetadataOrigin> getOrigins();
+    List<MetadataOrigin> getOrigins();
 
     /**
      * @return the status.
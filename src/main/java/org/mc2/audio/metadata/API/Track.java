@@ -53,6 +53,13 @@ public interface Track {
      */
     ArrayList<Metadata> getMetadataList();
 
+    /**
+     * @param key the metadata key or one of its track level aliases, case
+     * insensitive.
+     * @return the metadata, null if missing.
+     */
+    Metadata getMetadata(String key);
+
     /**
      * @return the offset
      */
@@ -31,6 +31,7 @@ import org.mc2.audio.metadata.API.CoverArt;
 import org.mc2.audio.metadata.API.Metadata;
 import org.mc2.audio.metadata.API.StatusMessage;
 import org.mc2.audio.metadata.API.Track;
+import org.mc2.audio.metadata.source.ScanStatistics;
 import org.mc2.audio.metadata.source.cue.file.CueFile;
 import org.mc2.audio.metadata.source.tags.file.AudioFile;
 
@@ -47,9 +48,11 @@ public class AlbumDefaultImpl implements Album {
     private final ArrayList<File> imageFileList;  
     private final ArrayList<Track> trackList;
     private final ArrayList<CoverArt> coverArtList;
-    private final ArrayList<Metadata> metadataList;
+    private final MetadataMap metadataMap;
     private final ArrayList<StatusMessage> messageList;
     
+    private ScanStatistics statistics;
+    
     private Integer totalLength = 0;
     ArrayList<Integer> discIdOffsets = new ArrayList<>();
     
@@ -63,7 +66,7 @@ public class AlbumDefaultImpl implements Album {
                  ArrayList<StatusMessage> messageList) {
         
         this.coverArtList = coverArtList;  
-        this.metadataList = metadataList;  
+        this.metadataMap = MetadataMap.atAlbumLevel(metadataList);
         this.fileList = fileList;
         this.cueFileList = cueFileList;
         this.audioFileList = audioFileList;
@@ -83,8 +86,8 @@ public class AlbumDefaultImpl implements Album {
         Integer offset = 0;
         for (Track track : trackList){
             
-            if ( track instanceof TrackDefaultImpl){
-                ((TrackDefaultImpl)track).setOffset(offset);
+            if ( track instanceof TrackAbstract){
+                ((TrackAbstract)track).setOffset(offset);
                 offset= offset+track.getLength();
                 totalLength= totalLength+track.getLength();
                 discIdOffsets.add(track.getOffset());
@@ -149,7 +152,15 @@ public class AlbumDefaultImpl implements Album {
      */
     @Override
     public ArrayList<Metadata> getMetadataList() {
-        return metadataList;
+        return metadataMap.getList();
+    }
+    /**
+     * @param key the metadata key or one of its album level aliases.
+     * @return the metadata, null if missing.
+     */
+    @Override
+    public Metadata getMetadata(String key) {
+        return metadataMap.get(key);
     }
 
     /**
@@ -192,4 +203,19 @@ public class AlbumDefaultImpl implements Album {
         return messageList;
     }
 
+    /**
+     * @return the statistics
+     */
+    @Override
+    public ScanStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @param statistics the statistics to set
+     */
+    public void setStatistics(ScanStatistics statistics) {
+        this.statistics = statistics;
+    }
+
 }
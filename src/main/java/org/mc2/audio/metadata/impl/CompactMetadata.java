@@ -0,0 +1,160 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import org.mc2.audio.metadata.API.Metadata;
+import org.mc2.audio.metadata.API.MetadataOrigin;
+
+/**
+ * A Metadata that can't change anymore, holding just the key and compact
+ * origins. Values are derived on each call, so it takes far less memory than
+ * ImmutableMetadata but it is slower to read, meant for the tracks of large
+ * libraries kept in memory.
+ *
+ * @author marco
+ */
+public final class CompactMetadata implements Metadata {
+
+    private final String key;
+    private final CompactMetadataOrigin[] origins;
+
+    private CompactMetadata(String key, CompactMetadataOrigin[] origins) {
+
+        this.key = key;
+        this.origins = origins;
+    }
+
+    /**
+     * @param key the key.
+     * @param origins the origins, compacted if needed.
+     * @return the metadata.
+     */
+    public static CompactMetadata of(String key, List<? extends MetadataOrigin> origins) {
+
+        CompactMetadataOrigin[] out = new CompactMetadataOrigin[origins.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = CompactMetadataOrigin.of(origins.get(i));
+        }
+        return new CompactMetadata(key, out);
+    }
+
+    /**
+     * @param metadata the metadata.
+     * @return the metadata itself if already compact, a compact copy otherwise.
+     */
+    public static CompactMetadata of(Metadata metadata) {
+
+        if (metadata instanceof CompactMetadata) {
+            return (CompactMetadata) metadata;
+        }
+        return of(metadata.getKey(), metadata.getOrigins());
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String getValue() {
+        return getValue(false, false);
+    }
+
+    @Override
+    public String getValue(boolean mergeDiscarded, boolean mergeInvalid) {
+        return ImmutableMetadata.getValue(getValidValue(), getDiscardedValue(), getInvalidValue(),
+                                          mergeDiscarded, mergeInvalid);
+    }
+
+    @Override
+    public String getValidValue() {
+        return ImmutableMetadata.join(getValidValues());
+    }
+
+    @Override
+    public String getDiscardedValue() {
+        return ImmutableMetadata.join(getDiscardedValues());
+    }
+
+    @Override
+    public String getInvalidValue() {
+        return ImmutableMetadata.join(getInvalidValues());
+    }
+
+    @Override
+    public STATUS getStatus() {
+        return ImmutableMetadata.getStatus(getValidValue(), getDiscardedValue(), getInvalidValue());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getStatus() == STATUS.EMPTY;
+    }
+
+    @Override
+    public ArrayList<String> getValidValues() {
+
+        LinkedHashSet<String> out = new LinkedHashSet<>();
+        for (CompactMetadataOrigin origin : origins) {
+            out.addAll(origin.getValidatedValues());
+        }
+        return new ArrayList<>(out);
+    }
+
+    @Override
+    public ArrayList<String> getDiscardedValues() {
+
+        LinkedHashSet<String> out = new LinkedHashSet<>();
+        for (CompactMetadataOrigin origin : origins) {
+            out.addAll(origin.getDiscardedValues());
+        }
+        return new ArrayList<>(out);
+    }
+
+    @Override
+    public ArrayList<String> getInvalidValues() {
+
+        LinkedHashSet<String> out = new LinkedHashSet<>();
+        for (CompactMetadataOrigin origin : origins) {
+            out.addAll(origin.getInvalidValues());
+        }
+        return new ArrayList<>(out);
+    }
+
+    @Override
+    public List<MetadataOrigin> getOrigins() {
+        return Collections.<MetadataOrigin>unmodifiableList(Arrays.asList(origins));
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + getValue();
+    }
+}
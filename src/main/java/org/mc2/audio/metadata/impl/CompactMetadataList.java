@@ -0,0 +1,187 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.mc2.audio.metadata.API.Metadata;
+import org.mc2.audio.metadata.API.MetadataKeys.METADATA_KEY;
+
+/**
+ * A read only list of compact Metadata, indexed by key as MetadataMap but
+ * sized on the metadata it holds.
+ *
+ * Keys in METADATA_KEY are looked up through a bitmap with a bit for each
+ * ordinal, the slot of a key is the number of bits set before its own, so
+ * only the slots of the keys present are stored. Any other key is searched
+ * in the list.
+ *
+ * @author marco
+ */
+public final class CompactMetadataList {
+
+    private static final int KEYS = METADATA_KEY.values().length;
+    private static final int WORDS = (KEYS + 63) / 64;
+
+    private static final long[] NONE = new long[WORDS];
+    private static final char[] NO_SLOTS = new char[0];
+    private static final CompactMetadata[] EMPTY = new CompactMetadata[0];
+
+    private final HashMap<String, String> aliases;
+    private final CompactMetadata[] entries;
+    private final long[] present;
+    private final char[] slots;
+
+    private CompactMetadataList(HashMap<String, String> aliases, List<Metadata> metadataList) {
+
+        this.aliases = aliases;
+
+        if (metadataList.isEmpty()) {
+            this.entries = EMPTY;
+            this.present = NONE;
+            this.slots = NO_SLOTS;
+            return;
+        }
+
+        this.entries = new CompactMetadata[metadataList.size()];
+        int[] positions = new int[KEYS];
+        long[] bits = new long[WORDS];
+        int count = 0;
+
+        for (int i = 0; i < entries.length; i++) {
+
+            entries[i] = CompactMetadata.of(metadataList.get(i));
+
+            String key = entries[i].getKey();
+            METADATA_KEY metadataKey = key == null ? null : MetadataMap.getMetadataKey(key.toUpperCase());
+            if (metadataKey == null) {
+                continue;
+            }
+            int ordinal = metadataKey.ordinal();
+            if ((bits[ordinal >>> 6] & (1L << ordinal)) == 0) {
+                bits[ordinal >>> 6] |= 1L << ordinal;
+                positions[ordinal] = i;
+                count++;
+            }
+        }
+
+        this.present = count == 0 ? NONE : bits;
+        this.slots = new char[count];
+
+        int slot = 0;
+        for (int ordinal = 0; ordinal < KEYS; ordinal++) {
+            if ((bits[ordinal >>> 6] & (1L << ordinal)) != 0) {
+                slots[slot++] = (char) positions[ordinal];
+            }
+        }
+    }
+
+    /**
+     * @param metadataList the metadata.
+     * @return a compact copy, using the album level aliases.
+     */
+    public static CompactMetadataList atAlbumLevel(List<Metadata> metadataList) {
+        return new CompactMetadataList(MetadataMap.ALBUM_LEVEL_ALIAS, metadataList);
+    }
+
+    /**
+     * @param metadataList the metadata.
+     * @return a compact copy, using the track level aliases.
+     */
+    public static CompactMetadataList atTrackLevel(List<Metadata> metadataList) {
+        return new CompactMetadataList(MetadataMap.TRACK_LEVEL_ALIAS, metadataList);
+    }
+
+    /**
+     * @return a copy of the metadata list, in the original order.
+     */
+    public ArrayList<Metadata> getList() {
+        return new ArrayList<Metadata>(Arrays.asList(entries));
+    }
+
+    /**
+     * @return the number of metadata.
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Get a metadata by key or by one of its aliases, as MetadataMap.get().
+     * @param key the key, case insensitive.
+     * @return the metadata, null if not found.
+     */
+    public Metadata get(String key) {
+
+        if (key == null) {
+            return null;
+        }
+        String alias = MetadataMap.getAlias(aliases, key);
+        Metadata out = find(alias);
+
+        if (!alias.equalsIgnoreCase(key) && (out == null || out.isEmpty())) {
+            out = find(key);
+        }
+        return out;
+    }
+
+    /**
+     * Get a metadata by key, without looking at aliases.
+     * @param key the key, case insensitive.
+     * @return the first metadata with that key, null if not found.
+     */
+    public Metadata find(String key) {
+
+        if (key == null) {
+            return null;
+        }
+        String upperCase = key.toUpperCase();
+        METADATA_KEY metadataKey = MetadataMap.getMetadataKey(upperCase);
+
+        if (metadataKey == null) {
+            for (CompactMetadata entry : entries) {
+                if (entry.getKey() != null && entry.getKey().equalsIgnoreCase(key)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        int ordinal = metadataKey.ordinal();
+        int word = ordinal >>> 6;
+        long bit = 1L << ordinal;
+
+        if ((present[word] & bit) == 0) {
+            return null;
+        }
+        int slot = Long.bitCount(present[word] & (bit - 1));
+        for (int i = 0; i < word; i++) {
+            slot += Long.bitCount(present[i]);
+        }
+        return entries[slots[slot]];
+    }
+}
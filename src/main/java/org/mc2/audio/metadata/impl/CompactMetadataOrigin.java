@@ -0,0 +1,164 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.mc2.audio.metadata.API.MetadataOrigin;
+
+/**
+ * A MetadataOrigin holding only the source id, the key and the values, all
+ * of them in a single array. Origins without values share the same empty
+ * array.
+ *
+ * Values can't be changed, lists are returned as copies.
+ *
+ * @author marco
+ */
+public final class CompactMetadataOrigin implements MetadataOrigin {
+
+    private static final String[] EMPTY = new String[0];
+
+    private final String source;
+    private final String key;
+    private final String[] values;
+    private final short validCount;
+    private final short discardedCount;
+
+    private CompactMetadataOrigin(String source, String key, String[] values,
+                                  int validCount, int discardedCount) {
+
+        this.source = source;
+        this.key = key;
+        this.values = values;
+        this.validCount = (short) validCount;
+        this.discardedCount = (short) discardedCount;
+    }
+
+    /**
+     * @param source the source id.
+     * @param key the origin key.
+     * @param values the validated values.
+     * @return an origin without discarded and invalid values.
+     */
+    public static CompactMetadataOrigin of(String source, String key, List<String> values) {
+        return of(source, key, values, null, null);
+    }
+
+    /**
+     * @param source the source id.
+     * @param key the origin key.
+     * @param values the validated values, could be null.
+     * @param discarded the discarded values, could be null.
+     * @param invalid the invalid values, could be null.
+     * @return the origin.
+     */
+    public static CompactMetadataOrigin of(String source, String key,
+                                           List<String> values,
+                                           List<String> discarded,
+                                           List<String> invalid) {
+
+        int validCount = size(values);
+        int discardedCount = size(discarded);
+        int size = validCount + discardedCount + size(invalid);
+
+        if (validCount > Short.MAX_VALUE || discardedCount > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many values for "+key+" in "+source);
+        }
+
+        String[] all = EMPTY;
+        if (size > 0) {
+            all = new String[size];
+            int i = copy(values, all, 0);
+            i = copy(discarded, all, i);
+            copy(invalid, all, i);
+        }
+        return new CompactMetadataOrigin(source, key, all, validCount, discardedCount);
+    }
+
+    /**
+     * @param origin the origin.
+     * @return the origin itself if already compact, a compact copy otherwise.
+     */
+    public static CompactMetadataOrigin of(MetadataOrigin origin) {
+
+        if (origin instanceof CompactMetadataOrigin) {
+            return (CompactMetadataOrigin) origin;
+        }
+        return of(origin.getSource(), origin.getOriginKey(),
+                  origin.getValidatedValues(),
+                  origin.getDiscardedValues(),
+                  origin.getInvalidValues());
+    }
+
+    @Override
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String getOriginKey() {
+        return key;
+    }
+
+    @Override
+    public ArrayList<String> getValidatedValues() {
+        return copy(0, validCount);
+    }
+
+    @Override
+    public ArrayList<String> getDiscardedValues() {
+        return copy(validCount, validCount + discardedCount);
+    }
+
+    @Override
+    public ArrayList<String> getInvalidValues() {
+        return copy(validCount + discardedCount, values.length);
+    }
+
+    private ArrayList<String> copy(int from, int to) {
+
+        if (from >= to) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(values).subList(from, to));
+    }
+
+    private static int size(List<String> values) {
+        return values == null ? 0 : values.size();
+    }
+
+    private static int copy(List<String> values, String[] to, int from) {
+
+        if (values == null) {
+            return from;
+        }
+        for (String value : values) {
+            to[from++] = value;
+        }
+        return from;
+    }
+}
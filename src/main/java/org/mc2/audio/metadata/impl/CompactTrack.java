@@ -0,0 +1,87 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.mc2.audio.metadata.API.Metadata;
+
+/**
+ * A Track with compact metadata and no audio files attached, for large
+ * libraries kept in memory. See CompactMetadataList.
+ *
+ * Detached albums are built with it, by detached scans and from the scan
+ * index. Attached albums keep TrackDefaultImpl, as they refer to the audio
+ * files their metadata were read from.
+ *
+ * @author marco
+ */
+public final class CompactTrack extends TrackAbstract {
+
+    private final int trackNo;
+    private final int length;
+    private final CompactMetadataList metadata;
+
+    public CompactTrack(Integer trackNo, int length, List<Metadata> metadataList) {
+
+        this.trackNo = trackNo;
+        this.length = length;
+        this.metadata = CompactMetadataList.atTrackLevel(metadataList);
+    }
+
+    /**
+     * @return the trackNo
+     */
+    @Override
+    public Integer getTrackNo() {
+        return trackNo;
+    }
+
+    /**
+     * @return the length
+     */
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return a copy of the metadataList, changing it does not change the
+     * track.
+     */
+    @Override
+    public ArrayList<Metadata> getMetadataList() {
+        return metadata.getList();
+    }
+
+    /**
+     * @param key the metadata key or one of its track level aliases.
+     * @return the metadata, null if missing.
+     */
+    @Override
+    public Metadata getMetadata(String key) {
+        return metadata.get(key);
+    }
+}
@@ -36,9 +36,9 @@ import java.util.List;
 public class GenericMetadataOrigin implements MetadataOrigin { 
     private final String source;
     private final String key;
-    private ArrayList<String> values = new  ArrayList<>() ;
-    private ArrayList<String> discarded = new  ArrayList<>() ;
-    private ArrayList<String> invalid = new  ArrayList<>() ;
+    private final ArrayList<String> values;
+    private final ArrayList<String> discarded;
+    private final ArrayList<String> invalid;
 
     public GenericMetadataOrigin(String source,String key, 
                                     List<String> values,  
@@ -0,0 +1,224 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import org.mc2.audio.metadata.API.Metadata;
+import org.mc2.audio.metadata.API.MetadataOrigin;
+
+/**
+ * A Metadata that can't change anymore, used for the albums built by the
+ * parser once all the sources have been merged.
+ *
+ * Values, joined values and status are computed once at construction, so
+ * they could be read any number of times at no cost. Values are returned as
+ * copies, origins as an unmodifiable list: adding origins fails.
+ *
+ * @author marco
+ */
+public final class ImmutableMetadata implements Metadata {
+
+    private final String key;
+    private final ArrayList<MetadataOrigin> origins;
+
+    private final ArrayList<String> validValues;
+    private final ArrayList<String> discardedValues;
+    private final ArrayList<String> invalidValues;
+
+    private final String validValue;
+    private final String discardedValue;
+    private final String invalidValue;
+    private final String value;
+    private final STATUS status;
+
+    public ImmutableMetadata(String key, List<MetadataOrigin> origins) {
+
+        this.key = key;
+        this.origins = new ArrayList<>(origins);
+
+        LinkedHashSet<String> valid = new LinkedHashSet<>();
+        LinkedHashSet<String> discarded = new LinkedHashSet<>();
+        LinkedHashSet<String> invalid = new LinkedHashSet<>();
+
+        for (MetadataOrigin origin : this.origins) {
+            valid.addAll(origin.getValidatedValues());
+            discarded.addAll(origin.getDiscardedValues());
+            invalid.addAll(origin.getInvalidValues());
+        }
+
+        this.validValues = new ArrayList<>(valid);
+        this.discardedValues = new ArrayList<>(discarded);
+        this.invalidValues = new ArrayList<>(invalid);
+
+        this.validValue = join(validValues);
+        this.discardedValue = join(discardedValues);
+        this.invalidValue = join(invalidValues);
+        this.value = getValue(false, false);
+        this.status = getStatus(validValue, discardedValue, invalidValue);
+    }
+
+    /**
+     * @param metadata the metadata.
+     * @return the metadata itself if already immutable, an immutable copy
+     * otherwise.
+     */
+    public static ImmutableMetadata of(Metadata metadata) {
+
+        if (metadata instanceof ImmutableMetadata) {
+            return (ImmutableMetadata) metadata;
+        }
+        return new ImmutableMetadata(metadata.getKey(), metadata.getOrigins());
+    }
+
+    /**
+     * Replace every metadata in the list with an immutable one.
+     * @param metadataList the list.
+     * @return the same list.
+     */
+    public static ArrayList<Metadata> freeze(ArrayList<Metadata> metadataList) {
+
+        for (int i = 0; i < metadataList.size(); i++) {
+            metadataList.set(i, of(metadataList.get(i)));
+        }
+        return metadataList;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public String getValue(boolean mergeDiscarded, boolean mergeInvalid) {
+        return getValue(validValue, discardedValue, invalidValue, mergeDiscarded, mergeInvalid);
+    }
+
+    /* As MetadataDefaultImpl.getValue(), from the joined values. */
+    static String getValue(String validValue, String discardedValue, String invalidValue,
+                           boolean mergeDiscarded, boolean mergeInvalid) {
+
+        String out = validValue;
+
+        if (out.isEmpty()) {
+            out = discardedValue;
+        } else if (mergeDiscarded && !discardedValue.isEmpty()) {
+            out = out + ";" + discardedValue;
+        }
+
+        if (out.isEmpty()) {
+            out = invalidValue;
+        } else if (mergeInvalid && !invalidValue.isEmpty()) {
+            out = out + ";" + invalidValue;
+        }
+        return out;
+    }
+
+    @Override
+    public String getValidValue() {
+        return validValue;
+    }
+
+    @Override
+    public String getDiscardedValue() {
+        return discardedValue;
+    }
+
+    @Override
+    public String getInvalidValue() {
+        return invalidValue;
+    }
+
+    @Override
+    public STATUS getStatus() {
+        return status;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return status == STATUS.EMPTY;
+    }
+
+    @Override
+    public ArrayList<String> getValidValues() {
+        return new ArrayList<>(validValues);
+    }
+
+    @Override
+    public ArrayList<String> getDiscardedValues() {
+        return new ArrayList<>(discardedValues);
+    }
+
+    @Override
+    public ArrayList<String> getInvalidValues() {
+        return new ArrayList<>(invalidValues);
+    }
+
+    @Override
+    public List<MetadataOrigin> getOrigins() {
+        return Collections.unmodifiableList(origins);
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + value;
+    }
+
+    /* As MetadataDefaultImpl.getStatus(), from the joined values. */
+    static STATUS getStatus(String validValue, String discardedValue, String invalidValue) {
+
+        boolean noValid = validValue.isEmpty();
+        boolean noDiscarded = discardedValue.isEmpty();
+        boolean noInvalid = invalidValue.isEmpty();
+
+        if (noValid && noDiscarded && noInvalid) {return STATUS.EMPTY;}
+        if (noValid && noDiscarded) {return STATUS.INVALID;}
+        if (noValid && noInvalid) {return STATUS.DISCARDED;}
+        if (noValid) {return STATUS.DISCARDED_AND_INVALID;}
+        if (noDiscarded && noInvalid) {return STATUS.VALID;}
+        if (noDiscarded) {return STATUS.HAS_INVALID_ORIGINS;}
+        if (noInvalid) {return STATUS.HAS_DISCARDED_ORIGINS;}
+        return STATUS.HAS_DISCARDED_AND_INVALID_ORIGINS;
+    }
+
+    static String join(List<String> values) {
+
+        StringBuilder out = new StringBuilder();
+        for (String value : values) {
+            if (out.length() > 0) {
+                out.append("; ");
+            }
+            out.append(value);
+        }
+        return out.toString();
+    }
+}
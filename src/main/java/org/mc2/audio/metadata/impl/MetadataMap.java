@@ -0,0 +1,415 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import org.mc2.audio.metadata.API.Metadata;
+import org.mc2.audio.metadata.API.MetadataKeys;
+import org.mc2.audio.metadata.API.MetadataKeys.METADATA_KEY;
+
+/**
+ * A list of Metadata indexed by key, keys are case insensitive.
+ *
+ * Keys in METADATA_KEY are indexed by ordinal, any other key in an overflow
+ * map. When built for the album or the track level, lookups and merges go
+ * through the aliases of that level (i.e. PERFORMER is ALBUM_ARTIST at album
+ * level), see MetadataKeys.
+ *
+ * The list is kept in insertion order and is the one returned by getList(),
+ * it could be changed directly: appended metadata are indexed on the next
+ * lookup, any other change makes the next lookup index the whole list again.
+ * Its sub lists are read only, as their changes could not be tracked.
+ *
+ * @author marco
+ */
+public class MetadataMap {
+
+    private static final HashMap<String, METADATA_KEY> KEYS = new HashMap<>();
+    static final HashMap<String, String> ALBUM_LEVEL_ALIAS = toUpperCase(MetadataKeys.ALBUM_LEVEL_ALIAS);
+    static final HashMap<String, String> TRACK_LEVEL_ALIAS = toUpperCase(MetadataKeys.TRACK_LEVEL_ALIAS);
+
+    static {
+        for (METADATA_KEY key : METADATA_KEY.values()) {
+            KEYS.put(key.name(), key);
+        }
+    }
+
+    private final HashMap<String, String> aliases;
+    private final Entries list;
+
+    private final int[] known = new int[METADATA_KEY.values().length];
+    private final HashMap<String, Integer> custom = new HashMap<>();
+    private int indexed;
+    // set by any change to the list but an append.
+    private boolean stale;
+
+    /**
+     * A map without aliases.
+     */
+    public MetadataMap() {
+        this(null, new ArrayList<Metadata>());
+    }
+
+    private MetadataMap(HashMap<String, String> aliases, List<Metadata> list) {
+
+        this.aliases = aliases;
+        this.list = new Entries(list);
+        Arrays.fill(known, -1);
+    }
+
+    /**
+     * @return an empty map using the album level aliases.
+     */
+    public static MetadataMap atAlbumLevel() {
+        return atAlbumLevel(new ArrayList<Metadata>());
+    }
+
+    /**
+     * @param list the metadata, copied.
+     * @return a map of the metadata, using the album level aliases.
+     */
+    public static MetadataMap atAlbumLevel(ArrayList<Metadata> list) {
+        return new MetadataMap(ALBUM_LEVEL_ALIAS, list);
+    }
+
+    /**
+     * @return an empty map using the track level aliases.
+     */
+    public static MetadataMap atTrackLevel() {
+        return atTrackLevel(new ArrayList<Metadata>());
+    }
+
+    /**
+     * @param list the metadata, copied.
+     * @return a map of the metadata, using the track level aliases.
+     */
+    public static MetadataMap atTrackLevel(ArrayList<Metadata> list) {
+        return new MetadataMap(TRACK_LEVEL_ALIAS, list);
+    }
+
+    /**
+     * @return the metadata, in insertion order, see the class comment.
+     */
+    public ArrayList<Metadata> getList() {
+        return list;
+    }
+
+    /**
+     * @return the number of metadata.
+     */
+    public int size() {
+        return list.size();
+    }
+
+    /**
+     * @param key the key.
+     * @return the key the metadata is stored with at this level, the key
+     * itself if it has no alias.
+     */
+    public String getAlias(String key) {
+        return getAlias(aliases, key);
+    }
+
+    static String getAlias(HashMap<String, String> aliases, String key) {
+
+        if (aliases == null || key == null) {
+            return key;
+        }
+        String alias = aliases.get(key.toUpperCase());
+        return alias == null || alias.isEmpty() ? key : alias;
+    }
+
+    /**
+     * Get a metadata by key or by one of its aliases. If the alias is missing
+     * or empty, the key itself is looked up.
+     * @param key the key, case insensitive.
+     * @return the metadata, null if not found.
+     */
+    public Metadata get(String key) {
+
+        if (key == null) {
+            return null;
+        }
+        String alias = getAlias(key);
+        Metadata out = find(alias);
+
+        if (!alias.equalsIgnoreCase(key) && (out == null || out.isEmpty())) {
+            out = find(key);
+        }
+        return out;
+    }
+
+    /**
+     * Get a metadata by key, without looking at aliases.
+     * @param key the key, case insensitive.
+     * @return the first metadata with that key, null if not found.
+     */
+    public Metadata find(String key) {
+
+        int position = position(key);
+        return position < 0 ? null : list.get(position);
+    }
+
+    private int position(String key) {
+
+        if (key == null) {
+            return -1;
+        }
+        String upperCase = key.toUpperCase();
+        int position = lookup(upperCase);
+
+        if (position >= 0 && !isAt(position, upperCase)) {
+            // the key of the metadata has been changed behind our back.
+            reindex();
+            position = lookup(upperCase);
+        }
+        return position;
+    }
+
+    /**
+     * Append a metadata, even if one with the same key exists already.
+     * @param metadata the metadata.
+     */
+    public void add(Metadata metadata) {
+        list.add(metadata);
+    }
+
+    /**
+     * Append all the metadata, see add().
+     * @param metadataList the metadata.
+     */
+    public void addAll(List<Metadata> metadataList) {
+        list.addAll(metadataList);
+    }
+
+    /**
+     * Merge a metadata: its origins are added to the metadata with the same
+     * key or alias, if any, otherwise a new metadata is added under the alias.
+     * Metadata that can't change (i.e. those of the albums built by the
+     * parser) are replaced by a new metadata with the origins of both.
+     * @param toAdd the metadata.
+     */
+    public void merge(Metadata toAdd) {
+
+        String key = getAlias(toAdd.getKey());
+        int position = position(key);
+
+        if (position < 0) {
+            list.add(new MetadataDefaultImpl(key, toAdd.getOrigins()));
+            return;
+        }
+        Metadata existing = list.get(position);
+
+        if (existing instanceof MetadataDefaultImpl) {
+            existing.getOrigins().addAll(toAdd.getOrigins());
+        } else {
+            MetadataDefaultImpl merged = new MetadataDefaultImpl(existing.getKey(), existing.getOrigins());
+            merged.getOrigins().addAll(toAdd.getOrigins());
+            list.set(position, merged);
+        }
+    }
+
+    /**
+     * Merge all the metadata, see merge().
+     * @param metadataList the metadata.
+     * @return this map.
+     */
+    public MetadataMap mergeAll(List<Metadata> metadataList) {
+
+        for (Metadata toAdd : metadataList) {
+            merge(toAdd);
+        }
+        return this;
+    }
+
+    /**
+     * @param upperCase an upper case key.
+     * @return the METADATA_KEY with that name, null if none.
+     */
+    static METADATA_KEY getMetadataKey(String upperCase) {
+        return KEYS.get(upperCase);
+    }
+
+    private int lookup(String upperCase) {
+
+        if (stale || indexed > list.size()) {
+            reindex();
+        }
+        while (indexed < list.size()) {
+            index(indexed);
+            indexed++;
+        }
+
+        METADATA_KEY key = KEYS.get(upperCase);
+        if (key != null) {
+            return known[key.ordinal()];
+        }
+        Integer position = custom.get(upperCase);
+        return position == null ? -1 : position;
+    }
+
+    private void index(int position) {
+
+        String key = list.get(position).getKey();
+        if (key == null) {
+            return;
+        }
+        String upperCase = key.toUpperCase();
+
+        METADATA_KEY metadataKey = KEYS.get(upperCase);
+        if (metadataKey != null) {
+            if (known[metadataKey.ordinal()] < 0) {
+                known[metadataKey.ordinal()] = position;
+            }
+        } else if (!custom.containsKey(upperCase)) {
+            custom.put(upperCase, position);
+        }
+    }
+
+    private void reindex() {
+
+        Arrays.fill(known, -1);
+        custom.clear();
+        indexed = 0;
+        stale = false;
+    }
+
+    private boolean isAt(int position, String upperCase) {
+
+        if (position >= list.size()) {
+            return false;
+        }
+        String key = list.get(position).getKey();
+        return key != null && key.toUpperCase().equals(upperCase);
+    }
+
+    /**
+     * The list of the map, any change but an append makes the index stale.
+     * Iterators change the list through remove(), set() and add(int).
+     */
+    private final class Entries extends ArrayList<Metadata> {
+
+        private static final long serialVersionUID = 1L;
+
+        Entries(Collection<Metadata> metadataList) {
+            super(metadataList);
+        }
+
+        @Override
+        public Metadata set(int index, Metadata element) {
+            stale = true;
+            return super.set(index, element);
+        }
+
+        @Override
+        public void add(int index, Metadata element) {
+            stale = true;
+            super.add(index, element);
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends Metadata> c) {
+            stale = true;
+            return super.addAll(index, c);
+        }
+
+        @Override
+        public Metadata remove(int index) {
+            stale = true;
+            return super.remove(index);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            stale = true;
+            return super.remove(o);
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            stale = true;
+            super.removeRange(fromIndex, toIndex);
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            stale = true;
+            return super.removeAll(c);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            stale = true;
+            return super.retainAll(c);
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super Metadata> filter) {
+            stale = true;
+            return super.removeIf(filter);
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<Metadata> operator) {
+            stale = true;
+            super.replaceAll(operator);
+        }
+
+        @Override
+        public void sort(Comparator<? super Metadata> c) {
+            stale = true;
+            super.sort(c);
+        }
+
+        @Override
+        public void clear() {
+            stale = true;
+            super.clear();
+        }
+
+        @Override
+        public List<Metadata> subList(int fromIndex, int toIndex) {
+            return Collections.unmodifiableList(super.subList(fromIndex, toIndex));
+        }
+    }
+
+    private static HashMap<String, String> toUpperCase(Map<String, String> aliases) {
+
+        HashMap<String, String> out = new HashMap<>();
+        for (Map.Entry<String, String> entry : aliases.entrySet()) {
+            out.put(entry.getKey().toUpperCase(), entry.getValue());
+        }
+        return out;
+    }
+}
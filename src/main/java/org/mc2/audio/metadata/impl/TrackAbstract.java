@@ -0,0 +1,50 @@
+package org.mc2.audio.metadata.impl;
+
+import org.mc2.audio.metadata.API.Track;
+import org.mc2.util.miscellaneous.CalendarUtils;
+
+/**
+ * The position of a track in its album, set by the album when it lists its
+ * tracks.
+ *
+ * @author marco
+ */
+public abstract class TrackAbstract implements Track {
+
+    private int offset;
+
+    /**
+     * @return the offset
+     */
+    @Override
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @param offset the offset to set
+     */
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    /** @return file length in msec */
+    @Override
+    public Long getLengthInMillis() {
+        return CalendarUtils.getMilliseconds(getLength());
+    }
+
+    /** @return file length string */
+    @Override
+    public String getLengthString() {
+        return CalendarUtils.getTimeString(getLengthInMillis());
+    }
+
+    /**
+     * @return the track End position refferred to the Album (not the file).
+     */
+    @Override
+    public int getEnd() {
+        return offset + getLength();
+    }
+}
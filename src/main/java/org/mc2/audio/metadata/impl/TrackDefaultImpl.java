@@ -26,25 +26,25 @@ package org.mc2.audio.metadata.impl;
 
 import java.util.ArrayList;
 import org.mc2.audio.metadata.API.Metadata;
-import org.mc2.audio.metadata.API.Track;
 import org.mc2.audio.metadata.source.tags.file.AudioFile;
-import org.mc2.util.miscellaneous.CalendarUtils;
 
 /**
  *
  * @author marco
  */
-public class TrackDefaultImpl implements Track {
+public class TrackDefaultImpl extends TrackAbstract {
 
     private Integer trackNo; 
-    private int offset;
     private int length;
-    private final ArrayList<Metadata> metadataList;
+    private final MetadataMap metadataMap;
     private final ArrayList<AudioFile> audioFileList; 
     
     public TrackDefaultImpl(Integer trackNo, ArrayList<Metadata> metadataList) {
+        this(trackNo, MetadataMap.atTrackLevel(metadataList));
+    }
+    public TrackDefaultImpl(Integer trackNo, MetadataMap metadataMap) {
         this.trackNo = trackNo;
-        this.metadataList = metadataList;
+        this.metadataMap = metadataMap;
         this.audioFileList =new ArrayList<>();
     }
     /**
@@ -54,21 +54,6 @@ public class TrackDefaultImpl implements Track {
     public Integer getTrackNo() {
         return trackNo;
     }
- /**
-     * @return the offset
-     */
-    @Override
-    public int getOffset() {
-        return offset;
-    }
-
-    /**
-     * @param offset the offset to set
-     */
-    public void setOffset(int offset) {
-        this.offset = offset;
-    }
-
     /**
      * @return the length
      */
@@ -76,17 +61,6 @@ public class TrackDefaultImpl implements Track {
     public int getLength() {
         return length;
     }
-    /** @return file length in msec */
-    @Override
-    public Long getLengthInMillis(){
-        return CalendarUtils.getMilliseconds(getLength());
-    }
-    /** @return file length string */
-    @Override
-    public String getLengthString(){
-
-        return CalendarUtils.getTimeString(getLengthInMillis());
-    }
     /**
      * @param length the length to set
      */
@@ -94,18 +68,25 @@ public class TrackDefaultImpl implements Track {
         this.length = length;
     }
     /**
-     * @return the track End position refferred to the Album (not the file).
+     * @return the metadataList
      */
     @Override
-    public int getEnd() {
-        return offset+length;
+    public ArrayList<Metadata> getMetadataList() {
+        return metadataMap.getList();
     }
     /**
-     * @return the metadataList
+     * @return the metadata, indexed by key.
+     */
+    public MetadataMap getMetadataMap() {
+        return metadataMap;
+    }
+    /**
+     * @param key the metadata key or one of its track level aliases.
+     * @return the metadata, null if missing.
      */
     @Override
-    public ArrayList<Metadata> getMetadataList() {
-        return metadataList;
+    public Metadata getMetadata(String key) {
+        return metadataMap.get(key);
     }
 
     /**
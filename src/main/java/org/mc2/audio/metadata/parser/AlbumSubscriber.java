@@ -0,0 +1,68 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.parser;
+
+import java.io.File;
+import org.mc2.audio.metadata.API.Album;
+
+/**
+ * Receives the albums of a library scan as a stream, with backpressure: the
+ * scan parses a new album only when the subscriber asked for it through the
+ * {@link AlbumSubscription}, so albums never pile up in memory.
+ *
+ * Modelled on the Reactive Streams subscriber. Signals are never delivered
+ * concurrently, but could come from different threads.
+ *
+ * @author marco
+ */
+public interface AlbumSubscriber {
+
+    /**
+     * Called once, before any other signal.
+     * @param subscription used to request albums or cancel the scan.
+     */
+    void onSubscribe(AlbumSubscription subscription);
+
+    /**
+     * Called for each album requested.
+     * @param directory the album directory.
+     * @param album the album.
+     */
+    void onNext(File directory, Album album);
+
+    /**
+     * Called when an album directory could not be parsed. The scan goes on
+     * and the request is not consumed.
+     * @param directory the album directory.
+     * @param ex the cause.
+     */
+    void onFailure(File directory, Exception ex);
+
+    /**
+     * Called once when the whole library has been scanned, unless the scan
+     * has been cancelled.
+     */
+    void onComplete();
+}
@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.io.FilenameUtils;
+import org.mc2.audio.metadata.source.tags.file.AudioFileFormats;
 import static org.mc2.util.miscellaneous.ImageHandler.isFileAnImage;
 
 /**
@@ -81,11 +82,10 @@ public class AudioFileFilter implements FileFilter
         try
         {
             String ext =  FilenameUtils.getExtension(file.getCanonicalPath());
-            if (SupportedFileFormat.valueOf(ext.toUpperCase()) != null) { return true; }
+            return SupportedFileFormat.of(ext) != null || AudioFileFormats.isPlugin(ext);
         }
-        catch(IllegalArgumentException | IOException ex) {
+        catch(IOException ex) {
             return false;
         }
-        return false;
 	}
 }
@@ -0,0 +1,245 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import org.mc2.audio.metadata.source.tags.file.AudioFileFormats;
+
+/**
+ * The content of a directory, listed and classified in a single pass.
+ *
+ * Entries are read with one {@link DirectoryStream} and their attributes are
+ * read in bulk (on Windows the attributes come with the listing itself).
+ * Hidden entries are discarded, every other entry is classified once by its
+ * extension into audio, cue, image or other files, or it is kept as a
+ * subdirectory. Readability is only checked for the entries the parser opens
+ * (subdirectories, audio, cue and image files), other files are listed as is.
+ *
+ * Replaces the three listFiles calls with {@link GenericFileFilter},
+ * {@link AudioFileFilter} and {@link ImageFileFilter}: images are now
+ * recognized by their extension instead of probing the file content.
+ *
+ * @author marco
+ */
+public class DirectoryListing {
+
+    public enum Kind {
+        AUDIO,
+        CUE,
+        IMAGE,
+        OTHER
+    }
+
+    private static final Map<String, Kind> KIND_BY_EXTENSION = buildExtensionMap();
+
+    private final File directory;
+    private final ArrayList<File> files = new ArrayList<>();
+    private final ArrayList<File> audioFiles = new ArrayList<>();
+    private final ArrayList<File> cueFiles = new ArrayList<>();
+    private final ArrayList<File> imageFiles = new ArrayList<>();
+    private final ArrayList<File> directories = new ArrayList<>();
+    private final HashMap<File, BasicFileAttributes> attributes = new HashMap<>();
+
+    private DirectoryListing(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * List and classify the content of a directory.
+     * @param directory the directory.
+     * @return the listing.
+     * @throws IOException if the directory can't be read.
+     */
+    public static DirectoryListing list(File directory) throws IOException {
+
+        DirectoryListing out = new DirectoryListing(directory);
+        Path dir = directory.toPath();
+        // Same rule as File.isHidden: DOS attribute on Windows, dot files elsewhere.
+        boolean dos = File.separatorChar == '\\';
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+
+            for (Path entry : stream) {
+
+                BasicFileAttributes attributes;
+                try {
+                    attributes = dos ? Files.readAttributes(entry, DosFileAttributes.class)
+                                     : Files.readAttributes(entry, BasicFileAttributes.class);
+                } catch (IOException ex) {
+                    continue;
+                }
+
+                String name = entry.getFileName().toString();
+
+                if (isHidden(name, attributes)) {
+                    continue;
+                }
+
+                // Only what is opened later is checked, it costs a system call.
+                if (attributes.isDirectory()) {
+                    if (Files.isReadable(entry)) {
+                        out.directories.add(entry.toFile());
+                    }
+
+                } else if (attributes.isRegularFile()) {
+                    Kind kind = getKind(name);
+                    if (kind == Kind.OTHER || Files.isReadable(entry)) {
+                        out.add(entry.toFile(), kind, attributes);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Classify a file name by its extension.
+     * @param fileName the file name.
+     * @return the kind of file.
+     */
+    public static Kind getKind(String fileName) {
+
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0) {
+            return Kind.OTHER;
+        }
+        String extension = fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        Kind kind = KIND_BY_EXTENSION.get(extension);
+        if (kind == null) {
+            return AudioFileFormats.isPlugin(extension) ? Kind.AUDIO : Kind.OTHER;
+        }
+        return kind;
+    }
+
+    private static boolean isHidden(String name, BasicFileAttributes attributes) {
+
+        if (attributes instanceof DosFileAttributes) {
+            return ((DosFileAttributes) attributes).isHidden();
+        }
+        return name.startsWith(".");
+    }
+
+    private void add(File file, Kind kind, BasicFileAttributes fileAttributes) {
+
+        files.add(file);
+        attributes.put(file, fileAttributes);
+
+        switch (kind) {
+            case AUDIO:
+                audioFiles.add(file);
+                break;
+            case CUE:
+                cueFiles.add(file);
+                break;
+            case IMAGE:
+                imageFiles.add(file);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Map<String, Kind> buildExtensionMap() {
+
+        HashMap<String, Kind> out = new HashMap<>();
+
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            out.put(suffix.toLowerCase(Locale.ROOT), Kind.IMAGE);
+        }
+        for (SupportedFileFormat format : SupportedFileFormat.values()) {
+            out.put(format.getFilesuffix(), format == SupportedFileFormat.CUE ? Kind.CUE : Kind.AUDIO);
+        }
+        return Collections.unmodifiableMap(out);
+    }
+
+    /**
+     * @return the directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return all the readable, not hidden, files.
+     */
+    public ArrayList<File> getFiles() {
+        return files;
+    }
+
+    /**
+     * @return the audio files supported by the library, cue sheets excluded.
+     */
+    public ArrayList<File> getAudioFiles() {
+        return audioFiles;
+    }
+
+    /**
+     * @return the cue sheets.
+     */
+    public ArrayList<File> getCueFiles() {
+        return cueFiles;
+    }
+
+    /**
+     * @return the images.
+     */
+    public ArrayList<File> getImageFiles() {
+        return imageFiles;
+    }
+
+    /**
+     * @param file one of the listed files.
+     * @return the attributes read while listing, null for unknown files.
+     */
+    public BasicFileAttributes getAttributes(File file) {
+        return attributes.get(file);
+    }
+
+    /**
+     * @return the readable, not hidden, subdirectories.
+     */
+    public ArrayList<File> getDirectories() {
+        return directories;
+    }
+
+    /**
+     * @return true if the directory contains audio files or cue sheets.
+     */
+    public boolean isAlbum() {
+        return !audioFiles.isEmpty() || !cueFiles.isEmpty();
+    }
+}
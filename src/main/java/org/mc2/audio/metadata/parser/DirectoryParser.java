@@ -27,13 +27,14 @@ package org.mc2.audio.metadata.parser;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import jwbroek.cuelib.Message;
 
 import org.apache.commons.io.FilenameUtils;
 import org.jaudiotagger.tag.FieldKey;
-import org.mc2.audio.metadata.impl.MetadataDefaultImpl;
+import org.mc2.audio.metadata.impl.ImmutableMetadata;
+import org.mc2.audio.metadata.impl.MetadataMap;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileFormatException;
 import org.mc2.audio.metadata.API.exceptions.InvalidCueSheetException;
@@ -44,16 +45,19 @@ import org.mc2.audio.metadata.source.tags.file.AudioFile;
 import org.mc2.audio.metadata.impl.AlbumDefaultImpl;
 import org.mc2.audio.metadata.API.CoverArt;
 import org.mc2.audio.metadata.API.Metadata;
-import static org.mc2.audio.metadata.API.MetadataKeys.getAlbumLevelMetadataAlias;
-import static org.mc2.audio.metadata.API.MetadataKeys.getTrackLevelMetadataAlias;
 import org.mc2.audio.metadata.API.StatusMessage;
 import org.mc2.audio.metadata.API.Track;
 import org.mc2.audio.metadata.impl.GenericStatusMessage;
 import org.mc2.audio.metadata.impl.GenericStatusMessage.Severity;
+import org.mc2.audio.metadata.parser.index.AlbumRecord;
 import org.mc2.audio.metadata.impl.TrackDefaultImpl;
+import org.mc2.audio.metadata.source.ScanContext;
+import org.mc2.audio.metadata.source.ScanProfile;
+import org.mc2.audio.metadata.source.ScanStatistics;
+import org.mc2.audio.metadata.source.ScanStatistics.Phase;
+import org.mc2.audio.metadata.source.coverart.CoverArtAbstract;
+import org.mc2.audio.metadata.source.coverart.CoverArtReference;
 import org.mc2.audio.metadata.source.coverart.FileCoverArt;
-import org.mc2.audio.metadata.source.cue.Section;
-import static org.mc2.audio.metadata.source.cue.Section.ALBUM;
 
 /**
  *
@@ -67,26 +71,62 @@ public class DirectoryParser {
     }
     public static AlbumDefaultImpl parse(File directory) throws IOException,  InvalidAudioFileException, InvalidAudioFileFormatException{
         
-       ArrayList<File> directoryfileList = new ArrayList<>(Arrays.asList(directory.listFiles(new GenericFileFilter(false))));
-       ArrayList<File> fileList = new ArrayList<>(Arrays.asList(directory.listFiles(new AudioFileFilter(false))));
-       ArrayList<File> imagefileList = new ArrayList<>(Arrays.asList(directory.listFiles(new ImageFileFilter())));
+        try (ScanContext scanContext = new ScanContext()){
+            return parse(list(directory, scanContext), scanContext);
+        }
+    }
+    public static AlbumDefaultImpl parse(DirectoryListing listing) throws IOException,  InvalidAudioFileException, InvalidAudioFileFormatException{
+        
+        try (ScanContext scanContext = new ScanContext()){
+            return parse(listing, scanContext);
+        }
+    }
+    /**
+     * Build the album, reading every audio file through the scan context, 
+     * so files referenced by cue sheets are read only once.
+     * The album gets the statistics of the scan context.
+     * @param listing the directory content.
+     * @param scanContext the scan.
+     * @return the album
+     * @throws IOException
+     * @throws InvalidAudioFileException
+     * @throws InvalidAudioFileFormatException 
+     */
+    public static AlbumDefaultImpl parse(DirectoryListing listing, ScanContext scanContext) throws IOException,  InvalidAudioFileException, InvalidAudioFileFormatException{
+        
+        AlbumDefaultImpl out;
+        
+        // Cue parsing, tag reading and artwork are nested phases, merge gets the rest.
+        try (ScanStatistics.Timer timer = scanContext.getStatistics().start(Phase.MERGE)){
+            out = build(listing, scanContext);
+        }
+        out.setStatistics(scanContext.getStatistics());
+        return out;
+    }
+    
+    private static AlbumDefaultImpl build(DirectoryListing listing, ScanContext scanContext) throws IOException,  InvalidAudioFileException, InvalidAudioFileFormatException{
+        
+       ArrayList<File> directoryfileList = new ArrayList<>(listing.getFiles());
+       ArrayList<File> fileList = new ArrayList<>(listing.getAudioFiles());
+       ArrayList<File> imagefileList = new ArrayList<>(listing.getImageFiles());
        
        ArrayList<CueFile> cueFileList= new ArrayList<>();
        ArrayList<AudioFile> audioFileList= new ArrayList<>();
        ArrayList<StatusMessage> statusMessageList= new ArrayList<>();
        
-       ArrayList<Metadata> atAlbumLevel= new ArrayList<>();
+       MetadataMap atAlbumLevel= MetadataMap.atAlbumLevel();
        ArrayList<CoverArt> coverArtList= new ArrayList<>();
        HashMap<Integer,TrackDefaultImpl> trackMap = new HashMap<>();
+       HashSet<String> inCueSheet = new HashSet<>();
               
-       if (containsCueFile(fileList)){
+       if (!listing.getCueFiles().isEmpty()){
 
-            cueFileList = getCueFileList(fileList);
+            cueFileList = getCueFileList(listing.getCueFiles(), scanContext);
             
             for (CueFile cueFile :cueFileList){
                 
                 //atAlbumLevel.addAll(cueFile.getCuesheet().getMetadata());
-                merge(Section.ALBUM, atAlbumLevel, cueFile.getCuesheet().getMetadata());
+                atAlbumLevel.mergeAll(cueFile.getCuesheet().getMetadata());
 
                 for (Message message : cueFile.getCuesheet().getMessages()){
 
@@ -97,8 +137,8 @@ public class DirectoryParser {
                 for (FileData fileData : cueFile.getCuesheet().getFileDataList()){
                     
                     if (fileData.getAudiofile()!=null){
-                          fileList.remove(fileData.getAudiofile().getFile());
-                          coverArtList.addAll(fileData.getAudiofile().getEmbeddedArtworks());
+                          inCueSheet.add(fileData.getAudiofile().getPath());
+                          coverArtList.addAll(getEmbeddedArtworks(fileData.getAudiofile(), scanContext));
                     }
 
                     for (TrackData trackData : fileData.getTrackDataList() ){
@@ -107,7 +147,7 @@ public class DirectoryParser {
                        
                         if ( track != null){
                             
-                            merge(Section.TRACK, track.getMetadataList(), trackData.getMetadata());
+                            track.getMetadataMap().mergeAll(trackData.getMetadata());
                             //track.getMetadataList().addAll(trackData.getMetadata());
                             
                             GenericStatusMessage statusMessage = new GenericStatusMessage(Severity.WARNING, "Track "+trackData.getNumber()+" is defined  in more than one cuesheet");
@@ -115,7 +155,7 @@ public class DirectoryParser {
                             
                         } else {
                             
-                           track = new TrackDefaultImpl(trackData.getNumber(), merge(Section.TRACK,new ArrayList<>(),trackData.getMetadata()));
+                           track = new TrackDefaultImpl(trackData.getNumber(), MetadataMap.atTrackLevel().mergeAll(trackData.getMetadata()));
                            trackMap.put(trackData.getNumber(), track);
                         }
                         
@@ -130,15 +170,18 @@ public class DirectoryParser {
                             track.setOffset(trackData.getOffset());
                         }
                 }
-                fileList.remove(cueFile.getFile());
             }
            
         } 
         for (File file : fileList){
+            
+            if (!inCueSheet.isEmpty() && inCueSheet.contains(file.getCanonicalPath())){
+                continue;
+            }
        
-            AudioFile audiofile = AudioFile.get(file);
+            AudioFile audiofile = scanContext.getAudioFile(file);
 
-            coverArtList.addAll(audiofile.getEmbeddedArtworks());
+            coverArtList.addAll(getEmbeddedArtworks(audiofile, scanContext));
             
             Metadata Tracknumber = audiofile.getMetadata(FieldKey.TRACK);
             int trackNo=0;
@@ -155,24 +198,24 @@ public class DirectoryParser {
      
                 if ( track == null){
                     
-                    track = new TrackDefaultImpl(trackNo, merge(Section.TRACK,new ArrayList<>(),audiofile.getMetadata()));
+                    track = new TrackDefaultImpl(trackNo, MetadataMap.atTrackLevel().mergeAll(audiofile.getMetadata()));
                     trackMap.put(trackNo, track);
-                    track.setLength( audiofile.getAudioHeader().getTrackLength());
+                    track.setLength(getTrackLength(audiofile, scanContext));
                     
                  } else {    
 
-                    merge(Section.TRACK, track.getMetadataList(), audiofile.getMetadata());
+                    track.getMetadataMap().mergeAll(audiofile.getMetadata());
                     //track.getMetadataList().addAll();
                     GenericStatusMessage statusMessage = new GenericStatusMessage(Severity.WARNING, "Track "+trackNo+" is defined in more than one audio file or cue sheet");
                     statusMessageList.add(statusMessage);
                     
-                    if (track.getLength() !=0 && audiofile.getAudioHeader().getTrackLength()!= track.getLength()){
+                    if (track.getLength() !=0 && getTrackLength(audiofile, scanContext)!= track.getLength()){
 
                         track.setLength(0);
 
                     } else{
 
-                        track.setLength( audiofile.getAudioHeader().getTrackLength());
+                        track.setLength(getTrackLength(audiofile, scanContext));
                         //track.setOffset(0);
                     }  
                 }
@@ -185,11 +228,11 @@ public class DirectoryParser {
                audioFileList.add(audiofile);
             }
         }
-        for (File file : imagefileList){
-            
-            CoverArt fileCoverArt = new FileCoverArt(file);
-            coverArtList.add(fileCoverArt);
-            
+        if (scanContext.getProfile().readsArtwork()){
+            for (File file : imagefileList){
+                
+                coverArtList.add(getFileCoverArt(file, scanContext));
+            }
         }
         /*
        * Validate the directory content
@@ -211,47 +254,115 @@ public class DirectoryParser {
         } 
 
         ArrayList<Track> tracklist= new ArrayList<>(trackMap.values());
-        AlbumDefaultImpl out = new AlbumDefaultImpl(coverArtList, atAlbumLevel, tracklist, directoryfileList, cueFileList, audioFileList, imagefileList, statusMessageList);
-       
+
+        // Merge is done, values could be computed once for all the readers.
+        ImmutableMetadata.freeze(atAlbumLevel.getList());
+        for (Track track : tracklist) {
+            ImmutableMetadata.freeze(track.getMetadataList());
+        }
+        AlbumDefaultImpl out = new AlbumDefaultImpl(coverArtList, atAlbumLevel.getList(), tracklist, directoryfileList, cueFileList, audioFileList, imagefileList, statusMessageList);
+        
+        if (scanContext.isDetached()){
+            // Drop the audio files, tags and cue sheets as soon as possible.
+            return AlbumRecord.of(out).toAlbum(scanContext.getStringPool());
+        }
         return out;
     }
-
-    private static ArrayList<Metadata> merge(String level, ArrayList<Metadata> target, ArrayList<Metadata> source){
+    /**
+     * Parse directory and build a detached album: metadata, tracks, files 
+     * and cover art references only, not retaining the parsed audio files
+     * and cue sheets.
+     * @param directory the directory.
+     * @return the album
+     * @throws IOException
+     * @throws InvalidAudioFileException
+     * @throws InvalidAudioFileFormatException 
+     */
+    public static AlbumDefaultImpl parseDetached(File directory) throws IOException,  InvalidAudioFileException, InvalidAudioFileFormatException{
         
-        for (Metadata toAdd : source){
-
-            String alias = level.equals(ALBUM) ?  getAlbumLevelMetadataAlias(toAdd.getKey()) :
-                                                  getTrackLevelMetadataAlias(toAdd.getKey());
+        try (ScanContext scanContext = new ScanContext(true)){
+            return parse(list(directory, scanContext), scanContext);
+        }
+    }
+    /**
+     * Parse directory reading only what the profile requires, i.e. TAGS_ONLY 
+     * does not compute durations and does not collect cover arts: audio 
+     * files are read with the profile, skipping headers and pictures.
+     * @param directory the directory.
+     * @param profile what to read.
+     * @return the album
+     * @throws IOException
+     * @throws InvalidAudioFileException
+     * @throws InvalidAudioFileFormatException 
+     */
+    public static AlbumDefaultImpl parse(File directory, ScanProfile profile) throws IOException,  InvalidAudioFileException, InvalidAudioFileFormatException{
         
-            String key = alias == null ? toAdd.getKey() : alias;
-            
-            boolean found = false;
-            
-            for (Metadata existing : target){
-                
-                if (existing.getKey().equals(key)){
-                    
-                    existing.getOrigins().addAll(toAdd.getOrigins());
-                    found = true;
-                    break;
-                }
-            }
-            if (!found){
-                target.add(new MetadataDefaultImpl(key, toAdd.getOrigins()));
+        try (ScanContext scanContext = new ScanContext(profile, false)){
+            return parse(list(directory, scanContext), scanContext);
+        }
+    }
+    
+    private static DirectoryListing list(File directory, ScanContext scanContext) throws IOException{
+        
+        try (ScanStatistics.Timer timer = scanContext.getStatistics().start(Phase.LISTING)){
+            return DirectoryListing.list(directory);
+        }
+    }
+    
+    private static ArrayList<CoverArt> getEmbeddedArtworks(AudioFile audiofile, ScanContext scanContext){
+        
+        if (!scanContext.getProfile().readsArtwork()){
+            return new ArrayList<>();
+        }
+        if (scanContext.isDetached()){
+            return audiofile.getEmbeddedArtworkReferences();
+        }
+        
+        ArrayList<CoverArt> out;
+        try (ScanStatistics.Timer timer = scanContext.getStatistics().start(Phase.ARTWORK)){
+            out = audiofile.getEmbeddedArtworks();
+        }
+        for (CoverArt coverArt : out){
+            if (coverArt instanceof CoverArtAbstract){
+                ((CoverArtAbstract)coverArt).setStatistics(scanContext.getStatistics());
             }
         }
-         
-        return target;
+        return out;
     }
     
-    private static ArrayList<CueFile> getCueFileList(ArrayList<File> fileList) throws IOException {
+    private static int getTrackLength(AudioFile audiofile, ScanContext scanContext){
+        
+        if (!scanContext.getProfile().readsDuration()){
+            return 0;
+        }
+        return audiofile.getAudioHeader().getTrackLength();
+    }
+    
+    private static CoverArt getFileCoverArt(File file, ScanContext scanContext){
+        
+        if (scanContext.isDetached()){
+            return new CoverArtReference(CoverArt.SOURCE_IMAGE_FILE, file, -1, "",
+                                         FilenameUtils.removeExtension(file.getName()),
+                                         file.getParentFile().getPath());
+        }
+        FileCoverArt out;
+        try (ScanStatistics.Timer timer = scanContext.getStatistics().start(Phase.ARTWORK)){
+            out = new FileCoverArt(file);
+        }
+        scanContext.getStatistics().addFile(file.length());
+        out.setStatistics(scanContext.getStatistics());
+        return out;
+    }
+
+    private static ArrayList<CueFile> getCueFileList(ArrayList<File> fileList, ScanContext scanContext) throws IOException {
         
         ArrayList<CueFile> out= new ArrayList<>();
         for (File file : fileList){
             if (CueFile.isCueFile(file)){
                 
-                try{
-                    out.add(new CueFile(file));
+                try (ScanStatistics.Timer timer = scanContext.getStatistics().start(Phase.CUE_PARSING)){
+                    scanContext.getStatistics().addFile(file.length());
+                    out.add(new CueFile(file, scanContext));
                 } catch (InvalidCueSheetException ex) {
                     
                    System.out.println("==== DirectoryParser.getCueFileList === InvalidCueSheetException: "+ ex);
@@ -262,16 +373,5 @@ public class DirectoryParser {
         return out;
     
     }
-    private static boolean containsCueFile(ArrayList<File> fileList) throws IOException{
-        
-        for (File file : fileList){
-            String ext =  FilenameUtils.getExtension(file.getCanonicalPath());
-            if (CueFile.isCueFile(file)){
-                return true;
-            }
-            
-        }
-        return false;
-    }
    
 }
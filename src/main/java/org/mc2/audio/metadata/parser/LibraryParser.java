@@ -0,0 +1,407 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileFormatException;
+import org.mc2.audio.metadata.impl.AlbumDefaultImpl;
+import org.mc2.audio.metadata.parser.index.AlbumRecord;
+import org.mc2.audio.metadata.parser.index.FileStamp;
+import org.mc2.audio.metadata.parser.index.ScanIndex;
+import org.mc2.audio.metadata.source.ScanContext;
+import org.mc2.audio.metadata.source.ScanProfile;
+import org.mc2.audio.metadata.source.ScanStatistics;
+import org.mc2.audio.metadata.source.ScanStatistics.Phase;
+import org.mc2.audio.metadata.source.StringPool;
+
+/**
+ * Parse a whole library, walking the directory tree starting from a root
+ * directory and parsing every album directory found with
+ * {@link DirectoryParser}.
+ *
+ * The tree is traversed with a work stealing fork-join pool: every directory
+ * is a task that forks one subtask for each subdirectory and then parses its
+ * own content, so idle workers steal pending subdirectories from the busy
+ * ones. Albums are delivered to the {@link LibraryParserListener} as soon as
+ * they are parsed, in no particular order.
+ *
+ * A directory is considered an album directory when it contains at least
+ * one audio file or cue sheet supported by the library.
+ *
+ * Albums could also be streamed to an {@link AlbumSubscriber}, that decides
+ * how many albums are parsed ahead, keeping memory bounded whatever the
+ * library size.
+ *
+ * @author marco
+ */
+public class LibraryParser {
+
+    private final static Logger logger = Logger.getLogger(LibraryParser.class.getCanonicalName());
+
+    private final int parallelism;
+    private volatile boolean detached;
+    private volatile ScanProfile profile = ScanProfile.FULL;
+    private volatile StringPool stringPool;
+
+    /**
+     * Create a parser using one worker per available processor.
+     */
+    public LibraryParser() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a parser using the given number of workers.
+     * @param parallelism the number of directories parsed at the same time.
+     */
+    public LibraryParser(int parallelism) {
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return true if the parser builds detached albums.
+     */
+    public boolean isDetached() {
+        return detached;
+    }
+
+    /**
+     * Build detached albums, holding plain values and cover art references
+     * only: the audio files, tags and cue sheets read are released as soon
+     * as each album is built. Albums rebuilt from a {@link ScanIndex} are
+     * always detached, so the index is used only by detached scans.
+     * @param detached true to build detached albums.
+     */
+    public void setDetached(boolean detached) {
+        this.detached = detached;
+    }
+
+    /**
+     * @return what the scan reads, FULL by default.
+     */
+    public ScanProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Choose what the scan reads. Albums are rebuilt from a {@link ScanIndex}
+     * only when they were parsed with the same profile.
+     * @param profile the scan profile.
+     */
+    public void setProfile(ScanProfile profile) {
+        this.profile = profile == null ? ScanProfile.FULL : profile;
+    }
+
+    /**
+     * @return the pool keys and values are interned with, null if none.
+     */
+    public StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /**
+     * Intern the keys and values read in a pool shared by all the scans of
+     * this parser, so that artists, genres and alike repeated across the 
+     * library are kept in memory once. The pool keeps growing with the 
+     * distinct values found: set a new one, or none, to release it.
+     * @param stringPool the pool, null to not intern.
+     */
+    public void setStringPool(StringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
+    /**
+     * Parse the library in root and all its subdirectories.
+     * Returns when all the album directories have been parsed.
+     *
+     * @param root the library root directory.
+     * @param listener receives the parsed albums.
+     * @throws IOException if root is not a readable directory.
+     */
+    public void parse(File root, LibraryParserListener listener) throws IOException {
+        parse(root, listener, null);
+    }
+
+    /**
+     * Parse the library in root and all its subdirectories, parsing again
+     * only the album directories changed since the index was updated.
+     * Albums of unchanged directories are rebuilt from the index.
+     *
+     * The index is updated with the result of the scan, directories not
+     * found anymore are removed from it. Unless the parser is detached the
+     * index is neither read nor updated, see setDetached().
+     *
+     * @param root the library root directory.
+     * @param listener receives the parsed albums.
+     * @param index the scan index, could be null to parse everything.
+     * @throws IOException if root is not a readable directory.
+     */
+    public void parse(File root, LibraryParserListener listener, ScanIndex index) throws IOException {
+
+        if (root == null || !root.isDirectory() || !root.canRead()) {
+            throw new IOException("Invalid library root: " + root);
+        }
+
+        boolean detachedScan = detached;
+        scan(root, new Scan(listener, detachedScan ? index : null, null, profile, detachedScan, stringPool));
+    }
+
+    /**
+     * Stream the albums in root and all its subdirectories to a subscriber.
+     * An album is parsed only when requested, so memory does not depend on
+     * the library size. Returns when the scan is completed or cancelled.
+     *
+     * @param root the library root directory.
+     * @param subscriber receives the albums.
+     * @throws IOException if root is not a readable directory.
+     */
+    public void subscribe(File root, AlbumSubscriber subscriber) throws IOException {
+        subscribe(root, subscriber, null);
+    }
+
+    /**
+     * Stream the albums in root and all its subdirectories to a subscriber,
+     * parsing again only the album directories changed since the index was
+     * updated. Unless the parser is detached the index is neither read nor
+     * updated, see setDetached().
+     *
+     * @param root the library root directory.
+     * @param subscriber receives the albums.
+     * @param index the scan index, could be null to parse everything.
+     * @throws IOException if root is not a readable directory.
+     */
+    public void subscribe(File root, AlbumSubscriber subscriber, ScanIndex index) throws IOException {
+
+        if (root == null || !root.isDirectory() || !root.canRead()) {
+            throw new IOException("Invalid library root: " + root);
+        }
+
+        LibrarySubscription subscription = new LibrarySubscription(subscriber);
+        subscription.subscribe();
+
+        if (!subscription.isCancelled()) {
+            boolean detachedScan = detached;
+            scan(root, new Scan(subscription, detachedScan ? index : null, subscription, profile, detachedScan, stringPool));
+        }
+        subscription.complete();
+    }
+
+    private void scan(File root, Scan scan) {
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            pool.invoke(new DirectoryTask(root, scan));
+        } finally {
+            pool.shutdown();
+        }
+
+        // A cancelled scan did not visit the whole library.
+        if (scan.index != null && !scan.isCancelled()) {
+            scan.index.retainAll(scan.visited);
+        }
+    }
+
+    /**
+     * Parse the library in root and all its subdirectories.
+     *
+     * @param root the library root directory.
+     * @param parallelism the number of directories parsed at the same time.
+     * @param listener receives the parsed albums.
+     * @throws IOException if root is not a readable directory.
+     */
+    public static void parse(File root, int parallelism, LibraryParserListener listener) throws IOException {
+        new LibraryParser(parallelism).parse(root, listener);
+    }
+
+    /**
+     * State shared by all the tasks of a scan.
+     */
+    private static class Scan {
+
+        private final LibraryParserListener listener;
+        private final ScanIndex index;
+        private final LibrarySubscription subscription;
+        private final ScanProfile profile;
+        private final boolean detached;
+        private final StringPool stringPool;
+        private final Set<String> visited = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        Scan(LibraryParserListener listener, ScanIndex index, LibrarySubscription subscription,
+             ScanProfile profile, boolean detached, StringPool stringPool) {
+            this.listener = listener;
+            this.index = index;
+            this.subscription = subscription;
+            this.profile = profile;
+            this.detached = detached;
+            this.stringPool = stringPool;
+        }
+
+        boolean isCancelled() {
+            return subscription != null && subscription.isCancelled();
+        }
+
+        /**
+         * Wait until the subscriber asks for an album.
+         * @return false if the scan has been cancelled.
+         */
+        boolean acquire() {
+            return subscription == null || subscription.acquire();
+        }
+
+        /**
+         * Give back the album taken by acquire(), it could not be built.
+         */
+        void release() {
+            if (subscription != null) {
+                subscription.release();
+            }
+        }
+    }
+
+    /**
+     * Parse a single directory, forking a subtask for each subdirectory.
+     */
+    private static class DirectoryTask extends RecursiveAction {
+
+        private final File directory;
+        private final Scan scan;
+        private String path;
+
+        DirectoryTask(File directory, Scan scan) {
+            this.directory = directory;
+            this.scan = scan;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (scan.isCancelled()) {
+                return;
+            }
+
+            // Symbolic links could bring us back to a directory already scanned.
+            try {
+                path = directory.getCanonicalPath();
+                if (!scan.visited.add(path)) {
+                    return;
+                }
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Can't resolve {0}, skipped", directory);
+                return;
+            }
+
+            ScanStatistics statistics = new ScanStatistics();
+            DirectoryListing listing;
+            try (ScanStatistics.Timer timer = statistics.start(Phase.LISTING)) {
+                listing = DirectoryListing.list(directory);
+            } catch (IOException ex) {
+                scan.listener.albumFailed(directory, ex);
+                return;
+            }
+
+            ArrayList<DirectoryTask> subtasks = new ArrayList<>();
+
+            for (File child : listing.getDirectories()) {
+
+                DirectoryTask subtask = new DirectoryTask(child, scan);
+                subtask.fork();
+                subtasks.add(subtask);
+            }
+
+            if (listing.isAlbum()) {
+                parseAlbum(listing, statistics);
+            } else if (scan.index != null) {
+                scan.index.remove(path);
+            }
+
+            for (int i = subtasks.size() - 1; i >= 0; i--) {
+                subtasks.get(i).join();
+            }
+        }
+
+        private void parseAlbum(DirectoryListing listing, ScanStatistics statistics) {
+
+            if (!scan.acquire()) {
+                return;
+            }
+
+            ArrayList<FileStamp> stamps = null;
+
+            if (scan.index != null) {
+
+                stamps = FileStamp.of(listing);
+                AlbumRecord record = scan.index.get(path, stamps, scan.profile);
+
+                if (record != null) {
+                    AlbumDefaultImpl album = record.toAlbum(scan.stringPool);
+                    album.setStatistics(statistics);
+                    scan.listener.albumParsed(directory, album);
+                    return;
+                }
+            }
+
+            AlbumDefaultImpl album;
+            ArrayList<FileStamp> externals;
+            try (ScanContext scanContext = new ScanContext(scan.profile, scan.detached, scan.stringPool, statistics)) {
+                album = DirectoryParser.parse(listing, scanContext);
+                externals = FileStamp.outside(path, scanContext.getReferencedFiles());
+            } catch (IOException | InvalidAudioFileException | InvalidAudioFileFormatException | RuntimeException ex) {
+                if (scan.index != null) {
+                    scan.index.remove(path);
+                }
+                scan.release();
+                scan.listener.albumFailed(directory, ex);
+                return;
+            }
+
+            if (scan.index != null) {
+                scan.index.put(path, stamps, externals, scan.profile, AlbumRecord.of(album));
+            }
+            scan.listener.albumParsed(directory, album);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.parser;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.mc2.audio.metadata.impl.AlbumDefaultImpl;
+
+/**
+ * Subscription of an {@link AlbumSubscriber} to a {@link LibraryParser} scan.
+ *
+ * Requests are kept as semaphore permits: a scan worker takes a permit
+ * before parsing an album directory and waits while there is none, so at
+ * most the requested albums are built. The permit is given back when the
+ * directory can't be parsed. Workers wait as managed blockers, so the
+ * fork-join pool could start others meanwhile.
+ *
+ * Permits never exceed UNBOUNDED, enough to wake up all the workers when
+ * the requests become unbounded or the scan is cancelled.
+ *
+ * @author marco
+ */
+class LibrarySubscription implements AlbumSubscription, LibraryParserListener {
+
+    private static final int UNBOUNDED = Integer.MAX_VALUE / 2;
+
+    private final AlbumSubscriber subscriber;
+    private final Semaphore permits = new Semaphore(0);
+    private volatile boolean unbounded;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    LibrarySubscription(AlbumSubscriber subscriber) {
+        this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+
+        if (n <= 0) {
+            throw new IllegalArgumentException("request must be positive: " + n);
+        }
+        if (cancelled.get() || unbounded) {
+            return;
+        }
+        synchronized (permits) {
+            if (n >= UNBOUNDED - permits.availablePermits()) {
+                unbounded = true;
+                fill();
+            } else {
+                permits.release((int) n);
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+
+        if (cancelled.compareAndSet(false, true)) {
+            // wake up the waiting workers.
+            synchronized (permits) {
+                fill();
+            }
+        }
+    }
+
+    /**
+     * @return true if the subscriber cancelled the scan.
+     */
+    boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Wait for a request.
+     * @return false if the scan has been cancelled meanwhile.
+     */
+    boolean acquire() {
+
+        if (cancelled.get()) {
+            return false;
+        }
+        if (unbounded) {
+            return true;
+        }
+        try {
+            ForkJoinPool.managedBlock(new PermitBlocker());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancel();
+        }
+        return !cancelled.get();
+    }
+
+    /**
+     * Give back the permit taken by acquire(), the album has not been built.
+     */
+    void release() {
+
+        if (!unbounded) {
+            synchronized (permits) {
+                permits.release();
+            }
+        }
+    }
+
+    /* Called holding the permits lock: top the permits up to UNBOUNDED. */
+    private void fill() {
+
+        int missing = UNBOUNDED - permits.availablePermits();
+        if (missing > 0) {
+            permits.release(missing);
+        }
+    }
+
+    synchronized void subscribe() {
+        subscriber.onSubscribe(this);
+    }
+
+    synchronized void complete() {
+        if (!cancelled.get()) {
+            subscriber.onComplete();
+        }
+    }
+
+    @Override
+    public synchronized void albumParsed(File directory, AlbumDefaultImpl album) {
+        if (!cancelled.get()) {
+            subscriber.onNext(directory, album);
+        }
+    }
+
+    @Override
+    public synchronized void albumFailed(File directory, Exception ex) {
+        if (!cancelled.get()) {
+            subscriber.onFailure(directory, ex);
+        }
+    }
+
+    /**
+     * Takes a permit, waiting as a managed blocker in a fork-join pool.
+     */
+    private final class PermitBlocker implements ForkJoinPool.ManagedBlocker {
+
+        private boolean acquired;
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if (!acquired) {
+                permits.acquire();
+                acquired = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (!acquired) {
+                acquired = permits.tryAcquire();
+            }
+            return acquired;
+        }
+    }
+}
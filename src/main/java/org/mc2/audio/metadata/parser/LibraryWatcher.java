@@ -0,0 +1,515 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileFormatException;
+import org.mc2.audio.metadata.impl.AlbumDefaultImpl;
+import org.mc2.audio.metadata.parser.index.FileStamp;
+
+/**
+ * Monitor one or more library roots and report the albums added, changed or
+ * removed to a {@link LibraryWatcherListener}.
+ *
+ * Changes are detected with a {@link WatchService} registered on every
+ * directory of the library. Events are collected per directory and the
+ * directory is parsed again only when no new event arrived for the debounce
+ * delay, so a whole album copied or ripped into a folder is reported once.
+ * A directory whose files did not really change (same {@link FileStamp}s) is
+ * not parsed again.
+ *
+ * When the watch service is not available, or polling is requested (i.e.
+ * for network shares, where native events are not delivered), the library
+ * is walked at a fixed interval instead, and a changed directory is parsed
+ * when it looks the same in two walks in a row.
+ *
+ * Albums already in the library when a root is added are considered known
+ * and are not reported: they are expected to be parsed with a
+ * {@link LibraryParser}.
+ *
+ * @author marco
+ */
+public class LibraryWatcher implements Closeable {
+
+    private final static Logger logger = Logger.getLogger(LibraryWatcher.class.getCanonicalName());
+
+    public static final long DEFAULT_DEBOUNCE = 2000;
+    public static final long DEFAULT_POLLING_INTERVAL = 30000;
+
+    /** Directories share a fixed number of locks, however many are seen. */
+    private static final int LOCK_STRIPES = 64;
+
+    private final LibraryWatcherListener listener;
+    private final long debounce;
+    private final long pollingInterval;
+    private final WatchService watchService;
+    private final ScheduledExecutorService executor;
+
+    private final CopyOnWriteArrayList<Path> roots = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, ArrayList<FileStamp>> albums = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, Long> lastEvents = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, ArrayList<FileStamp>> unsettled = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private Thread watchThread;
+    private boolean pollingStarted;
+    private volatile boolean closed;
+
+    /**
+     * Create a watcher using the native watch service, with the default
+     * debounce delay.
+     * @param listener receives the changes.
+     */
+    public LibraryWatcher(LibraryWatcherListener listener) {
+        this(listener, DEFAULT_DEBOUNCE, 0);
+    }
+
+    /**
+     * Create a watcher.
+     * @param listener receives the changes.
+     * @param debounce the delay in milliseconds without new events after
+     * which a directory is parsed again.
+     * @param pollingInterval if greater than zero the library is polled at
+     * this interval in milliseconds instead of using the watch service.
+     */
+    public LibraryWatcher(LibraryWatcherListener listener, long debounce, long pollingInterval) {
+
+        this.listener = listener;
+        this.debounce = debounce;
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+
+        WatchService service = null;
+
+        if (pollingInterval <= 0) {
+            try {
+                service = FileSystems.getDefault().newWatchService();
+            } catch (IOException | UnsupportedOperationException ex) {
+                logger.log(Level.WARNING, "Watch service not available, polling the library", ex);
+            }
+        }
+        this.watchService = service;
+        this.pollingInterval = pollingInterval > 0 ? pollingInterval : DEFAULT_POLLING_INTERVAL;
+
+        this.executor = Executors.newScheduledThreadPool(
+                Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "LibraryWatcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return true if the library is polled instead of watched.
+     */
+    public boolean isPolling() {
+        return watchService == null;
+    }
+
+    /**
+     * Start monitoring a library root and all its subdirectories.
+     * @param root the library root directory.
+     * @throws IOException if root is not a readable directory.
+     */
+    public synchronized void watch(File root) throws IOException {
+
+        if (closed) {
+            throw new IllegalStateException("Library watcher is closed");
+        }
+        if (root == null || !root.isDirectory() || !root.canRead()) {
+            throw new IOException("Invalid library root: " + root);
+        }
+
+        Path path = root.toPath().toRealPath();
+        roots.add(path);
+        register(path, new HashSet<Path>(), false);
+
+        if (isPolling()) {
+
+            if (!pollingStarted) {
+                pollingStarted = true;
+                executor.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        poll();
+                    }
+                }, pollingInterval, pollingInterval, TimeUnit.MILLISECONDS);
+            }
+
+        } else if (watchThread == null) {
+
+            watchThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    watchLoop();
+                }
+            }, "LibraryWatcher-events");
+            watchThread.setDaemon(true);
+            watchThread.start();
+        }
+    }
+
+    /**
+     * Stop monitoring.
+     */
+    @Override
+    public void close() {
+
+        closed = true;
+
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Can't close the watch service", ex);
+            }
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Register a directory tree, recording the albums found. When notify is
+     * true the albums are reported as added, as for a directory moved into
+     * the library.
+     */
+    private void register(Path dir, Set<Path> visited, boolean notify) throws IOException {
+
+        if (!visited.add(dir)) {
+            return;
+        }
+
+        // Watch before listing, so files created meanwhile are not missed.
+        WatchKey key = null;
+        if (watchService != null) {
+            key = dir.register(watchService,
+                               StandardWatchEventKinds.ENTRY_CREATE,
+                               StandardWatchEventKinds.ENTRY_DELETE,
+                               StandardWatchEventKinds.ENTRY_MODIFY);
+            keys.put(key, dir);
+        }
+
+        DirectoryListing listing;
+        try {
+            listing = DirectoryListing.list(dir.toFile());
+        } catch (IOException ex) {
+            if (key != null) {
+                key.cancel();
+                keys.remove(key);
+            }
+            throw ex;
+        }
+
+        if (listing.isAlbum()) {
+            if (notify) {
+                schedule(dir);
+            } else {
+                albums.put(dir, FileStamp.of(listing));
+            }
+        }
+
+        for (File child : listing.getDirectories()) {
+            try {
+                register(child.toPath(), visited, notify);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Can't watch " + child, ex);
+            }
+        }
+    }
+
+    private void watchLoop() {
+
+        while (!closed) {
+
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                return;
+            }
+
+            Path dir = keys.get(key);
+
+            if (dir != null && !Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                // Moved out of the library, the key follows it to its new name.
+                key.cancel();
+                keys.remove(key);
+                schedule(dir);
+                continue;
+            }
+
+            if (dir != null) {
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+
+                        // Events were lost, check the whole subtree.
+                        try {
+                            register(dir, new HashSet<Path>(), true);
+                        } catch (IOException ex) {
+                            logger.log(Level.WARNING, "Can't watch " + dir, ex);
+                        }
+                        continue;
+                    }
+
+                    Path child = dir.resolve((Path) event.context());
+
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                            && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+
+                        try {
+                            register(child, new HashSet<Path>(), true);
+                        } catch (IOException ex) {
+                            logger.log(Level.WARNING, "Can't watch " + child, ex);
+                        }
+
+                    } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE
+                            && containsAlbums(child)) {
+
+                        schedule(child);
+                    }
+                    schedule(dir);
+                }
+            }
+
+            if (!key.reset()) {
+                // The directory is gone.
+                keys.remove(key);
+                if (dir != null) {
+                    schedule(dir);
+                }
+            }
+        }
+    }
+
+    /**
+     * Walk all the roots, parsing the directories changed and settled since
+     * the previous walk.
+     */
+    private void poll() {
+
+        Set<Path> visited = new HashSet<>();
+
+        for (Path root : roots) {
+            pollTree(root, visited);
+        }
+
+        for (Path dir : albums.keySet()) {
+            if (!visited.contains(dir)) {
+                process(dir);
+            }
+        }
+    }
+
+    private void pollTree(Path dir, Set<Path> visited) {
+
+        if (closed || !visited.add(dir)) {
+            return;
+        }
+
+        DirectoryListing listing;
+        try {
+            listing = DirectoryListing.list(dir.toFile());
+        } catch (IOException ex) {
+            return;
+        }
+
+        if (listing.isAlbum()) {
+
+            ArrayList<FileStamp> stamps = FileStamp.of(listing);
+
+            if (stamps.equals(albums.get(dir))) {
+
+                unsettled.remove(dir);
+
+            } else if (stamps.equals(unsettled.put(dir, stamps))) {
+
+                unsettled.remove(dir);
+                process(dir);
+            }
+
+        } else if (albums.containsKey(dir)) {
+
+            process(dir);
+        }
+
+        for (File child : listing.getDirectories()) {
+            pollTree(child.toPath(), visited);
+        }
+    }
+
+    /**
+     * Record an event for the directory, parsing it after the debounce
+     * delay.
+     */
+    private void schedule(Path dir) {
+
+        if (closed) {
+            return;
+        }
+        if (lastEvents.put(dir, System.nanoTime()) == null) {
+            executor.schedule(new DebounceTask(dir), debounce, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private class DebounceTask implements Runnable {
+
+        private final Path dir;
+
+        DebounceTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public void run() {
+
+            Long last = lastEvents.get(dir);
+            if (last == null || closed) {
+                return;
+            }
+
+            long wait = debounce - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - last);
+
+            if (wait > 0 || !lastEvents.remove(dir, last)) {
+                executor.schedule(this, Math.max(wait, 1), TimeUnit.MILLISECONDS);
+                return;
+            }
+            process(dir);
+        }
+    }
+
+    /**
+     * Compare the directory with the known album and notify the changes.
+     */
+    private void process(Path dir) {
+
+        synchronized (locks[(dir.hashCode() & 0x7FFFFFFF) % locks.length]) {
+
+            File directory = dir.toFile();
+
+            if (!Files.isDirectory(dir)) {
+                removeTree(dir);
+                return;
+            }
+
+            DirectoryListing listing;
+            try {
+                listing = DirectoryListing.list(directory);
+            } catch (IOException ex) {
+                listener.albumFailed(directory, ex);
+                return;
+            }
+
+            if (!listing.isAlbum()) {
+                if (albums.remove(dir) != null) {
+                    listener.albumRemoved(directory);
+                }
+                return;
+            }
+
+            ArrayList<FileStamp> stamps = FileStamp.of(listing);
+            if (stamps.equals(albums.get(dir))) {
+                return;
+            }
+
+            AlbumDefaultImpl album;
+            try {
+                album = DirectoryParser.parse(listing);
+            } catch (IOException | InvalidAudioFileException | InvalidAudioFileFormatException | RuntimeException ex) {
+                listener.albumFailed(directory, ex);
+                return;
+            }
+
+            if (albums.put(dir, stamps) == null) {
+                listener.albumAdded(directory, album);
+            } else {
+                listener.albumChanged(directory, album);
+            }
+        }
+    }
+
+    /**
+     * @return true if the directory or one of its subdirectories is a known
+     * album.
+     */
+    private boolean containsAlbums(Path dir) {
+
+        for (Path album : albums.keySet()) {
+            if (album.startsWith(dir)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forget a directory gone from the library: report its albums as removed
+     * and stop watching it.
+     */
+    private void removeTree(Path dir) {
+
+        for (Path album : albums.keySet()) {
+            if (album.startsWith(dir) && albums.remove(album) != null) {
+                listener.albumRemoved(album.toFile());
+            }
+        }
+        for (Map.Entry<WatchKey, Path> entry : keys.entrySet()) {
+            if (entry.getValue().startsWith(dir)) {
+                entry.getKey().cancel();
+                keys.remove(entry.getKey());
+            }
+        }
+    }
+}
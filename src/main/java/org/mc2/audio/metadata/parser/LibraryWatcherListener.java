@@ -0,0 +1,68 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.parser;
+
+import java.io.File;
+import org.mc2.audio.metadata.impl.AlbumDefaultImpl;
+
+/**
+ * Receives the changes to the albums of the libraries monitored by a
+ * {@link LibraryWatcher}.
+ *
+ * Methods are called from the watcher worker threads, so implementations
+ * must be thread safe.
+ *
+ * @author marco
+ */
+public interface LibraryWatcherListener {
+
+    /**
+     * Called when a new album directory appears in the library.
+     * @param directory the album directory.
+     * @param album the album.
+     */
+    void albumAdded(File directory, AlbumDefaultImpl album);
+
+    /**
+     * Called when the content of a known album directory changes.
+     * @param directory the album directory.
+     * @param album the album, parsed again.
+     */
+    void albumChanged(File directory, AlbumDefaultImpl album);
+
+    /**
+     * Called when a known album directory is removed or does not contain an
+     * album anymore.
+     * @param directory the album directory.
+     */
+    void albumRemoved(File directory);
+
+    /**
+     * Called when a changed album directory could not be parsed.
+     * @param directory the album directory.
+     * @param ex the cause.
+     */
+    void albumFailed(File directory, Exception ex);
+}
@@ -24,6 +24,9 @@
  */
 package org.mc2.audio.metadata.parser;
 
+import java.util.HashMap;
+import java.util.Locale;
+
 /**
  *
  * @author marco
@@ -70,4 +73,22 @@ public enum SupportedFileFormat
     {
         return filesuffix;
     }
+
+    private static final HashMap<String, SupportedFileFormat> BY_SUFFIX = new HashMap<>();
+
+    static {
+        for (SupportedFileFormat format : values()) {
+            BY_SUFFIX.put(format.filesuffix, format);
+        }
+    }
+
+    /**
+     * Look up a format by file suffix, without exceptions for unsupported ones.
+     * @param filesuffix the file suffix, without initial . in any case.
+     * @return the format, null if not supported.
+     */
+    public static SupportedFileFormat of(String filesuffix)
+    {
+        return filesuffix == null ? null : BY_SUFFIX.get(filesuffix.toLowerCase(Locale.ROOT));
+    }
 }
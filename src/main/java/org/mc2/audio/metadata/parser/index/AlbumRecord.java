@@ -0,0 +1,324 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.parser.index;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import org.mc2.audio.metadata.API.Album;
+import org.mc2.audio.metadata.API.CoverArt;
+import org.mc2.audio.metadata.API.Metadata;
+import org.mc2.audio.metadata.API.MetadataOrigin;
+import org.mc2.audio.metadata.API.StatusMessage;
+import org.mc2.audio.metadata.API.Track;
+import org.mc2.audio.metadata.impl.AlbumDefaultImpl;
+import org.mc2.audio.metadata.impl.CompactMetadata;
+import org.mc2.audio.metadata.impl.CompactMetadataOrigin;
+import org.mc2.audio.metadata.impl.CompactTrack;
+import org.mc2.audio.metadata.impl.GenericStatusMessage;
+import org.mc2.audio.metadata.impl.GenericStatusMessage.Severity;
+import org.mc2.audio.metadata.impl.ImmutableMetadata;
+import org.mc2.audio.metadata.source.StringPool;
+import org.mc2.audio.metadata.source.coverart.CoverArtReference;
+import org.mc2.audio.metadata.source.cue.file.CueFile;
+import org.mc2.audio.metadata.source.tags.file.AudioFile;
+
+/**
+ * A serializable snapshot of an {@link Album}, stored in the {@link ScanIndex}.
+ *
+ * Only plain values are kept: metadata with their origins, tracks, files,
+ * messages and where the cover arts come from. The album rebuilt by
+ * {@link #toAlbum()} has no cue sheets nor audio files attached, as they
+ * would need to be parsed again, and its cover arts are loaded on demand.
+ * Its tracks keep their metadata in compact form, see {@link CompactTrack}.
+ *
+ * @author marco
+ */
+public final class AlbumRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<MetadataRecord> metadataList = new ArrayList<>();
+    private final ArrayList<TrackRecord> trackList = new ArrayList<>();
+    private final ArrayList<String> fileList = new ArrayList<>();
+    private final ArrayList<String> imageFileList = new ArrayList<>();
+    private final ArrayList<String> cueFileList = new ArrayList<>();
+    private final ArrayList<String> audioFileList = new ArrayList<>();
+    private final ArrayList<CoverArtRecord> coverArtList = new ArrayList<>();
+    private final ArrayList<MessageRecord> messageList = new ArrayList<>();
+
+    private AlbumRecord() {
+    }
+
+    /**
+     * Take a snapshot of an album.
+     * @param album the album.
+     * @return the snapshot.
+     */
+    public static AlbumRecord of(Album album) {
+
+        AlbumRecord out = new AlbumRecord();
+
+        for (Metadata metadata : album.getMetadataList()) {
+            out.metadataList.add(new MetadataRecord(metadata));
+        }
+        for (Track track : album.getTrackList()) {
+            out.trackList.add(new TrackRecord(track));
+        }
+        for (File file : album.getFileList()) {
+            out.fileList.add(file.getPath());
+        }
+        for (File file : album.getImageFileList()) {
+            out.imageFileList.add(file.getPath());
+        }
+        for (CueFile cueFile : album.getCueFileList()) {
+            out.cueFileList.add(cueFile.getFile().getPath());
+        }
+        for (AudioFile audioFile : album.getAudioFileList()) {
+            out.audioFileList.add(audioFile.getFile().getPath());
+        }
+        for (CoverArt coverArt : album.getcoverArtList()) {
+            out.coverArtList.add(new CoverArtRecord(coverArt));
+        }
+        for (StatusMessage message : album.getMessageList()) {
+            out.messageList.add(new MessageRecord(message));
+        }
+        return out;
+    }
+
+    /**
+     * Rebuild the album.
+     * @return the album.
+     */
+    public AlbumDefaultImpl toAlbum() {
+        return toAlbum(null);
+    }
+
+    /**
+     * Rebuild the album, interning metadata keys and values.
+     * @param stringPool the pool, null to not intern.
+     * @return the album.
+     */
+    public AlbumDefaultImpl toAlbum(StringPool stringPool) {
+
+        ArrayList<Metadata> metadata = new ArrayList<>();
+        for (MetadataRecord record : metadataList) {
+            metadata.add(record.toMetadata(stringPool));
+        }
+
+        ArrayList<Track> tracks = new ArrayList<>();
+        for (TrackRecord record : trackList) {
+            tracks.add(record.toTrack(stringPool));
+        }
+
+        ArrayList<CoverArt> coverArts = new ArrayList<>();
+        for (CoverArtRecord record : coverArtList) {
+            coverArts.add(record.toCoverArt());
+        }
+
+        ArrayList<StatusMessage> messages = new ArrayList<>();
+        for (MessageRecord record : messageList) {
+            messages.add(record.toStatusMessage());
+        }
+
+        return new AlbumDefaultImpl(coverArts,
+                                    metadata,
+                                    tracks,
+                                    toFiles(fileList),
+                                    new ArrayList<CueFile>(),
+                                    new ArrayList<AudioFile>(),
+                                    toFiles(imageFileList),
+                                    messages);
+    }
+
+    /**
+     * @return the paths of the cue sheets the album was built from.
+     */
+    public ArrayList<String> getCueFileList() {
+        return cueFileList;
+    }
+
+    /**
+     * @return the paths of the audio files the album was built from.
+     */
+    public ArrayList<String> getAudioFileList() {
+        return audioFileList;
+    }
+
+    private static ArrayList<File> toFiles(ArrayList<String> paths) {
+
+        ArrayList<File> out = new ArrayList<>();
+        for (String path : paths) {
+            out.add(new File(path));
+        }
+        return out;
+    }
+
+    private static final class MetadataRecord implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final ArrayList<OriginRecord> origins = new ArrayList<>();
+
+        MetadataRecord(Metadata metadata) {
+
+            this.key = metadata.getKey();
+            for (MetadataOrigin origin : metadata.getOrigins()) {
+                origins.add(new OriginRecord(origin));
+            }
+        }
+
+        Metadata toMetadata(StringPool stringPool) {
+            return new ImmutableMetadata(StringPool.intern(stringPool, key), toOrigins(stringPool));
+        }
+
+        Metadata toCompactMetadata(StringPool stringPool) {
+            return CompactMetadata.of(StringPool.intern(stringPool, key), toOrigins(stringPool));
+        }
+
+        private ArrayList<MetadataOrigin> toOrigins(StringPool stringPool) {
+
+            ArrayList<MetadataOrigin> out = new ArrayList<>();
+            for (OriginRecord origin : origins) {
+                out.add(origin.toOrigin(stringPool));
+            }
+            return out;
+        }
+    }
+
+    private static final class OriginRecord implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String source;
+        private final String key;
+        private final ArrayList<String> values;
+        private final ArrayList<String> discarded;
+        private final ArrayList<String> invalid;
+
+        OriginRecord(MetadataOrigin origin) {
+
+            this.source = origin.getSource();
+            this.key = origin.getOriginKey();
+            this.values = new ArrayList<>(origin.getValidatedValues());
+            this.discarded = new ArrayList<>(origin.getDiscardedValues());
+            this.invalid = new ArrayList<>(origin.getInvalidValues());
+        }
+
+        MetadataOrigin toOrigin(StringPool stringPool) {
+
+            if (stringPool == null) {
+                return CompactMetadataOrigin.of(source, key, values, discarded, invalid);
+            }
+            return CompactMetadataOrigin.of(stringPool.intern(source),
+                                            stringPool.intern(key),
+                                            stringPool.intern(values),
+                                            stringPool.intern(discarded),
+                                            stringPool.intern(invalid));
+        }
+    }
+
+    private static final class TrackRecord implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Integer trackNo;
+        private final int length;
+        private final ArrayList<MetadataRecord> metadataList = new ArrayList<>();
+
+        TrackRecord(Track track) {
+
+            this.trackNo = track.getTrackNo();
+            this.length = track.getLength();
+            for (Metadata metadata : track.getMetadataList()) {
+                metadataList.add(new MetadataRecord(metadata));
+            }
+        }
+
+        Track toTrack(StringPool stringPool) {
+
+            ArrayList<Metadata> metadata = new ArrayList<>();
+            for (MetadataRecord record : metadataList) {
+                metadata.add(record.toCompactMetadata(stringPool));
+            }
+            return new CompactTrack(trackNo, length, metadata);
+        }
+    }
+
+    private static final class CoverArtRecord implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String source;
+        private final String file;
+        private final Integer index;
+        private final String url;
+        private final String type;
+        private final String comment;
+
+        CoverArtRecord(CoverArt coverArt) {
+
+            this.source = coverArt.getSource();
+            this.file = coverArt.getFile() == null ? null : coverArt.getFile().getPath();
+            this.index = coverArt.getIndex();
+            this.url = coverArt.getUrl();
+            this.type = coverArt.getType();
+            this.comment = coverArt.getComment();
+        }
+
+        CoverArt toCoverArt() {
+
+            return new CoverArtReference(source,
+                                         file == null ? null : new File(file),
+                                         index, url, type, comment);
+        }
+    }
+
+    private static final class MessageRecord implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String severity;
+        private final String message;
+
+        MessageRecord(StatusMessage message) {
+
+            this.severity = message.getSeverity();
+            this.message = message.getMessage();
+        }
+
+        StatusMessage toStatusMessage() {
+
+            Severity out;
+            try {
+                out = Severity.valueOf(severity);
+            } catch (IllegalArgumentException | NullPointerException ex) {
+                out = Severity.INFO;
+            }
+            return new GenericStatusMessage(out, message);
+        }
+    }
+}
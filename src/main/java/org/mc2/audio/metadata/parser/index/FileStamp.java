@@ -0,0 +1,190 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.parser.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Objects;
+import org.mc2.audio.metadata.parser.DirectoryListing;
+
+/**
+ * Identify the state of a file at scan time: name, size, last modified time
+ * and file key (inode on unix systems, null when the file system does not
+ * provide one). If any of them changes the file is considered modified.
+ *
+ * Files outside an album directory (i.e. the FILE of a cue sheet in another
+ * folder) are stamped by absolute path. A missing file has size -1.
+ *
+ * @author marco
+ */
+public final class FileStamp implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final long size;
+    private final long lastModified;
+    private final String fileKey;
+
+    public FileStamp(String name, long size, long lastModified, String fileKey) {
+        this.name = name;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.fileKey = fileKey;
+    }
+
+    public FileStamp(String name, BasicFileAttributes attributes) {
+        this(name,
+             attributes.size(),
+             attributes.lastModifiedTime().toMillis(),
+             attributes.fileKey() == null ? null : attributes.fileKey().toString());
+    }
+
+    /**
+     * Build the stamps of all the files in a directory listing, using the
+     * attributes already read while listing.
+     * @param listing the directory content.
+     * @return the stamps, sorted by file name.
+     */
+    public static ArrayList<FileStamp> of(DirectoryListing listing) {
+
+        ArrayList<FileStamp> out = new ArrayList<>();
+
+        for (File file : listing.getFiles()) {
+
+            BasicFileAttributes attributes = listing.getAttributes(file);
+            if (attributes != null) {
+                out.add(new FileStamp(file.getName(), attributes));
+            }
+        }
+        sort(out);
+        return out;
+    }
+
+    /**
+     * Build the stamps of the files outside a directory.
+     * @param directory the directory canonical path.
+     * @param paths canonical paths of files, those in the directory are
+     * skipped.
+     * @return the stamps, named by path and sorted.
+     */
+    public static ArrayList<FileStamp> outside(String directory, Collection<String> paths) {
+
+        ArrayList<FileStamp> out = new ArrayList<>();
+
+        for (String path : paths) {
+            if (!directory.equals(new File(path).getParent())) {
+                out.add(of(path));
+            }
+        }
+        sort(out);
+        return out;
+    }
+
+    /**
+     * Stamp a single file by path.
+     * @param path the file path.
+     * @return the current stamp, size -1 if the file does not exist.
+     */
+    public static FileStamp of(String path) {
+
+        try {
+            return new FileStamp(path, Files.readAttributes(new File(path).toPath(), BasicFileAttributes.class));
+        } catch (IOException ex) {
+            return new FileStamp(path, -1, 0, null);
+        }
+    }
+
+    private static void sort(ArrayList<FileStamp> stamps) {
+
+        Collections.sort(stamps, new Comparator<FileStamp>() {
+            @Override
+            public int compare(FileStamp o1, FileStamp o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+    }
+
+    /**
+     * @return the file name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the last modified time in milliseconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the file key, could be null
+     */
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof FileStamp)) {
+            return false;
+        }
+        FileStamp other = (FileStamp) obj;
+        return size == other.size
+                && lastModified == other.lastModified
+                && name.equals(other.name)
+                && Objects.equals(fileKey, other.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, size, lastModified, fileKey);
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + size + " " + lastModified + " " + fileKey;
+    }
+}
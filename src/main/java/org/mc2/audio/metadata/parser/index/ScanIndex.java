@@ -0,0 +1,259 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.parser.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.mc2.audio.metadata.source.ScanProfile;
+
+/**
+ * Persistent index of the album directories found in a library scan.
+ *
+ * For every album directory the index stores the {@link FileStamp} of each
+ * file it contains, and of the files outside it the album was read from
+ * (the FILE of a cue sheet in another folder), the scan profile and the
+ * resulting {@link AlbumRecord}. On the next scan with the same profile, a
+ * directory whose stamps are unchanged is not parsed again and its album is
+ * rebuilt from the record. Rebuilt albums are detached, so the index is only
+ * used by detached scans.
+ *
+ * The index is saved as a compressed serialized file. An index that can't be
+ * read (missing, corrupted, written by an incompatible version or holding
+ * classes other than the index ones) is simply treated as empty, so the next
+ * scan rebuilds it.
+ *
+ * @author marco
+ */
+public class ScanIndex {
+
+    private final static Logger logger = Logger.getLogger(ScanIndex.class.getCanonicalName());
+
+    private static final int VERSION = 3;
+
+    /* the only classes an index file could hold, see IndexInputStream. */
+    private static final Set<String> CLASSES = new HashSet<>(Arrays.asList(
+            HashMap.class.getName(), ArrayList.class.getName(), String.class.getName(),
+            Integer.class.getName(), Number.class.getName(), Enum.class.getName(),
+            ScanProfile.class.getName(), Entry.class.getName(), FileStamp.class.getName(),
+            AlbumRecord.class.getName()));
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Create an empty index.
+     */
+    public ScanIndex() {
+    }
+
+    /**
+     * Load an index from file.
+     * @param file the index file.
+     * @return the index, empty if the file does not exist or can't be read.
+     */
+    public static ScanIndex load(File file) {
+
+        ScanIndex out = new ScanIndex();
+
+        if (file == null || !file.isFile()) {
+            return out;
+        }
+
+        try (ObjectInputStream in = new IndexInputStream(
+                new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+
+            if (in.readInt() != VERSION) {
+                logger.log(Level.INFO, "Scan index {0} has an old format, ignored", file);
+                return out;
+            }
+
+            @SuppressWarnings("unchecked")
+            HashMap<String, Entry> stored = (HashMap<String, Entry>) in.readObject();
+            out.entries.putAll(stored);
+
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            logger.log(Level.WARNING, "Can't read scan index " + file + ", ignored", ex);
+            out.entries.clear();
+        }
+        return out;
+    }
+
+    /**
+     * Save the index, replacing the file only when it has been completely
+     * written.
+     * @param file the index file.
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        File temp = new File(parent, file.getName() + ".tmp");
+
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))) {
+
+            out.writeInt(VERSION);
+            out.writeObject(new HashMap<>(entries));
+        }
+
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Get the stored album, if the directory and the files outside it did not
+     * change and the album was read the same way.
+     * @param directory the directory canonical path.
+     * @param stamps the current stamps of the directory files.
+     * @param profile what the scan reads.
+     * @return the album record, or null if the directory is unknown, changed
+     * or was read with another profile.
+     */
+    public AlbumRecord get(String directory, ArrayList<FileStamp> stamps, ScanProfile profile) {
+
+        Entry entry = entries.get(directory);
+
+        if (entry == null || entry.profile != profile || !entry.stamps.equals(stamps)) {
+            return null;
+        }
+        for (FileStamp external : entry.externals) {
+            if (!external.equals(FileStamp.of(external.getName()))) {
+                return null;
+            }
+        }
+        return entry.album;
+    }
+
+    /**
+     * Store the album parsed from a directory.
+     * @param directory the directory canonical path.
+     * @param stamps the stamps of the directory files.
+     * @param externals the stamps of the files outside the directory the
+     * album was read from, see FileStamp.outside().
+     * @param profile what the scan read.
+     * @param album the album record.
+     */
+    public void put(String directory, ArrayList<FileStamp> stamps, ArrayList<FileStamp> externals,
+                    ScanProfile profile, AlbumRecord album) {
+        entries.put(directory, new Entry(stamps, externals, profile, album));
+    }
+
+    /**
+     * Forget a directory.
+     * @param directory the directory canonical path.
+     */
+    public void remove(String directory) {
+        entries.remove(directory);
+    }
+
+    /**
+     * Forget all the directories not in the given set, i.e. not found in
+     * the last scan.
+     * @param directories the directories canonical paths.
+     */
+    public void retainAll(Set<String> directories) {
+        entries.keySet().retainAll(directories);
+    }
+
+    /**
+     * @return the indexed directories.
+     */
+    public Set<String> getDirectories() {
+        return entries.keySet();
+    }
+
+    /**
+     * @return the number of indexed directories.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static final class Entry implements Serializable {
+
+        private static final long serialVersionUID = 3L;
+
+        private final ArrayList<FileStamp> stamps;
+        private final ArrayList<FileStamp> externals;
+        private final ScanProfile profile;
+        private final AlbumRecord album;
+
+        Entry(ArrayList<FileStamp> stamps, ArrayList<FileStamp> externals,
+              ScanProfile profile, AlbumRecord album) {
+            this.stamps = stamps;
+            this.externals = externals;
+            this.profile = profile;
+            this.album = album;
+        }
+    }
+
+    /**
+     * Reads only the classes of the index, the file could have been replaced
+     * by anyone allowed to write it.
+     */
+    private static final class IndexInputStream extends ObjectInputStream {
+
+        IndexInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+
+            String name = desc.getName();
+            // the records of AlbumRecord are nested classes.
+            if (!CLASSES.contains(name) && !name.startsWith(AlbumRecord.class.getName() + "$")) {
+                throw new InvalidClassException(name, "not allowed in a scan index");
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import org.apache.commons.io.FilenameUtils;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileFormatException;
+import org.mc2.audio.metadata.source.tags.file.AudioFile;
+import org.mc2.audio.metadata.source.tags.file.ReadOptions;
+
+/**
+ * State shared by all the sources read during a single scan.
+ *
+ * Audio files are cached by canonical path, so that a file referenced by a
+ * cue sheet and also found in the directory listing is read by jaudiotagger
+ * only once. Failures are cached as well and thrown again on the next
+ * request for the same file. Threads asking for a file being read wait for
+ * that read.
+ *
+ * A context is opened at the beginning of a scan and must be closed at the
+ * end, releasing the cached files. It could be used by more threads at the
+ * same time.
+ *
+ * The context also collects the {@link ScanStatistics} of the scan and could
+ * intern the keys and values read in a {@link StringPool}.
+ *
+ * @author marco
+ */
+public class ScanContext implements Closeable {
+
+    private final ConcurrentHashMap<String, FutureTask<AudioFile>> audioFiles = new ConcurrentHashMap<>();
+    private final Set<String> referencedFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final boolean detached;
+    private final ScanProfile profile;
+    private final ScanStatistics statistics;
+    private final StringPool stringPool;
+    private volatile boolean closed;
+
+    /**
+     * Create a context for a full scan building albums attached to their 
+     * sources.
+     */
+    public ScanContext() {
+        this(false);
+    }
+
+    /**
+     * Create a context for a full scan.
+     * @param detached if true the scan builds detached albums: plain values
+     * with no reference to the audio files, cue sheets and tags they were
+     * read from, and cover arts loaded only on demand.
+     */
+    public ScanContext(boolean detached) {
+        this(ScanProfile.FULL, detached);
+    }
+
+    /**
+     * Create a context for a scan.
+     * @param profile what the scan reads.
+     * @param detached if true the scan builds detached albums.
+     */
+    public ScanContext(ScanProfile profile, boolean detached) {
+        this(profile, detached, null);
+    }
+
+    /**
+     * Create a context for a scan.
+     * @param profile what the scan reads.
+     * @param detached if true the scan builds detached albums.
+     * @param stringPool the pool keys and values are interned with, could be 
+     * shared by more scans. Null to not intern.
+     */
+    public ScanContext(ScanProfile profile, boolean detached, StringPool stringPool) {
+        this(profile, detached, stringPool, null);
+    }
+
+    /**
+     * Create a context for a scan.
+     * @param profile what the scan reads.
+     * @param detached if true the scan builds detached albums.
+     * @param stringPool the pool keys and values are interned with, could be 
+     * shared by more scans. Null to not intern.
+     * @param statistics the statistics the scan adds to, e.g. already holding
+     * the listing of the directory. Null for new statistics.
+     */
+    public ScanContext(ScanProfile profile, boolean detached, StringPool stringPool, ScanStatistics statistics) {
+        this.profile = profile == null ? ScanProfile.FULL : profile;
+        this.detached = detached;
+        this.stringPool = stringPool;
+        this.statistics = statistics == null ? new ScanStatistics() : statistics;
+    }
+
+    /**
+     * @return what the scan reads.
+     */
+    public ScanProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return the statistics of the scan.
+     */
+    public ScanStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return the pool keys and values are interned with, null if none.
+     */
+    public StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /**
+     * @return true if the scan builds detached albums.
+     */
+    public boolean isDetached() {
+        return detached;
+    }
+
+    /**
+     * Get the audio file, reading it on the first request.
+     * @param file the file.
+     * @return the audio file.
+     * @throws InvalidAudioFileException if the file can't be read.
+     * @throws InvalidAudioFileFormatException if the format is not supported.
+     */
+    public AudioFile getAudioFile(File file) throws InvalidAudioFileException, InvalidAudioFileFormatException {
+
+        if (closed) {
+            throw new IllegalStateException("Scan context is closed");
+        }
+        if (file == null) {
+            throw new InvalidAudioFileException("Invalid file");
+        }
+
+        String key = getKey(file);
+        FutureTask<AudioFile> task = audioFiles.get(key);
+
+        if (task == null) {
+
+            FutureTask<AudioFile> created = new FutureTask<>(new Callable<AudioFile>() {
+                @Override
+                public AudioFile call() throws Exception {
+                    return read(file);
+                }
+            });
+            task = audioFiles.putIfAbsent(key, created);
+            if (task == null) {
+                task = created;
+                task.run();
+            }
+        }
+
+        try {
+            return task.get();
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InvalidAudioFileException("Interrupted reading " + file, ex);
+
+        } catch (ExecutionException ex) {
+
+            Throwable cause = ex.getCause();
+            if (cause instanceof InvalidAudioFileException) {
+                throw (InvalidAudioFileException) cause;
+            }
+            if (cause instanceof InvalidAudioFileFormatException) {
+                throw (InvalidAudioFileFormatException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new InvalidAudioFileException(cause);
+        }
+    }
+
+    private AudioFile read(File file) throws InvalidAudioFileException, InvalidAudioFileFormatException {
+
+        try (ScanStatistics.Timer timer = statistics.startTagReading(FilenameUtils.getExtension(file.getName()))) {
+            AudioFile audioFile = AudioFile.get(file, ReadOptions.getDefault().withProfile(profile));
+            audioFile.setStringPool(stringPool);
+            return audioFile;
+        } finally {
+            statistics.addFile(file.length());
+        }
+    }
+
+    /**
+     * Record a file referred to by a source, i.e. the FILE of a cue sheet,
+     * even if it does not exist.
+     * @param file the file.
+     */
+    public void addReferencedFile(File file) {
+        referencedFiles.add(getKey(file));
+    }
+
+    /**
+     * @return the canonical paths of the audio files read and of the files
+     * referred to in this scan.
+     */
+    public Set<String> getReferencedFiles() {
+
+        Set<String> out = new HashSet<>(referencedFiles);
+        out.addAll(audioFiles.keySet());
+        return out;
+    }
+
+    /**
+     * @param file the file.
+     * @return true if the file has already been read in this scan.
+     */
+    public boolean contains(File file) {
+        return audioFiles.containsKey(getKey(file));
+    }
+
+    /**
+     * @return the number of files read in this scan.
+     */
+    public int size() {
+        return audioFiles.size();
+    }
+
+    /**
+     * @return true if the context has been closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Release the cached audio files. Audio files already handed out are
+     * still valid.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        audioFiles.clear();
+    }
+
+    private static String getKey(File file) {
+
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException ex) {
+            return file.getAbsolutePath();
+        }
+    }
+}
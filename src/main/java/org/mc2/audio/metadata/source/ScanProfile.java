@@ -0,0 +1,68 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source;
+
+/**
+ * How much of each source a scan reads.
+ *
+ * @author marco
+ */
+public enum ScanProfile {
+
+    /**
+     * Text metadata only: no durations, no cover arts.
+     */
+    TAGS_ONLY(false, false),
+    /**
+     * Text metadata, file and track durations. No cover arts.
+     */
+    TAGS_AND_DURATION(true, false),
+    /**
+     * Everything, cover arts included.
+     */
+    FULL(true, true);
+
+    private final boolean duration;
+    private final boolean artwork;
+
+    ScanProfile(boolean duration, boolean artwork) {
+        this.duration = duration;
+        this.artwork = artwork;
+    }
+
+    /**
+     * @return true if durations are computed.
+     */
+    public boolean readsDuration() {
+        return duration;
+    }
+
+    /**
+     * @return true if cover arts are collected.
+     */
+    public boolean readsArtwork() {
+        return artwork;
+    }
+}
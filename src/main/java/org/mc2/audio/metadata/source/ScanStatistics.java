@@ -0,0 +1,364 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the time of a scan goes.
+ *
+ * Wall and CPU time are collected for each {@link Phase}, tag reading is also
+ * split by audio file format (the file extension). Phases could be nested,
+ * e.g. a cue sheet reads the audio files it references, in that case the time
+ * is charged to the innermost phase only, so the phase times add up to the
+ * total time of the scan.
+ *
+ * File bytes is the total size of the files opened, not the bytes actually
+ * read: cue sheets and image files are read entirely, of audio files only
+ * tags and headers are read.
+ *
+ * Statistics could be updated by more threads at the same time.
+ *
+ * @author marco
+ */
+public class ScanStatistics {
+
+    public enum Phase {
+        /** directory listing */
+        LISTING,
+        /** cue sheets parsing */
+        CUE_PARSING,
+        /** audio file tags and headers reading */
+        TAG_READING,
+        /** cover art decoding and resizing */
+        ARTWORK,
+        /** building the album from tags and cue sheets */
+        MERGE
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    /** The innermost running timer of the current thread. */
+    private static final ThreadLocal<Timer> CURRENT = new ThreadLocal<>();
+
+    private final EnumMap<Phase, Times> phases = new EnumMap<>(Phase.class);
+    private final ConcurrentHashMap<String, Times> formats = new ConcurrentHashMap<>();
+    private final AtomicLong fileBytes = new AtomicLong();
+    private final AtomicLong filesTouched = new AtomicLong();
+
+    public ScanStatistics() {
+
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Times());
+        }
+    }
+
+    /**
+     * Start timing a phase, to be used in a try-with-resources statement.
+     * @param phase the phase.
+     * @return the running timer.
+     */
+    public Timer start(Phase phase) {
+        return new Timer(phases.get(phase), null);
+    }
+
+    /**
+     * Start timing the tag reading of an audio file.
+     * @param format the audio file format.
+     * @return the running timer.
+     */
+    public Timer startTagReading(String format) {
+        return new Timer(phases.get(Phase.TAG_READING), getFormatTimes(getKey(format)));
+    }
+
+    /**
+     * Count a file opened by the scan.
+     * @param size the size of the file.
+     */
+    public void addFile(long size) {
+        filesTouched.incrementAndGet();
+        fileBytes.addAndGet(Math.max(0, size));
+    }
+
+    /**
+     * Add the figures of another statistics to this one.
+     * @param other the statistics to add.
+     */
+    public void add(ScanStatistics other) {
+
+        if (other == null || other == this) {
+            return;
+        }
+        for (Phase phase : Phase.values()) {
+            phases.get(phase).add(other.phases.get(phase));
+        }
+        for (Map.Entry<String, Times> entry : other.formats.entrySet()) {
+            getFormatTimes(entry.getKey()).add(entry.getValue());
+        }
+        fileBytes.addAndGet(other.getFileBytes());
+        filesTouched.addAndGet(other.getFilesTouched());
+    }
+
+    /**
+     * @param phase the phase.
+     * @return the wall time spent in the phase, in nanoseconds.
+     */
+    public long getWallTime(Phase phase) {
+        return phases.get(phase).wall.get();
+    }
+
+    /**
+     * @param phase the phase.
+     * @return the CPU time spent in the phase, in nanoseconds. Always 0 if the
+     * JVM does not measure thread CPU time.
+     */
+    public long getCpuTime(Phase phase) {
+        return phases.get(phase).cpu.get();
+    }
+
+    /**
+     * @param phase the phase.
+     * @return how many times the phase has been entered.
+     */
+    public long getCount(Phase phase) {
+        return phases.get(phase).count.get();
+    }
+
+    /**
+     * @return the wall time of all the phases, in nanoseconds.
+     */
+    public long getWallTime() {
+
+        long out = 0;
+        for (Times times : phases.values()) {
+            out += times.wall.get();
+        }
+        return out;
+    }
+
+    /**
+     * @return the CPU time of all the phases, in nanoseconds.
+     */
+    public long getCpuTime() {
+
+        long out = 0;
+        for (Times times : phases.values()) {
+            out += times.cpu.get();
+        }
+        return out;
+    }
+
+    /**
+     * @return the audio file formats read.
+     */
+    public Set<String> getFormats() {
+        return formats.keySet();
+    }
+
+    /**
+     * @param format the audio file format.
+     * @return the wall time spent reading tags of that format, in nanoseconds.
+     */
+    public long getTagReadingWallTime(String format) {
+        Times times = formats.get(getKey(format));
+        return times == null ? 0 : times.wall.get();
+    }
+
+    /**
+     * @param format the audio file format.
+     * @return the CPU time spent reading tags of that format, in nanoseconds.
+     */
+    public long getTagReadingCpuTime(String format) {
+        Times times = formats.get(getKey(format));
+        return times == null ? 0 : times.cpu.get();
+    }
+
+    /**
+     * @param format the audio file format.
+     * @return the number of files of that format read.
+     */
+    public long getTagReadingCount(String format) {
+        Times times = formats.get(getKey(format));
+        return times == null ? 0 : times.count.get();
+    }
+
+    /**
+     * @return the total size of the files opened.
+     */
+    public long getFileBytes() {
+        return fileBytes.get();
+    }
+
+    /**
+     * @return the number of files opened.
+     */
+    public long getFilesTouched() {
+        return filesTouched.get();
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder out = new StringBuilder();
+        out.append("wall ").append(millis(getWallTime()))
+           .append(" ms, cpu ").append(millis(getCpuTime()))
+           .append(" ms, files ").append(getFilesTouched())
+           .append(", file bytes ").append(getFileBytes());
+
+        for (Phase phase : Phase.values()) {
+            out.append("; ").append(phase.name().toLowerCase())
+               .append(" ").append(millis(getWallTime(phase)))
+               .append("/").append(millis(getCpuTime(phase))).append(" ms");
+        }
+        for (Map.Entry<String, Times> entry : new TreeMap<>(formats).entrySet()) {
+            out.append("; ").append(entry.getKey())
+               .append(" ").append(millis(entry.getValue().wall.get()))
+               .append("/").append(millis(entry.getValue().cpu.get())).append(" ms");
+        }
+        return out.toString();
+    }
+
+    private Times getFormatTimes(String key) {
+
+        Times times = formats.get(key);
+        if (times == null) {
+            times = new Times();
+            Times previous = formats.putIfAbsent(key, times);
+            if (previous != null) {
+                times = previous;
+            }
+        }
+        return times;
+    }
+
+    private static String getKey(String format) {
+        return format == null ? "" : format.toLowerCase();
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000L;
+    }
+
+    private static long cpuTime() {
+
+        if (!CPU_TIME) {
+            return 0;
+        }
+        long out = THREADS.getCurrentThreadCpuTime();
+        return out < 0 ? 0 : out;
+    }
+
+    private static final class Times {
+
+        private final AtomicLong wall = new AtomicLong();
+        private final AtomicLong cpu = new AtomicLong();
+        private final AtomicLong count = new AtomicLong();
+
+        private void add(long wallTime, long cpuTime) {
+            wall.addAndGet(wallTime);
+            cpu.addAndGet(cpuTime);
+            count.incrementAndGet();
+        }
+
+        private void add(Times other) {
+            wall.addAndGet(other.wall.get());
+            cpu.addAndGet(other.cpu.get());
+            count.addAndGet(other.count.get());
+        }
+    }
+
+    /**
+     * A running phase. While a nested timer runs on the same thread, the
+     * outer one is paused.
+     */
+    public static final class Timer implements AutoCloseable {
+
+        private final Times phase;
+        private final Times format;
+        private final Timer parent;
+
+        private long wallStart;
+        private long cpuStart;
+        private long wall;
+        private long cpu;
+        private boolean closed;
+
+        private Timer(Times phase, Times format) {
+
+            this.phase = phase;
+            this.format = format;
+            this.parent = CURRENT.get();
+
+            if (parent != null) {
+                parent.pause();
+            }
+            CURRENT.set(this);
+            resume();
+        }
+
+        private void pause() {
+            wall += System.nanoTime() - wallStart;
+            cpu += cpuTime() - cpuStart;
+        }
+
+        private void resume() {
+            wallStart = System.nanoTime();
+            cpuStart = cpuTime();
+        }
+
+        /**
+         * Stop the timer and charge the time to its phase.
+         */
+        @Override
+        public void close() {
+
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pause();
+
+            phase.add(wall, cpu);
+            if (format != null) {
+                format.add(wall, cpu);
+            }
+
+            if (parent == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(parent);
+                parent.resume();
+            }
+        }
+    }
+}
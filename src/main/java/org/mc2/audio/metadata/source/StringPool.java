@@ -0,0 +1,177 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of strings, so that equal keys and values read from different
+ * sources (artists, genres, composers, source paths...) are kept in memory
+ * only once.
+ *
+ * Unlike String.intern() the pool is scoped: it lives as long as the scan or
+ * the library session it has been created for and could be dropped with it.
+ * Strings longer than maxLength (lyrics, comments) are rarely shared and are
+ * not pooled.
+ *
+ * The pool could be used by more threads at the same time.
+ *
+ * @author marco
+ */
+public class StringPool {
+
+    public static final int DEFAULT_MAX_LENGTH = 256;
+
+    /** Estimated size of a String object without its characters. */
+    private static final int STRING_OVERHEAD = 40;
+
+    private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+    private final int maxLength;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    /**
+     * Create a pool for strings up to DEFAULT_MAX_LENGTH characters.
+     */
+    public StringPool() {
+        this(DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param maxLength longer strings are not pooled.
+     */
+    public StringPool(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @param value the string, could be null.
+     * @return the pooled string equal to value.
+     */
+    public String intern(String value) {
+
+        if (value == null || value.length() > maxLength) {
+            return value;
+        }
+        lookups.incrementAndGet();
+
+        String pooled = pool.putIfAbsent(value, value);
+        if (pooled == null) {
+            return value;
+        }
+        hits.incrementAndGet();
+        if (pooled != value) {
+            savedBytes.addAndGet(STRING_OVERHEAD + 2L * value.length());
+        }
+        return pooled;
+    }
+
+    /**
+     * @param values the strings, could be null.
+     * @return a new list with the pooled strings, null if values is null.
+     */
+    public ArrayList<String> intern(List<String> values) {
+
+        if (values == null) {
+            return null;
+        }
+        ArrayList<String> out = new ArrayList<>(values.size());
+        for (String value : values) {
+            out.add(intern(value));
+        }
+        return out;
+    }
+
+    /**
+     * @param pool the pool, could be null.
+     * @param value the string.
+     * @return the pooled string, value itself if there is no pool.
+     */
+    public static String intern(StringPool pool, String value) {
+        return pool == null ? value : pool.intern(value);
+    }
+
+    /**
+     * @return the number of distinct strings in the pool.
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * @return the number of strings looked up.
+     */
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    /**
+     * @return the number of strings found already in the pool.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return hits over lookups, 0 if nothing has been looked up.
+     */
+    public double getHitRate() {
+
+        long count = lookups.get();
+        return count == 0 ? 0 : (double) hits.get() / count;
+    }
+
+    /**
+     * @return an estimate of the memory saved, in bytes: the size of the
+     * duplicated strings replaced by the pooled ones.
+     */
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    /**
+     * Empty the pool and reset the statistics.
+     */
+    public void clear() {
+        pool.clear();
+        lookups.set(0);
+        hits.set(0);
+        savedBytes.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "strings " + size()
+             + ", lookups " + getLookups()
+             + ", hits " + getHits()
+             + String.format(" (%.1f%%)", getHitRate() * 100)
+             + ", saved " + getSavedBytes() / 1024 + " KB";
+    }
+}
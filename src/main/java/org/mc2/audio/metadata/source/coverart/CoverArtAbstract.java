@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.UUID;
 import org.mc2.audio.metadata.API.CoverArt;
+import org.mc2.audio.metadata.source.ScanStatistics;
 import org.mc2.util.miscellaneous.ImageHandler;
 
 /**
@@ -57,6 +58,8 @@ public abstract class CoverArtAbstract implements CoverArt {
     private byte[] thumbnail150Data; //150
     private byte[] thumbnail250Data; //250
     
+    private ScanStatistics statistics;
+    
     public CoverArtAbstract(){
     
         this.id=UUID.randomUUID().toString();
@@ -130,7 +133,7 @@ public abstract class CoverArtAbstract implements CoverArt {
         }
         
         if (this.image == null){
-            this.image = ImageHandler.resizeMantainProps(this.getOriginalSizeImage(),500,500);
+            this.image = resize(500,500);
         } 
         
         return  this.image;
@@ -184,7 +187,7 @@ public abstract class CoverArtAbstract implements CoverArt {
         }
         
         if (this.thumbnail250 == null){
-            this.thumbnail250 = ImageHandler.resizeMantainProps(this.getOriginalSizeImage(),250,250);
+            this.thumbnail250 = resize(250,250);
         } 
         return  this.thumbnail250;
     }
@@ -223,7 +226,7 @@ public abstract class CoverArtAbstract implements CoverArt {
         }
         
         if (this.thumbnail150 == null){
-            this.thumbnail150 = ImageHandler.resizeMantainProps(this.getOriginalSizeImage(),150,150);
+            this.thumbnail150 = resize(150,150);
         } 
         return  this.thumbnail150;
     }
@@ -287,5 +290,24 @@ public abstract class CoverArtAbstract implements CoverArt {
     protected void setThumbnail250Data(byte[] thumbnail250Data) {
         this.thumbnail250Data = thumbnail250Data;
     }
+
+    /**
+     * Charge the time spent resizing the image to the statistics of a scan,
+     * also when resized after the scan.
+     * @param statistics the statistics, could be null.
+     */
+    public void setStatistics(ScanStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    private BufferedImage resize(int width, int height){
+        
+        if (statistics == null){
+            return ImageHandler.resizeMantainProps(this.getOriginalSizeImage(),width,height);
+        }
+        try (ScanStatistics.Timer timer = statistics.start(ScanStatistics.Phase.ARTWORK)){
+            return ImageHandler.resizeMantainProps(this.getOriginalSizeImage(),width,height);
+        }
+    }
    
 }
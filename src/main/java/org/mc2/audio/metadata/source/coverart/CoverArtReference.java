@@ -0,0 +1,263 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source.coverart;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.UUID;
+import org.mc2.audio.metadata.API.CoverArt;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileFormatException;
+import org.mc2.audio.metadata.source.tags.file.AudioFile;
+import org.mc2.util.miscellaneous.ImageHandler;
+
+/**
+ * A cover art known only by where it comes from: an image file or the
+ * picture at a given index in an audio file tag.
+ *
+ * Descriptive properties are available at once, while the image is loaded
+ * from its source only on the first request for image data.
+ *
+ * @author marco
+ */
+public class CoverArtReference implements CoverArt {
+
+    private final String id;
+    private final String source;
+    private final File file;
+    private final Integer index;
+    private final String url;
+    private final String type;
+    private final String comment;
+
+    private CoverArt coverArt;
+
+    public CoverArtReference(String source, File file, Integer index, String url, String type, String comment) {
+
+        this.id = UUID.randomUUID().toString();
+        this.source = source;
+        this.file = file;
+        this.index = index;
+        this.url = url;
+        this.type = type;
+        this.comment = comment;
+    }
+
+    /**
+     * Build a reference to an existing cover art.
+     * @param coverArt the cover art.
+     * @return the reference.
+     */
+    public static CoverArtReference of(CoverArt coverArt) {
+
+        return new CoverArtReference(coverArt.getSource(),
+                                     coverArt.getFile(),
+                                     coverArt.getIndex(),
+                                     coverArt.getUrl(),
+                                     coverArt.getType(),
+                                     coverArt.getComment());
+    }
+
+    private synchronized CoverArt getCoverArt() {
+
+        if (coverArt == null) {
+            coverArt = load();
+        }
+        return coverArt;
+    }
+
+    private CoverArt load() {
+
+        if (SOURCE_IMAGE_FILE.equals(source) && file != null) {
+
+            return new FileCoverArt(file);
+        }
+        if (SOURCE_EMBEDDED_FILE.equals(source) && file != null && index != null) {
+
+            try {
+                ArrayList<CoverArt> artworks = AudioFile.get(file).getEmbeddedArtworks();
+                if (index >= 0 && index < artworks.size()) {
+                    return artworks.get(index);
+                }
+            } catch (InvalidAudioFileException | InvalidAudioFileFormatException ex) {
+                // the file changed or has gone, handled as a blank image.
+            }
+        }
+        return new BlankCoverArt();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public Integer getIndex() {
+        return index;
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public String getComment() {
+        return comment;
+    }
+
+    @Override
+    public BufferedImage getOriginalSizeImage() {
+        return getCoverArt().getOriginalSizeImage();
+    }
+
+    @Override
+    public BufferedImage getImage() {
+        return getCoverArt().getImage();
+    }
+
+    @Override
+    public BufferedImage getThumbnail150() {
+        return getCoverArt().getThumbnail150();
+    }
+
+    @Override
+    public BufferedImage getThumbnail250() {
+        return getCoverArt().getThumbnail250();
+    }
+
+    @Override
+    public BufferedImage getThumbnail500() {
+        return getCoverArt().getThumbnail500();
+    }
+
+    @Override
+    public byte[] getOriginalSizeImageData() {
+        return getCoverArt().getOriginalSizeImageData();
+    }
+
+    @Override
+    public byte[] getImageData() {
+        return getCoverArt().getImageData();
+    }
+
+    @Override
+    public byte[] getThumbnail150Data() {
+        return getCoverArt().getThumbnail150Data();
+    }
+
+    @Override
+    public byte[] getThumbnail250Data() {
+        return getCoverArt().getThumbnail250Data();
+    }
+
+    @Override
+    public byte[] getThumbnail500Data() {
+        return getCoverArt().getThumbnail500Data();
+    }
+
+    @Override
+    public String getOriginalSizeImageUrl() {
+        return getCoverArt().getOriginalSizeImageUrl();
+    }
+
+    @Override
+    public String getImageUrl() {
+        return getCoverArt().getImageUrl();
+    }
+
+    @Override
+    public String getThumbnail150Url() {
+        return getCoverArt().getThumbnail150Url();
+    }
+
+    @Override
+    public String getThumbnail250Url() {
+        return getCoverArt().getThumbnail250Url();
+    }
+
+    @Override
+    public String getThumbnail500Url() {
+        return getCoverArt().getThumbnail500Url();
+    }
+
+    /**
+     * Used when the source could not be read anymore.
+     */
+    private class BlankCoverArt extends CoverArtAbstract {
+
+        BlankCoverArt() {
+            super();
+            setOriginalSizeImage(ImageHandler.BLANKIMAGE);
+            setOriginalSizeImageData(ImageHandler.EMPTY);
+        }
+
+        @Override
+        public String getSource() {
+            return source;
+        }
+
+        @Override
+        public String getUrl() {
+            return url;
+        }
+
+        @Override
+        public File getFile() {
+            return file;
+        }
+
+        @Override
+        public Integer getIndex() {
+            return index;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public String getComment() {
+            return comment;
+        }
+    }
+}
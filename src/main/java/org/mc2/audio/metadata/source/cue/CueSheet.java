@@ -24,12 +24,16 @@ package org.mc2.audio.metadata.source.cue;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 //import jwbroek.cuelib.FileData;
 import jwbroek.cuelib.LineOfInput;
 import org.jaudiotagger.tag.FieldKey;
 import org.mc2.audio.metadata.API.Metadata;
 import org.mc2.audio.metadata.source.MetadataSource;
+import org.mc2.audio.metadata.source.ScanContext;
 import org.mc2.audio.metadata.source.tags.file.AudioFile;
 /**
  *
@@ -42,22 +46,36 @@ public class CueSheet extends jwbroek.cuelib.CueSheet implements MetadataSource{
     * LineOfInput that compose this CueSheet.
     */
     private List<LineOfInput> lines = new ArrayList<>();
+    /**
+    * FileData of this CueSheet, the same of getFileData() already cast.
+    */
+    private final List<FileData> fileDataList = new ArrayList<>();
+    private final List<FileData> fileDataView = Collections.unmodifiableList(fileDataList);
   
     private Charset encoding = StandardCharsets.ISO_8859_1;
     private final AlbumSection section;
+    private ScanContext scanContext;
+    private AudioFile audioFile;
+    private boolean audioFileResolved;
     
     public CueSheet(){
         super();
         this.section = new AlbumSection(this);
     }
+    /**
+     * @return the files of the sheet, in order. The list can't be modified,
+     * use addFileData.
+     */
     public List<FileData> getFileDataList(){
-    
-        List<FileData> out = new ArrayList<>();
-        for (jwbroek.cuelib.FileData fileData: super.getFileData()){
-            
-            out.add((FileData) fileData);
-        }
-        return out;
+        return fileDataView;
+    }
+    /**
+     * Add a file to the sheet.
+     * @param fileData the file to add.
+     */
+    public void addFileData(FileData fileData){
+        super.getFileData().add(fileData);
+        fileDataList.add(fileData);
     }
     /**
      * @return the section
@@ -73,7 +91,7 @@ public class CueSheet extends jwbroek.cuelib.CueSheet implements MetadataSource{
     @Override
     public ArrayList<Metadata> getMetadata(){
         
-        ArrayList<Metadata> out =  getAlbumSection().getMetadata();
+        ArrayList<Metadata> out =  new ArrayList<>(getAlbumSection().getMetadata());
         
         if (getAddtionalMetadataFromFile() != null){
             out.addAll(getAddtionalMetadataFromFile());
@@ -89,8 +107,21 @@ public class CueSheet extends jwbroek.cuelib.CueSheet implements MetadataSource{
         return null;
     }
     
+    /**
+     * The data file holding the whole album, if any. Resolved once the sheet
+     * has been parsed.
+     * @return the audio file or null.
+     */
     public AudioFile getAudiofile(){
         
+        if (!audioFileResolved){
+            return findAudiofile();
+        }
+        return audioFile;
+    }
+    
+    private AudioFile findAudiofile(){
+        
         if (getFileDataList().size()== 1){
             
             AudioFile audioFile = getFileDataList().get(0).getAudiofile();
@@ -127,6 +158,20 @@ public class CueSheet extends jwbroek.cuelib.CueSheet implements MetadataSource{
         this.getAlbumSection().setSourceId(source);
     }
 
+    /**
+     * @return the scan context the data files are read from, could be null.
+     */
+    public ScanContext getScanContext() {
+        return scanContext;
+    }
+
+    /**
+     * @param scanContext the scan context the data files are read from.
+     */
+    public void setScanContext(ScanContext scanContext) {
+        this.scanContext = scanContext;
+    }
+
     /**
      * @return the encoding
      */
@@ -159,6 +204,8 @@ public class CueSheet extends jwbroek.cuelib.CueSheet implements MetadataSource{
     
     protected void afterParsing(){
         
+        audioFile = findAudiofile();
+        audioFileResolved = true;
         adjustLength();
         checkAudiofiles();
         
@@ -183,56 +230,59 @@ public class CueSheet extends jwbroek.cuelib.CueSheet implements MetadataSource{
             }
         }
     }
+    /*
+     * Offsets and lengths of files, tracks and indices, in one pass over the
+     * indices of each file.
+     */
     private void adjustLength() {
         
         int offset = 0;
         
-        for (FileData fileData : this.getFileDataList()){
+        // Index lengths by track number: tracks with the same number in a file
+        // get the length of all of their indices.
+        Map<Integer, Integer> trackLengths = new HashMap<>();
+        
+        for (FileData fileData : fileDataList){
             
             fileData.setOffset(offset);
+            trackLengths.clear();
             
             TrackIndex previousIndex = null;
             
             for (TrackData track : fileData.getTrackDataList()) {
                 
-                int trackStart = fileData.getOffset()+track.getTrackIndexList().get(0).getPosition().getTotalFrames();
-                track.setOffset(trackStart);
+                List<TrackIndex> indices = track.getTrackIndexList();
                 
-                for (TrackIndex index : track.getTrackIndexList()) {
-                    
-                    int IndexOffset = index.getPosition().getTotalFrames();
-                    
-                    int previousIndexLength=0;
+                track.setOffset(offset+indices.get(0).getOffset());
+                
+                for (TrackIndex index : indices) {
                     
                     if (previousIndex != null){
-                        previousIndexLength = IndexOffset-previousIndex.getOffset();
-                        previousIndex.setLength(previousIndexLength);
-                        
-                        addIndexLengthToTrack(previousIndex, fileData.getTrackDataList());
+                        setIndexLength(previousIndex, index.getOffset()-previousIndex.getOffset(), trackLengths);
                     }
                     previousIndex = index;
                 }
-               
             }
             
-            if (previousIndex != null){
-                int len = fileData.getLength()-previousIndex.getOffset();
-                previousIndex.setLength(len);
-                addIndexLengthToTrack(previousIndex, fileData.getTrackDataList());
+            // The length of the last index is unknown without the data file length.
+            if (previousIndex != null && fileData.getLength() > 0){
+                setIndexLength(previousIndex, fileData.getLength()-previousIndex.getOffset(), trackLengths);
+            }
+            
+            for (TrackData track : fileData.getTrackDataList()) {
+                
+                Integer length = trackLengths.get(track.getNumber());
+                if (length != null){
+                    track.setLength(track.getLength()+length);
+                }
             }
             
             offset=offset+fileData.getLength();   
         }
     }
-    private void addIndexLengthToTrack(TrackIndex index,List<TrackData> trackList){
+    private static void setIndexLength(TrackIndex index, int length, Map<Integer, Integer> trackLengths){
         
-        int tracknum= index.getTrackData().getNumber();
-        
-        for (TrackData track : trackList) {
-            
-            if (track.getNumber()==tracknum) {    
-                track.setLength(track.getLength()+index.getLength());
-            }
-        }
+        index.setLength(length);
+        trackLengths.merge(index.getTrackData().getNumber(), length, Integer::sum);
     }
 }
\ No newline at end of file
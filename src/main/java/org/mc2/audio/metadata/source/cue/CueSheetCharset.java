@@ -0,0 +1,227 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *               2017 Marco Curti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source.cue;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Detects the encoding of a cue sheet from its bytes, read at once.
+ *
+ * In order: a byte order mark, UTF-16 with no BOM (cue commands are ASCII,
+ * so every other byte is zero), pure ASCII, valid UTF-8. Anything else is
+ * taken as windows-1252, as written by most of the ripping software.
+ *
+ * Bytes are only scanned, the sheet is decoded once by decode().
+ *
+ * @author marco
+ */
+public final class CueSheetCharset {
+
+    /**
+     * The encoding of sheets that are not ASCII, UTF-8 or UTF-16.
+     */
+    public static final Charset FALLBACK = Charset.forName("windows-1252");
+
+    /** Bytes sampled looking for UTF-16 with no BOM. */
+    private static final int UTF16_SAMPLE = 4096;
+
+    // results of scanUTF8().
+    private static final int INVALID = 0;
+    private static final int ASCII = 1;
+    private static final int UTF8 = 2;
+
+    private final Charset charset;
+    private final int bomLength;
+
+    private CueSheetCharset(Charset charset, int bomLength) {
+        this.charset = charset;
+        this.bomLength = bomLength;
+    }
+
+    /**
+     * Detect the encoding of a cue sheet.
+     * @param data the whole cue sheet.
+     * @return the detected encoding.
+     */
+    public static CueSheetCharset detect(byte[] data) {
+
+        int length = data.length;
+
+        if (length >= 3 && (data[0] & 0xFF) == 0xEF && (data[1] & 0xFF) == 0xBB && (data[2] & 0xFF) == 0xBF) {
+            return new CueSheetCharset(StandardCharsets.UTF_8, 3);
+        }
+        if (length >= 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xFE) {
+            return new CueSheetCharset(StandardCharsets.UTF_16LE, 2);
+        }
+        if (length >= 2 && (data[0] & 0xFF) == 0xFE && (data[1] & 0xFF) == 0xFF) {
+            return new CueSheetCharset(StandardCharsets.UTF_16BE, 2);
+        }
+
+        Charset utf16 = detectUTF16(data);
+        if (utf16 != null) {
+            return new CueSheetCharset(utf16, 0);
+        }
+
+        switch (scanUTF8(data)) {
+            case ASCII:
+                return new CueSheetCharset(StandardCharsets.US_ASCII, 0);
+            case UTF8:
+                return new CueSheetCharset(StandardCharsets.UTF_8, 0);
+            default:
+                return new CueSheetCharset(FALLBACK, 0);
+        }
+    }
+
+    /**
+     * @return the encoding of the sheet.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return the length of the byte order mark, 0 if none.
+     */
+    public int getBOMLength() {
+        return bomLength;
+    }
+
+    /**
+     * Decode the sheet, skipping the byte order mark.
+     * @param data the whole cue sheet, as given to detect().
+     * @return the characters of the sheet.
+     */
+    public CharBuffer decode(byte[] data) {
+        return charset.decode(ByteBuffer.wrap(data, bomLength, data.length - bomLength));
+    }
+
+    @Override
+    public String toString() {
+        return charset.name() + (bomLength > 0 ? " with BOM" : "");
+    }
+
+    /* UTF-16 with no BOM: zero bytes on one side of most pairs, and almost
+     * none on the other.
+     */
+    private static Charset detectUTF16(byte[] data) {
+
+        int pairs = Math.min(data.length, UTF16_SAMPLE) / 2;
+        if (pairs < 2 || data.length % 2 != 0) {
+            return null;
+        }
+
+        int evenZeros = 0;
+        int oddZeros = 0;
+
+        for (int i = 0; i < pairs * 2; i += 2) {
+            if (data[i] == 0) {
+                evenZeros++;
+            }
+            if (data[i + 1] == 0) {
+                oddZeros++;
+            }
+        }
+
+        if (oddZeros * 2 >= pairs && evenZeros * 16 < pairs) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (evenZeros * 2 >= pairs && oddZeros * 16 < pairs) {
+            return StandardCharsets.UTF_16BE;
+        }
+        return null;
+    }
+
+    /* Validate UTF-8 as RFC 3629: no overlong forms, no surrogates, nothing
+     * above U+10FFFF, no truncated sequences.
+     */
+    private static int scanUTF8(byte[] data) {
+
+        int length = data.length;
+        int out = ASCII;
+        int i = 0;
+
+        while (i < length) {
+
+            // ASCII runs 16 bytes at a time, a plain loop the JIT could vectorize.
+            while (i + 16 <= length) {
+                int bits = 0;
+                for (int j = i; j < i + 16; j++) {
+                    bits |= data[j];
+                }
+                if ((bits & 0x80) != 0) {
+                    break;
+                }
+                i += 16;
+            }
+            if (i == length) {
+                break;
+            }
+
+            int lead = data[i] & 0xFF;
+            if (lead < 0x80) {
+                i++;
+                continue;
+            }
+
+            int continuation;
+            int min = 0x80;
+            int max = 0xBF;
+
+            if (lead >= 0xC2 && lead <= 0xDF) {
+                continuation = 1;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                continuation = 2;
+                if (lead == 0xE0) {
+                    min = 0xA0;
+                } else if (lead == 0xED) {
+                    max = 0x9F;
+                }
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                continuation = 3;
+                if (lead == 0xF0) {
+                    min = 0x90;
+                } else if (lead == 0xF4) {
+                    max = 0x8F;
+                }
+            } else {
+                return INVALID;
+            }
+
+            if (i + continuation >= length) {
+                return INVALID;
+            }
+            int second = data[i + 1] & 0xFF;
+            if (second < min || second > max) {
+                return INVALID;
+            }
+            for (int j = i + 2; j <= i + continuation; j++) {
+                if ((data[j] & 0xC0) != 0x80) {
+                    return INVALID;
+                }
+            }
+            out = UTF8;
+            i += continuation + 1;
+        }
+        return out;
+    }
+}
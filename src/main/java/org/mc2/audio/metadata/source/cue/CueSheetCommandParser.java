@@ -19,14 +19,14 @@
  */
 package org.mc2.audio.metadata.source.cue;
 
-import java.io.BufferedInputStream;
+import java.io.CharArrayReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.LineNumberReader;
-import java.nio.charset.StandardCharsets;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
@@ -39,7 +39,9 @@ import jwbroek.cuelib.Index;
 import jwbroek.cuelib.LineOfInput;
 import jwbroek.cuelib.Position;
 //import jwbroek.cuelib.TrackData;
-import org.apache.commons.io.input.BOMInputStream;
+import org.apache.commons.io.IOUtils;
+import org.mc2.audio.metadata.source.ScanContext;
+import org.mc2.audio.metadata.source.StringPool;
 import org.mc2.audio.metadata.source.cue.CommandKeys.COMMAND_KEY;
 
 /**
@@ -61,7 +63,7 @@ final public class CueSheetCommandParser {
     /**
     * A set of all file types that are allowed by the cue sheet spec.
     */
-    private final static Set<String> COMPLIANT_FILE_TYPES = new TreeSet<String> ( 
+    final static Set<String> COMPLIANT_FILE_TYPES = new TreeSet<String> ( 
             Arrays.asList ( new String[]  { "BINARY"
                                             , "MOTOROLA"
                                             , "AIFF"
@@ -72,7 +74,7 @@ final public class CueSheetCommandParser {
     /**
    * A set of all data types that are allowed by the cue sheet spec.
    */
-    private final static Set<String> COMPLIANT_DATA_TYPES = new TreeSet<String> ( 
+    final static Set<String> COMPLIANT_DATA_TYPES = new TreeSet<String> ( 
             Arrays.asList ( new String[]  { "AUDIO"
                                             , "CDG"
                                             , "MODE1/2048"
@@ -85,24 +87,24 @@ final public class CueSheetCommandParser {
     
     
     // Constants for warning texts. Quick and dirty. Should really be a ResourceBundle.
-    private final static String WARNING_EMPTY_LINES             = "Empty lines not allowed. Will ignore.";
-    private final static String WARNING_UNPARSEABLE_INPUT       = "Unparseable line. Will ignore.";
-    private final static String WARNING_NOT_ALLOWED_HERE        = "Command is not allowed here. Will ignore.";
-    private final static String WARNING_NO_FILE_SPECIFIED       = "Datum must appear in FILE, but no FILE specified.";
-    private final static String WARNING_NO_TRACK_SPECIFIED      = "Datum must appear in TRACK, but no TRACK specified.";
-    private final static String WARNING_WRONG_NUMBER_OF_DIGITS  = "Wrong number of digits in number.";
-    private final static String WARNING_NONCOMPLIANT_DATA_TYPE  = "Noncompliant data type specified.";
-    private final static String WARNING_INVALID_TRACK_NUMBER    = "Invalid track number. First number must be 1; all next ones sequential.";
-    private final static String WARNING_TOKEN_NOT_UPPERCASE     = "Token has wrong case. Uppercase was expected.";
-    private final static String WARNING_NONCOMPLIANT_FILE_TYPE  = "Noncompliant file type.";
-    private final static String WARNING_FILE_IN_WRONG_PLACE     = "A FILE datum must come before everything else except REM and CATALOG.";
-    private final static String WARNING_INDEX_AFTER_POSTGAP     = "A POSTGAP datum must come after all INDEX data of a TRACK.";
-    private final static String WARNING_INVALID_INDEX_NUMBER    = "Invalid index number. First number must be 0 or 1; all next ones consequential.";
-    private final static String WARNING_INVALID_FIRST_POSITION  = "Invalid position. First index should have position 00:00:00";
-    private final static String WARNING_INVALID_SECONDS_VALUE   = "Position has invalid seconds value. Should be 00-59.";
-    private final static String WARNING_INVALID_FRAMES_VALUE    = "Position has invalid frame value. Should be 00-74.";
-    private final static String WARNING_DATUM_APPEARS_TOO_OFTEN = "Datum appears too often.";
-    private final static String WARNING_PREGAP_IN_WRONG_PLACE   = "A PREGAP datum must come after TRACK, but before any INDEX of that TRACK.";
+    final static String WARNING_EMPTY_LINES             = "Empty lines not allowed. Will ignore.";
+    final static String WARNING_UNPARSEABLE_INPUT       = "Unparseable line. Will ignore.";
+    final static String WARNING_NOT_ALLOWED_HERE        = "Command is not allowed here. Will ignore.";
+    final static String WARNING_NO_FILE_SPECIFIED       = "Datum must appear in FILE, but no FILE specified.";
+    final static String WARNING_NO_TRACK_SPECIFIED      = "Datum must appear in TRACK, but no TRACK specified.";
+    final static String WARNING_WRONG_NUMBER_OF_DIGITS  = "Wrong number of digits in number.";
+    final static String WARNING_NONCOMPLIANT_DATA_TYPE  = "Noncompliant data type specified.";
+    final static String WARNING_INVALID_TRACK_NUMBER    = "Invalid track number. First number must be 1; all next ones sequential.";
+    final static String WARNING_TOKEN_NOT_UPPERCASE     = "Token has wrong case. Uppercase was expected.";
+    final static String WARNING_NONCOMPLIANT_FILE_TYPE  = "Noncompliant file type.";
+    final static String WARNING_FILE_IN_WRONG_PLACE     = "A FILE datum must come before everything else except REM and CATALOG.";
+    final static String WARNING_INDEX_AFTER_POSTGAP     = "A POSTGAP datum must come after all INDEX data of a TRACK.";
+    final static String WARNING_INVALID_INDEX_NUMBER    = "Invalid index number. First number must be 0 or 1; all next ones consequential.";
+    final static String WARNING_INVALID_FIRST_POSITION  = "Invalid position. First index should have position 00:00:00";
+    final static String WARNING_INVALID_SECONDS_VALUE   = "Position has invalid seconds value. Should be 00-59.";
+    final static String WARNING_INVALID_FRAMES_VALUE    = "Position has invalid frame value. Should be 00-74.";
+    final static String WARNING_DATUM_APPEARS_TOO_OFTEN = "Datum appears too often.";
+    final static String WARNING_PREGAP_IN_WRONG_PLACE   = "A PREGAP datum must come after TRACK, but before any INDEX of that TRACK.";
 
     private final static Pattern PATTERN_FILE                   = Pattern.compile
         ("^"+COMMAND_KEY.FILE+"\\s+((?:\"[^\"]*\")|\\S+)\\s+(\\S+)\\s*$", Pattern.CASE_INSENSITIVE);
@@ -140,37 +142,57 @@ final public class CueSheetCommandParser {
     * @throws IOException
     */
     public static CueSheet parse(final InputStream inputStream, String source) throws IOException {
+        return parse(inputStream, source, null);
+    }
+
+    /**
+    * Parse a cue sheet that will be read from the InputStream.
+    * 
+    * The sheet is read at once, decoded with the encoding detected by 
+    * {@link CueSheetCharset} and parsed by {@link CueSheetTokenizer}, lines 
+    * are not retained when the scan builds detached albums.
+    * 
+    * @param inputStream An {@link java.io.InputStream} that produces a cue sheet. The stream will be closed
+    * afterward.
+    * @param source An identifier for the source.
+    * @param scanContext The scan the data files are read in, could be null.
+    * @return A representation of the cue sheet.
+    * @throws IOException
+    */
+    public static CueSheet parse(final InputStream inputStream, String source, ScanContext scanContext) throws IOException {
         logger.entering(CueSheetCommandParser.class.getCanonicalName(), "parse(InputStream)", inputStream);
 
-        // use a BufferedInputStream becouse we need do mark BEFORE testing
-        // for the BOM and then reset if the bom is not there. 
+        final CueSheet result = parse(read(inputStream), source, scanContext);
 
-        InputStream buffered = new BufferedInputStream(inputStream);
-        buffered.markSupported();
-        buffered.mark(0);
+        logger.exiting(CueSheetCommandParser.class.getCanonicalName(), "parse(InputStream)", result);
+
+        return result;
+    }
 
-        // Some cue sheets have BOM for encoding, we should test and remove it before 
-        // parse (other than use correct encoding...).
+    /**
+    * Parse a cue sheet that will be read from the InputStream, line by line with 
+    * the patterns of this class. Slower than {@link #parse(InputStream, String, ScanContext)}
+    * but kept for compatibility, and to validate the tokenizer.
+    * @param inputStream An {@link java.io.InputStream} that produces a cue sheet. The stream will be closed
+    * afterward.
+    * @param source An identifier for the source.
+    * @param scanContext The scan the data files are read in, could be null.
+    * @return A representation of the cue sheet.
+    * @throws IOException
+    */
+    public static CueSheet parseWithPatterns(final InputStream inputStream, String source, ScanContext scanContext) throws IOException {
+        logger.entering(CueSheetCommandParser.class.getCanonicalName(), "parseWithPatterns(InputStream)", inputStream);
 
-        BOMInputStream bOMInputStream = new BOMInputStream(buffered);
+        // Decoded as parse() does, so that the results could be compared.
+        byte[] bytes = read(inputStream);
+        CueSheetCharset charset = CueSheetCharset.detect(bytes);
+        CharBuffer chars = charset.decode(bytes);
 
-        final CueSheet result;
-        
-        if (bOMInputStream.hasBOM()) {
-            // has a UTF-8 BOM
-            result = CueSheetCommandParser.parse(new LineNumberReader(new InputStreamReader(buffered,"UTF8")), source);
-            result.setEncoding(StandardCharsets.UTF_8);
-            
-            
-        } else{
-            buffered.reset();
-            result = CueSheetCommandParser.parse(new LineNumberReader(new InputStreamReader(buffered)), source);
-            result.setEncoding(StandardCharsets.ISO_8859_1);
-        }
-        //result.setSourceId(source);   
-        //final CueSheet result = CueParser.parse(new LineNumberReader(new InputStreamReader(inputStream)));
+        final CueSheet result = CueSheetCommandParser.parse(new LineNumberReader(new CharArrayReader(chars.array(), 
+                                           chars.arrayOffset() + chars.position(), chars.remaining())), source, scanContext);
+        result.setEncoding(charset.getCharset());
 
-        logger.exiting(CueSheetCommandParser.class.getCanonicalName(), "parse(InputStream)", result);
+        logger.exiting(CueSheetCommandParser.class.getCanonicalName(), "parseWithPatterns(InputStream)", result);
 
         return result;
     }
@@ -182,15 +204,53 @@ final public class CueSheetCommandParser {
     * @throws IOException
     */
     public static CueSheet parse(final File file) throws IOException {
+        return parse(file, null);
+    }
+
+    /**
+    * Parse a cue sheet file.
+    * @param file A cue sheet file.
+    * @param scanContext The scan the data files are read in, could be null.
+    * @return A representation of the cue sheet.
+    * @throws IOException
+    */
+    public static CueSheet parse(final File file, ScanContext scanContext) throws IOException {
         logger.entering(CueSheetCommandParser.class.getCanonicalName(), "parse(File)", file);
 
-        InputStream inputStream = new FileInputStream(file);
-        final CueSheet result = parse(inputStream,file.getCanonicalPath());
+        final CueSheet result = parse(Files.readAllBytes(file.toPath()), file.getCanonicalPath(), scanContext);
 
         logger.exiting(CueSheetCommandParser.class.getCanonicalName(), "parse(File)", result);
         return result;
     }
 
+    private static CueSheet parse(final byte[] bytes, String source, ScanContext scanContext) {
+
+        boolean keepLines = scanContext == null || !scanContext.isDetached();
+        return CueSheetTokenizer.parse(bytes, source, scanContext, keepLines);
+    }
+
+    private static byte[] read(final InputStream inputStream) throws IOException {
+
+        try {
+            return IOUtils.toByteArray(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+    * Parse a cue sheet file with the patterns of this class.
+    * @param file A cue sheet file.
+    * @param scanContext The scan the data files are read in, could be null.
+    * @return A representation of the cue sheet.
+    * @throws IOException
+    * @see #parseWithPatterns(InputStream, String, ScanContext)
+    */
+    public static CueSheet parseWithPatterns(final File file, ScanContext scanContext) throws IOException {
+
+        return parseWithPatterns(new FileInputStream(file), file.getCanonicalPath(), scanContext);
+    }
+
     /**
     * Parse a cue sheet.
     * @param reader A reader for the cue sheet. This reader will be closed afterward.
@@ -199,12 +259,25 @@ final public class CueSheetCommandParser {
     * @throws IOException
     */
     public static CueSheet parse(final LineNumberReader reader, String source) throws IOException {
+        return parse(reader, source, null);
+    }
+
+    /**
+    * Parse a cue sheet, line by line with the patterns of this class.
+    * @param reader A reader for the cue sheet. This reader will be closed afterward.
+    * @param source An identifier for the source.
+    * @param scanContext The scan the data files are read in, could be null.
+    * @return A representation of the cue sheet.
+    * @throws IOException
+    */
+    public static CueSheet parse(final LineNumberReader reader, String source, ScanContext scanContext) throws IOException {
         
         logger.entering(CueSheetCommandParser.class.getCanonicalName(), "parse(LineNumberReader)", reader);
         logger.fine("Parsing cue sheet.");
 
         final CueSheet result = new CueSheet();
         result.setSourceId(source);
+        result.setScanContext(scanContext);
 
         try {
             
@@ -360,11 +433,11 @@ final public class CueSheetCommandParser {
               file = file.substring(1, file.length()-1);
             }
 
-            input.getAssociatedSheet().getFileData().add  ( new FileData  ( input
-                                                                          , file
-                                                                          , fileMatcher.group(2).toUpperCase()
-                                                                          )
-                                                          );
+            ((CueSheet)input.getAssociatedSheet()).addFileData( new FileData  ( input
+                                                                              , file
+                                                                              , fileMatcher.group(2).toUpperCase()
+                                                                              )
+                                                              );
 
         }else {
             
@@ -421,7 +494,7 @@ final public class CueSheetCommandParser {
             }
 
             FileData lastFileData = getLastFileData(input);
-            lastFileData.getTrackData().add(new TrackData(lastFileData, trackNumber, dataType,0,0));
+            lastFileData.addTrackData(new TrackData(lastFileData, trackNumber, dataType,0,0));
         }
         else {
           
@@ -662,14 +735,15 @@ final public class CueSheetCommandParser {
     private static FileData getLastFileData(final LineOfInput input) {
         logger.entering(CueSheetCommandParser.class.getCanonicalName(), "getLastFileData(LineOfInput)", input);
 
-        List<jwbroek.cuelib.FileData> fileDataList = input.getAssociatedSheet().getFileData();
+        CueSheet cuesheet = (CueSheet)input.getAssociatedSheet();
+        List<FileData> fileDataList = cuesheet.getFileDataList();
 
         if (fileDataList.isEmpty()) {
-          fileDataList.add(new FileData((CueSheet)input.getAssociatedSheet()));
+          cuesheet.addFileData(new FileData(cuesheet));
           addWarning(input, WARNING_NO_FILE_SPECIFIED);
         }
 
-        FileData result = (FileData)fileDataList.get(fileDataList.size()-1);
+        FileData result = fileDataList.get(fileDataList.size()-1);
         logger.exiting(CueSheetCommandParser.class.getCanonicalName(), "getLastFileData(LineOfInput)", result);
         return result;
     }
@@ -687,12 +761,16 @@ final public class CueSheetCommandParser {
         FileData lastFileData = getLastFileData(input);
         List<TrackData> trackDataList = lastFileData.getTrackDataList();
 
+        TrackData result;
+
+        // A track not added to the file, its data is lost.
         if (trackDataList.isEmpty()) {
-          trackDataList.add(new TrackData(lastFileData));
+          result = new TrackData(lastFileData);
           addWarning(input, WARNING_NO_TRACK_SPECIFIED);
+        } else {
+          result = trackDataList.get(trackDataList.size()-1);
         }
 
-        TrackData result = trackDataList.get(trackDataList.size()-1); 
         logger.exiting(CueSheetCommandParser.class.getCanonicalName(), "getLastTrackData(LineOfInput)", result);
         return result;
     }
@@ -712,21 +790,26 @@ final public class CueSheetCommandParser {
             value = value.substring(remSubKey.length()+1).trim();
         }
         
+        ScanContext scanContext = ((CueSheet) input.getAssociatedSheet()).getScanContext();
+        StringPool stringPool = scanContext == null ? null : scanContext.getStringPool();
+        value = StringPool.intern(stringPool, value);
+        String subKey = StringPool.intern(stringPool, remSubKey);
+        
         if ( isAtAlbumLevel(input)) {
         
             CueSheet cuesheet = (CueSheet) input.getAssociatedSheet();
-             addCommandLine(commandKey, remSubKey, cuesheet, input.getLineNumber(), value);
+             addCommandLine(commandKey, subKey, cuesheet, input.getLineNumber(), value);
 
         } else {
         
             TrackData trackData = getLastTrackData(input);
-            addCommandLine(commandKey, remSubKey, trackData, input.getLineNumber(), value);
+            addCommandLine(commandKey, subKey, trackData, input.getLineNumber(), value);
         }
 
         logger.exiting(CueSheetCommandParser.class.getCanonicalName(), "parseCatalog(command, LineOfInput)");
     }
     
-    private static void addCommandLine(COMMAND_KEY commandKey, String remSubKey,CueSheet cuesheet, int lineNo, String value){
+    static void addCommandLine(COMMAND_KEY commandKey, String remSubKey,CueSheet cuesheet, int lineNo, String value){
 
         for (Command command : cuesheet.getCommands()){
         
@@ -739,7 +822,7 @@ final public class CueSheetCommandParser {
         }
         cuesheet.getCommands().add(new Command(commandKey,remSubKey,lineNo, value)); 
     }
-    private static void addCommandLine(COMMAND_KEY commandKey, String remSubKey,TrackData trackData, int lineNo, String value){
+    static void addCommandLine(COMMAND_KEY commandKey, String remSubKey,TrackData trackData, int lineNo, String value){
 
         for (Command command : trackData.getCommandList()){
         
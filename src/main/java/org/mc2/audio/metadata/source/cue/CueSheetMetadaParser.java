@@ -35,6 +35,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.mc2.audio.metadata.API.Metadata;
 
 import org.mc2.audio.metadata.impl.CueMetadataOrigin;
+import org.mc2.audio.metadata.source.ScanContext;
 import org.mc2.audio.metadata.source.cue.CommandKeys.COMMAND_KEY;
 import org.mc2.audio.metadata.API.MetadataKeys.METADATA_KEY;
 import static org.mc2.audio.metadata.API.MetadataKeys.getAlbumLevelMetadataAlias;
@@ -102,6 +103,17 @@ public class CueSheetMetadaParser {
         return parse(CueSheetCommandParser.parse(file));
     }
     /**
+    * Parse a cue sheet file, reading the data files within a scan.
+    * @param file A cue sheet file.
+    * @param scanContext The scan the data files are read in.
+    * @return A representation of the cue sheet.
+    * @throws IOException
+    */
+    public static CueSheet parse(final File file, ScanContext scanContext) throws IOException {
+        
+        return parse(CueSheetCommandParser.parse(file, scanContext));
+    }
+    /**
     * Parse a cue sheet.
     * @param reader A reader for the cue sheet. This reader will be closed afterward.
     * @param source An identifier for the cuesheet source.
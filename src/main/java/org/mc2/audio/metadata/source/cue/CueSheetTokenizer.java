@@ -0,0 +1,690 @@
+/*
+ * Cuelib library for manipulating cue sheets.
+ * Copyright (C) 2007-2008 Jan-Willem van den Broek
+ *               2017 Marco Curti
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source.cue;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.logging.Logger;
+import jwbroek.cuelib.LineOfInput;
+import jwbroek.cuelib.Position;
+import org.mc2.audio.metadata.source.ScanContext;
+import org.mc2.audio.metadata.source.StringPool;
+import org.mc2.audio.metadata.source.cue.CommandKeys.COMMAND_KEY;
+
+import static org.mc2.audio.metadata.source.cue.CueSheetCommandParser.*;
+
+/**
+ * Hand written tokenizer for cue sheets.
+ *
+ * Parses in a single pass over the characters of the sheet, with no regular
+ * expressions and no String or LineOfInput per line: only values, file names
+ * and lines with warnings are allocated. Raw lines could be retained in the
+ * CueSheet or not.
+ *
+ * The result is the same of the pattern based CueSheetCommandParser, quirks
+ * included, that is still used to validate it. The only difference is a
+ * REM line with nothing else, taken as an empty comment instead of failing.
+ *
+ * @author marco
+ */
+public final class CueSheetTokenizer {
+    /**
+     * Logger for this class.
+    */
+    private final static Logger logger = Logger.getLogger(CueSheetTokenizer.class.getCanonicalName());
+
+    private final static COMMAND_KEY[] COMMAND_KEYS = COMMAND_KEY.values();
+    private final static char BOM = '\uFEFF';
+
+    private final CueSheet cuesheet;
+    private final StringPool stringPool;
+    private final boolean keepLines;
+    private final char[] chars;
+    private final int end;
+
+    // the current line, trimmed.
+    private int start;
+    private int stop;
+    private int lineNumber;
+    private LineOfInput line;
+
+    // the last FILE, the last TRACK in it and the last TRACK of the sheet.
+    private FileData lastFileData;
+    private TrackData lastTrackData;
+    private TrackData lastTrackOfSheet;
+    private boolean fileHasIndices;
+
+    private CueSheetTokenizer(CueSheet cuesheet, char[] chars, int offset, int length, boolean keepLines) {
+
+        ScanContext scanContext = cuesheet.getScanContext();
+
+        this.cuesheet = cuesheet;
+        this.stringPool = scanContext == null ? null : scanContext.getStringPool();
+        this.keepLines = keepLines;
+        this.chars = chars;
+        this.start = offset;
+        this.end = offset + length;
+    }
+
+    /**
+    * Parse a cue sheet.
+    * @param input the characters of the cue sheet, from position to limit.
+    * The buffer is not modified.
+    * @param source An identifier for the source.
+    * @param scanContext The scan the data files are read in, could be null.
+    * @param keepLines if false the lines are not added to the cue sheet.
+    * @return A representation of the cue sheet.
+    */
+    public static CueSheet parse(final CharBuffer input, String source, ScanContext scanContext, boolean keepLines) {
+
+        logger.entering(CueSheetTokenizer.class.getCanonicalName(), "parse(CharBuffer)", source);
+
+        char[] chars;
+        int offset;
+        int length = input.remaining();
+
+        if (input.hasArray()) {
+            chars = input.array();
+            offset = input.arrayOffset() + input.position();
+        } else {
+            chars = new char[length];
+            input.duplicate().get(chars);
+            offset = 0;
+        }
+
+        final CueSheet result = new CueSheet();
+        result.setSourceId(source);
+        result.setScanContext(scanContext);
+
+        try {
+            new CueSheetTokenizer(result, chars, offset, length, keepLines).parse();
+        } finally {
+            result.afterParsing();
+        }
+
+        logger.exiting(CueSheetTokenizer.class.getCanonicalName(), "parse(CharBuffer)", result);
+        return result;
+    }
+
+    /**
+    * Parse a cue sheet, decoding it once.
+    * @param input the bytes of the cue sheet.
+    * @param charset the encoding of the cue sheet, recorded in the result.
+    * @param source An identifier for the source.
+    * @param scanContext The scan the data files are read in, could be null.
+    * @param keepLines if false the lines are not added to the cue sheet.
+    * @return A representation of the cue sheet.
+    */
+    public static CueSheet parse(final byte[] input, Charset charset, String source, ScanContext scanContext, boolean keepLines) {
+
+        CueSheet result = parse(charset.decode(ByteBuffer.wrap(input)), source, scanContext, keepLines);
+        result.setEncoding(charset);
+        return result;
+    }
+
+    /**
+    * Parse a cue sheet, decoding it once with the encoding detected by 
+    * {@link CueSheetCharset}, that is recorded in the result.
+    * @param input the bytes of the cue sheet.
+    * @param source An identifier for the source.
+    * @param scanContext The scan the data files are read in, could be null.
+    * @param keepLines if false the lines are not added to the cue sheet.
+    * @return A representation of the cue sheet.
+    */
+    public static CueSheet parse(final byte[] input, String source, ScanContext scanContext, boolean keepLines) {
+
+        CueSheetCharset charset = CueSheetCharset.detect(input);
+        CueSheet result = parse(charset.decode(input), source, scanContext, keepLines);
+        result.setEncoding(charset.getCharset());
+        return result;
+    }
+
+    private void parse() {
+
+        if (start < end && chars[start] == BOM) {
+            start++;
+        }
+        int position = start;
+
+        while (position < end) {
+
+            int lineEnd = position;
+            while (lineEnd < end && chars[lineEnd] != '\n' && chars[lineEnd] != '\r') {
+                lineEnd++;
+            }
+
+            // as LineNumberReader: \n, \r or \r\n.
+            int next = lineEnd + 1;
+            if (lineEnd < end && chars[lineEnd] == '\r' && next < end && chars[next] == '\n') {
+                next++;
+            }
+
+            start = position;
+            stop = lineEnd;
+            while (start < stop && chars[start] <= ' ') {
+                start++;
+            }
+            while (stop > start && chars[stop - 1] <= ' ') {
+                stop--;
+            }
+            lineNumber++;
+            line = null;
+
+            if (keepLines) {
+                cuesheet.addLine(line());
+            }
+
+            if (stop == start) {
+                addWarning(line(), WARNING_EMPTY_LINES);
+            } else if (stop - start < 3) {
+                addWarning(line(), WARNING_UNPARSEABLE_INPUT);
+            } else {
+                parseLine();
+            }
+            position = next;
+        }
+    }
+
+    /* The LineOfInput of the current line, created only when needed.
+     */
+    private LineOfInput line() {
+
+        if (line == null) {
+            line = new LineOfInput(lineNumber, new String(chars, start, stop - start), cuesheet);
+        }
+        return line;
+    }
+
+    private void parseLine() {
+
+        COMMAND_KEY commandKey = null;
+
+        // as CommandKeys.getCommandKey().
+        for (COMMAND_KEY key : COMMAND_KEYS) {
+            if (startsWith(key.name(), start)) {
+                commandKey = key;
+                break;
+            }
+        }
+
+        if (commandKey == null){
+            addWarning(line(), WARNING_UNPARSEABLE_INPUT);
+            return;
+        }
+
+        switch (commandKey){
+
+            case FILE:
+                parseFile();
+                break;
+            case TRACK:
+                parseTrack();
+                break;
+            case PREGAP:
+                parsePregap();
+                break;
+            case INDEX:
+                parseIndex();
+                break;
+            case POSTGAP:
+                parsePostgap();
+                break;
+            case REM:
+                parseRem();
+                break;
+            default:
+                boolean atAlbumLevel = isAtAlbumLevel();
+
+                if ((atAlbumLevel && CommandKeys.isAlbumCommandKey(commandKey)) ||
+                    (!atAlbumLevel && CommandKeys.isTrackCommandKey(commandKey))) {
+
+                    addCommand(commandKey, "", skipTrim(start + commandKey.name().length()));
+
+                } else{
+
+                    addWarning(line(), WARNING_NOT_ALLOWED_HERE);
+                }
+                break;
+        }
+    }
+
+    /* FILE [filename] [filetype], filename could be quoted.
+     */
+    private void parseFile() {
+
+        int at = skipSpaces(start + COMMAND_KEY.FILE.name().length());
+        if (at == start + COMMAND_KEY.FILE.name().length()) {
+            addWarning(line(), WARNING_UNPARSEABLE_INPUT);
+            return;
+        }
+
+        int nameEnd = -1;
+        int typeStart = -1;
+
+        if (chars[at] == '"') {
+            int quote = indexOf('"', at + 1);
+            if (quote >= 0) {
+                typeStart = lastToken(quote + 1);
+                nameEnd = typeStart < 0 ? -1 : quote + 1;
+            }
+        }
+        if (nameEnd < 0) {
+            int tokenEnd = tokenEnd(at);
+            typeStart = lastToken(tokenEnd);
+            nameEnd = typeStart < 0 ? -1 : tokenEnd;
+        }
+        if (nameEnd < 0) {
+            addWarning(line(), WARNING_UNPARSEABLE_INPUT);
+            return;
+        }
+
+        String fileType = new String(chars, typeStart, stop - typeStart);
+
+        if (!COMPLIANT_FILE_TYPES.contains(fileType)){
+
+            if (COMPLIANT_FILE_TYPES.contains(fileType.toUpperCase())){
+              addWarning(line(), WARNING_TOKEN_NOT_UPPERCASE);
+            }else {
+              addWarning(line(), WARNING_NONCOMPLIANT_FILE_TYPE);
+            }
+        }
+
+        // If the file name is enclosed in quotes, remove those.
+        if (nameEnd - at > 1 && chars[at] == '"' && chars[nameEnd - 1] == '"') {
+            at++;
+            nameEnd--;
+        }
+
+        FileData fileData = new FileData(line(), new String(chars, at, nameEnd - at), fileType.toUpperCase());
+        cuesheet.addFileData(fileData);
+
+        lastFileData = fileData;
+        lastTrackData = null;
+        fileHasIndices = false;
+    }
+
+    /* TRACK [number] [datatype]
+     */
+    private void parseTrack() {
+
+        int numberStart = skipSpaces(start + COMMAND_KEY.TRACK.name().length());
+        int numberEnd = skipDigits(numberStart);
+        int typeStart = numberEnd > numberStart ? lastToken(numberEnd) : -1;
+
+        if (numberStart == start + COMMAND_KEY.TRACK.name().length() || typeStart < 0) {
+            addWarning(line(), WARNING_UNPARSEABLE_INPUT);
+            return;
+        }
+
+        if (numberEnd - numberStart != 2) {
+            addWarning(line(), WARNING_WRONG_NUMBER_OF_DIGITS);
+        }
+        int trackNumber = number(numberStart, numberEnd);
+
+        String dataType = new String(chars, typeStart, stop - typeStart);
+        if (!COMPLIANT_DATA_TYPES.contains(dataType)) {
+            addWarning(line(), WARNING_NONCOMPLIANT_DATA_TYPE);
+        }
+
+        // First track must have number 1; all next ones sequential.
+        if (  lastTrackOfSheet == null && trackNumber != 1
+           || lastTrackOfSheet != null && lastTrackOfSheet.getNumber() != trackNumber - 1 ) {
+
+            addWarning(line(), WARNING_INVALID_TRACK_NUMBER);
+        }
+
+        FileData fileData = getLastFileData();
+        TrackData trackData = new TrackData(fileData, trackNumber, dataType, 0, 0);
+        fileData.addTrackData(trackData);
+
+        lastTrackData = trackData;
+        lastTrackOfSheet = trackData;
+    }
+
+    /* PREGAP [mm:ss:ff]
+     */
+    private void parsePregap() {
+
+        int at = skipSpaces(start + COMMAND_KEY.PREGAP.name().length());
+
+        if (at == start + COMMAND_KEY.PREGAP.name().length() || !isPosition(at)) {
+            addWarning(line(), WARNING_UNPARSEABLE_INPUT);
+            return;
+        }
+
+        TrackData trackData = getLastTrackData();
+
+        if (trackData.getPregap() != null) {
+            addWarning(line(), WARNING_DATUM_APPEARS_TOO_OFTEN);
+        }
+        if (trackData.getIndices().size() > 0) {
+            addWarning(line(), WARNING_PREGAP_IN_WRONG_PLACE);
+        }
+        trackData.setPregap(parsePosition(at));
+    }
+
+    /* INDEX [number] [mm:ss:ff]
+     */
+    private void parseIndex() {
+
+        int numberStart = skipSpaces(start + COMMAND_KEY.INDEX.name().length());
+        int numberEnd = skipDigits(numberStart);
+        int positionStart = numberEnd > numberStart ? skipSpaces(numberEnd) : numberEnd;
+
+        if (numberStart == start + COMMAND_KEY.INDEX.name().length() ||
+            positionStart == numberEnd || !isPosition(positionStart)) {
+
+            addWarning(line(), WARNING_UNPARSEABLE_INPUT);
+            return;
+        }
+
+        if (numberEnd - numberStart != 2) {
+            addWarning(line(), WARNING_WRONG_NUMBER_OF_DIGITS);
+        }
+
+        TrackData trackData = getLastTrackData();
+        List<TrackIndex> trackIndices = trackData.getTrackIndexList();
+
+        // Postgap data must come after all index data. Only check for first index.
+        if (trackIndices.isEmpty() && trackData.getPostgap() != null) {
+            addWarning(line(), WARNING_INDEX_AFTER_POSTGAP);
+        }
+
+        int indexNumber = number(numberStart, numberEnd);
+
+        // If first index of track, then number must be 0 or 1; if not first index of track, then number must be 1
+        // higher than last one.
+        if ((trackIndices.isEmpty() && indexNumber > 1) ||
+            ( ! trackIndices.isEmpty() &&
+              trackIndices.get(trackIndices.size()-1).getNumber() != indexNumber - 1 ))   {
+
+            addWarning(line(), WARNING_INVALID_INDEX_NUMBER);
+        }
+
+        Position position = parsePosition(positionStart);
+
+        // Position of first index of file must be 00:00:00.
+        if (  !fileHasIndices &&
+             ! (  position.getMinutes() == 0 &&
+                  position.getSeconds() == 0 &&
+                  position.getFrames()  == 0 )) {
+
+            addWarning(line(), WARNING_INVALID_FIRST_POSITION);
+        }
+        trackData.addTrackIndex(new TrackIndex(trackData, indexNumber, position));
+
+        // an index of a track with no TRACK command is lost, as in CueSheetCommandParser.
+        if (trackData == lastTrackData) {
+            fileHasIndices = true;
+        }
+    }
+
+    /* POSTGAP [mm:ss:ff]
+     */
+    private void parsePostgap() {
+
+        int at = skipSpaces(start + COMMAND_KEY.POSTGAP.name().length());
+
+        if (at == start + COMMAND_KEY.POSTGAP.name().length() || !isPosition(at)) {
+            addWarning(line(), WARNING_UNPARSEABLE_INPUT);
+            return;
+        }
+
+        TrackData trackData = getLastTrackData();
+
+        if (trackData.getPostgap() != null) {
+            addWarning(line(), WARNING_DATUM_APPEARS_TOO_OFTEN);
+        }
+        trackData.setPostgap(parsePosition(at));
+    }
+
+    /* REM [subkey] [value], REM [comment] is taken as REM COMMENT [comment].
+     *
+     * As PATTERN_REM_COMMAND_ARGS, the subkey is the last of the uppercase
+     * words followed by a space, and the value is cut after the length of
+     * the subkey from what follows REM.
+     */
+    private void parseRem() {
+
+        int remLength = COMMAND_KEY.REM.name().length();
+        int repeated = 0;
+        int at = start;
+
+        while (at + remLength < stop && startsWith(COMMAND_KEY.REM.name(), at) && isSpace(chars[at + remLength])) {
+            at = at + remLength + 1;
+            repeated++;
+        }
+
+        int wordStart = -1;
+        int wordEnd = -1;
+
+        while (at < stop && isSubKeyChar(chars[at])) {
+
+            int next = at;
+            while (next < stop && isSubKeyChar(chars[next])) {
+                next++;
+            }
+            if (next == stop || !isSpace(chars[next])) {
+                break;
+            }
+            wordStart = at;
+            wordEnd = next;
+            at = next + 1;
+        }
+
+        String remSubKey;
+
+        if (repeated == 0) {
+            wordStart = -1;
+        }
+
+        if (wordStart >= 0) {
+            remSubKey = new String(chars, wordStart, wordEnd - wordStart);
+        } else if (repeated > 1) {
+            remSubKey = COMMAND_KEY.REM.name();
+        } else {
+            // REM alone is an empty comment.
+            addCommand(COMMAND_KEY.REM, "COMMENT", skipTrim(Math.min(start + remLength + 1, stop)));
+            return;
+        }
+
+        int value = skipTrim(start + remLength) + remSubKey.length() + 1;
+        addCommand(COMMAND_KEY.REM, remSubKey, skipTrim(value));
+    }
+
+    /* Add a command with the value from the given position to the end of the line.
+     */
+    private void addCommand(COMMAND_KEY commandKey, String remSubKey, int valueStart) {
+
+        String value = StringPool.intern(stringPool, new String(chars, valueStart, stop - valueStart));
+        String subKey = StringPool.intern(stringPool, remSubKey);
+
+        if (isAtAlbumLevel()) {
+            addCommandLine(commandKey, subKey, cuesheet, lineNumber, value);
+        } else {
+            addCommandLine(commandKey, subKey, lastTrackData, lineNumber, value);
+        }
+    }
+
+    private boolean isAtAlbumLevel() {
+        return lastFileData == null || lastTrackData == null;
+    }
+
+    /* The last FILE, created with a warning if none.
+     */
+    private FileData getLastFileData() {
+
+        if (lastFileData == null) {
+            lastFileData = new FileData(cuesheet);
+            cuesheet.addFileData(lastFileData);
+            addWarning(line(), WARNING_NO_FILE_SPECIFIED);
+        }
+        return lastFileData;
+    }
+
+    /* The last TRACK of the last FILE. If none, a track not added to the file
+     * is returned with a warning, as CueSheetCommandParser does.
+     */
+    private TrackData getLastTrackData() {
+
+        FileData fileData = getLastFileData();
+
+        if (lastTrackData == null) {
+            addWarning(line(), WARNING_NO_TRACK_SPECIFIED);
+            return new TrackData(fileData);
+        }
+        return lastTrackData;
+    }
+
+    /* mm:ss:ff, with any number of digits, up to the end of the line.
+     */
+    private boolean isPosition(int at) {
+
+        int minutesEnd = skipDigits(at);
+        if (minutesEnd == stop || chars[minutesEnd] != ':') {
+            return false;
+        }
+        int secondsEnd = skipDigits(minutesEnd + 1);
+        if (secondsEnd == stop || chars[secondsEnd] != ':') {
+            return false;
+        }
+        return skipDigits(secondsEnd + 1) == stop;
+    }
+
+    private Position parsePosition(int at) {
+
+        int minutesEnd = skipDigits(at);
+        int secondsEnd = skipDigits(minutesEnd + 1);
+
+        int minutes = number(at, minutesEnd);
+        int seconds = number(minutesEnd + 1, secondsEnd);
+        int frames  = number(secondsEnd + 1, stop);
+
+        if  ( ! (  minutesEnd - at == 2
+                && secondsEnd - minutesEnd - 1 == 2
+                && stop - secondsEnd - 1 == 2  )) {
+
+              addWarning(line(), WARNING_WRONG_NUMBER_OF_DIGITS);
+        }
+        if (seconds > 59) {
+              addWarning(line(), WARNING_INVALID_SECONDS_VALUE);
+        }
+        if (frames > 74) {
+              addWarning(line(), WARNING_INVALID_FRAMES_VALUE);
+        }
+        return new Position(minutes, seconds, frames);
+    }
+
+    /* The digits in [from, to) as Integer.parseInt(), that also throws for
+     * empty or too long numbers.
+     */
+    private int number(int from, int to) {
+
+        if (to == from || to - from > 9) {
+            return Integer.parseInt(new String(chars, from, to - from));
+        }
+        int out = 0;
+        for (int i = from; i < to; i++) {
+            out = out * 10 + chars[i] - '0';
+        }
+        return out;
+    }
+
+    /* The start of the last token of the line, that must follow at.
+     * -1 if at is not a space or more tokens follow.
+     */
+    private int lastToken(int at) {
+
+        if (at == stop || !isSpace(chars[at])) {
+            return -1;
+        }
+        int tokenStart = skipSpaces(at);
+        return tokenEnd(tokenStart) == stop ? tokenStart : -1;
+    }
+
+    private boolean startsWith(String prefix, int at) {
+
+        if (stop - at < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (chars[at + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(char c, int at) {
+
+        for (int i = at; i < stop; i++) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipSpaces(int at) {
+
+        while (at < stop && isSpace(chars[at])) {
+            at++;
+        }
+        return at;
+    }
+
+    /* As String.trim() does.
+     */
+    private int skipTrim(int at) {
+
+        while (at < stop && chars[at] <= ' ') {
+            at++;
+        }
+        return at;
+    }
+
+    private int skipDigits(int at) {
+
+        while (at < stop && chars[at] >= '0' && chars[at] <= '9') {
+            at++;
+        }
+        return at;
+    }
+
+    private int tokenEnd(int at) {
+
+        while (at < stop && !isSpace(chars[at])) {
+            at++;
+        }
+        return at;
+    }
+
+    /* \s in java.util.regex.
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isSubKeyChar(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '_';
+    }
+}
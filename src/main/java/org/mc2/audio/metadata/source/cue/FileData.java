@@ -23,12 +23,14 @@ package org.mc2.audio.metadata.source.cue;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 //import jwbroek.cuelib.FileData;
 import jwbroek.cuelib.LineOfInput;
 //import jwbroek.cuelib.TrackData;
 
 import static org.mc2.audio.metadata.source.cue.CueSheetCommandParser.addWarning;
+import org.mc2.audio.metadata.source.ScanContext;
 import org.mc2.audio.metadata.source.tags.file.AudioFile;
 import org.mc2.util.miscellaneous.CalendarUtils;
 
@@ -49,6 +51,8 @@ public class FileData extends jwbroek.cuelib.FileData {
     private AudioFile audiofile;
     private int length;
     private int offset;
+    private final List<TrackData> trackDataList = new ArrayList<>();
+    private final List<TrackData> trackDataView = Collections.unmodifiableList(trackDataList);
 
     public FileData(CueSheet cuesheet) {
         super(cuesheet);
@@ -57,6 +61,8 @@ public class FileData extends jwbroek.cuelib.FileData {
     public FileData(LineOfInput input, String file, String fileType) {
         super((CueSheet)input.getAssociatedSheet(),file, fileType);
         
+        ScanContext scanContext = ((CueSheet)input.getAssociatedSheet()).getScanContext();
+        
         datafile = new File(this.getFile());
         if (!datafile.exists()){
             
@@ -67,6 +73,9 @@ public class FileData extends jwbroek.cuelib.FileData {
                 datafile = new File(souceFile.getParentFile(), this.getFile()); 
             }
         }
+        if (scanContext != null){
+            scanContext.addReferencedFile(datafile);
+        }
         
         if (!datafile.exists()){
             //throw new InvalidDataFileException("Invalid dataFile");
@@ -80,10 +89,13 @@ public class FileData extends jwbroek.cuelib.FileData {
         } else{
 
             try {
-                audiofile =  AudioFile.get(datafile);
-                int seconds = audiofile.getAudioHeader().getTrackLength();
-
-                length=  seconds*75;
+                audiofile = scanContext == null ? AudioFile.get(datafile) :
+                                                  scanContext.getAudioFile(datafile);
+                if (scanContext == null || scanContext.getProfile().readsDuration()){
+                    
+                    int seconds = audiofile.getAudioHeader().getTrackLength();
+                    length=  seconds*75;
+                }
 
             } catch (Exception  ex) {
                 addWarning(input, WARNING_PROBLEMS_READING_DATA_FILE_HEADER+
@@ -128,15 +140,20 @@ public class FileData extends jwbroek.cuelib.FileData {
 
         return CalendarUtils.getTimeString(getOffsetInMillis());
     }
+    /**
+     * @return the tracks of the file, in order. The list can't be modified,
+     * use addTrackData.
+     */
     public List<TrackData> getTrackDataList(){
-    
-        List<TrackData> out = new ArrayList<>();
-        for (jwbroek.cuelib.TrackData trackData: super.getTrackData()){
-            
-            out.add((TrackData) trackData);
-        }
-        return out;
-    
+        return trackDataView;
+    }
+    /**
+     * Add a track to the file.
+     * @param trackData the track to add.
+     */
+    public void addTrackData(TrackData trackData){
+        super.getTrackData().add(trackData);
+        trackDataList.add(trackData);
     }
     /**
      * @return the audiofile
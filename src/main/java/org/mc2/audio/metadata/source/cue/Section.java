@@ -23,6 +23,7 @@ package org.mc2.audio.metadata.source.cue;
 
 import java.util.ArrayList;
 import org.mc2.audio.metadata.API.Metadata;
+import org.mc2.audio.metadata.impl.MetadataMap;
 import org.mc2.audio.metadata.source.MetadataSource;
 import static org.mc2.audio.metadata.API.MetadataKeys.getAlbumLevelMetadataAlias;
 import static org.mc2.audio.metadata.API.MetadataKeys.getTrackLevelMetadataAlias;
@@ -39,7 +40,7 @@ public class Section implements MetadataSource{
     private final CueSheet cuesheet;
     
     private final ArrayList<Command> commandList = new ArrayList<>();
-    private final ArrayList<Metadata> metadataList = new ArrayList<>();
+    private final MetadataMap metadataMap = new MetadataMap();
     
     public Section(CueSheet cuesheet){
         this.cuesheet = cuesheet;  
@@ -68,7 +69,7 @@ public class Section implements MetadataSource{
     @Override
     public ArrayList<Metadata> getMetadata(){
 
-            return metadataList;
+            return metadataMap.getList();
     }
 
     /**
@@ -98,14 +99,7 @@ public class Section implements MetadataSource{
     
     private Metadata searchMedata(String parm){
         
-        for (Metadata metadata : metadataList){
-        
-            if (metadata.getKey().toUpperCase().equals(parm.toUpperCase())){
-            
-                return metadata;
-            }
-        }
-        return null;
+        return metadataMap.find(parm);
     }
 
     
@@ -21,6 +21,7 @@
 package org.mc2.audio.metadata.source.cue;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 //import jwbroek.cuelib.TrackData;
 //import jwbroek.cuelib.Index;
@@ -38,6 +39,8 @@ public class TrackData extends jwbroek.cuelib.TrackData implements MetadataSourc
     private final TrackSection section;
     private int offset;
     private int length;
+    private final List<TrackIndex> trackIndexList = new ArrayList<>();
+    private final List<TrackIndex> trackIndexView = Collections.unmodifiableList(trackIndexList);
         
     TrackData(FileData fileData, int trackNumber, String dataType, int offset, int length) {
         super(fileData,trackNumber,dataType);
@@ -102,16 +105,10 @@ public class TrackData extends jwbroek.cuelib.TrackData implements MetadataSourc
     }
     
     /**
-     * @return the trackIndexList
+     * @return the trackIndexList, can't be modified, use addTrackIndex.
      */
     public List<TrackIndex> getTrackIndexList() {
-        
-        List<TrackIndex> out = new ArrayList<>();
-        for (jwbroek.cuelib.Index index: super.getIndices()){
-            
-            out.add((TrackIndex) index);
-        }
-        return out;
+        return trackIndexView;
     }
     /**
      * add a trackindex to the track.
@@ -119,13 +116,14 @@ public class TrackData extends jwbroek.cuelib.TrackData implements MetadataSourc
      */
     public void addTrackIndex(TrackIndex trackIndex){
         super.getIndices().add(trackIndex);
+        trackIndexList.add(trackIndex);
         setLength(getLength()+trackIndex.getLength());
     }
     
     @Override
     public ArrayList<Metadata> getMetadata(){
         
-        ArrayList<Metadata> out = getTrackSection().getMetadata();
+        ArrayList<Metadata> out = new ArrayList<>(getTrackSection().getMetadata());
         out.addAll(getAddtionalMetadataFromFile());
         return out;
     }
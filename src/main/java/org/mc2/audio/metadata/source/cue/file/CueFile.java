@@ -30,6 +30,7 @@ import java.io.File;
 import java.io.IOException;
 import org.apache.commons.io.FilenameUtils;
 import org.mc2.audio.metadata.API.exceptions.InvalidCueSheetException;
+import org.mc2.audio.metadata.source.ScanContext;
 import org.mc2.audio.metadata.source.cue.CueSheet;
 /**
  *
@@ -55,16 +56,18 @@ public class CueFile {
         if (!isCueFile())  throw new InvalidCueSheetException("this is not a a cue file!");
         this.cuesheet = CueSheetMetadaParser.parse(file);
     }
+    
+    public CueFile(File file, ScanContext scanContext) throws IOException, InvalidCueSheetException {
+        this.cueFile = file;
+        this.path = file.getCanonicalPath();
+        if (!isCueFile())  throw new InvalidCueSheetException("this is not a a cue file!");
+        this.cuesheet = CueSheetMetadaParser.parse(file, scanContext);
+    }
     public static boolean isCueFile(File file) throws IOException{
         
         String ext =  FilenameUtils.getExtension(file.getCanonicalPath());
 
-        try{
-            return SupportedCueFileFormat.valueOf(ext.toUpperCase()) != null;
-        } catch (IllegalArgumentException ex){
-            return false;
-        }
-        
+        return SupportedCueFileFormat.of(ext) != null;
     }
     /**
      * @return the File
@@ -28,6 +28,7 @@ package org.mc2.audio.metadata.source.tags;
 import java.util.ArrayList;
 import org.jaudiotagger.tag.Tag;
 import org.jaudiotagger.tag.TagField;
+import org.mc2.audio.metadata.source.StringPool;
 
 /**
  *
@@ -40,6 +41,12 @@ public interface TagsSource  {
     public Tag getTag();
    
     public ArrayList<TagField> geTagFields();
+    
+    /**
+     * @return the pool keys and values read should be interned with, null 
+     * if none.
+     */
+    public StringPool getStringPool();
    
    
 }
@@ -40,4 +40,8 @@ public class Aif extends Aiff{
     public Aif(File file) throws InvalidAudioFileException {
          super(file);
     }
+    
+    public Aif(File file, ReadOptions readOptions) throws InvalidAudioFileException {
+         super(file, readOptions);
+    }
 }
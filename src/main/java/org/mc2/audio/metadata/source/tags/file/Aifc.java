@@ -26,7 +26,12 @@
 package org.mc2.audio.metadata.source.tags.file;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
+import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
+import org.jaudiotagger.tag.TagException;
 import org.jaudiotagger.tag.aiff.AiffTag;
 import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2TagsSchema;
 import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
@@ -46,9 +51,25 @@ public class Aifc extends AudioFile {
          super(file);
     }
     
+    public Aifc(File file, ReadOptions readOptions) throws InvalidAudioFileException {
+         super(file, readOptions);
+    }
+    
     @Override
     protected void initOptions(){
 
+    }
+    /* read the chunks with IffChunkReader, falling back to jaudiotagger
+     * for files it does not handle.
+     */
+    @Override
+    protected org.jaudiotagger.audio.AudioFile readAudioFile(File file) throws IOException, CannotReadException, ReadOnlyFileException, TagException, InvalidAudioFrameException {
+        
+        IffChunkReader reader = IffChunkReader.readAiff(file, getReadOptions());
+        if (reader == null){
+            return super.readAudioFile(file);
+        }
+        return new org.jaudiotagger.audio.AudioFile(file, reader.getAudioHeader(), reader.getTag());
     }
     @Override
     protected void initSchema(){
@@ -63,7 +84,7 @@ public class Aifc extends AudioFile {
     } 
 
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         return this.getiD3v2Tag().getMetadata();
     }
     @Override
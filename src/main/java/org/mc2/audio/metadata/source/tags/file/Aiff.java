@@ -26,17 +26,24 @@
 package org.mc2.audio.metadata.source.tags.file;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
+import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
+import org.jaudiotagger.tag.TagException;
 import org.jaudiotagger.tag.aiff.AiffTag;
 import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2TagsSchema;
 import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
 import org.mc2.audio.metadata.API.Metadata;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2FrameScanner;
 /**
  *
  * @author marco
  */
 public class Aiff extends AudioFile {
+    
 
     public Aiff(String path) throws InvalidAudioFileException {
         super(path); 
@@ -46,24 +53,60 @@ public class Aiff extends AudioFile {
          super(file);
     }
     
+    public Aiff(File file, ReadOptions readOptions) throws InvalidAudioFileException {
+         super(file, readOptions);
+    }
+    
     @Override
     protected void initOptions(){
 
+    }
+    /* read the chunks with IffChunkReader, falling back to jaudiotagger
+     * for files it does not handle. A scanned ID3 chunk is decoded only 
+     * when needed, see ID3v2TagsSchema.
+     */
+    @Override
+    protected org.jaudiotagger.audio.AudioFile readAudioFile(File file) throws IOException, CannotReadException, ReadOnlyFileException, TagException, InvalidAudioFrameException {
+        
+        IffChunkReader reader = IffChunkReader.readAiff(file, getReadOptions());
+        if (reader == null){
+            return super.readAudioFile(file);
+        }
+        return new NativeAudioFile(file, reader.getAudioHeader(), reader.getTag(), reader.getID3Scanner());
+    }
+    private ID3v2FrameScanner getScanner() {
+        return getNativeReader(ID3v2FrameScanner.class);
     }
     @Override
     protected void initSchema(){
+        ID3v2FrameScanner scanner = getScanner();
+        if (scanner != null){
+            super.setTagSchema(new ID3v2TagsSchema(scanner, this));
+            return;
+        }
         AbstractID3v2Tag abstractId3v2Tag = getTag().getID3Tag();
         super.setTagSchema(new ID3v2TagsSchema(abstractId3v2Tag, this));
 
     }
     
+    /* with a scanned ID3 chunk, the ID3 tag is decoded on first request.
+    */
     @Override
     public AiffTag getTag() {
-        return (AiffTag) super.getTag();
+        AiffTag tag = (AiffTag) super.getTag();
+        if (getScanner() != null){
+            AbstractID3v2Tag id3Tag = getiD3v2Tag().getDecodedTag();
+            synchronized (tag){
+                if (id3Tag != null && tag.getID3Tag() != id3Tag){
+                    tag.setID3Tag(id3Tag);
+                }
+            }
+        }
+        return tag;
     } 
 
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         return this.getiD3v2Tag().getMetadata();
     }
     @Override
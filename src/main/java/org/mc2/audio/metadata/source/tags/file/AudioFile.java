@@ -29,6 +29,8 @@ import org.mc2.audio.metadata.source.coverart.EmbeddedArtwork;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import org.jaudiotagger.audio.AudioFileIO;
 import org.jaudiotagger.audio.AudioHeader;
 import org.jaudiotagger.audio.exceptions.CannotReadException;
@@ -38,12 +40,17 @@ import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.Tag;
 import org.jaudiotagger.tag.TagException;
 import org.jaudiotagger.tag.TagField;
+import org.jaudiotagger.tag.TagOptionSingleton;
 import org.jaudiotagger.tag.images.Artwork;
+import org.jaudiotagger.tag.reference.PictureTypes;
 import org.mc2.audio.metadata.API.CoverArt;
 import org.mc2.audio.metadata.API.Metadata;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileFormatException;
+import org.mc2.audio.metadata.impl.MetadataDefaultImpl;
 import org.mc2.audio.metadata.source.MetadataSource;
+import org.mc2.audio.metadata.source.StringPool;
+import org.mc2.audio.metadata.source.coverart.CoverArtReference;
 import org.mc2.audio.metadata.source.tags.TagsSource;
 import org.mc2.audio.metadata.source.tags.schema.TagSchema;
 
@@ -54,10 +61,20 @@ import org.mc2.audio.metadata.source.tags.schema.TagSchema;
 public abstract class AudioFile implements TagsSource, MetadataSource{
 
     private final File file;
+    private final ReadOptions readOptions;
     private org.jaudiotagger.audio.AudioFile audiofile;
     private String path;
     private Tag tag;
     private TagSchema tagSchema;
+    private ArrayList<Metadata> metadata;
+    private volatile StringPool stringPool;
+    
+    static {
+        // jaudiotagger creates them lazily without locking, so before any 
+        // file could be read by more threads.
+        TagOptionSingleton.getInstance();
+        AudioFileIO.getDefaultAudioFileIO();
+    }
     
     public static AudioFile get(String path) throws InvalidAudioFileException, InvalidAudioFileFormatException{
         
@@ -65,68 +82,44 @@ public abstract class AudioFile implements TagsSource, MetadataSource{
     }
     public static AudioFile get(File file) throws InvalidAudioFileException, InvalidAudioFileFormatException{
         
+        return get(file, ReadOptions.getDefault());
+    }
+    public static AudioFile get(String path, ReadOptions readOptions) throws InvalidAudioFileException, InvalidAudioFileFormatException{
+        
+        return get(new File(path), readOptions);
+    }
+    public static AudioFile get(File file, ReadOptions readOptions) throws InvalidAudioFileException, InvalidAudioFileFormatException{
+        
         if (file == null) throw new InvalidAudioFileException ("Invalid file");
         
-        String name = file.getName().toLowerCase();
-        int i = name.lastIndexOf(".");
-        if (i == -1) {
-            throw new InvalidAudioFileFormatException ("File format not supported");
-        }
-
-        String extension = name.substring(i + 1);
-            
-        if(SupportedAudioFileFormat.FLAC.getFilesuffix().equals(extension)) {
-            return new Flac (file);
-        } else if(SupportedAudioFileFormat.OGG.getFilesuffix().equals(extension)) {
-            return new Ogg (file);
-        } else if(SupportedAudioFileFormat.MP3.getFilesuffix().equals(extension))  {
-            return new Mp3(file);
-        } else if(SupportedAudioFileFormat.MP4.getFilesuffix().equals(extension))  {
-            return new Mp4(file);
-        } else if(SupportedAudioFileFormat.M4A.getFilesuffix().equals(extension)) {
-            return new M4a(file);
-        } else if(SupportedAudioFileFormat.M4P.getFilesuffix().equals(extension)) {
-            return new M4p(file);
-        } else if(SupportedAudioFileFormat.WMA.getFilesuffix().equals(extension)) {
-            return new Wma(file);
-        } else if(SupportedAudioFileFormat.WAV.getFilesuffix().equals(extension)) {
-            return new Wav(file);
-        } else if(SupportedAudioFileFormat.RA.getFilesuffix().equals(extension)) {
-            return new Ra(file);
-        } else if(SupportedAudioFileFormat.RM.getFilesuffix().equals(extension)){
-            return new Rm(file);
-        } else if(SupportedAudioFileFormat.AIF.getFilesuffix().equals(extension)) {
-            return new Aif(file);
-        } else if(SupportedAudioFileFormat.AIFC.getFilesuffix().equals(extension)) {
-            return new Aifc(file);
-        } else if(SupportedAudioFileFormat.AIFF.getFilesuffix().equals(extension)) {
-            return new Aiff(file);
-        } else if(SupportedAudioFileFormat.DSF.getFilesuffix().equals(extension)) {
-            return new Dsf(file);
-        } else if(SupportedAudioFileFormat.DFF.getFilesuffix().equals(extension)){
-            return new Dff(file);
-        } else {
-            throw new InvalidAudioFileFormatException ("File format not suupported");
-        }
+        return AudioFileFormats.open(file, readOptions);
     }
     
     protected AudioFile (String  path) throws InvalidAudioFileException {
-        this.file = new File(path);
-        init(file);
+        this(new File(path), ReadOptions.getDefault());
     }
      
     protected AudioFile(File file) throws InvalidAudioFileException {
+        this(file, ReadOptions.getDefault());
+    }
+    
+    protected AudioFile(File file, ReadOptions readOptions) throws InvalidAudioFileException {
         this.file = file;
+        this.readOptions = readOptions == null ? ReadOptions.getDefault() : readOptions;
         init(file);
     }
     
+    /* formats must not change TagOptionSingleton here, it is shared by all 
+     * the threads reading files: options are given by getReadOptions().
+     */
     protected abstract void  initOptions();
     protected abstract void  initSchema();
     
     protected final void init(File file) throws  InvalidAudioFileException {
         initOptions();
+        metadata = null;
         try {
-            audiofile=  AudioFileIO.read(file);
+            audiofile=  readAudioFile(file);
             tag = this.audiofile.getTag();
             path = this.file.getCanonicalPath();
             initSchema();
@@ -135,6 +128,54 @@ public abstract class AudioFile implements TagsSource, MetadataSource{
             throw new InvalidAudioFileException(ex);
         }
     }
+    /* read the file with jaudiotagger, formats with a faster reader 
+     * could override it and fall back to this, returning a NativeAudioFile
+     * to keep their reader.
+     */
+    protected org.jaudiotagger.audio.AudioFile readAudioFile(File file) throws IOException, CannotReadException, ReadOnlyFileException, TagException, InvalidAudioFrameException {
+        return AudioFileIO.read(file);
+    }
+    /**
+     * @param <R> the type of the reader.
+     * @param type the class of the reader.
+     * @return the reader readAudioFile read the file with, null if the file
+     * was read by jaudiotagger.
+     */
+    protected final <R> R getNativeReader(Class<R> type) {
+        
+        if (audiofile instanceof NativeAudioFile){
+            Object reader = ((NativeAudioFile) audiofile).reader;
+            return type.isInstance(reader) ? type.cast(reader) : null;
+        }
+        return null;
+    }
+    /**
+     * An audio file read by the own reader of a format, that keeps the reader
+     * to get what it did not read yet, i.e. images. Fields of subclasses
+     * can't hold it, as readAudioFile runs within the AudioFile constructor,
+     * before their initializers.
+     */
+    protected static final class NativeAudioFile extends org.jaudiotagger.audio.AudioFile {
+        
+        private final Object reader;
+        
+        public NativeAudioFile(File file, AudioHeader audioHeader, Tag tag, Object reader) {
+            super(file, audioHeader, tag);
+            this.reader = reader;
+        }
+    }
+    /* the artworks in the tag, formats reading images lazily should 
+     * override it.
+     */
+    protected List<Artwork> getArtworkList() {
+        return getTag() == null ? null : getTag().getArtworkList();
+    }
+    /**
+     * @return the options the file is read with.
+     */
+    public ReadOptions getReadOptions() {
+        return readOptions;
+    }
    /**
      * @return the file
      */
@@ -168,6 +209,20 @@ public abstract class AudioFile implements TagsSource, MetadataSource{
     public String getSourceId() {
         return path;
     }
+    /**
+     * @return the pool keys and values are interned with, null if none.
+     */
+    @Override
+    public StringPool getStringPool() {
+        return stringPool;
+    }
+    /**
+     * @param stringPool the pool to intern keys and values with, affects
+     * metadata not yet read only.
+     */
+    public void setStringPool(StringPool stringPool) {
+        this.stringPool = stringPool;
+    }
     /**
      * @return the tag
      */
@@ -200,9 +255,31 @@ public abstract class AudioFile implements TagsSource, MetadataSource{
      * Metadata for fieldKeys with invalid value or with key not listed in FieldKey are discarded.
      *
      * This form return the "nasty" KEY: Type="" + Value format, not really good for displaying.
+     *
+     * Metadata are extracted from the tags only once, every call returns new 
+     * Metadata over the same origins, so callers could merge into them.
     */
     @Override
-    public abstract ArrayList<Metadata> getMetadata();
+    public ArrayList<Metadata> getMetadata(){
+        
+        ArrayList<Metadata> out = new ArrayList<>();
+        for (Metadata cached : getCachedMetadata()){
+            out.add(new MetadataDefaultImpl(cached.getKey(), cached.getOrigins()));
+        }
+        return out;
+    }
+    
+    private synchronized ArrayList<Metadata> getCachedMetadata(){
+        
+        if (metadata == null){
+            metadata = readMetadata();
+        }
+        return metadata;
+    }
+    
+    /* extract the metadata from the tags, see getMetadata().
+    */
+    protected abstract ArrayList<Metadata> readMetadata();
     
     /* list all the metadata by the Audiofile in the 'generic' FieldKey + values format.
      * Metadata for fieldKeys with invalid value are reported and value is in the form:
@@ -238,13 +315,21 @@ public abstract class AudioFile implements TagsSource, MetadataSource{
         return getTagSchema().getMetadata(fieldKey);
     }
     
+    /* Metadata for the given fieldKeys only, as in getMetadata(FieldKey), 
+     * fieldKeys with no value in the tags are not reported.
+     */
+    public ArrayList<Metadata> getMetadata(Set<FieldKey> fieldKeys) {
+        return getTagSchema().getMetadata(fieldKeys);
+    }
+    
     public ArrayList<CoverArt> getEmbeddedArtworks(){
         
         ArrayList<CoverArt> out=new ArrayList<>();
+        List<Artwork> artworks = getArtworkList();
         
-        if (getTag() != null && getTag().getArtworkList()!= null){
+        if (artworks != null){
             int i = 0;
-            for (Artwork artwork: getTag().getArtworkList()){
+            for (Artwork artwork: artworks){
                 
                 out.add(new EmbeddedArtwork(this.file, artwork, i));
                 i++;
@@ -254,4 +339,31 @@ public abstract class AudioFile implements TagsSource, MetadataSource{
         return out;
     }
     
+    /**
+     * References to the embedded artworks, the images are not decoded until
+     * requested.
+     * @return the embedded artworks.
+     */
+    public ArrayList<CoverArt> getEmbeddedArtworkReferences(){
+        
+        ArrayList<CoverArt> out=new ArrayList<>();
+        List<Artwork> artworks = getArtworkList();
+        
+        if (artworks != null){
+            int i = 0;
+            for (Artwork artwork: artworks){
+                
+                out.add(new CoverArtReference(CoverArt.SOURCE_EMBEDDED_FILE,
+                                              this.file,
+                                              i,
+                                              artwork.isLinked() ? artwork.getImageUrl() : "",
+                                              PictureTypes.getInstanceOf().getValueForId(artwork.getPictureType()),
+                                              artwork.getDescription()));
+                i++;
+            }
+           
+        }
+        return out;
+    }
+    
 }
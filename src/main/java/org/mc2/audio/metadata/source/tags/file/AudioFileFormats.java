@@ -0,0 +1,334 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source.tags.file;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileFormatException;
+
+/**
+ * Registry of the audio file formats, by lower case file extension.
+ *
+ * The formats of the library are registered first, then the providers found
+ * by ServiceLoader (see {@link AudioFileProvider}) and those registered by
+ * {@link #register(AudioFileProvider)}: a provider registered later replaces
+ * the previous one for the same extension.
+ *
+ * Looking up a format is a single map access and never throws. Formats could
+ * also be told by the first bytes of a file, see {@link #detect(File)}.
+ *
+ * @author marco
+ */
+public final class AudioFileFormats {
+
+    private final static Logger logger = Logger.getLogger(AudioFileFormats.class.getCanonicalName());
+
+    /** Bytes read from a file to detect its format. */
+    public static final int HEADER_SIZE = 12;
+
+    private static final ConcurrentHashMap<String, AudioFileProvider> PROVIDERS = new ConcurrentHashMap<>();
+    private static final Set<String> PLUGINS = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    static {
+        for (SupportedAudioFileFormat format : SupportedAudioFileFormat.values()) {
+            if (format != SupportedAudioFileFormat.M4B) {
+                PROVIDERS.put(format.getFilesuffix(), new BuiltIn(format));
+            }
+        }
+        try {
+            Iterator<AudioFileProvider> providers = ServiceLoader.load(AudioFileProvider.class).iterator();
+            while (providers.hasNext()) {
+                register(providers.next());
+            }
+        } catch (ServiceConfigurationError ex) {
+            logger.log(Level.WARNING, "Audio file provider not loaded", ex);
+        }
+    }
+
+    private AudioFileFormats() {
+    }
+
+    /**
+     * Register a provider for all its extensions.
+     * @param provider the provider.
+     */
+    public static void register(AudioFileProvider provider) {
+
+        for (String extension : provider.getExtensions()) {
+            String key = extension.toLowerCase(Locale.ROOT);
+            PROVIDERS.put(key, provider);
+            PLUGINS.add(key);
+        }
+    }
+
+    /**
+     * @param extension the file extension, without the dot.
+     * @return the provider, null if the format is not supported.
+     */
+    public static AudioFileProvider getProvider(String extension) {
+        return extension == null ? null : PROVIDERS.get(extension.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param extension the file extension, without the dot.
+     * @return true if the format is supported.
+     */
+    public static boolean isSupported(String extension) {
+        return getProvider(extension) != null;
+    }
+
+    /**
+     * @param extension the file extension, without the dot.
+     * @return true if the format has been registered by a provider not part
+     * of the library.
+     */
+    public static boolean isPlugin(String extension) {
+        return extension != null && PLUGINS.contains(extension.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the extensions of the supported formats.
+     */
+    public static Set<String> getExtensions() {
+        return Collections.unmodifiableSet(PROVIDERS.keySet());
+    }
+
+    /**
+     * @param fileName the file name.
+     * @return the extension, lower case without the dot, empty if none.
+     */
+    public static String getExtension(String fileName) {
+
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Open an audio file by its extension.
+     * @param file the file.
+     * @return the audio file.
+     * @throws InvalidAudioFileException if the file can't be read.
+     * @throws InvalidAudioFileFormatException if the format is not supported.
+     */
+    public static AudioFile open(File file) throws InvalidAudioFileException, InvalidAudioFileFormatException {
+        return open(file, ReadOptions.getDefault());
+    }
+
+    /**
+     * Open an audio file by its extension, with the given options.
+     * @param file the file.
+     * @param readOptions the options to read the file with.
+     * @return the audio file.
+     * @throws InvalidAudioFileException if the file can't be read.
+     * @throws InvalidAudioFileFormatException if the format is not supported.
+     */
+    public static AudioFile open(File file, ReadOptions readOptions) throws InvalidAudioFileException, InvalidAudioFileFormatException {
+
+        AudioFileProvider provider = PROVIDERS.get(getExtension(file.getName()));
+        if (provider == null) {
+            throw new InvalidAudioFileFormatException ("File format not supported");
+        }
+        return provider.open(file, readOptions);
+    }
+
+    /**
+     * Tell the format of a file by its first bytes, when the extension is
+     * missing or wrong. The provider of the extension is preferred if it
+     * matches.
+     * @param file the file.
+     * @return the provider, null if no format matches.
+     * @throws IOException if the file can't be read.
+     */
+    public static AudioFileProvider detect(File file) throws IOException {
+
+        byte[] header = readHeader(file);
+
+        AudioFileProvider provider = PROVIDERS.get(getExtension(file.getName()));
+        if (provider != null && provider.matches(header)) {
+            return provider;
+        }
+        for (AudioFileProvider candidate : new LinkedHashSet<>(PROVIDERS.values())) {
+            if (candidate.matches(header)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static byte[] readHeader(File file) throws IOException {
+
+        byte[] buffer = new byte[HEADER_SIZE];
+        int size = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while (size < buffer.length && (read = in.read(buffer, size, buffer.length - size)) > 0) {
+                size += read;
+            }
+        }
+        if (size == buffer.length) {
+            return buffer;
+        }
+        byte[] out = new byte[size];
+        System.arraycopy(buffer, 0, out, 0, size);
+        return out;
+    }
+
+    private static boolean startsWith(byte[] header, int offset, String magic) {
+        return startsWith(header, offset, magic.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static boolean startsWith(byte[] header, int offset, byte[] bytes) {
+
+        if (header.length < offset + bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (header[offset + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The formats of the library.
+     */
+    private static final class BuiltIn implements AudioFileProvider {
+
+        private static final byte[] ASF = {0x30, 0x26, (byte) 0xB2, 0x75, (byte) 0x8E, 0x66, (byte) 0xCF, 0x11};
+        private static final byte[] REAL_AUDIO = {0x2E, 0x72, 0x61, (byte) 0xFD};
+
+        private final SupportedAudioFileFormat format;
+
+        private BuiltIn(SupportedAudioFileFormat format) {
+            this.format = format;
+        }
+
+        @Override
+        public Collection<String> getExtensions() {
+
+            ArrayList<String> out = new ArrayList<>();
+            out.add(format.getFilesuffix());
+            return out;
+        }
+
+        @Override
+        public boolean matches(byte[] header) {
+
+            switch (format) {
+                case FLAC:
+                    return startsWith(header, 0, "fLaC");
+                case OGG:
+                    return startsWith(header, 0, "OggS");
+                case MP3:
+                    return startsWith(header, 0, "ID3")
+                        || header.length > 1 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xE0) == 0xE0;
+                case MP4:
+                case M4A:
+                case M4P:
+                    return startsWith(header, 4, "ftyp");
+                case WMA:
+                    return startsWith(header, 0, ASF);
+                case WAV:
+                    return startsWith(header, 0, "RIFF") && startsWith(header, 8, "WAVE");
+                case RA:
+                    return startsWith(header, 0, REAL_AUDIO);
+                case RM:
+                    return startsWith(header, 0, ".RMF");
+                case AIF:
+                case AIFF:
+                    return startsWith(header, 0, "FORM") && startsWith(header, 8, "AIFF");
+                case AIFC:
+                    return startsWith(header, 0, "FORM") && startsWith(header, 8, "AIFC");
+                case DSF:
+                    return startsWith(header, 0, "DSD ");
+                case DFF:
+                    return startsWith(header, 0, "FRM8");
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public AudioFile open(File file) throws InvalidAudioFileException {
+            return open(file, ReadOptions.getDefault());
+        }
+
+        @Override
+        public AudioFile open(File file, ReadOptions readOptions) throws InvalidAudioFileException {
+
+            switch (format) {
+                case FLAC:
+                    return new Flac(file, readOptions);
+                case OGG:
+                    return new Ogg(file, readOptions);
+                case MP3:
+                    return new Mp3(file, readOptions);
+                case MP4:
+                    return new Mp4(file, readOptions);
+                case M4A:
+                    return new M4a(file, readOptions);
+                case M4P:
+                    return new M4p(file, readOptions);
+                case WMA:
+                    return new Wma(file, readOptions);
+                case WAV:
+                    return new Wav(file, readOptions);
+                case RA:
+                    return new Ra(file, readOptions);
+                case RM:
+                    return new Rm(file, readOptions);
+                case AIF:
+                    return new Aif(file, readOptions);
+                case AIFC:
+                    return new Aifc(file, readOptions);
+                case AIFF:
+                    return new Aiff(file, readOptions);
+                case DSF:
+                    return new Dsf(file, readOptions);
+                case DFF:
+                    return new Dff(file, readOptions);
+                default:
+                    throw new IllegalStateException("No audio file for " + format);
+            }
+        }
+    }
+}
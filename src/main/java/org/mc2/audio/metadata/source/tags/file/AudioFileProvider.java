@@ -0,0 +1,74 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source.tags.file;
+
+import java.io.File;
+import java.util.Collection;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+
+/**
+ * Opens the audio files of a format, see {@link AudioFileFormats}.
+ *
+ * Third parties could add formats listing their providers in
+ * META-INF/services/org.mc2.audio.metadata.source.tags.file.AudioFileProvider,
+ * they are loaded with ServiceLoader the first time a format is looked up.
+ *
+ * @author marco
+ */
+public interface AudioFileProvider {
+
+    /**
+     * @return the file extensions of the format, lower case without the dot.
+     */
+    public Collection<String> getExtensions();
+
+    /**
+     * Tell if a file is of this format looking at its first bytes.
+     * @param header the first bytes of the file, could be less than
+     * AudioFileFormats.HEADER_SIZE for short files.
+     * @return true if the header is of this format, false if it is not or if
+     * the format can't be told by its header.
+     */
+    public boolean matches(byte[] header);
+
+    /**
+     * @param file the file.
+     * @return the audio file.
+     * @throws InvalidAudioFileException if the file can't be read.
+     */
+    public AudioFile open(File file) throws InvalidAudioFileException;
+
+    /**
+     * Open a file with the given options, formats not supporting them should
+     * not override it.
+     * @param file the file.
+     * @param readOptions the options to read the file with.
+     * @return the audio file.
+     * @throws InvalidAudioFileException if the file can't be read.
+     */
+    public default AudioFile open(File file, ReadOptions readOptions) throws InvalidAudioFileException {
+        return open(file);
+    }
+}
@@ -26,7 +26,12 @@
 package org.mc2.audio.metadata.source.tags.file;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
+import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
+import org.jaudiotagger.tag.TagException;
 import org.mc2.audio.metadata.API.Metadata;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
 import org.mc2.audio.metadata.source.tags.schema.GenericTagSchema;
@@ -44,15 +49,28 @@ public class Dff extends AudioFile {
          super(file);
     }
     
+    public Dff(File file, ReadOptions readOptions) throws InvalidAudioFileException  {
+         super(file, readOptions);
+    }
+    
     @Override
     protected void initOptions() {
         
         
-        //Default is ID3_V24.
-        //TagOptionSingleton.getInstance().setID3V2Version(ID3V2Version.ID3_V24);
-        //TagOptionSingleton.getInstance().setID3V2Version(ID3V2Version.ID3_V23);
-        //TagOptionSingleton.getInstance().setID3V2Version(ID3V2Version.ID3_V22);
+        //Default is ID3_V23, see ReadOptions.withID3V2Version().
+        
+    }
+    /* read the chunks with IffChunkReader, falling back to jaudiotagger
+     * for files it does not handle.
+     */
+    @Override
+    protected org.jaudiotagger.audio.AudioFile readAudioFile(File file) throws IOException, CannotReadException, ReadOnlyFileException, TagException, InvalidAudioFrameException {
         
+        IffChunkReader reader = IffChunkReader.readDff(file, getReadOptions());
+        if (reader == null){
+            return super.readAudioFile(file);
+        }
+        return new org.jaudiotagger.audio.AudioFile(file, reader.getAudioHeader(), reader.getTag());
     }
     @Override
     protected void initSchema() {
@@ -60,7 +78,7 @@ public class Dff extends AudioFile {
     }
 
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         return this.getGenericTagSchema().getMetadata();
     }
 
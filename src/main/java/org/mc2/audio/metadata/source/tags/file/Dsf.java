@@ -27,17 +27,38 @@
 package org.mc2.audio.metadata.source.tags.file;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import org.jaudiotagger.audio.dsf.DsdChunk;
+import org.jaudiotagger.audio.dsf.DsfFileReader;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
+import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
+import org.jaudiotagger.audio.generic.GenericAudioHeader;
+import org.jaudiotagger.audio.generic.Utils;
+import org.jaudiotagger.tag.TagException;
 import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2TagsSchema;
 import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
 import org.mc2.audio.metadata.API.Metadata;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2FrameScanner;
 /**
  *
  * @author marco
  */
 public class Dsf extends AudioFile {
 
+    /* jaudiotagger's reader, to read the audio header only. */
+    private static final class HeaderReader extends DsfFileReader {
+
+        private GenericAudioHeader readHeader(File file) throws CannotReadException, IOException {
+            return getEncodingInfo(file.toPath());
+        }
+    }
+
+
     public Dsf(String path) throws InvalidAudioFileException {
         super(path); 
     }
@@ -46,6 +67,10 @@ public class Dsf extends AudioFile {
          super(file);
     }
     
+    public Dsf(File file, ReadOptions readOptions) throws InvalidAudioFileException  {
+         super(file, readOptions);
+    }
+    
     @Override
     protected void initOptions() {
         
@@ -56,21 +81,56 @@ public class Dsf extends AudioFile {
         //TagOptionSingleton.getInstance().setID3V2Version(ID3V2Version.ID3_V22);
         
     }
+    /* The audio header is read by jaudiotagger, the ID3 tag the DSD chunk
+     * points to is scanned by ID3v2FrameScanner and decoded only when 
+     * needed, see ID3v2TagsSchema. Files without a tag to scan are read by
+     * jaudiotagger.
+     */
+    @Override
+    protected org.jaudiotagger.audio.AudioFile readAudioFile(File file) throws IOException, CannotReadException, ReadOnlyFileException, TagException, InvalidAudioFrameException {
+        
+        ID3v2FrameScanner id3v2Scanner = null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            
+            DsdChunk dsd = channel.size() < DsdChunk.DSD_HEADER_LENGTH ? null 
+                         : DsdChunk.readChunk(Utils.readFileDataIntoBufferLE(channel, DsdChunk.DSD_HEADER_LENGTH));
+            if (dsd != null && dsd.getMetadataOffset() > 0){
+                id3v2Scanner = ID3v2FrameScanner.scan(channel, dsd.getMetadataOffset(), getReadOptions().getProfile().readsArtwork());
+            }
+        }
+        if (id3v2Scanner == null){
+            return super.readAudioFile(file);
+        }
+        return new NativeAudioFile(file, new HeaderReader().readHeader(file), null, id3v2Scanner);
+    }
+    private ID3v2FrameScanner getScanner() {
+        return getNativeReader(ID3v2FrameScanner.class);
+    }
     @Override
     protected void initSchema() {
+        ID3v2FrameScanner scanner = getScanner();
+        if (scanner != null){
+            super.setTagSchema(new ID3v2TagsSchema(scanner, this));
+            return;
+        }
         AbstractID3v2Tag abstractId3v2Tag = getTag();
         super.setTagSchema(new ID3v2TagsSchema(abstractId3v2Tag, this));
        
         // We could forget wav info tags, see Init options.
     }
     
+    /* the whole tag, for a scanned tag decoded on first request.
+    */
     @Override
     public AbstractID3v2Tag getTag() {
+        if (getScanner() != null){
+            return getiD3v2Tag().getDecodedTag();
+        }
         return (AbstractID3v2Tag)super.getTag();
     } 
 
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         return this.getiD3v2Tag().getMetadata();
     }
     @Override
@@ -26,7 +26,14 @@
 package org.mc2.audio.metadata.source.tags.file;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
+import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
+import org.jaudiotagger.tag.TagException;
+import org.jaudiotagger.tag.images.Artwork;
 import org.jaudiotagger.tag.flac.FlacTag;
 import org.jaudiotagger.tag.vorbiscomment.VorbisCommentTag;
 import org.mc2.audio.metadata.API.Metadata;
@@ -46,14 +53,56 @@ public class Flac extends AudioFile{
     public Flac(File file) throws InvalidAudioFileException {
          super(file);
     }
+    
+    public Flac(File file, ReadOptions readOptions) throws InvalidAudioFileException {
+         super(file, readOptions);
+    }
     @Override
     protected void initOptions() {
         
-        // i.e. 
+        // TagOptionSingleton is shared by all the threads, options with no
+        // ReadOptions equivalent must be set once, before reading files, i.e.
         //TagOptionSingleton.getInstance().setVorbisAlbumArtistReadOptions(VorbisAlbumArtistReadOptions.READ_ALBUMARTIST);
         //TagOptionSingleton.getInstance().setVorbisAlbumArtistSaveOptions(VorbisAlbumArtistSaveOptions.WRITE_ALBUMARTIST);
 
     }  
+    /* read the metadata blocks with FlacMetadataReader, falling back to 
+     * jaudiotagger for files it does not handle.
+     */
+    @Override
+    protected org.jaudiotagger.audio.AudioFile readAudioFile(File file) throws IOException, CannotReadException, ReadOnlyFileException, TagException, InvalidAudioFrameException {
+        
+        FlacMetadataReader reader = FlacMetadataReader.read(file, getReadOptions());
+        if (reader == null){
+            return super.readAudioFile(file);
+        }
+        return new NativeAudioFile(file, reader.getAudioHeader(), reader.getTag(), reader);
+    }
+    private FlacMetadataReader getNativeReader() {
+        return getNativeReader(FlacMetadataReader.class);
+    }
+    /* pictures are read only when artworks are requested.
+    */
+    @Override
+    protected List<Artwork> getArtworkList() {
+        
+        FlacMetadataReader reader = getNativeReader();
+        if (reader != null){
+            reader.loadPictures();
+        }
+        return super.getArtworkList();
+    }
+    /**
+     * @return the exact number of samples, null if unknown.
+     */
+    public Long getTotalSamples() {
+        
+        FlacMetadataReader reader = getNativeReader();
+        if (reader != null){
+            return reader.getTotalSamples();
+        }
+        return getAudioHeader().getNoOfSamples();
+    }
     @Override
     protected void initSchema(){
         
@@ -72,7 +121,7 @@ public class Flac extends AudioFile{
         return (VorbisCommentTagSchema)super.getTagSchema();
     }
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         //return this.vorbisCommentTagSchema.getMetadata();
         return getVorbisCommentTagSchema().getMetadata();
     }
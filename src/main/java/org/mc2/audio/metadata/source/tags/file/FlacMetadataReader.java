@@ -0,0 +1,390 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source.tags.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jaudiotagger.audio.flac.FlacAudioHeader;
+import org.jaudiotagger.audio.flac.metadatablock.MetadataBlockDataPicture;
+import org.jaudiotagger.tag.InvalidFrameException;
+import org.jaudiotagger.tag.flac.FlacTag;
+import org.jaudiotagger.tag.vorbiscomment.VorbisCommentTag;
+import org.jaudiotagger.tag.vorbiscomment.VorbisCommentTagField;
+
+/**
+ * Reads the metadata blocks of a FLAC file without jaudiotagger's
+ * AudioFileIO, which decodes every block, images included.
+ *
+ * Blocks are walked from a single buffer filled with a positional read of
+ * the file head, STREAMINFO and VORBIS_COMMENT are decoded, PICTURE and
+ * CUESHEET blocks are only located, pictures are read when first requested.
+ * PICTURE blocks are not even located when the profile reads no artworks.
+ *
+ * Anything unusual (ID3 tags before the stream, bad or duplicated blocks,
+ * truncated files) is left to jaudiotagger: read() returns null.
+ *
+ * @author marco
+ */
+public final class FlacMetadataReader {
+
+    private final static Logger logger = Logger.getLogger(FlacMetadataReader.class.getCanonicalName());
+
+    private static final int STREAMINFO = 0;
+    private static final int VORBIS_COMMENT = 4;
+    private static final int CUESHEET = 5;
+    private static final int PICTURE = 6;
+    private static final int INVALID = 127;
+
+    private static final int HEADER_LENGTH = 4;
+    private static final int STREAMINFO_LENGTH = 34;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** As jaudiotagger, longer comments are taken as corrupted. */
+    private static final int MAX_COMMENT_LENGTH = 10000000;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File file;
+    private final long fileSize;
+    private final boolean readsArtwork;
+
+    private int sampleRate;
+    private int channels;
+    private int bitsPerSample;
+    private long totalSamples;
+    private String md5;
+    private long audioDataStart;
+
+    private VorbisCommentTag vorbisComment;
+    private final ArrayList<long[]> pictureBlocks = new ArrayList<>();
+    private long cueSheetOffset = -1;
+    private int cueSheetLength;
+
+    private final ArrayList<MetadataBlockDataPicture> images = new ArrayList<>();
+    private boolean imagesLoaded;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long bufferStart;
+
+    private FlacMetadataReader(File file, FileChannel channel, boolean readsArtwork) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.readsArtwork = readsArtwork;
+    }
+
+    /**
+     * Read the metadata blocks of a FLAC file.
+     * @param file the file.
+     * @return the reader, null if the file should be read by jaudiotagger.
+     * @throws IOException if the file can't be read.
+     */
+    public static FlacMetadataReader read(File file) throws IOException {
+        return read(file, ReadOptions.getDefault());
+    }
+
+    /**
+     * Read the metadata blocks of a FLAC file.
+     * @param file the file.
+     * @param readOptions the options to read the file with.
+     * @return the reader, null if the file should be read by jaudiotagger.
+     * @throws IOException if the file can't be read.
+     */
+    public static FlacMetadataReader read(File file, ReadOptions readOptions) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            FlacMetadataReader reader = new FlacMetadataReader(file, channel, readOptions.getProfile().readsArtwork());
+            boolean done = reader.readBlocks();
+            reader.channel = null;
+            reader.buffer = null;
+            return done ? reader : null;
+
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+            logger.log(Level.FINE, "Unable to read " + file + ", left to jaudiotagger", ex);
+            return null;
+        }
+    }
+
+    private boolean readBlocks() throws IOException {
+
+        if (!fill(0, HEADER_LENGTH) || buffer.getInt(0) != 0x664C6143) { // fLaC
+            return false;
+        }
+        long position = HEADER_LENGTH;
+        boolean last = false;
+        boolean first = true;
+
+        while (!last) {
+
+            if (!fill(position, HEADER_LENGTH)) {
+                return false;
+            }
+            int at = (int) (position - bufferStart);
+            int header = buffer.getInt(at);
+            last = (header & 0x80000000) != 0;
+            int type = (header >>> 24) & 0x7F;
+            int length = header & 0xFFFFFF;
+            long data = position + HEADER_LENGTH;
+
+            if (type == INVALID || data + length > fileSize) {
+                return false;
+            }
+            if (first != (type == STREAMINFO)) {
+                return false;
+            }
+            first = false;
+
+            switch (type) {
+                case STREAMINFO:
+                    if (length != STREAMINFO_LENGTH || !fill(data, length) || !readStreamInfo((int) (data - bufferStart))) {
+                        return false;
+                    }
+                    break;
+                case VORBIS_COMMENT:
+                    if (vorbisComment != null || !fill(data, length) || !readVorbisComment((int) (data - bufferStart), length)) {
+                        return false;
+                    }
+                    break;
+                case PICTURE:
+                    if (readsArtwork) {
+                        pictureBlocks.add(new long[]{data, length});
+                    }
+                    break;
+                case CUESHEET:
+                    cueSheetOffset = data;
+                    cueSheetLength = length;
+                    break;
+                default:
+                    break;
+            }
+            position = data + length;
+        }
+        audioDataStart = position;
+
+        if (vorbisComment == null) {
+            vorbisComment = VorbisCommentTag.createNewTag();
+        }
+        return true;
+    }
+
+    /* Make [position, position + length) available in the buffer, reading
+     * the file from position if it is not there already.
+     */
+    private boolean fill(long position, int length) throws IOException {
+
+        if (position + length > fileSize) {
+            return false;
+        }
+        if (buffer != null && position >= bufferStart && position + length <= bufferStart + buffer.limit()) {
+            return true;
+        }
+        buffer = ByteBuffer.allocate(Math.max(length, (int) Math.min(BUFFER_SIZE, fileSize - position)));
+        bufferStart = position;
+
+        long at = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, at);
+            if (read < 0) {
+                break;
+            }
+            at += read;
+        }
+        buffer.flip();
+        return buffer.limit() >= length;
+    }
+
+    private boolean readStreamInfo(int at) {
+
+        // 20 bits sample rate, 3 bits channels - 1, 5 bits bits per sample - 1, 36 bits total samples.
+        long packed = buffer.getLong(at + 10);
+        sampleRate = (int) (packed >>> 44);
+        channels = (int) ((packed >>> 41) & 0x7) + 1;
+        bitsPerSample = (int) ((packed >>> 36) & 0x1F) + 1;
+        totalSamples = packed & 0xFFFFFFFFFL;
+
+        char[] hex = new char[32];
+        for (int i = 0; i < 16; i++) {
+            int value = buffer.get(at + 18 + i) & 0xFF;
+            hex[i * 2] = HEX[value >>> 4];
+            hex[i * 2 + 1] = HEX[value & 0x0F];
+        }
+        md5 = new String(hex);
+
+        return sampleRate > 0;
+    }
+
+    private boolean readVorbisComment(int at, int length) throws IOException {
+
+        ByteBuffer comment = buffer.duplicate();
+        comment.position(at);
+        comment.limit(at + length);
+        comment = comment.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        VorbisCommentTag tag = VorbisCommentTag.createNewTag();
+
+        int vendorLength = comment.getInt();
+        if (vendorLength < 0 || vendorLength > comment.remaining()) {
+            return false;
+        }
+        tag.setVendor(new String(bytes(comment, vendorLength), StandardCharsets.UTF_8));
+
+        int count = comment.getInt();
+        for (int i = 0; i < count; i++) {
+
+            int fieldLength = comment.getInt();
+            if (fieldLength < 0 || fieldLength > MAX_COMMENT_LENGTH || fieldLength > comment.remaining()) {
+                return false;
+            }
+            tag.addField(new VorbisCommentTagField(bytes(comment, fieldLength)));
+        }
+        vorbisComment = tag;
+        return true;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int length) {
+
+        byte[] out = new byte[length];
+        buffer.get(out);
+        return out;
+    }
+
+    /**
+     * @return the audio header, as built by jaudiotagger but with the exact
+     * number of samples.
+     */
+    public FlacAudioHeader getAudioHeader() {
+
+        FlacAudioHeader out = new FlacAudioHeader();
+        double length = (double) totalSamples / sampleRate;
+
+        out.setNoOfSamples(totalSamples);
+        out.setPreciseLength(length);
+        out.setChannelNumber(channels);
+        out.setSamplingRate(sampleRate);
+        out.setBitsPerSample(bitsPerSample);
+        out.setEncodingType("FLAC " + bitsPerSample + " bits");
+        out.setLossless(true);
+        out.setMd5(md5);
+        out.setAudioDataLength(fileSize - audioDataStart);
+        out.setAudioDataStartPosition(audioDataStart);
+        out.setAudioDataEndPosition(fileSize);
+        out.setBitRate(length > 0 ? (int) ((fileSize - audioDataStart) / 1000 * 8 / length) : 0);
+        return out;
+    }
+
+    /**
+     * @return the tag, pictures are added by loadPictures().
+     */
+    public FlacTag getTag() {
+        return new FlacTag(vorbisComment, images);
+    }
+
+    /**
+     * Read the PICTURE blocks into the tag, only the first time.
+     */
+    public synchronized void loadPictures() {
+
+        if (imagesLoaded) {
+            return;
+        }
+        imagesLoaded = true;
+
+        if (pictureBlocks.isEmpty()) {
+            return;
+        }
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            for (long[] block : pictureBlocks) {
+
+                ByteBuffer data = ByteBuffer.allocate((int) block[1]);
+                while (data.hasRemaining()) {
+                    if (in.read(data, block[0] + data.position()) < 0) {
+                        break;
+                    }
+                }
+                data.flip();
+                try {
+                    images.add(new MetadataBlockDataPicture(data));
+                } catch (IOException | InvalidFrameException ex) {
+                    logger.log(Level.WARNING, "Unable to read picture metablock, ignoring: {0}", ex.getMessage());
+                }
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Unable to read pictures of " + file, ex);
+        }
+    }
+
+    /**
+     * @return the exact number of samples per channel, 0 if unknown.
+     */
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    /**
+     * @return the sample rate in Hz.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return the number of PICTURE blocks.
+     */
+    public int getPictureCount() {
+        return pictureBlocks.size();
+    }
+
+    /**
+     * @return the file offset of the CUESHEET block data, -1 if none.
+     */
+    public long getCueSheetOffset() {
+        return cueSheetOffset;
+    }
+
+    /**
+     * @return the length of the CUESHEET block data, 0 if none.
+     */
+    public int getCueSheetLength() {
+        return cueSheetLength;
+    }
+
+    /**
+     * @return the file offset of the first audio frame.
+     */
+    public long getAudioDataStart() {
+        return audioDataStart;
+    }
+}
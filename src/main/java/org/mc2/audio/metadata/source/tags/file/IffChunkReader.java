@@ -0,0 +1,738 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source.tags.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jaudiotagger.audio.aiff.AiffAudioHeader;
+import org.jaudiotagger.audio.aiff.AiffType;
+import org.jaudiotagger.audio.aiff.chunk.AnnotationChunk;
+import org.jaudiotagger.audio.aiff.chunk.ApplicationChunk;
+import org.jaudiotagger.audio.aiff.chunk.AuthorChunk;
+import org.jaudiotagger.audio.aiff.chunk.CommentsChunk;
+import org.jaudiotagger.audio.aiff.chunk.CommonChunk;
+import org.jaudiotagger.audio.aiff.chunk.CopyrightChunk;
+import org.jaudiotagger.audio.aiff.chunk.FormatVersionChunk;
+import org.jaudiotagger.audio.aiff.chunk.NameChunk;
+import org.jaudiotagger.audio.generic.GenericAudioHeader;
+import org.jaudiotagger.audio.iff.Chunk;
+import org.jaudiotagger.audio.iff.ChunkHeader;
+import org.jaudiotagger.audio.wav.WavOptions;
+import org.jaudiotagger.audio.wav.chunk.WavFactChunk;
+import org.jaudiotagger.audio.wav.chunk.WavFormatChunk;
+import org.jaudiotagger.audio.wav.chunk.WavInfoIdentifier;
+import org.jaudiotagger.tag.FieldDataInvalidException;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.TagException;
+import org.jaudiotagger.tag.aiff.AiffTag;
+import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
+import org.jaudiotagger.tag.id3.ID3v22Tag;
+import org.jaudiotagger.tag.id3.ID3v23Tag;
+import org.jaudiotagger.tag.id3.ID3v24Tag;
+import org.jaudiotagger.tag.reference.ID3V2Version;
+import org.jaudiotagger.tag.wav.WavInfoTag;
+import org.jaudiotagger.tag.wav.WavTag;
+import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2FrameScanner;
+
+/**
+ * Reads the chunks of RIFF (WAV), IFF (AIFF, AIFC) and DSDIFF (DFF) files
+ * without jaudiotagger's AudioFileIO, which walks the containers twice.
+ *
+ * Only chunk headers are read while walking, seeking from one to the next,
+ * so the tags at the end of the audio data are found without reading it.
+ * Format chunks and tag chunks are the only ones read in full, chunks only
+ * adding to the audio header (fact, the AIFF text chunks, the DST frame
+ * rate) are skipped when the profile reads no durations.
+ *
+ * The ID3 chunk of WAV and AIFF files is scanned by ID3v2FrameScanner, see
+ * getID3Scanner(), unless WAV tags have to be synced.
+ *
+ * Anything unusual (misaligned or corrupted chunks, chunks past the end of
+ * the file, unreadable tags) is left to jaudiotagger: read methods return
+ * null.
+ *
+ * @author marco
+ */
+public final class IffChunkReader {
+
+    private final static Logger logger = Logger.getLogger(IffChunkReader.class.getCanonicalName());
+
+    private static final int RIFF_HEADER_LENGTH = 12;
+    private static final int RIFF_CHUNK_HEADER_LENGTH = 8;
+    private static final int DFF_CHUNK_HEADER_LENGTH = 12;
+    private static final int ID3_HEADER_LENGTH = 10;
+    /** Longer chunks are not read, the file is left to jaudiotagger. */
+    private static final int MAX_CHUNK_LENGTH = 32 * 1024 * 1024;
+
+    private static final int WAVE_FORMAT_PCM = 0x0001;
+    private static final int WAVE_FORMAT_IEEE_FLOAT = 0x0003;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final File file;
+    private final long fileSize;
+    private final boolean readsDuration;
+    private final boolean readsArtwork;
+    private FileChannel channel;
+
+    private GenericAudioHeader audioHeader;
+    private Tag tag;
+    private ID3v2FrameScanner id3Scanner;
+
+    private IffChunkReader(File file, FileChannel channel, ReadOptions readOptions) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.readsDuration = readOptions.getProfile().readsDuration();
+        this.readsArtwork = readOptions.getProfile().readsArtwork();
+    }
+
+    /**
+     * Read the chunks of a WAV file.
+     * @param file the file.
+     * @param readOptions the options to read the file with.
+     * @return the reader, null if the file should be read by jaudiotagger.
+     * @throws IOException if the file can't be read.
+     */
+    public static IffChunkReader readWav(File file, ReadOptions readOptions) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            IffChunkReader reader = new IffChunkReader(file, channel, readOptions);
+            return reader.done(reader.readWavChunks(readOptions));
+
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+            logger.log(Level.FINE, "Unable to read " + file + ", left to jaudiotagger", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Read the chunks of an AIFF or AIFC file.
+     * @param file the file.
+     * @param readOptions the options to read the file with.
+     * @return the reader, null if the file should be read by jaudiotagger.
+     * @throws IOException if the file can't be read.
+     */
+    public static IffChunkReader readAiff(File file, ReadOptions readOptions) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            IffChunkReader reader = new IffChunkReader(file, channel, readOptions);
+            return reader.done(reader.readAiffChunks(readOptions));
+
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+            logger.log(Level.FINE, "Unable to read " + file + ", left to jaudiotagger", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Read the chunks of a DSDIFF file.
+     * @param file the file.
+     * @param readOptions the options to read the file with.
+     * @return the reader, null if the file should be read by jaudiotagger.
+     * @throws IOException if the file can't be read.
+     */
+    public static IffChunkReader readDff(File file, ReadOptions readOptions) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            IffChunkReader reader = new IffChunkReader(file, channel, readOptions);
+            return reader.done(reader.readDffChunks());
+
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+            logger.log(Level.FINE, "Unable to read " + file + ", left to jaudiotagger", ex);
+            return null;
+        }
+    }
+
+    private IffChunkReader done(boolean done) {
+
+        channel = null;
+        if (!done) {
+            logger.log(Level.FINE, "Unable to read {0}, left to jaudiotagger", file);
+            return null;
+        }
+        return this;
+    }
+
+    /* RIFF: little endian 32 bits sizes, fmt and data chunks are required,
+     * tags are in the first LIST INFO and id3 chunks, synced as jaudiotagger
+     * does when the WAV options ask for it.
+     */
+    private boolean readWavChunks(ReadOptions readOptions) throws IOException {
+
+        ByteBuffer riff = read(0, RIFF_HEADER_LENGTH, ByteOrder.LITTLE_ENDIAN);
+        if (riff == null || !"RIFF".equals(id(riff, 0)) || !"WAVE".equals(id(riff, 8))) {
+            return false;
+        }
+        GenericAudioHeader header = new GenericAudioHeader();
+        WavTag wavTag = new WavTag(readOptions.getWavOptions());
+        int formatTag = -1;
+        int blockAlign = 0;
+        boolean foundData = false;
+        boolean foundInfo = false;
+        boolean foundId3 = false;
+        long id3Position = 0;
+        long id3Size = 0;
+
+        long position = RIFF_HEADER_LENGTH;
+        while (position + RIFF_CHUNK_HEADER_LENGTH <= fileSize) {
+
+            ByteBuffer chunk = read(position, RIFF_CHUNK_HEADER_LENGTH, ByteOrder.LITTLE_ENDIAN);
+            String id = id(chunk, 0);
+            long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            long data = position + RIFF_CHUNK_HEADER_LENGTH;
+
+            if (id == null || data + size > fileSize) {
+                return false;
+            }
+            switch (id) {
+                case "fmt ":
+                    ByteBuffer format = read(data, size, ByteOrder.LITTLE_ENDIAN);
+                    if (format == null || format.limit() < 16
+                            || !new WavFormatChunk(format, chunkHeader(id, size, ByteOrder.LITTLE_ENDIAN), header).readChunk()) {
+                        return false;
+                    }
+                    formatTag = format.getShort(0) & 0xFFFF;
+                    blockAlign = format.getShort(12) & 0xFFFF;
+                    break;
+                case "fact":
+                    if (!readsDuration) {
+                        break;
+                    }
+                    ByteBuffer fact = read(data, size, ByteOrder.LITTLE_ENDIAN);
+                    if (fact == null || !new WavFactChunk(fact, chunkHeader(id, size, ByteOrder.LITTLE_ENDIAN), header).readChunk()) {
+                        return false;
+                    }
+                    break;
+                case "data":
+                    header.setAudioDataLength(size);
+                    header.setAudioDataStartPosition(data);
+                    header.setAudioDataEndPosition(data + size);
+                    foundData = true;
+                    break;
+                case "LIST":
+                    if (foundInfo || size < 4) {
+                        break;
+                    }
+                    ByteBuffer type = read(data, 4, ByteOrder.LITTLE_ENDIAN);
+                    if (!"INFO".equals(id(type, 0))) {
+                        break;
+                    }
+                    ByteBuffer list = read(data, size, ByteOrder.LITTLE_ENDIAN);
+                    WavInfoTag infoTag = new WavInfoTag();
+                    if (list == null || !readInfo(list, infoTag)) {
+                        return false;
+                    }
+                    infoTag.setStartLocationInFile(position);
+                    infoTag.setEndLocationInFile(data + size);
+                    wavTag.setInfoTag(infoTag);
+                    wavTag.setExistingInfoTag(true);
+                    foundInfo = true;
+                    break;
+                case "id3 ":
+                case "ID3 ":
+                    if (foundId3) {
+                        break;
+                    }
+                    AbstractID3v2Tag id3Tag = readOrScanID3(data, size);
+                    if (id3Tag == null) {
+                        return false;
+                    }
+                    wavTag.setID3Tag(id3Tag);
+                    wavTag.setExistingId3Tag(true);
+                    foundId3 = true;
+                    id3Position = data;
+                    id3Size = size;
+                    break;
+                default:
+                    break;
+            }
+            position = data + size + (size & 1);
+        }
+        if (formatTag < 0 || !foundData) {
+            return false;
+        }
+        // with no fact chunk, PCM data holds a whole number of sample frames.
+        if (header.getNoOfSamples() == null && blockAlign > 0
+                && (formatTag == WAVE_FORMAT_PCM || formatTag == WAVE_FORMAT_IEEE_FLOAT || formatTag == WAVE_FORMAT_EXTENSIBLE)) {
+            header.setNoOfSamples(header.getAudioDataLength() / blockAlign);
+        }
+        if (header.getNoOfSamples() != null && header.getSampleRateAsNumber() > 0) {
+            header.setPreciseLength((double) header.getNoOfSamples() / header.getSampleRateAsNumber());
+        } else if (header.getAudioDataLength() > 0 && header.getByteRate() != null && header.getByteRate() > 0) {
+            header.setPreciseLength((double) header.getAudioDataLength() / header.getByteRate());
+        } else {
+            return false;
+        }
+        header.setLossless(true);
+
+        if (!foundId3) {
+            wavTag.setID3Tag(createDefaultID3Tag(readOptions));
+        }
+        if (!foundInfo) {
+            wavTag.setInfoTag(new WavInfoTag());
+        }
+        // the scanned tag is read as is only if it is the active one, unsynced.
+        if (id3Scanner != null && (foundInfo && isSyncing(readOptions.getWavOptions())
+                                   || !(wavTag.getActiveTag() instanceof AbstractID3v2Tag))) {
+            id3Scanner = null;
+            AbstractID3v2Tag id3Tag = readID3(id3Position, id3Size);
+            if (id3Tag == null) {
+                return false;
+            }
+            wavTag.setID3Tag(id3Tag);
+        }
+        syncTagsAfterRead(wavTag, readOptions.getWavOptions());
+
+        audioHeader = header;
+        tag = wavTag;
+        return true;
+    }
+
+    /* the LIST INFO sub chunks, decoded as jaudiotagger does.
+     */
+    private static boolean readInfo(ByteBuffer list, WavInfoTag infoTag) {
+
+        list.position(4);
+        while (list.remaining() >= 4) {
+
+            String id = new String(bytes(list, 4), StandardCharsets.ISO_8859_1);
+            if (id.trim().isEmpty()) {
+                return true;
+            }
+            int size = list.getInt();
+            for (int i = 0; i < 4; i++) {
+                if (!Character.isAlphabetic(id.charAt(i))) {
+                    return false;
+                }
+            }
+            if (size < 0 || size > list.remaining()) {
+                return false;
+            }
+            String value = new String(bytes(list, size), StandardCharsets.UTF_8);
+
+            WavInfoIdentifier identifier = WavInfoIdentifier.getByCode(id);
+            if (identifier != null && identifier.getFieldKey() != null) {
+                try {
+                    infoTag.setField(identifier.getFieldKey(), value);
+                } catch (FieldDataInvalidException ex) {
+                    logger.log(Level.FINE, "Invalid INFO field {0}, ignoring: {1}", new Object[]{id, ex.getMessage()});
+                }
+            } else if (!value.trim().isEmpty()) {
+                infoTag.addUnRecognizedField(id, value);
+            }
+            if ((size & 1) != 0 && list.hasRemaining()) {
+                list.get();
+            }
+        }
+        return true;
+    }
+
+    /* IFF: big endian 32 bits sizes, the COMM chunk is required, the tag
+     * is in the first ID3 chunk.
+     */
+    private boolean readAiffChunks(ReadOptions readOptions) throws IOException {
+
+        ByteBuffer form = read(0, RIFF_HEADER_LENGTH, ByteOrder.BIG_ENDIAN);
+        if (form == null || !"FORM".equals(id(form, 0))) {
+            return false;
+        }
+        AiffAudioHeader header = new AiffAudioHeader();
+        String formType = id(form, 8);
+        if (AiffType.AIFF.getCode().equals(formType)) {
+            header.setFileType(AiffType.AIFF);
+        } else if (AiffType.AIFC.getCode().equals(formType)) {
+            header.setFileType(AiffType.AIFC);
+        } else {
+            return false;
+        }
+        long end = Math.min(RIFF_CHUNK_HEADER_LENGTH + (form.getInt(4) & 0xFFFFFFFFL), fileSize);
+        AiffTag aiffTag = new AiffTag();
+        boolean foundCommon = false;
+        boolean foundId3 = false;
+
+        long position = RIFF_HEADER_LENGTH;
+        while (position + RIFF_CHUNK_HEADER_LENGTH <= end) {
+
+            ByteBuffer chunk = read(position, RIFF_CHUNK_HEADER_LENGTH, ByteOrder.BIG_ENDIAN);
+            String id = id(chunk, 0);
+            long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            long data = position + RIFF_CHUNK_HEADER_LENGTH;
+
+            if (id == null || data + size > fileSize) {
+                return false;
+            }
+            ChunkHeader chunkHeader = chunkHeader(id, size, ByteOrder.BIG_ENDIAN);
+            switch (id) {
+                case "COMM":
+                    ByteBuffer common = read(data, size, ByteOrder.BIG_ENDIAN);
+                    if (common == null || !new CommonChunk(chunkHeader, common, header).readChunk()) {
+                        return false;
+                    }
+                    foundCommon = true;
+                    break;
+                case "SSND":
+                    header.setAudioDataLength(size);
+                    header.setAudioDataStartPosition(data);
+                    header.setAudioDataEndPosition(data + size);
+                    break;
+                case "FVER":
+                case "APPL":
+                case "COMT":
+                case "NAME":
+                case "AUTH":
+                case "(c) ":
+                case "ANNO":
+                    if (!readsDuration) {
+                        break;
+                    }
+                    ByteBuffer text = read(data, size, ByteOrder.BIG_ENDIAN);
+                    if (text == null || !aiffChunk(chunkHeader, text, header).readChunk()) {
+                        return false;
+                    }
+                    break;
+                case "ID3 ":
+                    if (foundId3 || size == 0) {
+                        break;
+                    }
+                    AbstractID3v2Tag id3Tag = readOrScanID3(data, size);
+                    if (id3Tag == null) {
+                        return false;
+                    }
+                    aiffTag.setID3Tag(id3Tag);
+                    aiffTag.setExistingId3Tag(true);
+                    foundId3 = true;
+                    break;
+                default:
+                    break;
+            }
+            position = data + size + (size & 1);
+        }
+        if (!foundCommon || header.getPreciseTrackLength() <= 0) {
+            return false;
+        }
+        if (header.getAudioDataLength() != null) {
+            header.setBitRate((int) Math.round(header.getAudioDataLength() * 8 / (header.getPreciseTrackLength() * 1000)));
+        }
+        if (!foundId3) {
+            aiffTag.setID3Tag(createDefaultID3Tag(readOptions));
+        }
+        audioHeader = header;
+        tag = aiffTag;
+        return true;
+    }
+
+    /* the jaudiotagger chunk setting the header fields other than COMM.
+     */
+    private static Chunk aiffChunk(ChunkHeader chunkHeader, ByteBuffer data, AiffAudioHeader header) {
+
+        switch (chunkHeader.getID()) {
+            case "FVER":
+                return new FormatVersionChunk(chunkHeader, data, header);
+            case "APPL":
+                return new ApplicationChunk(chunkHeader, data, header);
+            case "COMT":
+                return new CommentsChunk(chunkHeader, data, header);
+            case "NAME":
+                return new NameChunk(chunkHeader, data, header);
+            case "AUTH":
+                return new AuthorChunk(chunkHeader, data, header);
+            case "(c) ":
+                return new CopyrightChunk(chunkHeader, data, header);
+            default:
+                return new AnnotationChunk(chunkHeader, data, header);
+        }
+    }
+
+    /* DSDIFF: big endian 64 bits sizes, sample rate and channels are in the
+     * PROP chunk, the audio data is a DSD or DST chunk, the tag is in the
+     * first ID3 chunk, usually after the audio data.
+     */
+    private boolean readDffChunks() throws IOException {
+
+        ByteBuffer form = read(0, DFF_CHUNK_HEADER_LENGTH + 4, ByteOrder.BIG_ENDIAN);
+        if (form == null || !"FRM8".equals(id(form, 0)) || !"DSD ".equals(id(form, 12))) {
+            return false;
+        }
+        long end = form.getLong(4) < 0 ? fileSize : Math.min(DFF_CHUNK_HEADER_LENGTH + form.getLong(4), fileSize);
+        int sampleRate = 0;
+        int channels = 0;
+        long samples = -1;
+        boolean dst = false;
+        AbstractID3v2Tag id3Tag = null;
+
+        long position = DFF_CHUNK_HEADER_LENGTH + 4;
+        while (position + DFF_CHUNK_HEADER_LENGTH <= end) {
+
+            ByteBuffer chunk = read(position, DFF_CHUNK_HEADER_LENGTH, ByteOrder.BIG_ENDIAN);
+            String id = id(chunk, 0);
+            long size = chunk.getLong(4);
+            long data = position + DFF_CHUNK_HEADER_LENGTH;
+
+            if (id == null || size < 0 || data + size > fileSize) {
+                return false;
+            }
+            switch (id) {
+                case "PROP":
+                    ByteBuffer prop = read(data, size, ByteOrder.BIG_ENDIAN);
+                    if (prop == null || size < 4 || !"SND ".equals(id(prop, 0))) {
+                        return false;
+                    }
+                    int at = 4;
+                    while (at + DFF_CHUNK_HEADER_LENGTH <= prop.limit()) {
+
+                        String propId = id(prop, at);
+                        long propSize = prop.getLong(at + 4);
+                        int propData = at + DFF_CHUNK_HEADER_LENGTH;
+                        if (propId == null || propSize < 0 || propData + propSize > prop.limit()) {
+                            return false;
+                        }
+                        if ("FS  ".equals(propId) && propSize >= 4) {
+                            sampleRate = prop.getInt(propData);
+                        } else if ("CHNL".equals(propId) && propSize >= 2) {
+                            channels = prop.getShort(propData);
+                        }
+                        at = (int) (propData + propSize + (propSize & 1));
+                    }
+                    break;
+                case "DSD ":
+                    if (channels > 0) {
+                        samples = size * 8 / channels;
+                    }
+                    break;
+                case "DST ":
+                    dst = true;
+                    if (!readsDuration) {
+                        samples = 0;
+                        break;
+                    }
+                    // the FRTE chunk, first in DST, holds frames count and rate.
+                    ByteBuffer frte = read(data, DFF_CHUNK_HEADER_LENGTH + 6, ByteOrder.BIG_ENDIAN);
+                    if (frte == null || !"FRTE".equals(id(frte, 0)) || frte.getShort(16) <= 0) {
+                        return false;
+                    }
+                    samples = (frte.getInt(12) & 0xFFFFFFFFL) * sampleRate / frte.getShort(16);
+                    break;
+                case "ID3 ":
+                    if (id3Tag != null) {
+                        break;
+                    }
+                    id3Tag = readID3(data, size);
+                    if (id3Tag == null) {
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            position = data + size + (size & 1);
+        }
+        if (sampleRate <= 0 || channels <= 0 || samples < 0) {
+            return false;
+        }
+        GenericAudioHeader header = new GenericAudioHeader();
+        header.setEncodingType("DFF");
+        header.setBitRate(sampleRate * channels);
+        header.setBitsPerSample(1);
+        header.setChannelNumber(channels);
+        header.setSamplingRate(sampleRate);
+        header.setNoOfSamples(samples);
+        header.setPreciseLength((double) samples / sampleRate);
+        header.setVariableBitRate(dst);
+
+        audioHeader = header;
+        tag = id3Tag;
+        return true;
+    }
+
+    /* the tag in an ID3 chunk, an empty tag of its version if the chunk is
+     * scanned instead, null if it can't be decoded.
+     */
+    private AbstractID3v2Tag readOrScanID3(long position, long size) throws IOException {
+
+        ID3v2FrameScanner scanner = ID3v2FrameScanner.scan(channel, position, readsArtwork);
+        if (scanner == null || scanner.getTagSize() > size) {
+            return readID3(position, size);
+        }
+        id3Scanner = scanner;
+        return scanner.getMajorVersion() == 4 ? new ID3v24Tag() : new ID3v23Tag();
+    }
+
+    /* the tag in an ID3 chunk, null if it can't be decoded.
+     */
+    private AbstractID3v2Tag readID3(long position, long size) throws IOException {
+
+        ByteBuffer data = read(position, size, ByteOrder.BIG_ENDIAN);
+        if (data == null || data.limit() < ID3_HEADER_LENGTH
+                || data.get(0) != 'I' || data.get(1) != 'D' || data.get(2) != '3') {
+            return null;
+        }
+        AbstractID3v2Tag id3Tag;
+        try {
+            switch (data.get(3)) {
+                case 2:
+                    id3Tag = new ID3v22Tag(data, file.getName());
+                    break;
+                case 3:
+                    id3Tag = new ID3v23Tag(data, file.getName());
+                    break;
+                case 4:
+                    id3Tag = new ID3v24Tag(data, file.getName());
+                    break;
+                default:
+                    return null;
+            }
+        } catch (TagException ex) {
+            logger.log(Level.FINE, "Unable to read ID3 chunk of " + file, ex);
+            return null;
+        }
+        id3Tag.setStartLocationInFile(position);
+        id3Tag.setEndLocationInFile(position + size);
+        return id3Tag;
+    }
+
+    /**
+     * Sync the WAV tags as jaudiotagger does after reading, if the options
+     * ask for it.
+     * @param wavTag the tag.
+     * @param wavOptions the options.
+     */
+    static void syncTagsAfterRead(WavTag wavTag, WavOptions wavOptions) {
+
+        if (isSyncing(wavOptions)) {
+            wavTag.syncTagsAfterRead();
+        }
+    }
+
+    private static boolean isSyncing(WavOptions wavOptions) {
+
+        switch (wavOptions) {
+            case READ_ID3_ONLY_AND_SYNC:
+            case READ_INFO_ONLY_AND_SYNC:
+            case READ_ID3_UNLESS_ONLY_INFO_AND_SYNC:
+            case READ_INFO_UNLESS_ONLY_ID3_AND_SYNC:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /* as jaudiotagger, an empty tag of the ID3v2 version in the options.
+     */
+    private static AbstractID3v2Tag createDefaultID3Tag(ReadOptions readOptions) {
+
+        ID3V2Version version = readOptions.getID3V2Version();
+        if (version == ID3V2Version.ID3_V22) {
+            return new ID3v22Tag();
+        }
+        if (version == ID3V2Version.ID3_V23) {
+            return new ID3v23Tag();
+        }
+        return new ID3v24Tag();
+    }
+
+    private static ChunkHeader chunkHeader(String id, long size, ByteOrder order) {
+
+        ChunkHeader out = new ChunkHeader(order);
+        out.setID(id);
+        out.setSize(size);
+        return out;
+    }
+
+    /* the chunk id at, null if not printable ASCII as a valid id is.
+     */
+    private static String id(ByteBuffer buffer, int at) {
+
+        char[] id = new char[4];
+        for (int i = 0; i < 4; i++) {
+            int c = buffer.get(at + i) & 0xFF;
+            if (c < 0x20 || c > 0x7E) {
+                return null;
+            }
+            id[i] = (char) c;
+        }
+        return new String(id);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int length) {
+
+        byte[] out = new byte[length];
+        buffer.get(out);
+        return out;
+    }
+
+    /* [position, position + length) of the file, null if past its end or
+     * too long to be a chunk worth reading.
+     */
+    private ByteBuffer read(long position, long length, ByteOrder order) throws IOException {
+
+        if (length > MAX_CHUNK_LENGTH || position + length > fileSize) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length).order(order);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return the audio header, as built by jaudiotagger but with the exact
+     * number of samples.
+     */
+    public GenericAudioHeader getAudioHeader() {
+        return audioHeader;
+    }
+
+    /**
+     * @return the tag, a WavTag, an AiffTag or, for DSDIFF, the ID3 tag if
+     * any.
+     */
+    public Tag getTag() {
+        return tag;
+    }
+
+    /**
+     * @return the scanner of the ID3 chunk of a WAV or AIFF file, null if
+     * the chunk has been decoded. With a scanner the tag holds an empty ID3
+     * tag until the caller sets the decoded one.
+     */
+    public ID3v2FrameScanner getID3Scanner() {
+        return id3Scanner;
+    }
+}
@@ -26,17 +26,14 @@
 package org.mc2.audio.metadata.source.tags.file;
 
 import java.io.File;
-import java.util.ArrayList;
-import org.jaudiotagger.tag.mp4.Mp4Tag;
-import org.mc2.audio.metadata.API.Metadata;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
-import org.mc2.audio.metadata.source.tags.schema.Mp4TagSchema;
 
 /**
+ * Read as any MP4 file, see Mp4.
  *
  * @author marco
  */
-public class M4p extends AudioFile{
+public class M4p extends Mp4{
     
     public M4p(String path) throws InvalidAudioFileException {
         super(path); 
@@ -45,35 +42,8 @@ public class M4p extends AudioFile{
     public M4p(File file) throws InvalidAudioFileException {
          super(file);
     }
-    @Override
-    protected void initOptions() {
-       
-          //Add here reader/Writer format options.
-    }  
-    @Override
-    protected void initSchema()  {
-        
-        Mp4Tag Mp4Tag = getTag();
-        super.setTagSchema(new Mp4TagSchema(Mp4Tag, this));
-
-    }
-    @Override
-    public Mp4Tag getTag() {
-        return (Mp4Tag) super.getTag();
-    } 
-
-    public Mp4TagSchema getMp4TagSchema() {
-        return (Mp4TagSchema)super.getTagSchema();
-    }
-    @Override
-    public ArrayList<Metadata> getMetadata() {
-        return getMp4TagSchema().getMetadata();
-    }
-    @Override
-    public ArrayList<Metadata> getExistingMetadata(){
-
-        return getMp4TagSchema().getExistingMetadata();
-    }
     
+    public M4p(File file, ReadOptions readOptions) throws InvalidAudioFileException {
+         super(file, readOptions);
+    }
 }
-    
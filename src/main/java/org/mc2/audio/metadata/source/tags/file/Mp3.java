@@ -26,17 +26,36 @@
 package org.mc2.audio.metadata.source.tags.file;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2TagsSchema;
+import org.jaudiotagger.audio.AudioHeader;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
+import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
+import org.jaudiotagger.audio.mp3.MP3AudioHeader;
+import org.jaudiotagger.tag.TagException;
 import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
+import org.jaudiotagger.tag.reference.PictureTypes;
+import org.mc2.audio.metadata.API.CoverArt;
 import org.mc2.audio.metadata.API.Metadata;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.source.coverart.CoverArtReference;
+import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2FrameScanner;
+import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2FrameScanner.PictureReference;
 /**
  *
  * @author marco
  */
 public class Mp3 extends AudioFile {
 
+    private final static Logger logger = Logger.getLogger(Mp3.class.getCanonicalName());
+    
+    private MP3AudioHeader audioHeader;
+    
     public Mp3(String path) throws InvalidAudioFileException {
         super(path); 
     }
@@ -45,24 +64,106 @@ public class Mp3 extends AudioFile {
          super(file);
     }
     
+    public Mp3(File file, ReadOptions readOptions) throws InvalidAudioFileException {
+         super(file, readOptions);
+    }
+    
     @Override
     protected void initOptions() {
 
+    }
+    /* With an ID3v2.3 or 2.4 tag only the audio header is read here, the 
+     * tag is scanned by ID3v2FrameScanner and its frames decoded by 
+     * jaudiotagger only when needed, see ID3v2TagsSchema. Other files are 
+     * read by jaudiotagger.
+     * If the profile reads no durations the audio header is read when first
+     * requested, and APIC frames are skipped if it reads no artworks.
+     */
+    @Override
+    protected org.jaudiotagger.audio.AudioFile readAudioFile(File file) throws IOException, CannotReadException, ReadOnlyFileException, TagException, InvalidAudioFrameException {
+        
+        ID3v2FrameScanner id3v2Scanner = ID3v2FrameScanner.scan(file, 0, getReadOptions().getProfile().readsArtwork());
+        if (id3v2Scanner != null){
+            
+            if (!getReadOptions().getProfile().readsDuration()){
+                return new NativeAudioFile(file, null, null, id3v2Scanner);
+            }
+            MP3AudioHeader header = new MP3AudioHeader(file, id3v2Scanner.getTagSize());
+            if (header.getMp3StartByte() == id3v2Scanner.getTagSize()){
+                return new NativeAudioFile(file, header, null, id3v2Scanner);
+            }
+        }
+        return super.readAudioFile(file);
+    }
+    private ID3v2FrameScanner getScanner() {
+        return getNativeReader(ID3v2FrameScanner.class);
+    }
+    /* the header not read with the file is read here, null if it can't be.
+    */
+    @Override
+    public synchronized AudioHeader getAudioHeader() {
+        
+        AudioHeader header = super.getAudioHeader();
+        if (header != null || getScanner() == null){
+            return header;
+        }
+        if (audioHeader == null){
+            try {
+                audioHeader = new MP3AudioHeader(getFile(), getScanner().getTagSize());
+            } catch (IOException | InvalidAudioFrameException ex) {
+                logger.log(Level.WARNING, "Unable to read the audio header of " + getFile(), ex);
+            }
+        }
+        return audioHeader;
     }
     @Override
     protected void initSchema() {
-        AbstractID3v2Tag abstractId3v2Tag = getTag();
-        super.setTagSchema(new ID3v2TagsSchema(abstractId3v2Tag, this));
-
+        ID3v2FrameScanner scanner = getScanner();
+        if (scanner != null){
+            super.setTagSchema(new ID3v2TagsSchema(scanner, this));
+        } else {
+            AbstractID3v2Tag abstractId3v2Tag = getTag();
+            super.setTagSchema(new ID3v2TagsSchema(abstractId3v2Tag, this));
+        }
     }
     
+    /* the whole tag, for a scanned tag decoded on first request.
+    */
     @Override
     public AbstractID3v2Tag getTag() {
-        return (AbstractID3v2Tag) super.getTag();
+        
+        if (getScanner() == null){
+            return (AbstractID3v2Tag) super.getTag();
+        }
+        return getiD3v2Tag().getDecodedTag();
     } 
+    
+    /* From the scanned APIC frames, without decoding the tag.
+    */
+    @Override
+    public ArrayList<CoverArt> getEmbeddedArtworkReferences(){
+        
+        ArrayList<PictureReference> pictures = getiD3v2Tag().getPictureReferences();
+        if (pictures == null){
+            return super.getEmbeddedArtworkReferences();
+        }
+        ArrayList<CoverArt> out=new ArrayList<>();
+        int i = 0;
+        for (PictureReference picture : pictures){
+            
+            out.add(new CoverArtReference(CoverArt.SOURCE_EMBEDDED_FILE,
+                                          getFile(),
+                                          i,
+                                          picture.isLinked() ? new String(picture.getData(), StandardCharsets.ISO_8859_1) : "",
+                                          PictureTypes.getInstanceOf().getValueForId(picture.getPictureType()),
+                                          picture.getDescription()));
+            i++;
+        }
+        return out;
+    }
 
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         return this.getiD3v2Tag().getMetadata();
     }
     @Override
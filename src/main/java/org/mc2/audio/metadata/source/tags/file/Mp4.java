@@ -26,8 +26,14 @@
 package org.mc2.audio.metadata.source.tags.file;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
+import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
+import org.jaudiotagger.tag.TagException;
 import org.jaudiotagger.tag.mp4.Mp4Tag;
+import org.mc2.audio.metadata.API.CoverArt;
 import org.mc2.audio.metadata.API.Metadata;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
 import org.mc2.audio.metadata.source.tags.schema.Mp4TagSchema;
@@ -45,28 +51,68 @@ public class Mp4 extends AudioFile{
     public Mp4(File file) throws InvalidAudioFileException {
          super(file);
     }
+    
+    public Mp4(File file, ReadOptions readOptions) throws InvalidAudioFileException {
+         super(file, readOptions);
+    }
     @Override
     protected void initOptions()  {
        
           //Add here reader/Writer format options.
     }  
+    /* read the atoms with Mp4AtomReader, falling back to jaudiotagger for 
+     * files it does not handle.
+     */
+    @Override
+    protected org.jaudiotagger.audio.AudioFile readAudioFile(File file) throws IOException, CannotReadException, ReadOnlyFileException, TagException, InvalidAudioFrameException {
+        
+        Mp4AtomReader reader = Mp4AtomReader.read(file, getReadOptions());
+        if (reader == null){
+            return super.readAudioFile(file);
+        }
+        return new NativeAudioFile(file, reader.getAudioHeader(), reader.getTag(), reader);
+    }
+    private Mp4AtomReader getNativeReader() {
+        return getNativeReader(Mp4AtomReader.class);
+    }
     @Override
     protected void initSchema() {
         
+        Mp4AtomReader reader = getNativeReader();
+        if (reader != null){
+            super.setTagSchema(new Mp4TagSchema(reader.getTag(), this, reader.getCoverCount() > 0));
+            return;
+        }
         Mp4Tag Mp4Tag = getTag();
         super.setTagSchema(new Mp4TagSchema(Mp4Tag, this));
 
     }
+    /* cover art is read only when the complete tag is requested.
+    */
     @Override
     public Mp4Tag getTag() {
+        
+        Mp4AtomReader reader = getNativeReader();
+        if (reader != null){
+            return reader.getCompleteTag();
+        }
         return (Mp4Tag) super.getTag();
     } 
+    @Override
+    public ArrayList<CoverArt> getEmbeddedArtworkReferences(){
+        
+        Mp4AtomReader reader = getNativeReader();
+        if (reader != null){
+            return reader.getCoverArtReferences();
+        }
+        return super.getEmbeddedArtworkReferences();
+    }
 
     public Mp4TagSchema getMp4TagSchema() {
         return (Mp4TagSchema)super.getTagSchema();
     }
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         //return this.vorbisCommentTagSchema.getMetadata();
         return getMp4TagSchema().getMetadata();
     }
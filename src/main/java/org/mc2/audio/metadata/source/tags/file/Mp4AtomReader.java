@@ -0,0 +1,736 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source.tags.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.mp4.EncoderType;
+import org.jaudiotagger.audio.mp4.Mp4AtomIdentifier;
+import org.jaudiotagger.audio.mp4.Mp4AudioHeader;
+import org.jaudiotagger.audio.mp4.atom.Mp4AlacBox;
+import org.jaudiotagger.audio.mp4.atom.Mp4BoxHeader;
+import org.jaudiotagger.audio.mp4.atom.Mp4DrmsBox;
+import org.jaudiotagger.audio.mp4.atom.Mp4EsdsBox;
+import org.jaudiotagger.audio.mp4.atom.Mp4FtypBox;
+import org.jaudiotagger.audio.mp4.atom.Mp4MdhdBox;
+import org.jaudiotagger.audio.mp4.atom.Mp4Mp4aBox;
+import org.jaudiotagger.audio.mp4.atom.Mp4StsdBox;
+import org.jaudiotagger.tag.TagField;
+import org.jaudiotagger.tag.images.Artwork;
+import org.jaudiotagger.tag.images.ArtworkFactory;
+import org.jaudiotagger.tag.mp4.Mp4FieldKey;
+import org.jaudiotagger.tag.mp4.Mp4Tag;
+import org.jaudiotagger.tag.mp4.field.Mp4DiscNoField;
+import org.jaudiotagger.tag.mp4.field.Mp4FieldType;
+import org.jaudiotagger.tag.mp4.field.Mp4GenreField;
+import org.jaudiotagger.tag.mp4.field.Mp4TagBinaryField;
+import org.jaudiotagger.tag.mp4.field.Mp4TagByteField;
+import org.jaudiotagger.tag.mp4.field.Mp4TagCoverField;
+import org.jaudiotagger.tag.mp4.field.Mp4TagRawBinaryField;
+import org.jaudiotagger.tag.mp4.field.Mp4TagReverseDnsField;
+import org.jaudiotagger.tag.mp4.field.Mp4TagTextField;
+import org.jaudiotagger.tag.mp4.field.Mp4TagTextNumberField;
+import org.jaudiotagger.tag.mp4.field.Mp4TrackField;
+import org.jaudiotagger.tag.reference.PictureTypes;
+import org.mc2.audio.metadata.API.CoverArt;
+import org.mc2.audio.metadata.source.coverart.CoverArtReference;
+
+/**
+ * Reads the audio header and the tag of an MP4 file (MP4, M4A, M4P) walking
+ * its atoms, without jaudiotagger's AudioFileIO, which reads the whole moov
+ * atom, sample tables included, more than once.
+ *
+ * Atoms are skipped by their headers, so moov is found also at the end of
+ * the file, after mdat. From moov only mvhd, the mdhd, stsd and stco (or
+ * co64) atoms of the first track and the items of udta/meta/ilst are read;
+ * covr items are only located, images are read when the complete tag is
+ * requested.
+ * When the profile reads no durations the sample description is skipped,
+ * the header holds the length and jaudiotagger's defaults; when it reads no
+ * artworks covr items are skipped.
+ *
+ * Boxes and items are decoded by jaudiotagger's box and field classes, as
+ * Mp4InfoReader and Mp4TagReader do. Anything unusual (video tracks, missing
+ * or truncated atoms) is left to jaudiotagger: read() returns null.
+ *
+ * @author marco
+ */
+public final class Mp4AtomReader {
+
+    private final static Logger logger = Logger.getLogger(Mp4AtomReader.class.getCanonicalName());
+
+    private static final String FTYP = Mp4AtomIdentifier.FTYP.getFieldName();
+    private static final String MOOV = Mp4AtomIdentifier.MOOV.getFieldName();
+    private static final String MVHD = Mp4AtomIdentifier.MVHD.getFieldName();
+    private static final String TRAK = Mp4AtomIdentifier.TRAK.getFieldName();
+    private static final String MDIA = Mp4AtomIdentifier.MDIA.getFieldName();
+    private static final String MDHD = Mp4AtomIdentifier.MDHD.getFieldName();
+    private static final String MINF = Mp4AtomIdentifier.MINF.getFieldName();
+    private static final String SMHD = Mp4AtomIdentifier.SMHD.getFieldName();
+    private static final String VMHD = Mp4AtomIdentifier.VMHD.getFieldName();
+    private static final String STBL = Mp4AtomIdentifier.STBL.getFieldName();
+    private static final String STSD = Mp4AtomIdentifier.STSD.getFieldName();
+    private static final String STCO = Mp4AtomIdentifier.STCO.getFieldName();
+    private static final String CO64 = Mp4AtomIdentifier.CO64.getFieldName();
+    private static final String MP4A = Mp4AtomIdentifier.MP4A.getFieldName();
+    private static final String DRMS = Mp4AtomIdentifier.DRMS.getFieldName();
+    private static final String ALAC = Mp4AtomIdentifier.ALAC.getFieldName();
+    private static final String ESDS = Mp4AtomIdentifier.ESDS.getFieldName();
+    private static final String UDTA = Mp4AtomIdentifier.UDTA.getFieldName();
+    private static final String META = Mp4AtomIdentifier.META.getFieldName();
+    private static final String ILST = Mp4AtomIdentifier.ILST.getFieldName();
+    private static final String DATA = "data";
+    private static final String REVERSE_DNS = "----";
+
+    private static final int HEADER_LENGTH = 8;
+    private static final int LARGE_HEADER_LENGTH = 16;
+    /** Version and flags of full atoms, as meta. */
+    private static final int FLAGS_LENGTH = 4;
+    /** Position of the type in the data atom of an item, after its header and version. */
+    private static final int DATA_TYPE_POS = 9;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Longer atoms are taken as corrupted, but the skipped ones and covr. */
+    private static final int MAX_ATOM_LENGTH = 16 * 1024 * 1024;
+
+    private final File file;
+    private final long fileSize;
+    private final boolean readsDuration;
+    private final boolean readsArtwork;
+
+    private final Mp4AudioHeader audioHeader = new Mp4AudioHeader();
+    private final Mp4Tag tag = new Mp4Tag();
+    private final ArrayList<Item> items = new ArrayList<>();
+    private int coverCount;
+    private Mp4Tag completeTag;
+    /** Set once channels and bit rate are read, jaudiotagger's getters fail before. */
+    private boolean described;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long bufferStart;
+
+    private Mp4AtomReader(File file, FileChannel channel, ReadOptions readOptions) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.readsDuration = readOptions.getProfile().readsDuration();
+        this.readsArtwork = readOptions.getProfile().readsArtwork();
+    }
+
+    /**
+     * Read the audio header and the tag of an MP4 file.
+     * @param file the file.
+     * @return the reader, null if the file should be read by jaudiotagger.
+     * @throws IOException if the file can't be read.
+     */
+    public static Mp4AtomReader read(File file) throws IOException {
+        return read(file, ReadOptions.getDefault());
+    }
+
+    /**
+     * Read the audio header and the tag of an MP4 file.
+     * @param file the file.
+     * @param readOptions the options to read the file with.
+     * @return the reader, null if the file should be read by jaudiotagger.
+     * @throws IOException if the file can't be read.
+     */
+    public static Mp4AtomReader read(File file, ReadOptions readOptions) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            Mp4AtomReader reader = new Mp4AtomReader(file, channel, readOptions);
+            boolean done = reader.readAtoms();
+            reader.channel = null;
+            reader.buffer = null;
+            return done ? reader : null;
+
+        } catch (CannotReadException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+            logger.log(Level.FINE, "Unable to read " + file + ", left to jaudiotagger", ex);
+            return null;
+        }
+    }
+
+    private boolean readAtoms() throws IOException, CannotReadException {
+
+        Atom ftyp = null;
+        Atom moov = null;
+        long position = 0;
+
+        while (position < fileSize && (ftyp == null || moov == null)) {
+
+            Atom atom = atom(position, fileSize);
+            if (ftyp == null && atom.is(FTYP)) {
+                ftyp = atom;
+            } else if (moov == null && atom.is(MOOV)) {
+                moov = atom;
+            }
+            position = atom.end;
+        }
+        if (ftyp == null || moov == null) {
+            return false;
+        }
+        Mp4FtypBox ftypBox = new Mp4FtypBox(header(ftyp), data(ftyp));
+        ftypBox.processData();
+        audioHeader.setBrand(ftypBox.getMajorBrand());
+
+        return readMoov(moov);
+    }
+
+    private boolean readMoov(Atom moov) throws IOException, CannotReadException {
+
+        Atom mvhd = child(moov, MVHD);
+        if (mvhd == null || !readMovieHeader(mvhd)) {
+            return false;
+        }
+        Atom track = null;
+        Atom udta = null;
+        Atom meta = null;
+
+        long position = moov.data;
+        while (position < moov.end) {
+
+            Atom atom = atom(position, moov.end);
+            if (atom.is(TRAK)) {
+                // as jaudiotagger, audio is read from the first track and files with video are refused.
+                if (track == null) {
+                    track = atom;
+                } else if (isVideo(atom)) {
+                    return false;
+                }
+            } else if (udta == null && atom.is(UDTA)) {
+                udta = atom;
+            } else if (meta == null && atom.is(META)) {
+                meta = atom;
+            }
+            position = atom.end;
+        }
+        if (track == null || !readTrack(track)) {
+            return false;
+        }
+        Atom udtaMeta = udta == null ? null : child(udta, META);
+        if (udtaMeta != null) {
+            meta = udtaMeta;
+        }
+        return meta == null || readMeta(meta);
+    }
+
+    private boolean readMovieHeader(Atom mvhd) throws IOException {
+
+        ByteBuffer data = data(mvhd);
+        long timeScale;
+        long duration;
+
+        if (data.get(0) == 1) {
+            timeScale = data.getInt(20) & 0xFFFFFFFFL;
+            duration = data.getLong(24);
+        } else {
+            timeScale = data.getInt(12) & 0xFFFFFFFFL;
+            duration = data.getInt(16) & 0xFFFFFFFFL;
+        }
+        if (timeScale == 0) {
+            return false;
+        }
+        audioHeader.setPreciseLength((double) duration / timeScale);
+        return true;
+    }
+
+    private boolean isVideo(Atom trak) throws IOException {
+
+        Atom mdia = child(trak, MDIA);
+        Atom minf = mdia == null ? null : child(mdia, MINF);
+        return minf != null && child(minf, VMHD) != null;
+    }
+
+    /* as Mp4InfoReader, but reading only the atoms needed.
+     */
+    private boolean readTrack(Atom trak) throws IOException, CannotReadException {
+
+        Atom mdia = child(trak, MDIA);
+        Atom mdhd = mdia == null ? null : child(mdia, MDHD);
+        Atom minf = mdhd == null ? null : child(mdia, MINF);
+        if (minf == null || child(minf, SMHD) == null) {
+            return false;
+        }
+        Atom stbl = child(minf, STBL);
+        if (stbl == null) {
+            return false;
+        }
+        audioHeader.setSamplingRate(new Mp4MdhdBox(header(mdhd), data(mdhd)).getSampleRate());
+
+        Atom stsd = readsDuration ? child(stbl, STSD) : null;
+        if (stsd != null) {
+            readSampleDescription(stsd);
+        }
+        if (readsDuration) {
+            // version and flags, number of offsets, first offset: 32 bits in
+            // stco, 64 bits in co64. Without either, left to jaudiotagger.
+            Atom stco = child(stbl, STCO);
+            Atom offsets = stco != null ? stco : child(stbl, CO64);
+            int length = stco != null ? 12 : 16;
+            if (offsets == null || offsets.end - offsets.data < length || !fill(offsets.data, length)
+                    || buffer.getInt((int) (offsets.data - bufferStart) + 4) == 0) {
+                return false;
+            }
+            int at = (int) (offsets.data - bufferStart) + 8;
+            long firstOffset = stco != null ? buffer.getInt(at) & 0xFFFFFFFFL : buffer.getLong(at);
+            if (firstOffset < 0) {
+                return false;
+            }
+            audioHeader.setAudioDataStartPosition(firstOffset);
+            audioHeader.setAudioDataEndPosition(fileSize);
+            audioHeader.setAudioDataLength(fileSize - firstOffset);
+        }
+        if (!described || audioHeader.getChannelNumber() == -1) {
+            audioHeader.setChannelNumber(2);
+        }
+        if (!described || audioHeader.getBitRateAsNumber() == -1) {
+            audioHeader.setBitRate(128);
+        }
+        if (audioHeader.getBitsPerSample() == -1) {
+            audioHeader.setBitsPerSample(16);
+        }
+        if (audioHeader.getEncodingType() == null || audioHeader.getEncodingType().isEmpty()) {
+            audioHeader.setEncodingType(EncoderType.AAC.getDescription());
+        }
+        return true;
+    }
+
+    private void readSampleDescription(Atom stsd) throws IOException, CannotReadException {
+
+        ByteBuffer data = data(stsd);
+        new Mp4StsdBox(header(stsd), data).processData();
+        int position = data.position();
+
+        Mp4BoxHeader boxHeader = Mp4BoxHeader.seekWithinLevel(data, MP4A);
+        if (boxHeader != null) {
+
+            ByteBuffer mp4a = data.slice();
+            new Mp4Mp4aBox(boxHeader, mp4a).processData();
+            boxHeader = Mp4BoxHeader.seekWithinLevel(mp4a, ESDS);
+            if (boxHeader != null) {
+                readEsds(new Mp4EsdsBox(boxHeader, mp4a.slice()), EncoderType.AAC);
+            }
+            return;
+        }
+        data.position(position);
+        boxHeader = Mp4BoxHeader.seekWithinLevel(data, DRMS);
+        if (boxHeader != null) {
+
+            new Mp4DrmsBox(boxHeader, data).processData();
+            boxHeader = Mp4BoxHeader.seekWithinLevel(data, ESDS);
+            if (boxHeader != null) {
+                readEsds(new Mp4EsdsBox(boxHeader, data.slice()), EncoderType.DRM_AAC);
+            }
+            return;
+        }
+        data.position(position);
+        boxHeader = Mp4BoxHeader.seekWithinLevel(data, ALAC);
+        if (boxHeader != null) {
+
+            // the sample entry first, then the alac atom with the decoder configuration.
+            new Mp4AlacBox(boxHeader, data).processData();
+            boxHeader = Mp4BoxHeader.seekWithinLevel(data, ALAC);
+            if (boxHeader != null) {
+
+                Mp4AlacBox alac = new Mp4AlacBox(boxHeader, data);
+                alac.processData();
+                audioHeader.setEncodingType(EncoderType.APPLE_LOSSLESS.getDescription());
+                audioHeader.setChannelNumber(alac.getChannels());
+                audioHeader.setBitRate(alac.getBitRate() / 1000);
+                audioHeader.setBitsPerSample(alac.getSampleSize());
+                described = true;
+            }
+        }
+    }
+
+    private void readEsds(Mp4EsdsBox esds, EncoderType encoderType) {
+
+        audioHeader.setBitRate(esds.getAvgBitrate() / 1000);
+        audioHeader.setChannelNumber(esds.getNumberOfChannels());
+        audioHeader.setKind(esds.getKind());
+        audioHeader.setProfile(esds.getAudioProfile());
+        audioHeader.setEncodingType(encoderType.getDescription());
+        described = true;
+    }
+
+    private boolean readMeta(Atom meta) throws IOException {
+
+        // meta is a full atom, as Mp4MetaBox the version must be 0.
+        if (meta.end - meta.data < FLAGS_LENGTH || !fill(meta.data, FLAGS_LENGTH) || buffer.get((int) (meta.data - bufferStart)) != 0) {
+            return false;
+        }
+        Atom ilst = child(meta.data + FLAGS_LENGTH, meta.end, ILST);
+        if (ilst == null) {
+            return true;
+        }
+        long position = ilst.data;
+        while (position < ilst.end) {
+
+            Atom item = atom(position, ilst.end);
+            if (item.data - item.start != HEADER_LENGTH) {
+                return false;
+            }
+            readItem(item);
+            position = item.end;
+        }
+        return true;
+    }
+
+    /* as Mp4TagReader.createMp4Field(), but cover art items are not read.
+     */
+    private void readItem(Atom item) throws IOException {
+
+        long length = item.end - item.data;
+        if (length == 0) {
+            return;
+        }
+        if (item.is(REVERSE_DNS)) {
+
+            Mp4BoxHeader header = header(item);
+            ByteBuffer raw = data(item);
+            try {
+                addField(new Mp4TagReverseDnsField(header, raw));
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Unable to create reverse dns field, creating binary field: {0}", ex.getMessage());
+                addField(new Mp4TagRawBinaryField(header, raw));
+            }
+            return;
+        }
+        if (length < HEADER_LENGTH || !fill(item.data, HEADER_LENGTH)) {
+            throw new IllegalArgumentException("Invalid item " + item.id);
+        }
+        if (!DATA.equals(string((int) (item.data - bufferStart) + 4, 4))) {
+
+            addField(new Mp4TagRawBinaryField(header(item), data(item)));
+            return;
+        }
+        if (length < DATA_TYPE_POS + 3 || !fill(item.data, DATA_TYPE_POS + 3)) {
+            throw new IllegalArgumentException("Invalid item " + item.id);
+        }
+        int type = int24(buffer, (int) (item.data - bufferStart) + DATA_TYPE_POS);
+        Mp4FieldType fieldType = Mp4FieldType.getFieldType(type);
+
+        if (item.is(Mp4FieldKey.TRACK.getFieldName())) {
+            addField(new Mp4TrackField(item.id, data(item)));
+        } else if (item.is(Mp4FieldKey.DISCNUMBER.getFieldName())) {
+            addField(new Mp4DiscNoField(item.id, data(item)));
+        } else if (item.is(Mp4FieldKey.GENRE.getFieldName())) {
+            addField(new Mp4GenreField(item.id, data(item)));
+        } else if (item.is(Mp4FieldKey.ARTWORK.getFieldName()) || Mp4FieldType.isCoverArtType(fieldType)) {
+            if (readsArtwork) {
+                addCover(item);
+            }
+        } else if (fieldType == Mp4FieldType.TEXT) {
+            addField(new Mp4TagTextField(item.id, data(item)));
+        } else if (fieldType == Mp4FieldType.IMPLICIT) {
+            addField(new Mp4TagTextNumberField(item.id, data(item)));
+        } else if (fieldType == Mp4FieldType.INTEGER) {
+            addField(new Mp4TagByteField(item.id, data(item)));
+        } else {
+            for (Mp4FieldKey key : Mp4FieldKey.values()) {
+                if (key.getFieldName().equals(item.id)) {
+                    logger.log(Level.WARNING, "Known Field:{0} with invalid field type of:{1} is ignored", new Object[]{item.id, type});
+                    return;
+                }
+            }
+            addField(new Mp4TagBinaryField(item.id, data(item)));
+        }
+    }
+
+    private void addField(TagField field) {
+
+        tag.addField(field);
+        items.add(new Item(field, null));
+    }
+
+    /* count the images, one for each data atom, without reading them.
+     */
+    private void addCover(Atom item) throws IOException {
+
+        long position = item.data;
+        while (position < item.end) {
+
+            if (!fill(position, HEADER_LENGTH)) {
+                throw new IllegalArgumentException("Invalid cover art item");
+            }
+            long length = buffer.getInt((int) (position - bufferStart)) & 0xFFFFFFFFL;
+            if (length < HEADER_LENGTH || position + length > item.end) {
+                throw new IllegalArgumentException("Invalid cover art item");
+            }
+            coverCount++;
+            position += length;
+        }
+        if (item.end - item.data > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid cover art item");
+        }
+        items.add(new Item(null, item));
+    }
+
+    /* the atom header at position, atoms must not exceed end.
+     */
+    private Atom atom(long position, long end) throws IOException {
+
+        if (!fill(position, HEADER_LENGTH)) {
+            throw new IllegalArgumentException("Truncated atom at " + position);
+        }
+        int at = (int) (position - bufferStart);
+        long length = buffer.getInt(at) & 0xFFFFFFFFL;
+        String id = string(at + 4, 4);
+        long data = position + HEADER_LENGTH;
+
+        if (length == 1) {
+            if (!fill(position, LARGE_HEADER_LENGTH)) {
+                throw new IllegalArgumentException("Truncated atom at " + position);
+            }
+            length = buffer.getLong((int) (position - bufferStart) + HEADER_LENGTH);
+            data = position + LARGE_HEADER_LENGTH;
+        } else if (length == 0) {
+            length = end - position;
+        }
+        if (length < data - position || position + length > end) {
+            throw new IllegalArgumentException("Invalid atom " + id + " at " + position);
+        }
+        return new Atom(id, position, data, position + length);
+    }
+
+    private Atom child(Atom parent, String id) throws IOException {
+        return child(parent.data, parent.end, id);
+    }
+
+    /* the first atom with the id in [start, end), null if none.
+     */
+    private Atom child(long start, long end, String id) throws IOException {
+
+        long position = start;
+        while (position < end) {
+
+            Atom atom = atom(position, end);
+            if (atom.is(id)) {
+                return atom;
+            }
+            position = atom.end;
+        }
+        return null;
+    }
+
+    private Mp4BoxHeader header(Atom atom) throws IOException {
+
+        if (atom.data - atom.start != HEADER_LENGTH || !fill(atom.start, HEADER_LENGTH)) {
+            throw new IllegalArgumentException("Unsupported atom " + atom.id);
+        }
+        return new Mp4BoxHeader(slice(atom.start, HEADER_LENGTH));
+    }
+
+    private ByteBuffer data(Atom atom) throws IOException {
+
+        long length = atom.end - atom.data;
+        if (length > MAX_ATOM_LENGTH || !fill(atom.data, (int) length)) {
+            throw new IllegalArgumentException("Invalid atom " + atom.id);
+        }
+        return slice(atom.data, (int) length);
+    }
+
+    private ByteBuffer slice(long position, int length) {
+
+        ByteBuffer out = buffer.duplicate();
+        out.position((int) (position - bufferStart));
+        out.limit((int) (position - bufferStart) + length);
+        return out.slice();
+    }
+
+    private String string(int at, int length) {
+
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(at + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int int24(ByteBuffer buffer, int at) {
+        return ((buffer.get(at) & 0xFF) << 16) | ((buffer.get(at + 1) & 0xFF) << 8) | (buffer.get(at + 2) & 0xFF);
+    }
+
+    /* Make [position, position + length) available in the buffer, reading
+     * the file from position if it is not there already.
+     */
+    private boolean fill(long position, int length) throws IOException {
+
+        if (position + length > fileSize) {
+            return false;
+        }
+        if (buffer != null && position >= bufferStart && position + length <= bufferStart + buffer.limit()) {
+            return true;
+        }
+        buffer = ByteBuffer.allocate(Math.max(length, (int) Math.min(BUFFER_SIZE, fileSize - position)));
+        bufferStart = position;
+
+        long at = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, at);
+            if (read < 0) {
+                break;
+            }
+            at += read;
+        }
+        buffer.flip();
+        return buffer.limit() >= length;
+    }
+
+    /**
+     * @return the audio header, as built by jaudiotagger but with the exact
+     * length.
+     */
+    public Mp4AudioHeader getAudioHeader() {
+        return audioHeader;
+    }
+
+    /**
+     * @return the tag without the cover art fields, see getCompleteTag().
+     */
+    public Mp4Tag getTag() {
+        return tag;
+    }
+
+    /**
+     * Read the cover art items, only the first time.
+     * @return the tag with all the fields, in file order.
+     */
+    public synchronized Mp4Tag getCompleteTag() {
+
+        if (coverCount == 0) {
+            return tag;
+        }
+        if (completeTag != null) {
+            return completeTag;
+        }
+        Mp4Tag out = new Mp4Tag();
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            for (Item item : items) {
+                if (item.field != null) {
+                    out.addField(item.field);
+                } else {
+                    addCovers(out, in, item.cover);
+                }
+            }
+            completeTag = out;
+
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException ex) {
+            logger.log(Level.WARNING, "Unable to read cover art of " + file, ex);
+            completeTag = tag;
+        }
+        return completeTag;
+    }
+
+    /* as Mp4TagReader, a cover field for each data atom.
+     */
+    private static void addCovers(Mp4Tag out, FileChannel in, Atom cover) throws IOException {
+
+        int length = (int) (cover.end - cover.data);
+        ByteBuffer raw = ByteBuffer.allocate(length);
+        while (raw.hasRemaining()) {
+            if (in.read(raw, cover.data + raw.position()) < 0) {
+                throw new IOException("Truncated cover art item");
+            }
+        }
+        raw.flip();
+
+        int processed = 0;
+        while (processed < length) {
+
+            Mp4FieldType fieldType = Mp4FieldType.getFieldType(int24(raw, processed + DATA_TYPE_POS));
+            Mp4TagCoverField field = new Mp4TagCoverField(raw, fieldType);
+            out.addField(field);
+            processed += field.getDataAndHeaderSize();
+        }
+    }
+
+    /**
+     * @return the number of cover art images.
+     */
+    public int getCoverCount() {
+        return coverCount;
+    }
+
+    /**
+     * References to the cover art images, as built from the complete tag but
+     * without reading them.
+     * @return the references.
+     */
+    public ArrayList<CoverArt> getCoverArtReferences() {
+
+        // jaudiotagger sets only data and mime type of MP4 artworks.
+        Artwork blank = ArtworkFactory.getNew();
+        String type = PictureTypes.getInstanceOf().getValueForId(blank.getPictureType());
+
+        ArrayList<CoverArt> out = new ArrayList<>();
+        for (int i = 0; i < coverCount; i++) {
+            out.add(new CoverArtReference(CoverArt.SOURCE_EMBEDDED_FILE, file, i, "", type, blank.getDescription()));
+        }
+        return out;
+    }
+
+    private static final class Atom {
+
+        private final String id;
+        private final long start;
+        private final long data;
+        private final long end;
+
+        private Atom(String id, long start, long data, long end) {
+            this.id = id;
+            this.start = start;
+            this.data = data;
+            this.end = end;
+        }
+
+        private boolean is(String id) {
+            return this.id.equals(id);
+        }
+    }
+
+    /* an ilst item: its field, or the cover art atom not read yet.
+     */
+    private static final class Item {
+
+        private final TagField field;
+        private final Atom cover;
+
+        private Item(TagField field, Atom cover) {
+            this.field = field;
+            this.cover = cover;
+        }
+    }
+}
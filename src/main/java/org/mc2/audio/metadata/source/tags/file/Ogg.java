@@ -45,10 +45,15 @@ public class Ogg extends AudioFile{
     public Ogg(File file) throws InvalidAudioFileException  {
          super(file);
     }
+    
+    public Ogg(File file, ReadOptions readOptions) throws InvalidAudioFileException  {
+         super(file, readOptions);
+    }
     @Override
     protected void initOptions()  {
         
-        // i.e. 
+        // TagOptionSingleton is shared by all the threads, options with no
+        // ReadOptions equivalent must be set once, before reading files, i.e.
         //TagOptionSingleton.getInstance().setVorbisAlbumArtistReadOptions(VorbisAlbumArtistReadOptions.READ_ALBUMARTIST);
         //TagOptionSingleton.getInstance().setVorbisAlbumArtistSaveOptions(VorbisAlbumArtistSaveOptions.WRITE_ALBUMARTIST);
 
@@ -71,7 +76,7 @@ public class Ogg extends AudioFile{
         return (VorbisCommentTagSchema)super.getTagSchema();
     }
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         //return this.vorbisCommentTagSchema.getMetadata();
         return getVorbisCommentTagSchema().getMetadata();
     }
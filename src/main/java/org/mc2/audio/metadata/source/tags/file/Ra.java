@@ -45,6 +45,10 @@ public class Ra extends AudioFile{
     public Ra(File file) throws InvalidAudioFileException {
          super(file);
     }
+    
+    public Ra(File file, ReadOptions readOptions) throws InvalidAudioFileException {
+         super(file, readOptions);
+    }
     @Override
     protected void initOptions()  {
        
@@ -66,7 +70,7 @@ public class Ra extends AudioFile{
         return (RealTagSchema)super.getTagSchema();
     }
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         return getRealTagSchema().getMetadata();
     }
     @Override
@@ -0,0 +1,131 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source.tags.file;
+
+import org.jaudiotagger.audio.wav.WavOptions;
+import org.jaudiotagger.tag.reference.ID3V2Version;
+import org.mc2.audio.metadata.source.ScanProfile;
+
+/**
+ * The options an audio file is read with, in place of jaudiotagger's
+ * TagOptionSingleton which is shared by the whole process.
+ *
+ * Options are immutable and belong to a single read, so files of different
+ * formats, with different options, could be read by more threads at the
+ * same time. Formats read by jaudiotagger itself still see the
+ * TagOptionSingleton defaults, options are applied to what it returns.
+ *
+ * The profile tells the readers what is not needed: with no durations the
+ * audio header could be read only when requested, or left incomplete, with
+ * no artworks embedded pictures are not located nor read.
+ *
+ * @author marco
+ */
+public final class ReadOptions {
+
+    private static final ReadOptions DEFAULT = new ReadOptions(WavOptions.READ_ID3_ONLY_AND_SYNC, ID3V2Version.ID3_V23, ScanProfile.FULL);
+
+    private final WavOptions wavOptions;
+    private final ID3V2Version id3V2Version;
+    private final ScanProfile profile;
+
+    private ReadOptions(WavOptions wavOptions, ID3V2Version id3V2Version, ScanProfile profile) {
+        this.wavOptions = wavOptions;
+        this.id3V2Version = id3V2Version;
+        this.profile = profile;
+    }
+
+    /**
+     * @return the options used when none are given: WAV INFO fields are
+     * presented through the ID3 tag, missing tags are ID3v2.3 as in jaudiotagger,
+     * everything is read.
+     */
+    public static ReadOptions getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param wavOptions which of the WAV tags is read, and if they are synced.
+     * @return a copy of these options with the given WAV options.
+     */
+    public ReadOptions withWavOptions(WavOptions wavOptions) {
+
+        if (wavOptions == null) {
+            throw new IllegalArgumentException("Invalid WAV options");
+        }
+        return new ReadOptions(wavOptions, id3V2Version, profile);
+    }
+
+    /**
+     * @param id3V2Version the version of the ID3 tags created for files
+     * without one.
+     * @return a copy of these options with the given ID3 version.
+     */
+    public ReadOptions withID3V2Version(ID3V2Version id3V2Version) {
+
+        if (id3V2Version == null) {
+            throw new IllegalArgumentException("Invalid ID3 version");
+        }
+        return new ReadOptions(wavOptions, id3V2Version, profile);
+    }
+
+    /**
+     * @param profile what is read from the file.
+     * @return a copy of these options with the given profile.
+     */
+    public ReadOptions withProfile(ScanProfile profile) {
+
+        if (profile == null) {
+            throw new IllegalArgumentException("Invalid profile");
+        }
+        return new ReadOptions(wavOptions, id3V2Version, profile);
+    }
+
+    /**
+     * @return the WAV options.
+     */
+    public WavOptions getWavOptions() {
+        return wavOptions;
+    }
+
+    /**
+     * @return the version of the ID3 tags created for files without one.
+     */
+    public ID3V2Version getID3V2Version() {
+        return id3V2Version;
+    }
+
+    /**
+     * @return what is read from the file.
+     */
+    public ScanProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public String toString() {
+        return "ReadOptions{wavOptions=" + wavOptions + ", id3V2Version=" + id3V2Version + ", profile=" + profile + "}";
+    }
+}
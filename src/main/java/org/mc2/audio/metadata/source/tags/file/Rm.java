@@ -45,6 +45,10 @@ public class Rm extends AudioFile{
     public Rm(File file) throws InvalidAudioFileException {
          super(file);
     }
+    
+    public Rm(File file, ReadOptions readOptions) throws InvalidAudioFileException {
+         super(file, readOptions);
+    }
     @Override
     protected void initOptions(){
        
@@ -66,7 +70,7 @@ public class Rm extends AudioFile{
         return (RealTagSchema)super.getTagSchema();
     }
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         return getRealTagSchema().getMetadata();
     }
     @Override
@@ -25,6 +25,9 @@
 
 package org.mc2.audio.metadata.source.tags.file;
 
+import java.util.HashMap;
+import java.util.Locale;
+
 
 /**
  * Files formats currently supported by Library.
@@ -65,4 +68,22 @@ public enum SupportedAudioFileFormat
     {
         return filesuffix;
     }
+
+    private static final HashMap<String, SupportedAudioFileFormat> BY_SUFFIX = new HashMap<>();
+
+    static {
+        for (SupportedAudioFileFormat format : values()) {
+            BY_SUFFIX.put(format.filesuffix, format);
+        }
+    }
+
+    /**
+     * Look up a format by file suffix, without exceptions for unsupported ones.
+     * @param filesuffix the file suffix, without initial . in any case.
+     * @return the format, null if not supported.
+     */
+    public static SupportedAudioFileFormat of(String filesuffix)
+    {
+        return filesuffix == null ? null : BY_SUFFIX.get(filesuffix.toLowerCase(Locale.ROOT));
+    }
 }
@@ -26,7 +26,13 @@
 package org.mc2.audio.metadata.source.tags.file;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
+import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
+import org.jaudiotagger.audio.iff.ChunkSummary;
+import org.jaudiotagger.tag.TagException;
 import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2TagsSchema;
 import org.jaudiotagger.audio.wav.WavOptions;
 import org.jaudiotagger.tag.TagOptionSingleton;
@@ -34,11 +40,13 @@ import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
 import org.jaudiotagger.tag.wav.WavTag;
 import org.mc2.audio.metadata.API.Metadata;
 import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2FrameScanner;
 /**
  *
  * @author marco
  */
 public class Wav extends AudioFile {
+    
 
     public Wav(String path) throws InvalidAudioFileException{
         super(path); 
@@ -48,33 +56,93 @@ public class Wav extends AudioFile {
          super(file);
     }
     
+    public Wav(File file, ReadOptions readOptions) throws InvalidAudioFileException{
+         super(file, readOptions);
+    }
+    
     @Override
     protected void initOptions(){
         
-        /*  this way all informations are presented as id3v2 tags, so we don't 
-        *   need to look at wav info tags.
+        /*  by default (see ReadOptions) all informations are presented as 
+        *   id3v2 tags, so we don't need to look at wav info tags.
         */
-        TagOptionSingleton.getInstance().setWavOptions(WavOptions.READ_ID3_ONLY_AND_SYNC);
         
         //TagOptionSingleton.getInstance().setWavSaveOptions(WavSaveOptions.SAVE_EXISTING_AND_ACTIVE);
         //TagOptionSingleton.getInstance().setWavSaveOrder(WavSaveOrder.INFO_THEN_ID3);
 
     }
+    /* read the chunks with IffChunkReader, falling back to jaudiotagger
+     * for files it does not handle. A scanned ID3 chunk is decoded only 
+     * when needed, see ID3v2TagsSchema.
+     */
+    @Override
+    protected org.jaudiotagger.audio.AudioFile readAudioFile(File file) throws IOException, CannotReadException, ReadOnlyFileException, TagException, InvalidAudioFrameException {
+        
+        IffChunkReader reader = IffChunkReader.readWav(file, getReadOptions());
+        if (reader == null){
+            return withReadOptions(file, super.readAudioFile(file));
+        }
+        return new NativeAudioFile(file, reader.getAudioHeader(), reader.getTag(), reader.getID3Scanner());
+    }
+    private ID3v2FrameScanner getScanner() {
+        return getNativeReader(ID3v2FrameScanner.class);
+    }
+    /* jaudiotagger reads the tags with the TagOptionSingleton options, 
+     * rebuild them with ours if they differ.
+     */
+    private org.jaudiotagger.audio.AudioFile withReadOptions(File file, org.jaudiotagger.audio.AudioFile audioFile) {
+        
+        WavOptions wavOptions = getReadOptions().getWavOptions();
+        if (wavOptions == TagOptionSingleton.getInstance().getWavOptions()){
+            return audioFile;
+        }
+        WavTag read = (WavTag) audioFile.getTag();
+        WavTag tag = new WavTag(wavOptions);
+        tag.setID3Tag(read.getID3Tag());
+        tag.setInfoTag(read.getInfoTag());
+        tag.setExistingId3Tag(read.isExistingId3Tag());
+        tag.setExistingInfoTag(read.isExistingInfoTag());
+        for (ChunkSummary chunk : read.getChunkSummaryList()){
+            tag.addChunkSummary(chunk);
+        }
+        for (ChunkSummary chunk : read.getMetadataChunkSummaryList()){
+            tag.addMetadataChunkSummary(chunk);
+        }
+        IffChunkReader.syncTagsAfterRead(tag, wavOptions);
+        
+        return new org.jaudiotagger.audio.AudioFile(file, audioFile.getAudioHeader(), tag);
+    }
     @Override
     protected void initSchema(){
+        ID3v2FrameScanner scanner = getScanner();
+        if (scanner != null){
+            super.setTagSchema(new ID3v2TagsSchema(scanner, this));
+            return;
+        }
         AbstractID3v2Tag abstractId3v2Tag = getTag().getID3Tag();
         super.setTagSchema(new ID3v2TagsSchema(abstractId3v2Tag, this));
        
         // We could forget wav info tags, see Init options.
     }
     
+    /* with a scanned ID3 chunk, the ID3 tag is decoded on first request.
+    */
     @Override
     public WavTag getTag() {
-        return (WavTag) super.getTag();
+        WavTag tag = (WavTag) super.getTag();
+        if (getScanner() != null){
+            AbstractID3v2Tag id3Tag = getiD3v2Tag().getDecodedTag();
+            synchronized (tag){
+                if (id3Tag != null && tag.getID3Tag() != id3Tag){
+                    tag.setID3Tag(id3Tag);
+                }
+            }
+        }
+        return tag;
     } 
 
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         return this.getiD3v2Tag().getMetadata();
     }
     @Override
@@ -45,6 +45,10 @@ public class Wma extends AudioFile {
          super(file);
     }
     
+    public Wma(File file, ReadOptions readOptions) throws InvalidAudioFileException{
+         super(file, readOptions);
+    }
+    
     @Override
     protected void initOptions(){
 
@@ -62,7 +66,7 @@ public class Wma extends AudioFile {
     } 
 
     @Override
-    public ArrayList<Metadata> getMetadata() {
+    protected ArrayList<Metadata> readMetadata() {
         return this.getAsfTagSchema().getMetadata();
     }
     @Override
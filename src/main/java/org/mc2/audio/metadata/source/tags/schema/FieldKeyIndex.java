@@ -0,0 +1,175 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source.tags.schema;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.TagField;
+
+/**
+ * Reverse index from the ids of the tag fields to the FieldKeys they are read
+ * by, so a schema converts only the FieldKeys a tag actually holds instead of
+ * trying every FieldKey.
+ *
+ * The index is built once for each Tag class, asking the first tag of that
+ * class to create a field for every FieldKey and looking at the id of the
+ * created field. FieldKeys whose field can't be created, or that jaudiotagger
+ * reads from more than one field id (i.e. ALBUM_ARTIST in vorbis comments,
+ * GENRE in mp4), are always considered.
+ *
+ * @author marco
+ */
+public final class FieldKeyIndex {
+
+    private static final ConcurrentHashMap<Class<?>, FieldKeyIndex> INDEXES = new ConcurrentHashMap<>();
+
+    /** Keys jaudiotagger could read from different field ids. */
+    private static final EnumSet<FieldKey> ALWAYS = EnumSet.of(FieldKey.ALBUM_ARTIST,
+                                                               FieldKey.GENRE,
+                                                               FieldKey.YEAR,
+                                                               FieldKey.COVER_ART);
+
+    /** Probe values: numeric fields reject text and vice versa. */
+    private static final String[] PROBES = {"1", "x"};
+
+    private final HashMap<String, EnumSet<FieldKey>> fieldKeys = new HashMap<>();
+    private final EnumSet<FieldKey> always = EnumSet.copyOf(ALWAYS);
+
+    private FieldKeyIndex(Tag tag) {
+
+        for (FieldKey fieldKey : FieldKey.values()) {
+
+            boolean mapped = false;
+            for (String probe : PROBES) {
+
+                try {
+                    TagField field = tag.createField(fieldKey, probe);
+                    if (field != null && field.getId() != null) {
+                        add(field.getId(), fieldKey);
+                        mapped = true;
+                    }
+                } catch (Exception ex) {
+                    // not supported by this tag or invalid probe value.
+                }
+            }
+            if (!mapped) {
+                always.add(fieldKey);
+            }
+        }
+    }
+
+    /**
+     * Get the index for the class of a tag.
+     * @param tag the tag.
+     * @return the index.
+     */
+    public static FieldKeyIndex of(Tag tag) {
+
+        FieldKeyIndex index = INDEXES.get(tag.getClass());
+        if (index == null) {
+            index = new FieldKeyIndex(tag);
+            FieldKeyIndex previous = INDEXES.putIfAbsent(tag.getClass(), index);
+            if (previous != null) {
+                index = previous;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get the FieldKeys that could be read from a tag, in FieldKey order.
+     * @param tag the tag, could be null.
+     * @return the FieldKeys, empty if there is no tag.
+     */
+    public static EnumSet<FieldKey> getFieldKeys(Tag tag) {
+
+        EnumSet<FieldKey> out = EnumSet.noneOf(FieldKey.class);
+        if (tag == null) {
+            return out;
+        }
+
+        FieldKeyIndex index = of(tag);
+        out.addAll(index.always);
+
+        Iterator<TagField> fields = tag.getFields();
+        while (fields != null && fields.hasNext()) {
+
+            TagField field = fields.next();
+            if (field == null || field.getId() == null) {
+                continue;
+            }
+            EnumSet<FieldKey> keys = index.fieldKeys.get(field.getId().toUpperCase());
+            if (keys != null) {
+                out.addAll(keys);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Get the FieldKeys that could be read from the fields with the given
+     * ids, for readers listing the fields without decoding them.
+     * @param ids the field ids.
+     * @return the FieldKeys, in FieldKey order.
+     */
+    public EnumSet<FieldKey> getFieldKeys(Collection<String> ids) {
+
+        EnumSet<FieldKey> out = EnumSet.copyOf(always);
+        for (String id : ids) {
+            EnumSet<FieldKey> keys = id == null ? null : fieldKeys.get(id.toUpperCase());
+            if (keys != null) {
+                out.addAll(keys);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @param id the field id.
+     * @return the FieldKeys reading fields with that id.
+     */
+    public Set<FieldKey> getFieldKeys(String id) {
+
+        EnumSet<FieldKey> keys = id == null ? null : fieldKeys.get(id.toUpperCase());
+        return keys == null ? EnumSet.noneOf(FieldKey.class) : EnumSet.copyOf(keys);
+    }
+
+    private void add(String id, FieldKey fieldKey) {
+
+        String key = id.toUpperCase();
+        EnumSet<FieldKey> keys = fieldKeys.get(key);
+        if (keys == null) {
+            keys = EnumSet.noneOf(FieldKey.class);
+            fieldKeys.put(key, keys);
+        }
+        keys.add(fieldKey);
+    }
+}
@@ -0,0 +1,745 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.mc2.audio.metadata.source.tags.schema.ID3v2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Lists the frames of an ID3v2.3 or ID3v2.4 tag without decoding them.
+ *
+ * The tag is read with a positional read (two for tags larger than
+ * READ_SIZE), frames are kept as positions in that buffer: text frames are
+ * decoded only when their values are requested, APIC frames only when the
+ * picture is, see {@link PictureReference}. Unsynchronisation is undone on a copy of the
+ * frames it applies to.
+ *
+ * When pictures are not needed APIC frames are dropped, and tags larger
+ * than READ_SIZE are read frame by frame, skipping the pictures.
+ *
+ * ID3v2.2 tags, compressed or encrypted frames and anything not following
+ * the specification are left to jaudiotagger: scan() returns null, or
+ * getTextValues() for the frame.
+ *
+ * @author marco
+ */
+public final class ID3v2FrameScanner {
+
+    private static final int HEADER_LENGTH = 10;
+    /** Most tags without pictures fit in the first read. */
+    private static final int READ_SIZE = 16 * 1024;
+
+    private static final int TAG_UNSYNCHRONISATION = 0x80;
+    private static final int TAG_EXTENDED_HEADER = 0x40;
+    private static final int TAG_FOOTER = 0x10;
+
+    private static final Charset[] CHARSETS = {StandardCharsets.ISO_8859_1,
+                                               StandardCharsets.UTF_16,
+                                               StandardCharsets.UTF_16BE,
+                                               StandardCharsets.UTF_8};
+
+    /**
+     * A frame, as position and length of its data in the tag buffer.
+     */
+    private static final class Frame {
+
+        private final String id;
+        private final ByteBuffer raw;
+        private final ByteBuffer data;
+        private final long fileOffset;
+        private final boolean readable;
+
+        private Frame(String id, ByteBuffer raw, ByteBuffer data, long fileOffset, boolean readable) {
+            this.id = id;
+            this.raw = raw;
+            this.data = data;
+            this.fileOffset = fileOffset;
+            this.readable = readable;
+        }
+    }
+
+    /**
+     * An APIC frame: where the picture is, not the picture.
+     */
+    public static final class PictureReference {
+
+        private final long offset;
+        private final int length;
+        private final String mimeType;
+        private final int pictureType;
+        private final String description;
+        private final ByteBuffer data;
+
+        private PictureReference(long offset, int length, String mimeType, int pictureType, String description, ByteBuffer data) {
+            this.offset = offset;
+            this.length = length;
+            this.mimeType = mimeType;
+            this.pictureType = pictureType;
+            this.description = description;
+            this.data = data;
+        }
+
+        /**
+         * @return the offset of the picture data in the file, -1 if the data
+         * is unsynchronised and could only be read with getData().
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the length of the picture data.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return the mime type, "-->" for a linked picture.
+         */
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        /**
+         * @return true if the data is the url of the picture.
+         */
+        public boolean isLinked() {
+            return "-->".equals(mimeType);
+        }
+
+        /**
+         * @return the picture type, see PictureTypes.
+         */
+        public int getPictureType() {
+            return pictureType;
+        }
+
+        /**
+         * @return the description.
+         */
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * @return a copy of the picture data.
+         */
+        public byte[] getData() {
+
+            byte[] out = new byte[length];
+            data.duplicate().get(out);
+            return out;
+        }
+    }
+
+    private final long offset;
+    private final int majorVersion;
+    private final int size;
+    private final ByteBuffer tag;
+    private final boolean pictures;
+    private final ArrayList<Frame> frames = new ArrayList<>();
+    private final HashMap<String, ArrayList<Frame>> framesById = new HashMap<>();
+
+    private ID3v2FrameScanner(ByteBuffer tag, long offset, int majorVersion, int size, boolean pictures) {
+        this.tag = tag;
+        this.offset = offset;
+        this.majorVersion = majorVersion;
+        this.size = size;
+        this.pictures = pictures;
+    }
+
+    /**
+     * Scan the tag at the beginning of a file.
+     * @param file the file.
+     * @return the scanner, null if there is no tag or it should be read by
+     * jaudiotagger.
+     * @throws IOException if the file can't be read.
+     */
+    public static ID3v2FrameScanner scan(File file) throws IOException {
+        return scan(file, 0, true);
+    }
+
+    /**
+     * Scan the tag at a position of a file, i.e. the ID3 chunk of a
+     * container.
+     * @param file the file.
+     * @param offset the position of the tag header.
+     * @return the scanner, null if there is no tag or it should be read by
+     * jaudiotagger.
+     * @throws IOException if the file can't be read.
+     */
+    public static ID3v2FrameScanner scan(File file, long offset) throws IOException {
+        return scan(file, offset, true);
+    }
+
+    /**
+     * Scan the tag at a position of a file.
+     * @param file the file.
+     * @param offset the position of the tag header.
+     * @param pictures false to drop the APIC frames, without reading them
+     * if possible.
+     * @return the scanner, null if there is no tag or it should be read by
+     * jaudiotagger.
+     * @throws IOException if the file can't be read.
+     */
+    public static ID3v2FrameScanner scan(File file, long offset, boolean pictures) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return scan(channel, offset, pictures);
+        }
+    }
+
+    /**
+     * Scan the tag at a position of an open file.
+     * @param channel the file, left open.
+     * @param offset the position of the tag header.
+     * @param pictures false to drop the APIC frames, without reading them
+     * if possible.
+     * @return the scanner, null if there is no tag or it should be read by
+     * jaudiotagger.
+     * @throws IOException if the file can't be read.
+     */
+    public static ID3v2FrameScanner scan(FileChannel channel, long offset, boolean pictures) throws IOException {
+
+        ByteBuffer tag = read(channel, offset, READ_SIZE);
+        int size = getTagSize(tag);
+        if (size < 0) {
+            return null;
+        }
+        if (size > tag.limit() && !pictures) {
+            ByteBuffer withoutPictures = readWithoutPictures(channel, offset, tag);
+            if (withoutPictures != null) {
+                return scan(withoutPictures, offset, size, false);
+            }
+        }
+        if (size > tag.limit()) {
+            tag = read(channel, offset, size);
+        }
+        return tag.limit() < size ? null : scan(tag, offset, size, pictures);
+    }
+
+    /**
+     * Scan a tag.
+     * @param tag the tag, from its header to its end.
+     * @param offset the position of the tag in its file.
+     * @return the scanner, null if the tag should be read by jaudiotagger.
+     */
+    public static ID3v2FrameScanner scan(ByteBuffer tag, long offset) {
+
+        int size = getTagSize(tag);
+        if (size < 0 || tag.limit() < size) {
+            return null;
+        }
+        return scan(tag, offset, size, true);
+    }
+
+    /* size is the one of the tag in the file, could be larger than the
+     * tag buffer when pictures have been skipped.
+     */
+    private static ID3v2FrameScanner scan(ByteBuffer tag, long offset, int size, boolean pictures) {
+
+        ID3v2FrameScanner out = new ID3v2FrameScanner(tag, offset, tag.get(3), size, pictures);
+        try {
+            return out.readFrames() ? out : null;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+
+        long available = Math.max(0, channel.size() - position);
+        ByteBuffer out = ByteBuffer.allocate((int) Math.min(length, available));
+        while (out.hasRemaining()) {
+            if (channel.read(out, position + out.position()) < 0) {
+                break;
+            }
+        }
+        out.flip();
+        return out;
+    }
+
+    /* the tag without its APIC frames, reading the frames one by one from
+     * the end of head. The header reports the size of what is left, with no
+     * footer. Null if the frames can't be walked in the file: ID3v2.3
+     * unsynchronisation or anything not following the specification.
+     */
+    private static ByteBuffer readWithoutPictures(FileChannel channel, long offset, ByteBuffer head) throws IOException {
+
+        int major = head.get(3);
+        int flags = head.get(5) & 0xFF;
+        if (major == 3 && (flags & TAG_UNSYNCHRONISATION) != 0) {
+            return null;
+        }
+        int end = HEADER_LENGTH + syncSafe(head, 6);
+        int position = HEADER_LENGTH;
+
+        if ((flags & TAG_EXTENDED_HEADER) != 0) {
+            if (position + 4 > head.limit()) {
+                return null;
+            }
+            int extended = major == 3 ? head.getInt(position) + 4 : syncSafe(head, position);
+            if (extended < 0 || position + extended > Math.min(end, head.limit())) {
+                return null;
+            }
+            position += extended;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(head.limit());
+        write(out, slice(head, 0, position));
+
+        while (position + HEADER_LENGTH <= end) {
+
+            ByteBuffer header = part(channel, offset, head, position, HEADER_LENGTH);
+            if (header == null) {
+                return null;
+            }
+            if (header.get(0) == 0) {
+                break; // padding
+            }
+            String id = getFrameId(header, 0);
+            int length = major == 3 ? header.getInt(4) : syncSafe(header, 4);
+            if (id == null || length < 0 || position + HEADER_LENGTH + length > end) {
+                return null;
+            }
+            if (!"APIC".equals(id)) {
+                ByteBuffer frame = part(channel, offset, head, position, HEADER_LENGTH + length);
+                if (frame == null) {
+                    return null;
+                }
+                write(out, frame);
+            }
+            position += HEADER_LENGTH + length;
+        }
+
+        byte[] tag = out.toByteArray();
+        tag[5] = (byte) (tag[5] & ~TAG_FOOTER);
+        setSize(tag, tag.length - HEADER_LENGTH);
+        return ByteBuffer.wrap(tag);
+    }
+
+    /* the size in the header of a tag, synchsafe. */
+    private static void setSize(byte[] tag, int size) {
+
+        for (int i = 0; i < 4; i++) {
+            tag[9 - i] = (byte) ((size >>> (7 * i)) & 0x7F);
+        }
+    }
+
+    /* [position, position + length) of the tag, from head if there, null
+     * if past the end of the file.
+     */
+    private static ByteBuffer part(FileChannel channel, long offset, ByteBuffer head, int position, int length) throws IOException {
+
+        if (position + length <= head.limit()) {
+            return slice(head, position, length);
+        }
+        ByteBuffer out = read(channel, offset + position, length);
+        return out.limit() < length ? null : out;
+    }
+
+    private static void write(ByteArrayOutputStream out, ByteBuffer data) {
+
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /* total size of the tag, header and footer included, -1 if not an
+     * ID3v2.3 or ID3v2.4 tag.
+     */
+    private static int getTagSize(ByteBuffer header) {
+
+        if (header.limit() < HEADER_LENGTH
+         || header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') {
+            return -1;
+        }
+        int major = header.get(3);
+        if (major != 3 && major != 4) {
+            return -1;
+        }
+        int size = syncSafe(header, 6);
+        if (size < 0) {
+            return -1;
+        }
+        boolean footer = major == 4 && (header.get(5) & TAG_FOOTER) != 0;
+        return HEADER_LENGTH + size + (footer ? HEADER_LENGTH : 0);
+    }
+
+    private boolean readFrames() {
+
+        int flags = tag.get(5) & 0xFF;
+        int end = HEADER_LENGTH + syncSafe(tag, 6);
+
+        ByteBuffer frameArea = tag;
+        int position = HEADER_LENGTH;
+        boolean unsynchronisation = (flags & TAG_UNSYNCHRONISATION) != 0;
+
+        // In 2.3 the whole tag is unsynchronised, in 2.4 each frame.
+        boolean tagUnsynchronised = unsynchronisation && majorVersion == 3;
+        if (tagUnsynchronised) {
+            frameArea = unsynchronise(slice(tag, position, end - position));
+            position = 0;
+            end = frameArea.limit();
+        }
+
+        if ((flags & TAG_EXTENDED_HEADER) != 0) {
+            int extended = majorVersion == 3 ? frameArea.getInt(position) + 4 : syncSafe(frameArea, position);
+            if (extended < 0 || position + extended > end) {
+                return false;
+            }
+            position += extended;
+        }
+
+        while (position + HEADER_LENGTH <= end) {
+
+            if (frameArea.get(position) == 0) {
+                break; // padding
+            }
+            String id = getFrameId(frameArea, position);
+            if (id == null) {
+                return false;
+            }
+            int length = majorVersion == 3 ? frameArea.getInt(position + 4) : syncSafe(frameArea, position + 4);
+            int formatFlags = frameArea.get(position + 9) & 0xFF;
+            int data = position + HEADER_LENGTH;
+
+            if (length < 0 || data + length > end) {
+                return false;
+            }
+            position = data + length;
+
+            boolean readable = true;
+            boolean frameUnsynchronised = false;
+            int skip = 0;
+
+            if (majorVersion == 3) {
+                readable = (formatFlags & 0xC0) == 0;         // compression, encryption
+                skip = (formatFlags & 0x20) != 0 ? 1 : 0;     // grouping
+            } else {
+                readable = (formatFlags & 0x0C) == 0;         // compression, encryption
+                skip = ((formatFlags & 0x40) != 0 ? 1 : 0)    // grouping
+                     + ((formatFlags & 0x01) != 0 ? 4 : 0);   // data length indicator
+                frameUnsynchronised = unsynchronisation || (formatFlags & 0x02) != 0;
+            }
+            if (skip > length) {
+                return false;
+            }
+
+            ByteBuffer raw = slice(frameArea, data - HEADER_LENGTH, HEADER_LENGTH + length);
+            ByteBuffer body = slice(frameArea, data + skip, length - skip);
+            long fileOffset = offset + data + skip;
+            if (frameUnsynchronised) {
+                body = unsynchronise(body);
+            }
+            if (frameUnsynchronised || tagUnsynchronised) {
+                fileOffset = -1;
+            }
+            add(new Frame(id, raw, body, fileOffset, readable));
+        }
+        return true;
+    }
+
+    private void add(Frame frame) {
+
+        if (!pictures && "APIC".equals(frame.id)) {
+            return;
+        }
+        frames.add(frame);
+        ArrayList<Frame> list = framesById.get(frame.id);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            framesById.put(frame.id, list);
+        }
+        list.add(frame);
+    }
+
+    private static String getFrameId(ByteBuffer buffer, int position) {
+
+        char[] id = new char[4];
+        for (int i = 0; i < 4; i++) {
+            char c = (char) buffer.get(position + i);
+            if (!(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9')) {
+                return null;
+            }
+            id[i] = c;
+        }
+        return new String(id);
+    }
+
+    private static int syncSafe(ByteBuffer buffer, int position) {
+
+        int out = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = buffer.get(position + i) & 0xFF;
+            if ((b & 0x80) != 0) {
+                return -1;
+            }
+            out = (out << 7) | b;
+        }
+        return out;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+
+        ByteBuffer out = buffer.duplicate();
+        out.limit(position + length);
+        out.position(position);
+        return out.slice();
+    }
+
+    /* undo unsynchronisation: 0xFF 0x00 becomes 0xFF. Data without any such
+     * sequence is returned as is.
+     */
+    private static ByteBuffer unsynchronise(ByteBuffer data) {
+
+        int length = data.limit();
+        int i = 0;
+        while (i < length - 1 && !((data.get(i) & 0xFF) == 0xFF && data.get(i + 1) == 0)) {
+            i++;
+        }
+        if (i >= length - 1) {
+            return data;
+        }
+        byte[] out = new byte[length];
+        int size = 0;
+        for (int j = 0; j < length; j++) {
+            byte b = data.get(j);
+            out[size++] = b;
+            if ((b & 0xFF) == 0xFF && j + 1 < length && data.get(j + 1) == 0) {
+                j++;
+            }
+        }
+        return ByteBuffer.wrap(out, 0, size).slice();
+    }
+
+    /**
+     * @return the major version, 3 or 4.
+     */
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
+    /**
+     * @return the size of the tag in the file, header and footer included.
+     */
+    public int getTagSize() {
+        return size;
+    }
+
+    /**
+     * @return the position of the tag in its file.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the tag as read from the file, header included, for readers
+     * needing all the frames. Without the APIC frames if pictures were
+     * skipped reading a large tag.
+     */
+    public ByteBuffer getTagBuffer() {
+        return slice(tag, 0, getTagSize(tag));
+    }
+
+    /**
+     * A tag holding some of the frames only, so that readers decode just
+     * the frames they need. The frames are copied as read, the extended
+     * header and the footer are dropped and so is the ID3v2.3
+     * unsynchronisation, already undone on the frames.
+     * @param frameIds the ids of the frames to keep.
+     * @return the tag, header included.
+     */
+    public ByteBuffer getTagBuffer(Collection<String> frameIds) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, slice(tag, 0, HEADER_LENGTH));
+        for (Frame frame : frames) {
+            if (frameIds.contains(frame.id)) {
+                write(out, frame.raw);
+            }
+        }
+        byte[] partial = out.toByteArray();
+        int flags = partial[5] & ~(TAG_EXTENDED_HEADER | TAG_FOOTER);
+        if (majorVersion == 3) {
+            flags &= ~TAG_UNSYNCHRONISATION;
+        }
+        partial[5] = (byte) flags;
+        setSize(partial, partial.length - HEADER_LENGTH);
+        return ByteBuffer.wrap(partial);
+    }
+
+    /**
+     * @return the ids of the frames, in tag order.
+     */
+    public ArrayList<String> getFrameIds() {
+
+        ArrayList<String> out = new ArrayList<>(frames.size());
+        for (Frame frame : frames) {
+            out.add(frame.id);
+        }
+        return out;
+    }
+
+    /**
+     * @param frameId the frame id.
+     * @return true if the tag has frames with that id.
+     */
+    public boolean hasFrame(String frameId) {
+        return framesById.containsKey(frameId);
+    }
+
+    /**
+     * Decode the values of the text frames with the given id (T***, not
+     * TXXX): one value for each null separated string.
+     * @param frameId the frame id.
+     * @return the values, empty if there are no such frames, null if one of
+     * them could not be decoded.
+     */
+    public ArrayList<String> getTextValues(String frameId) {
+
+        ArrayList<String> out = new ArrayList<>();
+        ArrayList<Frame> list = framesById.get(frameId);
+        if (list == null) {
+            return out;
+        }
+        for (Frame frame : list) {
+
+            if (!frame.readable || frame.data.limit() < 1) {
+                return null;
+            }
+            int encoding = frame.data.get(0);
+            if (encoding < 0 || encoding >= CHARSETS.length) {
+                return null;
+            }
+            int position = 1;
+            int end = trimTerminators(frame.data, position, encoding);
+            while (position < end) {
+                int next = findTerminator(frame.data, position, encoding);
+                int stop = next < 0 || next > end ? end : next;
+                out.add(decode(frame.data, position, stop - position, encoding));
+                position = stop + terminatorLength(encoding);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return the pictures of the APIC frames, in tag order, null if one of
+     * them could not be read (compressed, encrypted or malformed). Empty if
+     * the tag was scanned without pictures.
+     */
+    public ArrayList<PictureReference> getPictures() {
+
+        ArrayList<PictureReference> out = new ArrayList<>();
+        ArrayList<Frame> list = framesById.get("APIC");
+        if (list == null) {
+            return out;
+        }
+        for (Frame frame : list) {
+
+            ByteBuffer data = frame.data;
+            if (!frame.readable || data.limit() < 4) {
+                return null;
+            }
+            int encoding = data.get(0);
+            if (encoding < 0 || encoding >= CHARSETS.length) {
+                return null;
+            }
+            int mimeEnd = findTerminator(data, 1, 0);
+            if (mimeEnd < 0 || mimeEnd + 2 > data.limit()) {
+                return null;
+            }
+            String mimeType = decode(data, 1, mimeEnd - 1, 0);
+            int pictureType = data.get(mimeEnd + 1) & 0xFF;
+
+            int descriptionStart = mimeEnd + 2;
+            int descriptionEnd = findTerminator(data, descriptionStart, encoding);
+            if (descriptionEnd < 0) {
+                return null;
+            }
+            String description = decode(data, descriptionStart, descriptionEnd - descriptionStart, encoding);
+
+            int start = descriptionEnd + terminatorLength(encoding);
+            int length = data.limit() - start;
+            out.add(new PictureReference(frame.fileOffset < 0 ? -1 : frame.fileOffset + start,
+                                         length,
+                                         mimeType,
+                                         pictureType,
+                                         description,
+                                         slice(data, start, length)));
+        }
+        return out;
+    }
+
+    private static int terminatorLength(int encoding) {
+        return encoding == 1 || encoding == 2 ? 2 : 1;
+    }
+
+    /* position of the next terminator from position, -1 if none. */
+    private static int findTerminator(ByteBuffer data, int position, int encoding) {
+
+        int step = terminatorLength(encoding);
+        for (int i = position; i + step <= data.limit(); i += step) {
+            if (data.get(i) == 0 && (step == 1 || data.get(i + 1) == 0)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* end of the text without its trailing terminators. */
+    private static int trimTerminators(ByteBuffer data, int position, int encoding) {
+
+        int step = terminatorLength(encoding);
+        int end = position + (data.limit() - position) / step * step;
+        while (end - step >= position && data.get(end - step) == 0 && (step == 1 || data.get(end - 1) == 0)) {
+            end -= step;
+        }
+        return end;
+    }
+
+    private static String decode(ByteBuffer data, int position, int length, int encoding) {
+
+        if (length <= 0) {
+            return "";
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer source = data.duplicate();
+        source.position(position);
+        source.get(bytes);
+        return new String(bytes, CHARSETS[encoding]);
+    }
+}
@@ -26,9 +26,11 @@
 package org.mc2.audio.metadata.source.tags.schema;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Iterator;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.KeyNotFoundException;
+import org.jaudiotagger.tag.Tag;
 import org.jaudiotagger.tag.TagField;
 import org.jaudiotagger.tag.mp4.Mp4Tag;
 import org.mc2.audio.metadata.API.Metadata;
@@ -44,10 +46,38 @@ import org.mc2.audio.metadata.source.tags.TagsSource;
 public class Mp4TagSchema extends TagSchema  {
     
     Mp4Tag mp4Tag;
+    boolean pendingCoverArt;
     
     public Mp4TagSchema(Mp4Tag mp4Tag, TagsSource source) {
+        this(mp4Tag, source, false);
+    }
+    /* pendingCoverArt: mp4Tag has no cover art fields, they are read in the
+     * tag of the source when first needed.
+     */
+    public Mp4TagSchema(Mp4Tag mp4Tag, TagsSource source, boolean pendingCoverArt) {
         super(source);
         this.mp4Tag=mp4Tag;
+        this.pendingCoverArt=pendingCoverArt;
+    }
+    
+    @Override
+    protected EnumSet<FieldKey> getFieldKeys(){
+        
+        if (pendingCoverArt){
+            
+            EnumSet<FieldKey> out = FieldKeyIndex.getFieldKeys(mp4Tag);
+            out.add(FieldKey.COVER_ART);
+            return out;
+        }
+        EnumSet<FieldKey> out = super.getFieldKeys();
+        out.addAll(FieldKeyIndex.getFieldKeys(mp4Tag));
+        return out;
+    }
+    
+    @Override
+    protected Tag getTag(FieldKey fieldKey){
+        
+        return (pendingCoverArt && fieldKey != FieldKey.COVER_ART) ? mp4Tag : source.getTag();
     }
     
     public ArrayList<Metadata> getExistingMetadata(){
@@ -61,7 +91,7 @@ public class Mp4TagSchema extends TagSchema  {
         ArrayList<Metadata> out = new ArrayList<>();
         ArrayList<TagField> considered = new ArrayList<>();
         
-         for (FieldKey fieldKey : FieldKey.values()) {
+         for (FieldKey fieldKey : getFieldKeys()) {
             
             Metadata pretty = this.getPrettyMetadata(fieldKey);
            
@@ -84,8 +114,9 @@ public class Mp4TagSchema extends TagSchema  {
 
                 ArrayList<TagField> discarded = new ArrayList<>();
                 discarded.add(tagField);
-                TagMetadataOrigin origin= new TagMetadataOrigin(source.getSourceId() , tagField.getId(), new ArrayList<>(), discarded, new ArrayList<>());
-                Metadata metadata= new MetadataDefaultImpl(tagField.getId(),origin);
+                String key = intern(tagField.getId());
+                TagMetadataOrigin origin= new TagMetadataOrigin(source.getSourceId() , key, new ArrayList<>(), discarded, new ArrayList<>());
+                Metadata metadata= new MetadataDefaultImpl(key,origin);
                 
                 out.add(metadata);
 
@@ -106,7 +137,7 @@ public class Mp4TagSchema extends TagSchema  {
         ArrayList<TagField> dischargedList = new ArrayList<>();
             
         try {
-            ArrayList<TagField> list = (ArrayList) mp4Tag.getFields(fieldKey);
+            ArrayList<TagField> list = (ArrayList) getTag(fieldKey).getFields(fieldKey);
             for (TagField tagfield : list) {
 
                 filteredList.add(tagfield);
@@ -26,6 +26,7 @@
 package org.mc2.audio.metadata.source.tags.schema;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Iterator;
 import org.jaudiotagger.audio.real.RealTag;
 import org.jaudiotagger.tag.FieldKey;
@@ -50,6 +51,14 @@ public class RealTagSchema extends TagSchema  {
         this.realTag=realTag;
     }
     
+    @Override
+    protected EnumSet<FieldKey> getFieldKeys(){
+        
+        EnumSet<FieldKey> out = super.getFieldKeys();
+        out.addAll(FieldKeyIndex.getFieldKeys(realTag));
+        return out;
+    }
+    
     public ArrayList<Metadata> getExistingMetadata(){
         
         //Vorbis oalways return ALL metadata, also if with wrong values (i.e. Tracknmber = b).
@@ -61,7 +70,7 @@ public class RealTagSchema extends TagSchema  {
         ArrayList<Metadata> out = new ArrayList<>();
         ArrayList<TagField> considered = new ArrayList<>();
         
-         for (FieldKey fieldKey : FieldKey.values()) {
+         for (FieldKey fieldKey : getFieldKeys()) {
             
             Metadata pretty = this.getPrettyMetadata(fieldKey);
            
@@ -84,8 +93,9 @@ public class RealTagSchema extends TagSchema  {
 
                 ArrayList<TagField> discarded = new ArrayList<>();
                 discarded.add(tagField);
-                TagMetadataOrigin origin= new TagMetadataOrigin(source.getSourceId() , tagField.getId(), new ArrayList<>(), discarded, new ArrayList<>());
-                Metadata metadata= new MetadataDefaultImpl(tagField.getId(),origin);
+                String key = intern(tagField.getId());
+                TagMetadataOrigin origin= new TagMetadataOrigin(source.getSourceId() , key, new ArrayList<>(), discarded, new ArrayList<>());
+                Metadata metadata= new MetadataDefaultImpl(key,origin);
                 
                 out.add(metadata);
 
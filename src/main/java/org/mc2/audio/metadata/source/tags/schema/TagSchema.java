@@ -26,15 +26,20 @@
 package org.mc2.audio.metadata.source.tags.schema;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.KeyNotFoundException;
+import org.jaudiotagger.tag.Tag;
 import org.jaudiotagger.tag.TagField;
 import org.mc2.audio.metadata.API.Metadata;
 import org.mc2.audio.metadata.API.MetadataOrigin;
-import org.mc2.audio.metadata.impl.GenericMetadataOrigin;
+import org.mc2.audio.metadata.impl.CompactMetadataOrigin;
 import org.mc2.audio.metadata.impl.MetadataDefaultImpl;
+import org.mc2.audio.metadata.source.StringPool;
 import org.mc2.audio.metadata.source.tags.TagsSource;
 
 /**
@@ -52,9 +57,15 @@ public abstract class TagSchema {
     */ 
     public ArrayList<TagField> geTagFields(){
         
+        return getTagFields(source == null ? null : source.getTag());
+    }
+    /* list all the tagField in a tag, none if null.
+    */ 
+    protected static ArrayList<TagField> getTagFields(Tag tag){
+        
         ArrayList<TagField> out= new ArrayList<>();
         try{
-            Iterator<TagField> fields =  source.getTag().getFields();
+            Iterator<TagField> fields =  tag.getFields();
             while(fields.hasNext()) {
                 TagField tagfield = fields.next();
                 out.add(tagfield);
@@ -73,7 +84,7 @@ public abstract class TagSchema {
     public ArrayList<Metadata> getExistingAndValidMetadata(){
         
         ArrayList<Metadata> out = new ArrayList<>();
-        for (FieldKey fieldKey : FieldKey.values()) {
+        for (FieldKey fieldKey : getFieldKeys()) {
             
             try {
                 
@@ -97,12 +108,12 @@ public abstract class TagSchema {
     public Metadata getPrettyMetadata(FieldKey fieldKey) {
 
         try {
-            List<String> values = source.getTag().getAll(fieldKey);
-            GenericMetadataOrigin origin = new GenericMetadataOrigin(source.getSourceId(), "", values,  new ArrayList<>(),new ArrayList<>());
+            List<String> values = intern(getTag(fieldKey).getAll(fieldKey));
+            MetadataOrigin origin = CompactMetadataOrigin.of(source.getSourceId(), "", values);
             Metadata metadata = new MetadataDefaultImpl(fieldKey.name(), origin);
             return metadata;
         } catch (UnsupportedOperationException | KeyNotFoundException | NullPointerException ex) {
-            GenericMetadataOrigin origin = new GenericMetadataOrigin(source.getSourceId(), "", new ArrayList<>(),  new ArrayList<>(),new ArrayList<>());
+            MetadataOrigin origin = CompactMetadataOrigin.of(source.getSourceId(), "", null);
             Metadata metadata = new MetadataDefaultImpl(fieldKey.name(), origin);
             return metadata;
         }
@@ -114,15 +125,14 @@ public abstract class TagSchema {
      */
     public Metadata getNastyMetadata(FieldKey fieldKey) {
         ArrayList<MetadataOrigin> origins = new ArrayList<>();
+        Tag tag = source == null ? null : getTag(fieldKey);
         
-        if (source != null && source.getTag()!= null && source.getTag().getFields(fieldKey) != null){
+        if (tag != null && tag.getFields(fieldKey) != null){
 
-            Iterator<TagField> iterator = source.getTag().getFields(fieldKey).iterator();
+            Iterator<TagField> iterator = tag.getFields(fieldKey).iterator();
             while (iterator.hasNext()) {
                 TagField tagField = iterator.next();
-                List<String> values= new ArrayList<>();
-                values.add(tagField.getId());
-                GenericMetadataOrigin origin = new GenericMetadataOrigin(source.getSourceId(), "", values, new ArrayList<>(),new ArrayList<>());
+                MetadataOrigin origin = CompactMetadataOrigin.of(source.getSourceId(), "", Collections.singletonList(intern(tagField.getId())));
                 origins.add(origin);
             }
         }
@@ -132,7 +142,62 @@ public abstract class TagSchema {
     
     public Metadata getMetadata(FieldKey fieldKey) {
          
-         return (getPrettyMetadata(fieldKey).isEmpty() ? 
-                 getNastyMetadata(fieldKey) : getPrettyMetadata(fieldKey));
+         Metadata pretty = getPrettyMetadata(fieldKey);
+         return (pretty.isEmpty() ? getNastyMetadata(fieldKey) : pretty);
+    }
+    /* MetadataDefaultImpl for the requested fieldKeys only, as in getMetadata(FieldKey),
+     * fieldKeys not in the tag are not reported.
+     */
+    public ArrayList<Metadata> getMetadata(Set<FieldKey> fieldKeys) {
+        
+        ArrayList<Metadata> out = new ArrayList<>();
+        for (FieldKey fieldKey : getFieldKeys()) {
+            
+            if (!fieldKeys.contains(fieldKey)){
+                continue;
+            }
+            try {
+                
+                Metadata metadata = getMetadata(fieldKey);
+                if (!metadata.isEmpty()){
+                    out.add(metadata);
+                }
+                
+            } catch (UnsupportedOperationException | KeyNotFoundException  ex) {
+                
+            }
+        }
+        return out;
+    }
+    /* Intern a key or value with the pool of the source, if any.
+     */
+    protected String intern(String value){
+        
+        return StringPool.intern(source == null ? null : source.getStringPool(), value);
+    }
+    
+    protected List<String> intern(List<String> values){
+        
+        StringPool pool = source == null ? null : source.getStringPool();
+        return pool == null ? values : pool.intern(values);
+    }
+    /* The tag holding the fields of fieldKey, schemas of sources reading 
+     * some fields lazily could answer the others from a partial tag.
+     */
+    protected Tag getTag(FieldKey fieldKey){
+        
+        return source.getTag();
+    }
+    /* The fieldKeys that could have a value in the tag, in FieldKey order,  
+     * see FieldKeyIndex. Schemas reading from their own tag should add its 
+     * fieldKeys.
+     */
+    protected EnumSet<FieldKey> getFieldKeys(){
+        
+        try {
+            return FieldKeyIndex.getFieldKeys(source.getTag());
+        } catch (NullPointerException ex){
+            return EnumSet.noneOf(FieldKey.class);
+        }
     }
 }
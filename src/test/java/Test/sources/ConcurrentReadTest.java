@@ -0,0 +1,168 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import static Test.utils.AudioFixtures.INFO_TITLE;
+import static Test.utils.AudioFixtures.SONG_TITLE;
+import static Test.utils.AudioFixtures.chunk;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.jaudiotagger.audio.wav.WavOptions;
+import org.jaudiotagger.tag.FieldKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.mc2.audio.metadata.source.tags.file.AudioFile;
+import org.mc2.audio.metadata.source.tags.file.ReadOptions;
+
+/**
+ * Reads files of different formats, with different options, from many
+ * threads at the same time: every read must see its own options only.
+ *
+ * Files are built in a temporary directory, so the test runs everywhere.
+ */
+public class ConcurrentReadTest {
+
+    private static final int THREADS = 16;
+    private static final int READS = 200;
+
+    private File directory;
+    private File wavInfo;
+    private File wavFallback;
+    private File aiff;
+    private File dff;
+    private File flac;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+
+        directory = AudioFixtures.directory("concurrent");
+
+        byte[] info = AudioFixtures.info();
+
+        wavInfo = write("info.wav", AudioFixtures.wav(info, new byte[0]));
+        // a chunk id this library does not read, left to jaudiotagger.
+        wavFallback = write("fallback.wav", AudioFixtures.wav(info, chunk("x\u0001yz", new byte[]{1, 2}, ByteOrder.LITTLE_ENDIAN)));
+        aiff = write("id3.aiff", AudioFixtures.aiff());
+        dff = write("id3.dff", AudioFixtures.dff());
+        flac = write("vorbis.flac", AudioFixtures.flac());
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(directory);
+    }
+
+    @Test
+    public void TestConcurrentRead() throws Exception {
+
+        final ReadOptions sync = ReadOptions.getDefault();
+        final ReadOptions id3Only = sync.withWavOptions(WavOptions.READ_ID3_ONLY);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < THREADS; t++) {
+
+                final int thread = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+
+                        start.await();
+                        int reads = 0;
+
+                        for (int i = 0; i < READS; i++) {
+
+                            boolean synced = (thread + i) % 2 == 0;
+                            ReadOptions options = synced ? sync : id3Only;
+                            String wavTitle = synced ? INFO_TITLE : "";
+
+                            switch ((thread + i) % 5) {
+                                case 0:
+                                    assertTitle(wavInfo, options, wavTitle);
+                                    break;
+                                case 1:
+                                    assertTitle(wavFallback, options, wavTitle);
+                                    break;
+                                case 2:
+                                    assertTitle(aiff, options, SONG_TITLE);
+                                    break;
+                                case 3:
+                                    assertTitle(dff, options, SONG_TITLE);
+                                    break;
+                                default:
+                                    assertTitle(flac, options, SONG_TITLE);
+                                    break;
+                            }
+                            reads++;
+                        }
+                        return reads;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int reads = 0;
+            for (Future<Integer> result : results) {
+                reads += result.get(5, TimeUnit.MINUTES);
+            }
+            assertEquals(THREADS * READS, reads);
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertTitle(File file, ReadOptions options, String title) throws Exception {
+
+        AudioFile audioFile = AudioFile.get(file, options);
+
+        assertTrue(file.getName(), audioFile.getReadOptions() == options);
+        assertEquals(file.getName() + " " + options, title, audioFile.getTag().getFirst(FieldKey.TITLE));
+    }
+
+    private File write(String name, byte[] data) throws IOException {
+        return AudioFixtures.write(directory, name, data);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package Test.sources;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import org.mc2.audio.metadata.source.cue.Command;
+import org.mc2.audio.metadata.source.cue.CueSheet;
+import org.mc2.audio.metadata.source.cue.CueSheetCharset;
+import org.mc2.audio.metadata.source.cue.CueSheetTokenizer;
+
+/**
+ * Encodings of cue sheets, and the titles decoded with them.
+ */
+public class CueSheetCharsetTest {
+
+    private static final String TITLE = "Café À la Carte";
+    private static final String SHEET = "TITLE \"" + TITLE + "\"\r\nFILE \"a.wav\" WAVE\r\n  TRACK 01 AUDIO\r\n    INDEX 01 00:00:00\r\n";
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+    }
+
+    @Test
+    public void TestDetect() throws Exception {
+
+        assertDetected(bytes(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, SHEET, StandardCharsets.UTF_8), StandardCharsets.UTF_8, 3);
+        assertDetected(bytes(new byte[]{(byte) 0xFF, (byte) 0xFE}, SHEET, StandardCharsets.UTF_16LE), StandardCharsets.UTF_16LE, 2);
+        assertDetected(bytes(new byte[]{(byte) 0xFE, (byte) 0xFF}, SHEET, StandardCharsets.UTF_16BE), StandardCharsets.UTF_16BE, 2);
+        assertDetected(bytes(new byte[0], SHEET, StandardCharsets.UTF_16LE), StandardCharsets.UTF_16LE, 0);
+        assertDetected(bytes(new byte[0], SHEET, StandardCharsets.UTF_16BE), StandardCharsets.UTF_16BE, 0);
+        assertDetected(bytes(new byte[0], SHEET, StandardCharsets.UTF_8), StandardCharsets.UTF_8, 0);
+        assertDetected(bytes(new byte[0], SHEET, CueSheetCharset.FALLBACK), CueSheetCharset.FALLBACK, 0);
+        assertDetected(bytes(new byte[0], "TITLE \"Plain\"\r\n", StandardCharsets.US_ASCII), StandardCharsets.US_ASCII, 0);
+    }
+
+    @Test
+    public void TestInvalidUTF8() throws Exception {
+
+        // overlong, surrogate, above U+10FFFF, truncated.
+        byte[][] invalid = {
+            {'T', 'I', 'T', 'L', 'E', ' ', (byte) 0xC0, (byte) 0x80},
+            {'T', 'I', 'T', 'L', 'E', ' ', (byte) 0xED, (byte) 0xA0, (byte) 0x80},
+            {'T', 'I', 'T', 'L', 'E', ' ', (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80},
+            {'T', 'I', 'T', 'L', 'E', ' ', (byte) 0xE2, (byte) 0x82}
+        };
+        for (byte[] data : invalid) {
+            assertEquals(CueSheetCharset.FALLBACK, CueSheetCharset.detect(data).getCharset());
+        }
+    }
+
+    private static void assertDetected(byte[] data, Charset charset, int bomLength) {
+
+        CueSheetCharset detected = CueSheetCharset.detect(data);
+
+        assertEquals(charset, detected.getCharset());
+        assertEquals(bomLength, detected.getBOMLength());
+
+        CueSheet cuesheet = CueSheetTokenizer.parse(data, "test", null, false);
+        Command title = cuesheet.getCommands().get(0);
+
+        assertEquals(charset, cuesheet.getEncoding());
+        assertEquals("\"" + (charset.equals(StandardCharsets.US_ASCII) ? "Plain" : TITLE) + "\"", title.getFirstValue());
+    }
+
+    private static byte[] bytes(byte[] bom, String text, Charset charset) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(bom, 0, bom.length);
+        byte[] encoded = text.getBytes(charset);
+        out.write(encoded, 0, encoded.length);
+        return out.toByteArray();
+    }
+}
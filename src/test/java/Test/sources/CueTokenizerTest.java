@@ -0,0 +1,187 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package Test.sources;
+
+import java.io.LineNumberReader;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import jwbroek.cuelib.LineOfInput;
+import jwbroek.cuelib.Message;
+import jwbroek.cuelib.Position;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.mc2.audio.metadata.source.cue.Command;
+import org.mc2.audio.metadata.source.cue.CueSheet;
+import org.mc2.audio.metadata.source.cue.CueSheetCommandParser;
+import org.mc2.audio.metadata.source.cue.CueSheetTokenizer;
+import org.mc2.audio.metadata.source.cue.FileData;
+import org.mc2.audio.metadata.source.cue.TrackData;
+import org.mc2.audio.metadata.source.cue.TrackIndex;
+
+/**
+ * The tokenizer must build the same cue sheet of the pattern based parser.
+ */
+public class CueTokenizerTest {
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+    }
+
+    @Test
+    public void TestSameAsPatterns() throws Exception {
+
+        StringBuilder sheet = new StringBuilder();
+        sheet.append("REM GENRE Rock\r\n");
+        sheet.append("REM DATE 1999\r\n");
+        sheet.append("REM COMMENT \"ExactAudioCopy v1.0b3\"\r\n");
+        sheet.append("REM REPLAYGAIN_ALBUM_GAIN -3.21 dB\r\n");
+        sheet.append("PERFORMER \"The Artist\"\r\n");
+        sheet.append("TITLE \"The Album\"\r\n");
+        sheet.append("ISRC not here\r\n");
+        sheet.append("FILE \"missing file.wav\" wave\r\n");
+
+        for (int track = 1; track <= 99; track++) {
+
+            sheet.append(String.format("  TRACK %02d AUDIO\r\n", track));
+            sheet.append(String.format("    TITLE \"Song %d\"\r\n", track));
+            sheet.append(String.format("    ISRC USABC000%04d\r\n", track));
+            if (track > 1) {
+                sheet.append(String.format("    INDEX 00 %02d:%02d:00\n", track, 10));
+            }
+            sheet.append(String.format("    INDEX 01 %02d:%02d:%02d\r", track == 1 ? 0 : track, track == 1 ? 0 : 12, track % 80));
+            sheet.append("    INDEX 02 1:99:00\n");
+        }
+        sheet.append("\r\n");
+        sheet.append("POSTGAP 00:02:00\r\n");
+        sheet.append("PREGAP 00:01:00\r\n");
+        sheet.append("bogus\r\n");
+
+        String text = sheet.toString();
+
+        CueSheet expected = CueSheetCommandParser.parse(new LineNumberReader(new StringReader(text)), "test");
+        CueSheet actual = CueSheetTokenizer.parse(CharBuffer.wrap(text), "test", null, true);
+
+        assertEquals(dump(expected), dump(actual));
+        assertEquals(99, actual.getFileDataList().get(0).getTrackDataList().size());
+
+        CueSheet noLines = CueSheetTokenizer.parse(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, "test", null, false);
+
+        assertTrue(noLines.getLines().isEmpty());
+        assertEquals(StandardCharsets.UTF_8, noLines.getEncoding());
+        assertEquals(expected.getMessages().size(), noLines.getMessages().size());
+    }
+
+    @Test
+    public void TestTiming() throws Exception {
+
+        StringBuilder sheet = new StringBuilder("FILE \"missing file.wav\" WAVE\n");
+
+        for (int track = 1; track <= 99; track++) {
+
+            int frames = (track - 1) * 300;
+
+            sheet.append(String.format("  TRACK %02d AUDIO\n", track));
+            for (int index = 0; index < 3; index++) {
+                sheet.append(String.format("    INDEX %02d %02d:%02d:%02d\n", index,
+                                           frames / 4500, frames / 75 % 60, frames % 75));
+                frames += 100;
+            }
+        }
+
+        CueSheet cuesheet = CueSheetTokenizer.parse(CharBuffer.wrap(sheet), "test", null, false);
+        FileData fileData = cuesheet.getFileDataList().get(0);
+
+        assertSame(fileData.getTrackDataList(), fileData.getTrackDataList());
+        assertEquals(99, fileData.getTrackDataList().size());
+
+        for (TrackData trackData : fileData.getTrackDataList()) {
+
+            boolean last = trackData.getNumber() == 99;
+
+            // The length of the last index is unknown, the data file is missing.
+            assertEquals((trackData.getNumber() - 1) * 300, trackData.getOffset());
+            assertEquals(last ? 200 : 300, trackData.getLength());
+            assertEquals(3, trackData.getTrackIndexList().size());
+            assertEquals(last ? 0 : 100, trackData.getTrackIndexList().get(2).getLength());
+        }
+    }
+
+    @Test
+    public void TestBareRem() throws Exception {
+
+        CueSheet cuesheet = CueSheetTokenizer.parse(CharBuffer.wrap("REM\nTITLE x\n"), "test", null, true);
+
+        assertEquals("REM:COMMENT", cuesheet.getCommands().get(0).getId());
+        assertEquals("", cuesheet.getCommands().get(0).getFirstValue());
+    }
+
+    private static String dump(CueSheet cuesheet) {
+
+        StringBuilder out = new StringBuilder();
+
+        for (LineOfInput line : cuesheet.getLines()) {
+            out.append("L ").append(line.getLineNumber()).append(' ').append(line.getInput()).append('\n');
+        }
+        for (Message message : cuesheet.getMessages()) {
+            out.append("M ").append(message.getLineNumber()).append(' ').append(message.getMessage()).append('\n');
+        }
+        for (Command command : cuesheet.getCommands()) {
+            out.append("C ").append(command.getId()).append(command.getValueMap()).append('\n');
+        }
+        for (FileData fileData : cuesheet.getFileDataList()) {
+
+            out.append("F ").append(fileData.getFile()).append(' ').append(fileData.getFileType()).append('\n');
+
+            for (TrackData trackData : fileData.getTrackDataList()) {
+
+                out.append(" T ").append(trackData.getNumber()).append(' ').append(trackData.getDataType())
+                   .append(' ').append(position(trackData.getPregap()))
+                   .append(' ').append(position(trackData.getPostgap()))
+                   .append(' ').append(trackData.getOffset()).append(' ').append(trackData.getLength()).append('\n');
+
+                for (TrackIndex index : trackData.getTrackIndexList()) {
+                    out.append("  I ").append(index.getNumber()).append(' ').append(position(index.getPosition()))
+                       .append(' ').append(index.getLength()).append('\n');
+                }
+                for (Command command : trackData.getCommandList()) {
+                    out.append("  C ").append(command.getId()).append(command.getValueMap()).append('\n');
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static String position(Position position) {
+        return position == null ? "-" : position.getMinutes() + ":" + position.getSeconds() + ":" + position.getFrames();
+    }
+}
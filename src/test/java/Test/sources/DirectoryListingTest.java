@@ -0,0 +1,124 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.mc2.audio.metadata.parser.AudioFileFilter;
+import org.mc2.audio.metadata.parser.DirectoryListing;
+import org.mc2.audio.metadata.parser.DirectoryListing.Kind;
+
+/**
+ * A directory is listed once and its files are classified by extension,
+ * accepting the audio files and cue sheets AudioFileFilter accepts.
+ */
+public class DirectoryListingTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+        directory = AudioFixtures.directory("listing");
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(directory);
+    }
+
+    @Test
+    public void TestClassification() throws Exception {
+
+        for (String name : new String[]{"01.flac", "02.WAV", "album.cue", "cover.jpg", "back.PNG",
+                                         "notes.txt", "noextension", ".hidden.flac", "scans/01.jpg", ".git/config"}) {
+            AudioFixtures.write(directory, name, new byte[]{1});
+        }
+
+        DirectoryListing listing = DirectoryListing.list(directory);
+
+        assertEquals("[01.flac, 02.WAV]", names(listing.getAudioFiles()));
+        assertEquals("[album.cue]", names(listing.getCueFiles()));
+        assertEquals("[back.PNG, cover.jpg]", names(listing.getImageFiles()));
+        assertEquals("[01.flac, 02.WAV, album.cue, back.PNG, cover.jpg, noextension, notes.txt]", names(listing.getFiles()));
+        assertEquals("[scans]", names(listing.getDirectories()));
+        assertTrue(listing.isAlbum());
+
+        for (File file : listing.getFiles()) {
+            assertNotNull(file.getName(), listing.getAttributes(file));
+            assertEquals(file.getName(), 1, listing.getAttributes(file).size());
+        }
+
+        ArrayList<File> accepted = new ArrayList<>(listing.getAudioFiles());
+        accepted.addAll(listing.getCueFiles());
+        assertEquals(names(Arrays.asList(directory.listFiles(new AudioFileFilter()))), names(accepted));
+    }
+
+    @Test
+    public void TestNotAlbum() throws Exception {
+
+        AudioFixtures.write(directory, "cover.jpg", new byte[]{1});
+        AudioFixtures.write(directory, "disc/01.flac", new byte[]{1});
+
+        DirectoryListing listing = DirectoryListing.list(directory);
+        assertFalse(listing.isAlbum());
+        assertEquals("[disc]", names(listing.getDirectories()));
+    }
+
+    @Test
+    public void TestKind() {
+
+        assertEquals(Kind.AUDIO, DirectoryListing.getKind("track.Mp3"));
+        assertEquals(Kind.AUDIO, DirectoryListing.getKind("track.dsf"));
+        assertEquals(Kind.CUE, DirectoryListing.getKind("album.CUE"));
+        assertEquals(Kind.IMAGE, DirectoryListing.getKind("cover.jpeg"));
+        assertEquals(Kind.OTHER, DirectoryListing.getKind("album.log"));
+        assertEquals(Kind.OTHER, DirectoryListing.getKind("flac"));
+        assertEquals(Kind.OTHER, DirectoryListing.getKind("archive.flac.gz"));
+    }
+
+    private static String names(List<File> files) {
+
+        ArrayList<String> out = new ArrayList<>();
+        for (File file : files) {
+            out.add(file.getName());
+        }
+        Collections.sort(out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import java.io.File;
+import java.io.PrintStream;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.flac.metadatablock.MetadataBlockDataPicture;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.flac.FlacTag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.mc2.audio.metadata.source.tags.file.AudioFile;
+import org.mc2.audio.metadata.source.tags.file.Flac;
+import org.mc2.audio.metadata.source.tags.file.FlacMetadataReader;
+
+/**
+ * FLAC metadata blocks are read as jaudiotagger reads them, PICTURE blocks
+ * only when artworks are requested.
+ */
+public class FlacMetadataTest {
+
+    private static final byte[] IMAGE = AudioFixtures.pcm(1024);
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+        directory = AudioFixtures.directory("flac");
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(directory);
+    }
+
+    @Test
+    public void TestPicturesOnRequest() throws Exception {
+
+        File file = AudioFixtures.write(directory, "cover.flac", AudioFixtures.flac(IMAGE));
+
+        FlacMetadataReader reader = FlacMetadataReader.read(file);
+        assertNotNull(reader);
+        assertEquals(1, reader.getPictureCount());
+
+        FlacTag tag = reader.getTag();
+        assertEquals(AudioFixtures.SONG_TITLE, tag.getFirst(FieldKey.TITLE));
+        assertTrue(tag.getImages().isEmpty());
+
+        reader.loadPictures();
+        reader.loadPictures();
+        assertEquals(1, tag.getImages().size());
+
+        MetadataBlockDataPicture expected = ((FlacTag) AudioFileIO.read(file).getTag()).getImages().get(0);
+        MetadataBlockDataPicture picture = tag.getImages().get(0);
+        assertEquals(expected.getMimeType(), picture.getMimeType());
+        assertEquals(expected.getDescription(), picture.getDescription());
+        assertArrayEquals(IMAGE, picture.getImageData());
+    }
+
+    @Test
+    public void TestArtworksOnRequest() throws Exception {
+
+        File file = AudioFixtures.write(directory, "cover.flac", AudioFixtures.flac(IMAGE));
+
+        Flac flac = (Flac) AudioFile.get(file);
+        assertEquals(AudioFixtures.SONG_TITLE, flac.getMetadata(FieldKey.TITLE).getValue());
+        assertEquals(44100L, (long) flac.getTotalSamples());
+        assertTrue(flac.getTag().getImages().isEmpty());
+
+        assertEquals(1, flac.getEmbeddedArtworks().size());
+        assertEquals(1, flac.getTag().getImages().size());
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import org.jaudiotagger.tag.FieldKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import org.mc2.audio.metadata.API.Metadata;
+import org.mc2.audio.metadata.source.tags.file.Aiff;
+import org.mc2.audio.metadata.source.tags.file.AudioFile;
+import org.mc2.audio.metadata.source.tags.file.Dsf;
+import org.mc2.audio.metadata.source.tags.file.Mp3;
+import org.mc2.audio.metadata.source.tags.file.Wav;
+import org.mc2.audio.metadata.source.tags.schema.ID3v2.ID3v2TagsSchema;
+
+/**
+ * Metadata read from the scanned frames of an ID3v2 tag are the ones read
+ * from the tag decoded by jaudiotagger, whatever the version, the 
+ * unsynchronisation and the extended header.
+ */
+public class ID3v2ScanTest {
+
+    /* 0xFF 0xE9 in the title is unsynchronised. */
+    private static final String TITLE = "Cafÿé";
+
+    private static final String[][] FRAMES = {{"TIT2", TITLE},
+                                              {"TPE1", "The Artist"},
+                                              {"TRCK", "3/10"},
+                                              {"TPOS", "1"},
+                                              {"TCON", "(17)"},
+                                              {"TXXX", "MusicBrainz Album Id\0an-id"},
+                                              {"COMM", "eng\0a comment"}};
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+        directory = AudioFixtures.directory("id3");
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(directory);
+    }
+
+    @Test
+    public void TestScannedAsDecoded() throws Exception {
+
+        for (int version = 3; version <= 4; version++) {
+            for (boolean unsync : new boolean[]{false, true}) {
+                for (boolean extendedHeader : new boolean[]{false, true}) {
+
+                    String name = "v" + version + (unsync ? "u" : "") + (extendedHeader ? "x" : "") + ".mp3";
+                    byte[] id3 = AudioFixtures.id3(version, unsync, extendedHeader, FRAMES);
+                    Mp3 mp3 = (Mp3) AudioFile.get(AudioFixtures.write(directory, name, AudioFixtures.mp3(id3)));
+
+                    ID3v2TagsSchema decoded = new ID3v2TagsSchema(mp3.getTag(), mp3);
+                    assertEquals(name, dump(decoded.getMetadata()), dump(mp3.getMetadata()));
+                    assertEquals(name, dump(decoded.getExistingMetadata()), dump(mp3.getExistingMetadata()));
+
+                    assertEquals(name, TITLE, mp3.getMetadata(FieldKey.TITLE).getValue());
+                    assertEquals(name, "10", mp3.getMetadata(FieldKey.TRACK_TOTAL).getValue());
+                    assertEquals(name, "an-id", mp3.getMetadata(FieldKey.MUSICBRAINZ_RELEASEID).getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void TestUnmappedFrames() throws Exception {
+
+        // no FieldKey reads TOWN, TRSN and TSSE: they are left to jaudiotagger.
+        String[][] frames = {{"TIT2", TITLE}, {"TOWN", "The Owner"}, {"TRSN", "The Station"}, 
+                             {"TSSE", "LAME"}, {"COMM", "eng\0a comment"}};
+
+        for (int version = 3; version <= 4; version++) {
+
+            String name = "unmapped" + version + ".mp3";
+            byte[] id3 = AudioFixtures.id3(version, false, false, frames);
+            Mp3 mp3 = (Mp3) AudioFile.get(AudioFixtures.write(directory, name, AudioFixtures.mp3(id3)));
+
+            ID3v2TagsSchema decoded = new ID3v2TagsSchema(mp3.getTag(), mp3);
+            assertEquals(name, dump(decoded.getMetadata()), dump(mp3.getMetadata()));
+            assertEquals(name, dump(decoded.getExistingMetadata()), dump(mp3.getExistingMetadata()));
+        }
+    }
+
+    @Test
+    public void TestRequestedKeys() throws Exception {
+
+        byte[] id3 = AudioFixtures.id3(4, false, false, FRAMES);
+        AudioFile mp3 = AudioFile.get(AudioFixtures.write(directory, "keys.mp3", AudioFixtures.mp3(id3)));
+
+        LinkedHashSet<FieldKey> fieldKeys = new LinkedHashSet<>(Arrays.asList(FieldKey.TRACK, FieldKey.TITLE, FieldKey.ALBUM));
+        ArrayList<Metadata> metadata = mp3.getMetadata(fieldKeys);
+
+        assertEquals(2, metadata.size());
+        assertEquals("TRACK", metadata.get(0).getKey());
+        assertEquals("3", metadata.get(0).getValue());
+        assertEquals("TITLE", metadata.get(1).getKey());
+        assertEquals(TITLE, metadata.get(1).getValue());
+    }
+
+    @Test
+    public void TestContainers() throws Exception {
+
+        byte[] id3 = AudioFixtures.id3(3, true, true, FRAMES);
+
+        Wav wav = (Wav) AudioFile.get(AudioFixtures.write(directory, "id3.wav",
+                AudioFixtures.wav(new byte[0], AudioFixtures.chunk("id3 ", id3, ByteOrder.LITTLE_ENDIAN))));
+        assertEquals(TITLE, wav.getMetadata(FieldKey.TITLE).getValue());
+        assertEquals(TITLE, wav.getTag().getID3Tag().getFirst(FieldKey.TITLE));
+
+        Aiff aiff = (Aiff) AudioFile.get(AudioFixtures.write(directory, "id3.aif", AudioFixtures.aiff()));
+        assertEquals(AudioFixtures.SONG_TITLE, aiff.getMetadata(FieldKey.TITLE).getValue());
+        assertEquals(AudioFixtures.SONG_TITLE, aiff.getTag().getID3Tag().getFirst(FieldKey.TITLE));
+
+        Dsf dsf = (Dsf) AudioFile.get(AudioFixtures.write(directory, "id3.dsf", AudioFixtures.dsf(id3)));
+        assertEquals(TITLE, dsf.getMetadata(FieldKey.TITLE).getValue());
+        assertEquals("3", dsf.getMetadata(FieldKey.TRACK).getValue());
+        assertEquals(TITLE, dsf.getTag().getFirst(FieldKey.TITLE));
+        assertEquals(4096 * 8 / 2822400.0, dsf.getAudioHeader().getPreciseTrackLength(), 0.0001);
+    }
+
+    private static String dump(ArrayList<Metadata> metadata) {
+
+        StringBuilder out = new StringBuilder();
+        for (Metadata next : metadata) {
+            out.append(next.getKey()).append(' ').append(next.getStatus())
+               .append(' ').append(next.getValidValues())
+               .append(' ').append(next.getDiscardedValues())
+               .append(' ').append(next.getInvalidValues()).append('\n');
+        }
+        return out.toString();
+    }
+}
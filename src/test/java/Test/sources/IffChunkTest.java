@@ -0,0 +1,103 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.ByteOrder;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.AudioHeader;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.wav.WavTag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.mc2.audio.metadata.source.tags.file.AudioFile;
+import org.mc2.audio.metadata.source.tags.file.Dff;
+import org.mc2.audio.metadata.source.tags.file.IffChunkReader;
+import org.mc2.audio.metadata.source.tags.file.ReadOptions;
+import org.mc2.audio.metadata.source.tags.file.Wav;
+
+/**
+ * Chunks following the sound data are found by walking the chunk headers,
+ * headers are the ones built by jaudiotagger but with the exact length.
+ */
+public class IffChunkTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+        directory = AudioFixtures.directory("iff");
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(directory);
+    }
+
+    @Test
+    public void TestWavId3AfterData() throws Exception {
+
+        File file = AudioFixtures.write(directory, "id3.wav", AudioFixtures.wav(AudioFixtures.info(),
+                AudioFixtures.chunk("id3 ", AudioFixtures.id3(), ByteOrder.LITTLE_ENDIAN)));
+
+        IffChunkReader reader = IffChunkReader.readWav(file, ReadOptions.getDefault());
+        assertNotNull(reader);
+
+        org.jaudiotagger.audio.AudioFile decoded = AudioFileIO.read(file);
+        AudioHeader expected = decoded.getAudioHeader();
+        assertEquals(expected.getSampleRateAsNumber(), reader.getAudioHeader().getSampleRateAsNumber());
+        assertEquals(expected.getChannels(), reader.getAudioHeader().getChannels());
+        assertEquals(6400 / 44100.0, reader.getAudioHeader().getPreciseTrackLength(), 0.0001);
+
+        Wav wav = (Wav) AudioFile.get(file);
+        WavTag tag = wav.getTag();
+        assertEquals(AudioFixtures.SONG_TITLE, tag.getID3Tag().getFirst(FieldKey.TITLE));
+        assertEquals(((WavTag) decoded.getTag()).getInfoTag().getFirst(FieldKey.TITLE), tag.getInfoTag().getFirst(FieldKey.TITLE));
+        assertEquals("The Artist", wav.getMetadata(FieldKey.ARTIST).getValue());
+    }
+
+    @Test
+    public void TestDffId3AfterData() throws Exception {
+
+        File file = AudioFixtures.write(directory, "id3.dff", AudioFixtures.dff());
+
+        IffChunkReader reader = IffChunkReader.readDff(file, ReadOptions.getDefault());
+        assertNotNull(reader);
+        // 22400 bytes of 2 channels, 8 samples per byte.
+        assertEquals(22400 * 8 / 2 / 2822400.0, reader.getAudioHeader().getPreciseTrackLength(), 0.0001);
+        assertEquals(2, reader.getAudioHeader().getChannelNumber());
+
+        Dff dff = (Dff) AudioFile.get(file);
+        assertEquals(AudioFixtures.SONG_TITLE, dff.getMetadata(FieldKey.TITLE).getValue());
+        assertEquals("An Album", dff.getMetadata(FieldKey.ALBUM).getValue());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import org.mc2.audio.metadata.impl.AlbumDefaultImpl;
+import org.mc2.audio.metadata.parser.LibraryParser;
+import org.mc2.audio.metadata.parser.LibraryParserListener;
+
+/**
+ * Every album directory of the library is parsed once, whatever the number
+ * of workers, and a directory that can't be parsed does not stop the scan.
+ */
+public class LibraryParserTest {
+
+    private static final String ALBUMS = "{a/1=2, a/2=2, b=1, b/c=2}";
+
+    private File library;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+
+        library = AudioFixtures.directory("library");
+        byte[] flac = AudioFixtures.flac();
+
+        AudioFixtures.write(library, "a/1/01.flac", flac);
+        AudioFixtures.write(library, "a/1/02.flac", flac);
+        AudioFixtures.write(library, "a/2/01.flac", flac);
+        AudioFixtures.write(library, "a/2/02.flac", flac);
+        // an album holding another album.
+        AudioFixtures.write(library, "b/01.flac", flac);
+        AudioFixtures.write(library, "b/c/01.flac", flac);
+        AudioFixtures.write(library, "b/c/02.flac", flac);
+        AudioFixtures.write(library, "notes/readme.txt", AudioFixtures.ascii("no audio here"));
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(library);
+    }
+
+    @Test
+    public void TestParallelScan() throws Exception {
+
+        assertEquals(ALBUMS, scan(1).toString());
+        assertEquals(ALBUMS, scan(4).toString());
+    }
+
+    @Test
+    public void TestSymbolicLinkLoop() throws Exception {
+
+        try {
+            Files.createSymbolicLink(new File(library, "b/c/loop").toPath(), library.toPath());
+        } catch (UnsupportedOperationException | IOException ex) {
+            Assume.assumeNoException(ex);
+        }
+        assertEquals(ALBUMS, scan(4).toString());
+    }
+
+    @Test
+    public void TestFailedDirectory() throws Exception {
+
+        AudioFixtures.write(library, "bad/01.flac", AudioFixtures.ascii("not a flac file"));
+
+        assertEquals("{a/1=2, a/2=2, b=1, b/c=2, bad=failed}", scan(4).toString());
+    }
+
+    /* audio file count by album directory, relative to the library. */
+    private Map<String, String> scan(int parallelism) throws Exception {
+
+        final Map<String, String> out = new TreeMap<>();
+        final String prefix = library.getPath() + File.separator;
+
+        new LibraryParser(parallelism).parse(library, new LibraryParserListener() {
+
+            @Override
+            public void albumParsed(File directory, AlbumDefaultImpl album) {
+                put(directory, String.valueOf(album.getAudioFileList().size()));
+            }
+
+            @Override
+            public void albumFailed(File directory, Exception ex) {
+                put(directory, "failed");
+            }
+
+            private void put(File directory, String value) {
+
+                String key = directory.getPath().substring(prefix.length()).replace(File.separatorChar, '/');
+                synchronized (out) {
+                    if (out.put(key, value) != null) {
+                        out.put(key, "twice");
+                    }
+                }
+            }
+        });
+        return out;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.mc2.audio.metadata.API.Album;
+import org.mc2.audio.metadata.parser.AlbumSubscriber;
+import org.mc2.audio.metadata.parser.AlbumSubscription;
+import org.mc2.audio.metadata.parser.LibraryParser;
+
+/**
+ * Albums are built only when requested, failures don't consume requests and
+ * cancelling stops the scan.
+ */
+public class LibrarySubscriptionTest {
+
+    private static final int ALBUMS = 5;
+
+    private File library;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+
+        library = AudioFixtures.directory("library");
+        byte[] wav = AudioFixtures.wav(AudioFixtures.info(), new byte[0]);
+
+        for (int i = 1; i <= ALBUMS; i++) {
+            AudioFixtures.write(library, "album " + i + "/01.wav", wav);
+        }
+        AudioFixtures.write(library, "broken/01.wav", AudioFixtures.ascii("not a wav file"));
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(library);
+    }
+
+    @Test
+    public void TestRequestCredits() throws Exception {
+
+        Subscriber subscriber = new Subscriber(2);
+        Thread scan = subscribe(subscriber, 4);
+
+        assertTrue(subscriber.await(2));
+        // give the workers time to build an album not requested.
+        Thread.sleep(500);
+        assertEquals(2, subscriber.albums.get());
+        assertFalse(subscriber.completed.getCount() == 0);
+
+        subscriber.subscription.request(ALBUMS - 2);
+        assertTrue(subscriber.completed.await(1, TimeUnit.MINUTES));
+        scan.join(60000);
+
+        assertEquals(ALBUMS, subscriber.albums.get());
+        assertEquals(1, subscriber.failures.get());
+        assertNull(subscriber.error.get());
+    }
+
+    @Test
+    public void TestCancel() throws Exception {
+
+        Subscriber subscriber = new Subscriber(1) {
+            @Override
+            public void onNext(File directory, Album album) {
+                super.onNext(directory, album);
+
+                // two cancels at once must not add more permits than the semaphore holds.
+                Thread other = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        subscription.cancel();
+                    }
+                });
+                other.start();
+                subscription.cancel();
+                try {
+                    other.join();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        Thread scan = subscribe(subscriber, 4);
+        scan.join(60000);
+
+        assertFalse(scan.isAlive());
+        assertEquals(1, subscriber.albums.get());
+        assertEquals(1, subscriber.completed.getCount());
+        assertNull(subscriber.error.get());
+    }
+
+    @Test
+    public void TestUnboundedThenCancel() throws Exception {
+
+        Subscriber subscriber = new Subscriber(Integer.MAX_VALUE / 2 - 1) {
+            @Override
+            public void onSubscribe(AlbumSubscription subscription) {
+                super.onSubscribe(subscription);
+                subscription.request(Long.MAX_VALUE);
+                subscription.cancel();
+                subscription.cancel();
+            }
+        };
+        Thread scan = subscribe(subscriber, 2);
+        scan.join(60000);
+
+        assertFalse(scan.isAlive());
+        assertEquals(0, subscriber.albums.get());
+        assertNull(subscriber.error.get());
+    }
+
+    private Thread subscribe(final Subscriber subscriber, final int parallelism) {
+
+        Thread scan = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    new LibraryParser(parallelism).subscribe(library, subscriber);
+                } catch (Throwable ex) {
+                    subscriber.error.set(ex);
+                }
+            }
+        });
+        scan.start();
+        return scan;
+    }
+
+    private static class Subscriber implements AlbumSubscriber {
+
+        private final long initialRequest;
+        protected volatile AlbumSubscription subscription;
+        private final AtomicInteger albums = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        Subscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        boolean await(int count) throws InterruptedException {
+
+            long deadline = System.currentTimeMillis() + 60000;
+            while (albums.get() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            return albums.get() >= count;
+        }
+
+        @Override
+        public void onSubscribe(AlbumSubscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(File directory, Album album) {
+            albums.incrementAndGet();
+        }
+
+        @Override
+        public void onFailure(File directory, Exception ex) {
+            failures.incrementAndGet();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.mc2.audio.metadata.impl.AlbumDefaultImpl;
+import org.mc2.audio.metadata.parser.LibraryWatcher;
+import org.mc2.audio.metadata.parser.LibraryWatcherListener;
+
+/**
+ * A burst of changes in an album directory is reported once, after the
+ * debounce delay. Albums moved out of the library are reported as removed.
+ */
+public class LibraryWatcherTest {
+
+    private static final long DEBOUNCE = 500;
+
+    private File library;
+    private byte[] wav;
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Long> times = Collections.synchronizedList(new ArrayList<Long>());
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+
+        library = AudioFixtures.directory("watched");
+        wav = AudioFixtures.wav(AudioFixtures.info(), new byte[0]);
+        AudioFixtures.write(library, "known/01.wav", wav);
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(library);
+    }
+
+    @Test
+    public void TestDebounce() throws Exception {
+        check(0);
+    }
+
+    @Test
+    public void TestDebouncePolling() throws Exception {
+        // Longer than the time between writes: no two walks in a row see the same files.
+        check(DEBOUNCE * 3 / 5);
+    }
+
+    @Test
+    public void TestMoveParentOut() throws Exception {
+        checkMoveParentOut(0);
+    }
+
+    @Test
+    public void TestMoveParentOutPolling() throws Exception {
+        checkMoveParentOut(DEBOUNCE);
+    }
+
+    private void checkMoveParentOut(long pollingInterval) throws Exception {
+
+        AudioFixtures.write(library, "parent/album/01.wav", wav);
+        File outside = AudioFixtures.directory("outside");
+
+        try (LibraryWatcher watcher = new LibraryWatcher(new Listener(), DEBOUNCE, pollingInterval)) {
+
+            watcher.watch(library);
+
+            // The parent is not an album, only the album under it is known.
+            Files.move(new File(library, "parent").toPath(), new File(outside, "parent").toPath());
+            waitFor(1);
+            Thread.sleep(DEBOUNCE * 2);
+            assertEquals(Collections.singletonList("removed album"), events);
+
+            // No longer watched once out of the library.
+            AudioFixtures.write(outside, "parent/album/02.wav", wav);
+            Thread.sleep(DEBOUNCE * 3);
+            assertEquals(Collections.singletonList("removed album"), events);
+
+        } finally {
+            AudioFixtures.delete(outside);
+        }
+    }
+
+    private void check(long pollingInterval) throws Exception {
+
+        try (LibraryWatcher watcher = new LibraryWatcher(new Listener(), DEBOUNCE, pollingInterval)) {
+
+            watcher.watch(library);
+
+            // Albums already there are known, not reported.
+            Thread.sleep(DEBOUNCE * 2);
+            assertEquals(Collections.emptyList(), events);
+
+            long last = 0;
+            for (int i = 1; i <= 4; i++) {
+                AudioFixtures.write(library, "new/0" + i + ".wav", wav);
+                last = System.currentTimeMillis();
+                Thread.sleep(DEBOUNCE / 5);
+            }
+
+            waitFor(1);
+            Thread.sleep(DEBOUNCE * 2);
+            assertEquals(Collections.singletonList("added new"), events);
+            if (pollingInterval == 0) {
+                assertTrue("reported before the debounce delay", times.get(0) >= last + DEBOUNCE - 50);
+            }
+
+            AudioFixtures.write(library, "new/05.wav", wav);
+            waitFor(2);
+            AudioFixtures.delete(new File(library, "new"));
+            waitFor(3);
+            Thread.sleep(DEBOUNCE * 2);
+
+            assertEquals("[added new, changed new, removed new]", events.toString());
+        }
+    }
+
+    private void waitFor(int count) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while (events.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private class Listener implements LibraryWatcherListener {
+
+        private void event(String event, File directory) {
+            times.add(System.currentTimeMillis());
+            events.add(event + " " + directory.getName());
+        }
+
+        @Override
+        public void albumAdded(File directory, AlbumDefaultImpl album) {
+            event("added", directory);
+        }
+
+        @Override
+        public void albumChanged(File directory, AlbumDefaultImpl album) {
+            event("changed", directory);
+        }
+
+        @Override
+        public void albumRemoved(File directory) {
+            event("removed", directory);
+        }
+
+        @Override
+        public void albumFailed(File directory, Exception ex) {
+            event("failed", directory);
+        }
+    }
+}
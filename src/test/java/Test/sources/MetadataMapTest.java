@@ -0,0 +1,128 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package Test.sources;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.mc2.audio.metadata.API.Metadata;
+import org.mc2.audio.metadata.API.MetadataOrigin;
+import org.mc2.audio.metadata.impl.CompactMetadata;
+import org.mc2.audio.metadata.impl.GenericMetadataOrigin;
+import org.mc2.audio.metadata.impl.ImmutableMetadata;
+import org.mc2.audio.metadata.impl.MetadataDefaultImpl;
+import org.mc2.audio.metadata.impl.MetadataMap;
+
+/**
+ * Metadata are found by key or alias whatever the way the list changed,
+ * metadata that can't change are replaced when merged.
+ */
+public class MetadataMapTest {
+
+    @Before
+    public void setUp() throws Exception {
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+    }
+
+    @Test
+    public void TestMergeFrozen() {
+
+        MetadataMap map = MetadataMap.atAlbumLevel();
+        map.add(new MetadataDefaultImpl("ALBUM_ARTIST", origin("ALBUM_ARTIST", "First")));
+        map.add(new MetadataDefaultImpl("TITLE", origin("TITLE", "Title")));
+        ImmutableMetadata.freeze(map.getList());
+
+        map.merge(new MetadataDefaultImpl("PERFORMER", origin("PERFORMER", "Second")));
+
+        assertEquals(2, map.size());
+        Metadata merged = map.get("PERFORMER");
+        assertSame(merged, map.getList().get(0));
+        assertTrue(merged instanceof MetadataDefaultImpl);
+        assertEquals("ALBUM_ARTIST", merged.getKey());
+        assertEquals("First; Second", merged.getValue());
+        assertTrue(map.find("TITLE") instanceof ImmutableMetadata);
+    }
+
+    @Test
+    public void TestListChanges() {
+
+        MetadataMap map = MetadataMap.atAlbumLevel();
+        map.add(new MetadataDefaultImpl("TITLE", origin("TITLE", "Title")));
+        map.add(new MetadataDefaultImpl("GENRE", origin("GENRE", "Genre")));
+        map.add(new MetadataDefaultImpl("DATE", origin("DATE", "2000")));
+        assertEquals("Genre", map.find("GENRE").getValue());
+
+        map.getList().set(0, new MetadataDefaultImpl("COMMENT", origin("COMMENT", "Comment")));
+        assertNull(map.find("TITLE"));
+        assertEquals("Comment", map.find("COMMENT").getValue());
+
+        map.getList().remove(0);
+        assertNull(map.find("COMMENT"));
+        assertEquals("2000", map.find("DATE").getValue());
+
+        Iterator<Metadata> iterator = map.getList().iterator();
+        iterator.next();
+        iterator.remove();
+        assertNull(map.find("GENRE"));
+        assertSame(map.getList().get(0), map.find("DATE"));
+
+        map.getList().add(new MetadataDefaultImpl("TITLE", origin("TITLE", "Title")));
+        assertEquals("Title", map.find("TITLE").getValue());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void TestSubList() {
+
+        MetadataMap map = MetadataMap.atAlbumLevel();
+        map.add(new MetadataDefaultImpl("TITLE", origin("TITLE", "Title")));
+        map.getList().subList(0, 1).clear();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void TestImmutableOrigins() {
+
+        Metadata metadata = new ImmutableMetadata("TITLE", Arrays.asList(origin("TITLE", "Title")));
+        metadata.getOrigins().add(origin("TITLE", "Other"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void TestCompactOrigins() {
+
+        Metadata metadata = CompactMetadata.of("TITLE", Arrays.asList(origin("TITLE", "Title")));
+        metadata.getOrigins().add(origin("TITLE", "Other"));
+    }
+
+    private static MetadataOrigin origin(String key, String value) {
+        return new GenericMetadataOrigin("test", key, new ArrayList<>(Arrays.asList(value)),
+                                         new ArrayList<String>(), new ArrayList<String>());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.mc2.audio.metadata.source.ScanProfile;
+import org.mc2.audio.metadata.source.tags.file.AudioFile;
+import org.mc2.audio.metadata.source.tags.file.M4a;
+import org.mc2.audio.metadata.source.tags.file.Mp4AtomReader;
+import org.mc2.audio.metadata.source.tags.file.ReadOptions;
+
+/**
+ * MP4 files are read walking their atoms, wherever moov is, as jaudiotagger
+ * reads them; cover art is read only when the complete tag is requested.
+ */
+public class Mp4AtomTest {
+
+    private static final byte[] IMAGE = AudioFixtures.pcm(300);
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+        directory = AudioFixtures.directory("mp4");
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(directory);
+    }
+
+    @Test
+    public void TestMoovAfterMdat() throws Exception {
+
+        for (boolean moovLast : new boolean[]{false, true}) {
+
+            String name = moovLast ? "last.m4a" : "first.m4a";
+            File file = AudioFixtures.write(directory, name, AudioFixtures.mp4(moovLast, null));
+
+            Mp4AtomReader reader = Mp4AtomReader.read(file);
+            assertNotNull(name, reader);
+
+            org.jaudiotagger.audio.AudioFile expected = AudioFileIO.read(file);
+            assertEquals(name, expected.getTag().getFirst(FieldKey.TITLE), reader.getTag().getFirst(FieldKey.TITLE));
+            assertEquals(name, expected.getAudioHeader().getSampleRateAsNumber(), reader.getAudioHeader().getSampleRateAsNumber());
+            assertEquals(name, expected.getAudioHeader().getChannels(), reader.getAudioHeader().getChannels());
+            assertEquals(name, expected.getAudioHeader().getBitRateAsNumber(), reader.getAudioHeader().getBitRateAsNumber());
+            assertEquals(name, expected.getAudioHeader().getAudioDataStartPosition(), reader.getAudioHeader().getAudioDataStartPosition());
+            assertEquals(name, 1.0, reader.getAudioHeader().getPreciseTrackLength(), 0.001);
+
+            AudioFile audioFile = AudioFile.get(file);
+            assertTrue(name, audioFile instanceof M4a);
+            assertEquals(name, AudioFixtures.SONG_TITLE, audioFile.getMetadata(FieldKey.TITLE).getValue());
+        }
+    }
+
+    @Test
+    public void TestChunkOffset64() throws Exception {
+
+        for (boolean moovLast : new boolean[]{false, true}) {
+
+            String name = moovLast ? "last.m4a" : "first.m4a";
+            byte[] data = AudioFixtures.mp4(moovLast, null, true);
+            File file = AudioFixtures.write(directory, name, data);
+
+            Mp4AtomReader reader = Mp4AtomReader.read(file);
+            assertNotNull(name, reader);
+            // mdat data start after the type of mdat.
+            long mdat = new String(data, StandardCharsets.ISO_8859_1).indexOf("mdat") + 4;
+            assertEquals(name, mdat, reader.getAudioHeader().getAudioDataStartPosition().longValue());
+            assertEquals(name, AudioFixtures.SONG_TITLE, reader.getTag().getFirst(FieldKey.TITLE));
+        }
+    }
+
+    @Test
+    public void TestCoverArt() throws Exception {
+
+        for (boolean moovLast : new boolean[]{false, true}) {
+
+            String name = moovLast ? "last.m4a" : "first.m4a";
+            File file = AudioFixtures.write(directory, name, AudioFixtures.mp4(moovLast, IMAGE));
+
+            Mp4AtomReader reader = Mp4AtomReader.read(file);
+            assertEquals(name, 1, reader.getCoverCount());
+            assertEquals(name, 0, reader.getTag().getArtworkList().size());
+
+            Tag complete = reader.getCompleteTag();
+            assertEquals(name, AudioFixtures.SONG_TITLE, complete.getFirst(FieldKey.TITLE));
+            assertArrayEquals(name, AudioFileIO.read(file).getTag().getFirstArtwork().getBinaryData(), complete.getFirstArtwork().getBinaryData());
+            assertArrayEquals(name, IMAGE, complete.getFirstArtwork().getBinaryData());
+
+            AudioFile audioFile = AudioFile.get(file);
+            assertEquals(name, 1, audioFile.getEmbeddedArtworkReferences().size());
+
+            ReadOptions tagsOnly = ReadOptions.getDefault().withProfile(ScanProfile.TAGS_ONLY);
+            assertEquals(name, 0, Mp4AtomReader.read(file, tagsOnly).getCoverCount());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import org.mc2.audio.metadata.API.exceptions.InvalidAudioFileException;
+import org.mc2.audio.metadata.source.ScanContext;
+import org.mc2.audio.metadata.source.tags.file.AudioFile;
+
+/**
+ * A scan context reads each file once, whatever the number of threads asking
+ * for it.
+ */
+public class ScanContextTest {
+
+    private static final int THREADS = 8;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+        directory = AudioFixtures.directory("context");
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(directory);
+    }
+
+    @Test
+    public void TestReadOnce() throws Exception {
+
+        final File wav = AudioFixtures.write(directory, "info.wav", AudioFixtures.wav(AudioFixtures.info(), new byte[0]));
+        final ScanContext scanContext = new ScanContext();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<AudioFile>> results = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(new Callable<AudioFile>() {
+                    @Override
+                    public AudioFile call() throws Exception {
+                        start.await();
+                        return scanContext.getAudioFile(wav);
+                    }
+                }));
+            }
+            start.countDown();
+
+            AudioFile first = results.get(0).get(1, TimeUnit.MINUTES);
+            for (Future<AudioFile> result : results) {
+                assertSame(first, result.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, scanContext.size());
+        assertEquals(1, scanContext.getStatistics().getFilesTouched());
+        assertEquals(wav.length(), scanContext.getStatistics().getFileBytes());
+        scanContext.close();
+    }
+
+    @Test
+    public void TestFailureCached() throws Exception {
+
+        File invalid = AudioFixtures.write(directory, "invalid.wav", AudioFixtures.ascii("not a wav file"));
+        ScanContext scanContext = new ScanContext();
+
+        InvalidAudioFileException first = null;
+        for (int i = 0; i < 2; i++) {
+            try {
+                scanContext.getAudioFile(invalid);
+                fail("invalid file read");
+            } catch (InvalidAudioFileException ex) {
+                if (first == null) {
+                    first = ex;
+                }
+                assertSame(first, ex);
+            }
+        }
+        assertEquals(1, scanContext.getStatistics().getFilesTouched());
+        scanContext.close();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.mc2.audio.metadata.impl.AlbumDefaultImpl;
+import org.mc2.audio.metadata.parser.LibraryParser;
+import org.mc2.audio.metadata.parser.LibraryParserListener;
+import org.mc2.audio.metadata.parser.index.ScanIndex;
+import org.mc2.audio.metadata.source.ScanProfile;
+
+/**
+ * Albums are rebuilt from the index only when nothing they were read from
+ * changed, and when they were read the same way.
+ */
+public class ScanIndexTest {
+
+    private static final String PARSED = "parsed";
+    private static final String INDEXED = "indexed";
+
+    private File root;
+    private File library;
+    private File shared;
+    private byte[] wav;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+
+        root = AudioFixtures.directory("indexed");
+        library = new File(root, "library");
+        shared = new File(root, "shared");
+        wav = AudioFixtures.wav(AudioFixtures.info(), new byte[0]);
+
+        AudioFixtures.write(library, "tracks/01.wav", wav);
+        // a cue sheet whose data file is outside the library.
+        AudioFixtures.write(shared, "image.wav", wav);
+        AudioFixtures.write(library, "image/album.cue", AudioFixtures.ascii(
+                "TITLE \"Image\"\r\nFILE \"../../shared/image.wav\" WAVE\r\n  TRACK 01 AUDIO\r\n    INDEX 01 00:00:00\r\n"));
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(root);
+    }
+
+    @Test
+    public void TestHitAndMiss() throws Exception {
+
+        ScanIndex index = new ScanIndex();
+
+        assertEquals("{image=parsed, tracks=parsed}", scan(index, ScanProfile.FULL, true).toString());
+        assertEquals(2, index.size());
+        assertEquals("{image=indexed, tracks=indexed}", scan(index, ScanProfile.FULL, true).toString());
+
+        // a changed file in the album directory.
+        AudioFixtures.write(library, "tracks/01.wav", AudioFixtures.concat(wav, new byte[2]));
+        assertEquals("{image=indexed, tracks=parsed}", scan(index, ScanProfile.FULL, true).toString());
+
+        // a changed cue sheet data file, outside the album directory.
+        AudioFixtures.write(shared, "image.wav", AudioFixtures.concat(wav, new byte[2]));
+        assertEquals("{image=parsed, tracks=indexed}", scan(index, ScanProfile.FULL, true).toString());
+
+        // a removed album.
+        AudioFixtures.delete(new File(library, "tracks"));
+        assertEquals("{image=indexed}", scan(index, ScanProfile.FULL, true).toString());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void TestProfileMismatch() throws Exception {
+
+        ScanIndex index = new ScanIndex();
+
+        assertEquals("{image=parsed, tracks=parsed}", scan(index, ScanProfile.TAGS_ONLY, true).toString());
+        assertEquals("{image=parsed, tracks=parsed}", scan(index, ScanProfile.FULL, true).toString());
+        assertEquals("{image=indexed, tracks=indexed}", scan(index, ScanProfile.FULL, true).toString());
+
+        // albums rebuilt from the index are detached, an attached scan parses everything.
+        AudioFixtures.delete(new File(library, "tracks"));
+        assertEquals("{image=parsed}", scan(index, ScanProfile.FULL, false).toString());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void TestRoundTrip() throws Exception {
+
+        File file = new File(root, "index.gz");
+        ScanIndex index = new ScanIndex();
+
+        scan(index, ScanProfile.FULL, true);
+        index.save(file);
+        assertTrue(file.isFile());
+
+        ScanIndex loaded = ScanIndex.load(file);
+        assertEquals(index.getDirectories(), loaded.getDirectories());
+        assertEquals("{image=indexed, tracks=indexed}", scan(loaded, ScanProfile.FULL, true).toString());
+
+        // an unreadable index is empty.
+        AudioFixtures.write(root, "index.gz", AudioFixtures.ascii("garbage"));
+        assertEquals(0, ScanIndex.load(file).size());
+    }
+
+    @Test
+    public void TestForeignClasses() throws Exception {
+
+        File file = new File(root, "index.gz");
+        ScanIndex index = new ScanIndex();
+        scan(index, ScanProfile.FULL, true);
+        index.save(file);
+
+        // same header, but a map of something else than index entries.
+        HashMap<String, Object> foreign = new HashMap<>();
+        foreign.put(library.getPath(), new Date());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new FileInputStream(file)));
+             ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeInt(in.readInt());
+            out.writeObject(foreign);
+        }
+        AudioFixtures.write(root, "index.gz", bytes.toByteArray());
+        assertEquals(0, ScanIndex.load(file).size());
+    }
+
+    private Map<String, String> scan(ScanIndex index, ScanProfile profile, boolean detached) throws Exception {
+
+        final Map<String, String> out = new TreeMap<>();
+
+        LibraryParser parser = new LibraryParser(2);
+        parser.setProfile(profile);
+        parser.setDetached(detached);
+        parser.parse(library, new LibraryParserListener() {
+
+            @Override
+            public void albumParsed(File directory, AlbumDefaultImpl album) {
+                // albums rebuilt from the index read no file.
+                synchronized (out) {
+                    out.put(directory.getName(), album.getStatistics().getFilesTouched() == 0 ? INDEXED : PARSED);
+                }
+            }
+
+            @Override
+            public void albumFailed(File directory, Exception ex) {
+                synchronized (out) {
+                    out.put(directory.getName(), "failed " + ex);
+                }
+            }
+        }, index);
+
+        return out;
+    }
+}
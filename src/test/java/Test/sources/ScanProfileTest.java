@@ -0,0 +1,115 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package Test.sources;
+
+import Test.utils.AudioFixtures;
+import java.io.File;
+import java.io.PrintStream;
+import org.jaudiotagger.tag.FieldKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import org.mc2.audio.metadata.source.ScanContext;
+import org.mc2.audio.metadata.source.ScanProfile;
+import org.mc2.audio.metadata.source.tags.file.AudioFile;
+import org.mc2.audio.metadata.source.tags.file.ReadOptions;
+
+/**
+ * Files read with a profile skip the pictures and the headers it does not
+ * need, tags are still read in full.
+ */
+public class ScanProfileTest {
+
+    private static final ReadOptions TAGS_ONLY = ReadOptions.getDefault().withProfile(ScanProfile.TAGS_ONLY);
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+
+        System.setOut(new PrintStream(System.out, true, "utf-8"));
+        directory = AudioFixtures.directory("profile");
+    }
+
+    @After
+    public void tearDown() {
+        AudioFixtures.delete(directory);
+    }
+
+    @Test
+    public void TestFlacPictures() throws Exception {
+
+        File flac = AudioFixtures.write(directory, "cover.flac", AudioFixtures.flac(AudioFixtures.pcm(1024)));
+
+        AudioFile full = AudioFile.get(flac);
+        assertEquals(1, full.getEmbeddedArtworks().size());
+
+        AudioFile tagsOnly = AudioFile.get(flac, TAGS_ONLY);
+        assertEquals(0, tagsOnly.getEmbeddedArtworks().size());
+        assertEquals(AudioFixtures.SONG_TITLE, tagsOnly.getTag().getFirst(FieldKey.TITLE));
+    }
+
+    @Test
+    public void TestMp3Pictures() throws Exception {
+
+        // larger than the first read of the tag, the title follows the picture.
+        File mp3 = AudioFixtures.write(directory, "cover.mp3", AudioFixtures.mp3(AudioFixtures.id3(AudioFixtures.pcm(64 * 1024))));
+
+        AudioFile full = AudioFile.get(mp3);
+        assertEquals(1, full.getEmbeddedArtworkReferences().size());
+        assertEquals(1, full.getEmbeddedArtworks().size());
+
+        AudioFile tagsOnly = AudioFile.get(mp3, TAGS_ONLY);
+        assertEquals(0, tagsOnly.getEmbeddedArtworkReferences().size());
+        assertEquals(0, tagsOnly.getEmbeddedArtworks().size());
+        assertEquals(AudioFixtures.SONG_TITLE, tagsOnly.getTag().getFirst(FieldKey.TITLE));
+    }
+
+    @Test
+    public void TestMp3HeaderOnRequest() throws Exception {
+
+        File mp3 = AudioFixtures.write(directory, "song.mp3", AudioFixtures.mp3(AudioFixtures.id3()));
+
+        AudioFile full = AudioFile.get(mp3);
+        AudioFile tagsOnly = AudioFile.get(mp3, TAGS_ONLY);
+
+        assertNotNull(tagsOnly.getAudioHeader());
+        assertEquals(full.getAudioHeader().getTrackLength(), tagsOnly.getAudioHeader().getTrackLength());
+        assertEquals(full.getAudioHeader().getSampleRateAsNumber(), tagsOnly.getAudioHeader().getSampleRateAsNumber());
+    }
+
+    @Test
+    public void TestScanContextProfile() throws Exception {
+
+        File wav = AudioFixtures.write(directory, "info.wav", AudioFixtures.wav(AudioFixtures.info(), new byte[0]));
+
+        try (ScanContext scanContext = new ScanContext(ScanProfile.TAGS_ONLY, false)) {
+            assertSame(ScanProfile.TAGS_ONLY, scanContext.getAudioFile(wav).getReadOptions().getProfile());
+        }
+    }
+}
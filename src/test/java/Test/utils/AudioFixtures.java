@@ -0,0 +1,474 @@
+/*
+ * Library for manipulating metadata from Audiofiles and cue sheets.
+ *
+ * Copyright (C) 2017 Marco Curti (marcoc1712 at gmail dot com).
+ *
+ * Based upon (and depends on):
+ * 
+ * - cueLib by Jan-Willem van den Broek
+ * - jaudiotagger:audio tagging library Copyright (C) 2015 Paul Taylor
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package Test.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds small audio files in a temporary directory, so that tests run
+ * everywhere.
+ *
+ * @author marco
+ */
+public final class AudioFixtures {
+
+    public static final String SONG_TITLE = "Song Title";
+    public static final String INFO_TITLE = "Info Title";
+
+    private AudioFixtures() {
+    }
+
+    /**
+     * @param prefix the prefix of the directory name.
+     * @return a new empty temporary directory.
+     * @throws IOException if the directory can't be created.
+     */
+    public static File directory(String prefix) throws IOException {
+
+        File directory = File.createTempFile(prefix, "");
+        directory.delete();
+        if (!directory.mkdir()) {
+            throw new IOException("Can't create " + directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Delete a file or a directory tree.
+     * @param file the file.
+     */
+    public static void delete(File file) {
+
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    public static File write(File directory, String name, byte[] data) throws IOException {
+
+        File file = new File(directory, name);
+        file.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+
+    public static byte[] pcm(int length) {
+
+        byte[] out = new byte[length];
+        for (int i = 0; i < length; i++) {
+            out[i] = (byte) i;
+        }
+        return out;
+    }
+
+    public static byte[] chunk(String id, byte[] data, ByteOrder order) {
+
+        ByteBuffer out = ByteBuffer.allocate(8 + data.length + data.length % 2).order(order);
+        out.put(id.getBytes(StandardCharsets.ISO_8859_1));
+        out.putInt(data.length);
+        out.put(data);
+        return out.array();
+    }
+
+    public static byte[] chunk64(String id, byte[] data) {
+
+        ByteBuffer out = ByteBuffer.allocate(12 + data.length + data.length % 2);
+        out.put(id.getBytes(StandardCharsets.ISO_8859_1));
+        out.putLong(data.length);
+        out.put(data);
+        return out.array();
+    }
+
+    public static byte[] concat(byte[]... parts) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return an ID3v2.3 tag with title, artist and album.
+     */
+    public static byte[] id3() {
+        return id3(3, false, false, new String[][]{{"TIT2", SONG_TITLE}, {"TPE1", "The Artist"}, {"TALB", "An Album"}});
+    }
+
+    /**
+     * An ID3v2 tag of ISO-8859-1 text frames, with 20 bytes of padding.
+     * @param version 3 or 4.
+     * @param unsync if true the tag is unsynchronised: frames of v2.3 as a
+     * whole, each frame of v2.4 on its own.
+     * @param extendedHeader if true the tag has an extended header, for
+     * v2.4 flagging the tag as an update: jaudiotagger rejects the 6 bytes
+     * one with no flags.
+     * @param frames id and value of the frames.
+     * @return the tag.
+     */
+    public static byte[] id3(int version, boolean unsync, boolean extendedHeader, String[][] frames) {
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        if (extendedHeader) {
+            byte[] extended = version == 3 ? new byte[]{0, 0, 0, 6, 0, 0, 0, 0, 0, 0}
+                                           : new byte[]{0, 0, 0, 7, 1, 0x40, 0};
+            body.write(extended, 0, extended.length);
+        }
+
+        for (String[] frame : frames) {
+
+            byte[] text = concat(new byte[]{0}, ascii(frame[1]));
+            boolean frameUnsync = unsync && version == 4;
+            if (frameUnsync) {
+                text = unsynchronise(text);
+            }
+            ByteBuffer header = ByteBuffer.allocate(10);
+            header.put(ascii(frame[0]));
+            header.putInt(version == 4 ? synchsafe(text.length) : text.length);
+            header.putShort((short) (frameUnsync ? 0x02 : 0));
+            body.write(header.array(), 0, 10);
+            body.write(text, 0, text.length);
+        }
+
+        byte[] data = body.toByteArray();
+        if (unsync && version == 3) {
+            data = unsynchronise(data);
+        }
+        data = concat(data, new byte[20]);
+
+        int flags = (unsync ? 0x80 : 0) | (extendedHeader ? 0x40 : 0);
+        byte[] header = concat(ascii("ID3"), new byte[]{(byte) version, 0, (byte) flags});
+        return concat(header, ByteBuffer.allocate(4).putInt(synchsafe(data.length)).array(), data);
+    }
+
+    /**
+     * @param picture the image of a front cover APIC frame, before the
+     * title frame.
+     * @return an ID3v2.3 tag with picture and title.
+     */
+    public static byte[] id3(byte[] picture) {
+
+        byte[] apic = concat(new byte[]{0}, ascii("image/png"), new byte[]{0, 3}, ascii("cover"), new byte[]{0}, picture);
+        byte[] title = concat(new byte[]{0}, ascii(SONG_TITLE));
+        byte[] data = concat(frame("APIC", apic), frame("TIT2", title), new byte[20]);
+
+        return concat(ascii("ID3"), new byte[]{3, 0, 0}, ByteBuffer.allocate(4).putInt(synchsafe(data.length)).array(), data);
+    }
+
+    private static byte[] frame(String id, byte[] data) {
+
+        ByteBuffer header = ByteBuffer.allocate(10);
+        header.put(ascii(id)).putInt(data.length).putShort((short) 0);
+        return concat(header.array(), data);
+    }
+
+    /**
+     * @param id3 the tag before the audio.
+     * @return an MP3 file of 40 MPEG-1 layer III frames, 128 kbps at 44100 Hz.
+     */
+    public static byte[] mp3(byte[] id3) {
+
+        byte[] frame = new byte[417];
+        frame[0] = (byte) 0xFF;
+        frame[1] = (byte) 0xFB;
+        frame[2] = (byte) 0x90;
+        frame[3] = (byte) 0x64;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(id3, 0, id3.length);
+        for (int i = 0; i < 40; i++) {
+            out.write(frame, 0, frame.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Insert a zero after every 0xFF followed by a byte that could start a
+     * frame sync, or by a zero.
+     * @param data the data.
+     * @return the unsynchronised data.
+     */
+    public static byte[] unsynchronise(byte[] data) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < data.length; i++) {
+            out.write(data[i]);
+            if ((data[i] & 0xFF) == 0xFF && (i + 1 == data.length || (data[i + 1] & 0xE0) == 0xE0 || data[i + 1] == 0)) {
+                out.write(0);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static int synchsafe(int value) {
+        return (value & 0x7F) | ((value & 0x3F80) << 1) | ((value & 0x1FC000) << 2) | ((value & 0xFE00000) << 3);
+    }
+
+    /**
+     * @return a LIST INFO chunk with title and artist.
+     */
+    public static byte[] info() {
+
+        return chunk("LIST", concat(ascii("INFO"),
+                chunk("INAM", ascii(INFO_TITLE + "\0"), ByteOrder.LITTLE_ENDIAN),
+                chunk("IART", ascii("Info Artist\0"), ByteOrder.LITTLE_ENDIAN)), ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * A 16 bits stereo WAV file of 6400 frames at 44100 Hz.
+     * @param before chunks before the data chunk.
+     * @param after chunks after the data chunk.
+     * @return the file.
+     */
+    public static byte[] wav(byte[] before, byte[] after) {
+
+        ByteBuffer fmt = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        fmt.putShort((short) 1).putShort((short) 2).putInt(44100).putInt(44100 * 4).putShort((short) 4).putShort((short) 16);
+
+        byte[] body = concat(ascii("WAVE"),
+                chunk("fmt ", fmt.array(), ByteOrder.LITTLE_ENDIAN),
+                before,
+                chunk("data", pcm(25600), ByteOrder.LITTLE_ENDIAN),
+                after);
+        return chunk("RIFF", body, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return an AIFF file with an ID3 chunk after the sound data.
+     */
+    public static byte[] aiff() {
+
+        int frames = 6400;
+        // 44100 as an 80 bit IEEE 754 extended.
+        ByteBuffer comm = ByteBuffer.allocate(18);
+        comm.putShort((short) 2).putInt(frames).putShort((short) 16);
+        comm.putShort((short) (16383 + 15)).putLong(44100L << 48);
+
+        byte[] body = concat(ascii("AIFF"),
+                chunk("COMM", comm.array(), ByteOrder.BIG_ENDIAN),
+                chunk("SSND", concat(new byte[8], pcm(frames * 4)), ByteOrder.BIG_ENDIAN),
+                chunk("ID3 ", id3(), ByteOrder.BIG_ENDIAN));
+        return chunk("FORM", body, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * @return a DSDIFF file with an ID3 chunk after the sound data.
+     */
+    public static byte[] dff() {
+        return dff(id3());
+    }
+
+    /**
+     * @param id3 the tag of the ID3 chunk following the sound data.
+     * @return a DSDIFF file.
+     */
+    public static byte[] dff(byte[] id3) {
+
+        ByteBuffer fs = ByteBuffer.allocate(4).putInt(2822400);
+        ByteBuffer chnl = ByteBuffer.allocate(10).putShort((short) 2).put(ascii("SLFTSRGT"));
+
+        byte[] prop = concat(ascii("SND "),
+                chunk64("FS  ", fs.array()),
+                chunk64("CHNL", chnl.array()),
+                chunk64("CMPR", concat(ascii("DSD "), new byte[]{14}, ascii("not compressed"), new byte[]{0})));
+
+        byte[] body = concat(ascii("DSD "),
+                chunk64("FVER", ByteBuffer.allocate(4).putInt(0x01050000).array()),
+                chunk64("PROP", prop),
+                chunk64("DSD ", pcm(22400)),
+                chunk64("ID3 ", id3));
+        return chunk64("FRM8", body);
+    }
+
+    /**
+     * @param id3 the tag the DSD chunk points to, at the end of the file.
+     * @return a stereo DSF file of one block of DSD64 data per channel.
+     */
+    public static byte[] dsf(byte[] id3) {
+
+        ByteBuffer fmt = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+        fmt.putInt(1).putInt(0).putInt(2).putInt(2).putInt(2822400).putInt(1).putLong(4096 * 8).putInt(4096).putInt(0);
+
+        byte[] chunks = concat(dsfChunk("fmt ", fmt.array()), dsfChunk("data", pcm(2 * 4096)));
+        long metadata = 28 + chunks.length;
+
+        ByteBuffer dsd = ByteBuffer.allocate(28).order(ByteOrder.LITTLE_ENDIAN);
+        dsd.put(ascii("DSD ")).putLong(28).putLong(metadata + id3.length).putLong(metadata);
+        return concat(dsd.array(), chunks, id3);
+    }
+
+    /**
+     * @param moovLast true to put moov after mdat, as files not optimized for
+     * streaming.
+     * @param cover the image of a covr item, null for none.
+     * @return an AAC MP4 file of one second at 44100 Hz with a title.
+     */
+    public static byte[] mp4(boolean moovLast, byte[] cover) {
+        return mp4(moovLast, cover, false);
+    }
+
+    /**
+     * @param moovLast true to put moov after mdat, as files not optimized for
+     * streaming.
+     * @param cover the image of a covr item, null for none.
+     * @param co64 true for 64 bits chunk offsets (co64), as files over 4 GB.
+     * @return an AAC MP4 file of one second at 44100 Hz with a title.
+     */
+    public static byte[] mp4(boolean moovLast, byte[] cover, boolean co64) {
+
+        byte[] ftyp = atom("ftyp", ascii("M4A "), new byte[4], ascii("M4A mp42isom"));
+        byte[] mdat = atom("mdat", pcm(1024));
+
+        // stco points to the first byte of mdat data, the length of moov doesn't depend on it.
+        int offset = ftyp.length + (moovLast ? 0 : moov(0, cover, co64).length) + 8;
+        byte[] moov = moov(offset, cover, co64);
+
+        return moovLast ? concat(ftyp, mdat, moov) : concat(ftyp, moov, mdat);
+    }
+
+    private static byte[] moov(int offset, byte[] cover, boolean co64) {
+
+        ByteBuffer mvhd = ByteBuffer.allocate(100);
+        mvhd.putInt(0).putInt(0).putInt(0).putInt(1000).putInt(1000).putInt(0x00010000).putShort((short) 0x0100);
+        ByteBuffer mdhd = ByteBuffer.allocate(24);
+        mdhd.putInt(0).putInt(0).putInt(0).putInt(44100).putInt(44100);
+
+        // sample entry: reserved, data reference, version, channels, bits, rate (16.16).
+        ByteBuffer mp4a = ByteBuffer.allocate(28);
+        mp4a.position(6);
+        mp4a.putShort((short) 1).putLong(0).putShort((short) 2).putShort((short) 16).putInt(0).putInt(44100 << 16);
+        // ES, decoder config (AAC, 128 kbps) with AAC LC 44100 Hz stereo, SL config descriptors.
+        byte[] esds = atom("esds", new byte[4],
+                new byte[]{3, 25, 0, 1, 0},
+                new byte[]{4, 17, 0x40, 0x15, 0, 0, 0, 0, 1, (byte) 0xF4, 0, 0, 1, (byte) 0xF4, 0},
+                new byte[]{5, 2, 0x12, 0x10},
+                new byte[]{6, 1, 2});
+        byte[] stsd = atom("stsd", new byte[]{0, 0, 0, 0, 0, 0, 0, 1}, atom("mp4a", mp4a.array(), esds));
+
+        byte[] title = atom("\u00a9nam", atom("data", new byte[]{0, 0, 0, 1, 0, 0, 0, 0}, ascii(SONG_TITLE)));
+        byte[] ilst = cover == null
+                ? atom("ilst", title)
+                : atom("ilst", title, atom("covr", atom("data", new byte[]{0, 0, 0, 14, 0, 0, 0, 0}, cover)));
+        byte[] udta = atom("udta", atom("meta", new byte[4], ilst));
+
+        byte[] stco = co64
+                ? atom("co64", ByteBuffer.allocate(16).putInt(0).putInt(1).putLong(offset).array())
+                : atom("stco", ByteBuffer.allocate(12).putInt(0).putInt(1).putInt(offset).array());
+        byte[] stbl = atom("stbl", stsd, stco);
+        byte[] minf = atom("minf", atom("smhd", new byte[8]), stbl);
+        byte[] trak = atom("trak", atom("mdia", atom("mdhd", mdhd.array()), minf));
+        return atom("moov", atom("mvhd", mvhd.array()), trak, udta);
+    }
+
+    /* MP4 atoms: big endian 32 bits sizes, header included. */
+    private static byte[] atom(String id, byte[]... data) {
+
+        byte[] body = concat(data);
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(8 + body.length).put(ascii(id));
+        return concat(header.array(), body);
+    }
+
+    /* DSF chunks: little endian 64 bits sizes, header included. */
+    private static byte[] dsfChunk(String id, byte[] data) {
+
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(ascii(id)).putLong(12 + data.length);
+        return concat(header.array(), data);
+    }
+
+    /**
+     * @return a FLAC file of 44100 samples with a title.
+     */
+    public static byte[] flac() {
+        return flac(null);
+    }
+
+    /**
+     * @param picture the data of a front cover PICTURE block, null for none.
+     * @return a FLAC file of 44100 samples with a title.
+     */
+    public static byte[] flac(byte[] picture) {
+
+        // 44100 Hz, 2 channels, 16 bits, 44100 samples.
+        ByteBuffer streamInfo = ByteBuffer.allocate(34);
+        streamInfo.putShort((short) 4096).putShort((short) 4096);
+        streamInfo.put(new byte[6]);
+        streamInfo.putLong((44100L << 44) | (1L << 41) | (15L << 36) | 44100L);
+        streamInfo.put(new byte[16]);
+
+        byte[] vendor = ascii("test");
+        byte[] title = ascii("TITLE=" + SONG_TITLE);
+        ByteBuffer comment = ByteBuffer.allocate(12 + vendor.length + title.length).order(ByteOrder.LITTLE_ENDIAN);
+        comment.putInt(vendor.length).put(vendor).putInt(1).putInt(title.length).put(title);
+
+        if (picture == null) {
+            return concat(ascii("fLaC"),
+                    block(0, false, streamInfo.array()),
+                    block(4, true, comment.array()),
+                    new byte[64]);
+        }
+        return concat(ascii("fLaC"),
+                block(0, false, streamInfo.array()),
+                block(4, false, comment.array()),
+                block(6, true, picture(picture)),
+                new byte[64]);
+    }
+
+    private static byte[] picture(byte[] image) {
+
+        byte[] mime = ascii("image/png");
+        byte[] description = ascii("cover");
+        ByteBuffer out = ByteBuffer.allocate(32 + mime.length + description.length + image.length);
+        out.putInt(3).putInt(mime.length).put(mime).putInt(description.length).put(description);
+        out.putInt(1).putInt(1).putInt(24).putInt(0).putInt(image.length).put(image);
+        return out.array();
+    }
+
+    public static byte[] block(int type, boolean last, byte[] data) {
+
+        ByteBuffer header = ByteBuffer.allocate(4);
+        header.putInt((last ? 0x80000000 : 0) | (type << 24) | data.length);
+        return concat(header.array(), data);
+    }
+}